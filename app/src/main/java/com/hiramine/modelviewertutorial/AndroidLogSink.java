@@ -0,0 +1,13 @@
+package com.hiramine.modelviewertutorial;
+
+import android.util.Log;
+
+// AppLogの、android.util.Logへの出力先
+public class AndroidLogSink implements AppLog.Sink
+{
+    @Override
+    public void println( int iPriority, String strTag, String strMessage )
+    {
+        Log.println( iPriority, strTag, strMessage );
+    }
+}
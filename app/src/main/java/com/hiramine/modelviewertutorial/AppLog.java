@@ -0,0 +1,67 @@
+package com.hiramine.modelviewertutorial;
+
+// ログの出力（android.util.Logに直接依存しないようにして、モデルの読み込みや形状処理を、Androidの外のJVMでも動かせるようにする）
+// ・出力先は差し替えられる。アプリでは、起動時にAndroidLogSinkをセットする
+// ・出力先をセットしていなければ、標準エラー出力に出力する
+public class AppLog
+{
+    // 優先度（android.util.Logと同じ値）
+    public static final int DEBUG = 3;
+    public static final int INFO  = 4;
+    public static final int WARN  = 5;
+    public static final int ERROR = 6;
+
+    // 出力先
+    public interface Sink
+    {
+        void println( int iPriority, String strTag, String strMessage );
+    }
+
+    // 標準エラー出力への出力先
+    public static final Sink SINK_STDERR = new Sink()
+    {
+        @Override
+        public void println( int iPriority, String strTag, String strMessage )
+        {
+            System.err.println( "DIWE".charAt( iPriority - DEBUG ) + "/" + strTag + " : " + strMessage );
+        }
+    };
+
+    // 何も出力しない出力先（ベンチマークなどで使う）
+    public static final Sink SINK_NONE = new Sink()
+    {
+        @Override
+        public void println( int iPriority, String strTag, String strMessage )
+        {
+        }
+    };
+
+    // メンバー変数
+    private static volatile Sink s_sink = SINK_STDERR;
+
+    // 出力先のセット（nullの場合は、何も出力しない）
+    public static void setSink( Sink sink )
+    {
+        s_sink = ( null != sink ) ? sink : SINK_NONE;
+    }
+
+    public static void d( String strTag, String strMessage )
+    {
+        s_sink.println( DEBUG, strTag, strMessage );
+    }
+
+    public static void i( String strTag, String strMessage )
+    {
+        s_sink.println( INFO, strTag, strMessage );
+    }
+
+    public static void w( String strTag, String strMessage )
+    {
+        s_sink.println( WARN, strTag, strMessage );
+    }
+
+    public static void e( String strTag, String strMessage )
+    {
+        s_sink.println( ERROR, strTag, strMessage );
+    }
+}
@@ -0,0 +1,351 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+
+// 読み込み中に三角形を追加していけるモデル
+// 追加はローディングスレッド、描画はGLスレッドから行う。
+// 三角形の数は、バッファへの書き込みが済んでから公開（volatile書き込み）するので、
+// 描画側は、先に三角形の数を取得し、その後でバッファを取得すれば、公開済みの範囲は常に読める。
+// 三角形ごとに３頂点を持つので、番号配列は、16ビットで表せる三角形の数の分だけ作り、
+// 部分メッシュごとに頂点の座標値の配列の開始位置をずらして使い回す。
+// 稜線の番号配列は、線を描画する時に作る。
+// 三角形の頂点は座標が重なるので、点は、追加の時に作る点の集合（同じ座標で最初に現れた頂点の番号の配列）で描く。
+// 点の数は、三角形の数より先に公開するので、描画側は、点の数を取得した後で、点の番号配列を取得する。
+public class AppendableModel extends Model {
+    // 定数
+    private static final int MINIMUM_CAPACITY = 1024;    // 三角形の数の容量の下限
+    private static final int INITIAL_CAPACITY = 64 * 1024;    // 最初に確保する三角形の数の容量の上限（最初の描画を早くするため）
+    private static final int SUBMESH_TRIANGLE = SubMeshSplitter.MAX_VERTEX_COUNT / 3;    // 部分メッシュごとの三角形の数
+
+    // メンバー変数
+    private volatile FloatBuffer m_fbVertex;    // 頂点の座標値の配列（容量分確保）
+    private volatile FloatBuffer m_fbFileFacetNormal;    // ファイルの面法線（三角形ごとに３成分）（容量分確保）
+    private volatile ShortBuffer m_sbTriangleVertexIndex;    // 三角形の頂点の番号の配列（容量分確保）
+    private volatile int         m_iCountTriangle;    // 公開済みの三角形の数
+    private volatile int         m_iCountPoint;    // 公開済みの点の数
+    private volatile boolean     m_bComplete;    // 読み込みが完了したかどうか
+    private int m_iCapacityHint;    // 見込みの三角形の数
+    private int m_iCapacityTriangle;    // 頂点の座標値の配列の、三角形の数での容量
+    private int m_iCapacityIndex;    // 番号配列の、三角形の数での容量
+    private ShortBuffer m_sbEdgeVertexIndex;    // 稜線の番号配列（三角形の頂点の番号の配列と同じ容量）（GLスレッドからのみアクセス）
+    private SubMesh[]   m_aSubMeshTriangle;    // 三角形の部分メッシュ（GLスレッドからのみアクセス）
+    private SubMesh[]   m_aSubMeshEdge;    // 稜線の部分メッシュ（GLスレッドからのみアクセス）
+    private FloatBuffer m_fbVertexSubMesh;    // 部分メッシュを作った時の、頂点の座標値の配列
+    private ShortBuffer m_sbIndexSubMesh;    // 部分メッシュを作った時の、三角形の頂点の番号の配列
+    private final PointSetBuilder m_pointset = new PointSetBuilder();    // 点の集合（ローディングスレッドで追加する）
+
+    // コンストラクタ（最初の描画を早くするため、容量は小さく確保し、見込みの三角形の数まで追加に合わせて伸ばす）
+    public AppendableModel( int iCapacityHint )
+    {
+        m_iCapacityHint = Math.max( iCapacityHint, MINIMUM_CAPACITY );
+        allocateVertex( Math.min( m_iCapacityHint, INITIAL_CAPACITY ) );
+        allocateIndex( MINIMUM_CAPACITY );
+    }
+
+    // 三角形の追加（ローディングスレッドから呼ぶ）
+    // af3Normalは、ファイルの面法線（iOffset / 3番目から、三角形ごとに３成分）
+    public void append( float[] af3Vertex, int iOffset, float[] af3Normal, int iCountTriangle )
+    {
+        FloatBuffer fbVertex = prepareAppend( iCountTriangle );
+        fbVertex.put( af3Vertex, iOffset, iCountTriangle * 3 * 3 );
+        prepareAppendNormal().put( af3Normal, iOffset / 3, iCountTriangle * 3 );
+        appendPoints( iCountTriangle );
+        m_iCountTriangle += iCountTriangle;    // 公開
+    }
+
+    // 三角形の追加（ダイレクトバッファの先頭から、iCountTriangle個の三角形の頂点の座標値と、ファイルの面法線を追加する）
+    public void append( FloatBuffer fb3Vertex, FloatBuffer fb3Normal, int iCountTriangle )
+    {
+        FloatBuffer fbSource = fb3Vertex.duplicate();
+        fbSource.position( 0 );
+        fbSource.limit( iCountTriangle * 3 * 3 );
+        prepareAppend( iCountTriangle ).put( fbSource );
+        FloatBuffer fbSourceNormal = fb3Normal.duplicate();
+        fbSourceNormal.position( 0 );
+        fbSourceNormal.limit( iCountTriangle * 3 );
+        prepareAppendNormal().put( fbSourceNormal );
+        appendPoints( iCountTriangle );
+        m_iCountTriangle += iCountTriangle;    // 公開
+    }
+
+    // 公開前の三角形の頂点の、点の集合への追加（点の数を公開する）
+    private void appendPoints( int iCountTriangle )
+    {
+        FloatBuffer fbVertex = m_fbVertex;
+        int         iEnd     = ( m_iCountTriangle + iCountTriangle ) * 3;
+        for( int iIndexVertex = m_iCountTriangle * 3; iIndexVertex < iEnd; iIndexVertex++ )
+        {
+            m_pointset.add( fbVertex.get( iIndexVertex * 3 ), fbVertex.get( iIndexVertex * 3 + 1 ), fbVertex.get( iIndexVertex * 3 + 2 ), iIndexVertex );
+        }
+        m_iCountPoint = m_pointset.getPointCount();    // 公開
+    }
+
+    // 追加の準備（容量を確保し、公開前の領域に書き込むバッファを返す）
+    private FloatBuffer prepareAppend( int iCountTriangle )
+    {
+        int iCountTriangleOld = m_iCountTriangle;
+        int iCountTriangleNew = iCountTriangleOld + iCountTriangle;
+        if( m_iCapacityTriangle < iCountTriangleNew )
+        {
+            allocateVertex( nextCapacity( m_iCapacityTriangle, iCountTriangleNew ) );
+        }
+        if( m_iCapacityIndex < Math.min( iCountTriangleNew, SUBMESH_TRIANGLE ) )
+        {
+            allocateIndex( Math.min( Math.min( m_iCapacityTriangle, SUBMESH_TRIANGLE ), Math.max( iCountTriangleNew, m_iCapacityIndex * 2 ) ) );
+        }
+
+        // 公開前の領域への書き込み用
+        FloatBuffer fbVertex = m_fbVertex.duplicate();
+        fbVertex.position( iCountTriangleOld * 3 * 3 );
+        return fbVertex;
+    }
+
+    // 公開前の領域に、ファイルの面法線を書き込むバッファ（prepareAppend()で容量を確保した後に呼ぶ）
+    private FloatBuffer prepareAppendNormal()
+    {
+        FloatBuffer fbFileFacetNormal = m_fbFileFacetNormal.duplicate();
+        fbFileFacetNormal.position( m_iCountTriangle * 3 );
+        return fbFileFacetNormal;
+    }
+
+    // 読み込みの完了（点の集合のハッシュ表は、もう使わない）
+    public void complete()
+    {
+        m_pointset.finish();
+        m_bComplete = true;
+    }
+
+    public boolean isComplete()
+    {
+        return m_bComplete;
+    }
+
+    // 次の容量（見込みの三角形の数までは倍々に、見込みを超えたら1.5倍ずつ伸ばす）
+    private int nextCapacity( int iCapacity, int iCountTriangle )
+    {
+        int iCapacityNew;
+        if( m_iCapacityHint >= iCountTriangle )
+        {
+            iCapacityNew = (int)Math.min( (long)iCapacity * 2, m_iCapacityHint );
+        }
+        else
+        {
+            iCapacityNew = (int)Math.min( (long)iCapacity + ( iCapacity >> 1 ), Integer.MAX_VALUE / ( 3 * 3 * 4 ) );
+        }
+        return Math.max( iCapacityNew, iCountTriangle );
+    }
+
+    // 頂点の座標値の配列の容量の確保（公開済みの範囲をコピーしてから、新しいバッファに差し替える）
+    private void allocateVertex( int iCapacityTriangle )
+    {
+        FloatBuffer fbVertex = ByteBuffer.allocateDirect( iCapacityTriangle * 3 * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+        if( null != m_fbVertex )
+        {
+            FloatBuffer fbVertexOld = m_fbVertex.duplicate();
+            fbVertexOld.position( 0 );
+            fbVertexOld.limit( m_iCountTriangle * 3 * 3 );
+            fbVertex.put( fbVertexOld );
+            fbVertex.position( 0 );
+        }
+        m_fbVertex = fbVertex;
+
+        FloatBuffer fbFileFacetNormal = ByteBuffer.allocateDirect( iCapacityTriangle * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+        if( null != m_fbFileFacetNormal )
+        {
+            FloatBuffer fbFileFacetNormalOld = m_fbFileFacetNormal.duplicate();
+            fbFileFacetNormalOld.position( 0 );
+            fbFileFacetNormalOld.limit( m_iCountTriangle * 3 );
+            fbFileFacetNormal.put( fbFileFacetNormalOld );
+            fbFileFacetNormal.position( 0 );
+        }
+        m_fbFileFacetNormal = fbFileFacetNormal;
+        m_iCapacityTriangle = iCapacityTriangle;
+    }
+
+    // 番号配列の容量の確保（内容は三角形の数だけで決まるので、作り直して差し替える）
+    private void allocateIndex( int iCapacityTriangle )
+    {
+        m_sbTriangleVertexIndex = makeTriangleVertexIndexBuffer( iCapacityTriangle );
+        m_iCapacityIndex = iCapacityTriangle;
+    }
+
+    // アクセサ
+    @Override
+    public FloatBuffer getVertexBuffer()
+    {
+        return m_fbVertex;
+    }
+
+    // ファイルの面法線（先頭から、公開済みの三角形の数の分）（完了後に、頂点を共有化したモデルに渡す）
+    public FloatBuffer getFileFacetNormalBuffer()
+    {
+        return m_fbFileFacetNormal;
+    }
+
+    // 読み込み中は頂点が増えていくので、インターリーブした配列は作らず、頂点の座標値の配列のまま描画する
+    @Override
+    public VertexLayout getVertexLayout()
+    {
+        return VertexLayout.PACKED_FLOAT;
+    }
+
+    @Override
+    public Buffer getInterleavedVertexBuffer()
+    {
+        return m_fbVertex;
+    }
+
+    @Override
+    public ShortBuffer getTriangleVertexIndexBuffer()
+    {
+        return m_sbTriangleVertexIndex;
+    }
+
+    // 稜線の番号配列（三角形の頂点の番号の配列が伸びたら、作り直す）（GLスレッドから呼ぶ）
+    @Override
+    public ShortBuffer getEdgeVertexIndexBuffer()
+    {
+        int iCapacityIndex = m_sbTriangleVertexIndex.capacity() / 3;
+        if( null == m_sbEdgeVertexIndex || m_sbEdgeVertexIndex.capacity() / 6 != iCapacityIndex )
+        {
+            m_sbEdgeVertexIndex = makeEdgeVertexIndexBuffer( iCapacityIndex );
+        }
+        return m_sbEdgeVertexIndex;
+    }
+
+    @Override
+    public Buffer getBuiltEdgeVertexIndexBuffer()
+    {
+        return m_sbEdgeVertexIndex;
+    }
+
+    @Override
+    public boolean hasEdges()
+    {
+        return null != m_sbEdgeVertexIndex;
+    }
+
+    @Override
+    public int getVertexCount()
+    {
+        return m_iCountTriangle * 3;
+    }
+
+    @Override
+    public int getTriangleCount()
+    {
+        return m_iCountTriangle;
+    }
+
+    @Override
+    public Buffer getPointVertexIndexBuffer()
+    {
+        return m_pointset.getPointVertexIndexBuffer();
+    }
+
+    @Override
+    public int getPointCount()
+    {
+        return m_iCountPoint;
+    }
+
+    @Override
+    public int getEdgeCount()
+    {
+        return m_iCountTriangle * 3;
+    }
+
+    @Override
+    public int getIndexType()
+    {
+        return GL10.GL_UNSIGNED_SHORT;
+    }
+
+    @Override
+    public int getTriangleVertexIndex( int iIndexTriangle, int i3 )
+    {
+        return iIndexTriangle * 3 + i3;
+    }
+
+    @Override
+    public int getEdgeVertexIndex( int iIndexEdge, int i2 )
+    {
+        return iIndexEdge / 3 * 3 + ( iIndexEdge % 3 + i2 ) % 3;
+    }
+
+    // 読み込み中は法線を作らない（陰影なしで描画する）
+    @Override
+    public SubMesh[] getLitTriangleSubMeshes( boolean bElementIndexUint, float fCreaseAngle )
+    {
+        return null;
+    }
+
+    // 部分メッシュ（容量分を、番号配列で表せる三角形の数ずつに分ける。描画する数は、描画側で公開済みの数に切り詰める）
+    @Override
+    public SubMesh[] getTriangleSubMeshes( boolean bElementIndexUint )
+    {
+        prepareSubMeshes();
+        return m_aSubMeshTriangle;
+    }
+
+    // 稜線の部分メッシュは、三角形の部分メッシュと同じ頂点の座標値の配列を使う
+    @Override
+    public SubMesh[] getEdgeSubMeshes( boolean bElementIndexUint )
+    {
+        prepareSubMeshes();
+        if( null == m_aSubMeshEdge )
+        {
+            ShortBuffer sbEdgeVertexIndex = getEdgeVertexIndexBuffer();
+            SubMesh[]   aSubMeshEdge      = new SubMesh[m_aSubMeshTriangle.length];
+            for( int i = 0; i < aSubMeshEdge.length; i++ )
+            {
+                SubMesh submesh = m_aSubMeshTriangle[i];
+                aSubMeshEdge[i] = new SubMesh( submesh.getVertexBuffer(), GL10.GL_FLOAT, sbEdgeVertexIndex, GL10.GL_UNSIGNED_SHORT,
+                                               submesh.getFirstElement() * 3, submesh.getElementCount() * 3 );
+            }
+            m_aSubMeshEdge = aSubMeshEdge;
+        }
+        return m_aSubMeshEdge;
+    }
+
+    // 頂点の座標値の配列か番号配列が差し替わったら、部分メッシュを作り直す
+    private void prepareSubMeshes()
+    {
+        FloatBuffer fbVertex              = m_fbVertex;
+        ShortBuffer sbTriangleVertexIndex = m_sbTriangleVertexIndex;
+        if( null != m_aSubMeshTriangle
+            && fbVertex == m_fbVertexSubMesh
+            && sbTriangleVertexIndex == m_sbIndexSubMesh )
+        {
+            return;
+        }
+
+        int       iCapacityTriangle = fbVertex.capacity() / ( 3 * 3 );
+        SubMesh[] aSubMeshTriangle  = new SubMesh[( iCapacityTriangle + SUBMESH_TRIANGLE - 1 ) / SUBMESH_TRIANGLE];
+        for( int i = 0; i < aSubMeshTriangle.length; i++ )
+        {
+            int iFirstTriangle = i * SUBMESH_TRIANGLE;
+            int iCountTriangle = Math.min( SUBMESH_TRIANGLE, iCapacityTriangle - iFirstTriangle );
+            aSubMeshTriangle[i] = new SubMesh( SubMeshSplitter.slice( fbVertex, iFirstTriangle * 3 * 3, ( iFirstTriangle + iCountTriangle ) * 3 * 3 ), GL10.GL_FLOAT,
+                                               sbTriangleVertexIndex, GL10.GL_UNSIGNED_SHORT,
+                                               iFirstTriangle, iCountTriangle );
+        }
+        m_aSubMeshTriangle = aSubMeshTriangle;
+        m_aSubMeshEdge = null;
+        m_fbVertexSubMesh = fbVertex;
+        m_sbIndexSubMesh = sbTriangleVertexIndex;
+    }
+
+    // 読み込み中は三角形が増えていくので、その都度計算する
+    @Override
+    public float[] getBounds()
+    {
+        return isComplete() ? super.getBounds() : computeBounds();
+    }
+}
@@ -0,0 +1,115 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.microedition.khronos.opengles.GL11;
+
+// クライアント側のダイレクトバッファに対応する、GPU側のバッファオブジェクト（VBO）の表
+// ・バッファごとに、最初に使う時に一度だけ転送し、以降は同じバッファオブジェクトをバインドして描画する
+// ・キーはバッファそのもの（同一性）。同じバッファを共有する部分メッシュは、同じバッファオブジェクトを使う
+// ・転送後にバッファの内容を書き換えても反映されないので、内容の変わらないバッファだけを登録する
+// ・GLスレッドからだけ使う
+public class BufferObjectCache
+{
+    // メンバー変数
+    private final Map<Buffer, Integer> m_mapBufferObject = new IdentityHashMap<>();
+    private long m_lBytes;    // 転送したバイト数の合計
+
+    // アクセサ
+    public int getCount()
+    {
+        return m_mapBufferObject.size();
+    }
+
+    public long getBytes()
+    {
+        return m_lBytes;
+    }
+
+    // バッファに対応するバッファオブジェクトの名前（なければ、作成して転送する）
+    // 戻る時には、iTargetのバインドは解除されている
+    public int get( GL11 gl11, int iTarget, Buffer buf )
+    {
+        Integer iName = m_mapBufferObject.get( buf );
+        if( null != iName )
+        {
+            return iName;
+        }
+
+        int[] aiName = new int[1];
+        gl11.glGenBuffers( 1, aiName, 0 );
+        int iBytes = getByteSize( buf );
+        gl11.glBindBuffer( iTarget, aiName[0] );
+        gl11.glBufferData( iTarget, iBytes, buf.position( 0 ), GL11.GL_STATIC_DRAW );
+        gl11.glBindBuffer( iTarget, 0 );
+
+        m_mapBufferObject.put( buf, aiName[0] );
+        m_lBytes += iBytes;
+        return aiName[0];
+    }
+
+    // バッファに対応するバッファオブジェクトの削除（バッファをアリーナに返す前に呼ぶ。なければ何もしない）
+    public void remove( GL11 gl11, Buffer buf )
+    {
+        if( null == buf )
+        {
+            return;
+        }
+        Integer iName = m_mapBufferObject.remove( buf );
+        if( null == iName )
+        {
+            return;
+        }
+        gl11.glDeleteBuffers( 1, new int[]{ iName }, 0 );
+        m_lBytes -= getByteSize( buf );
+    }
+
+    // 全てのバッファオブジェクトの削除
+    public void clear( GL11 gl11 )
+    {
+        if( m_mapBufferObject.isEmpty() )
+        {
+            return;
+        }
+        int[] aiName = new int[m_mapBufferObject.size()];
+        int   i      = 0;
+        for( Integer iName : m_mapBufferObject.values() )
+        {
+            aiName[i++] = iName;
+        }
+        gl11.glDeleteBuffers( aiName.length, aiName, 0 );
+        invalidate();
+    }
+
+    // 全てのバッファオブジェクトを忘れる（GLコンテキストが作り直された時。古い名前は、コンテキストと一緒に破棄済み）
+    public void invalidate()
+    {
+        m_mapBufferObject.clear();
+        m_lBytes = 0;
+    }
+
+    // バッファのバイト数（アリーナのバッファは、要求した大きさに切り出されているので、容量がそのまま要素数）
+    static int getByteSize( Buffer buf )
+    {
+        if( buf instanceof FloatBuffer
+                || buf instanceof IntBuffer )
+        {
+            return buf.capacity() * 4;
+        }
+        if( buf instanceof ShortBuffer )
+        {
+            return buf.capacity() * 2;
+        }
+        if( buf instanceof ByteBuffer )
+        {
+            return buf.capacity();
+        }
+        throw new IllegalArgumentException( "Unsupported buffer type : " + buf.getClass().getName() );
+    }
+}
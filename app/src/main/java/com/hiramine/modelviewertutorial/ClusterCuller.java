@@ -0,0 +1,210 @@
+package com.hiramine.modelviewertutorial;
+
+import android.opengl.Matrix;
+
+// クラスターの階層の、視野角錐台と画面上の大きさによる間引き
+// ・行列は、頂点配列に格納されている座標値から、クリップ座標への変換（投影×視点×モデル）
+// ・視野角錐台の６平面の外側にある節点は、子の節点ごと描画しない。内側にある節点は、子の節点を調べずに、まとめて描画する
+// ・画面上で１ピクセルより小さい節点は、先頭のクラスターだけを描画する（そのピクセルを覆う要素を残し、他は描画しない）
+//   画面上の大きさは、平行投影を前提に、行列の行の絶対値と境界ボックスの半分の大きさの積で求める
+// ・描画するクラスターは、並べ替えた番号配列の連続した範囲にまとめる（隣り合うクラスターは、一度の描画呼び出しで描画する）
+// ・GLスレッドからだけ使う
+public class ClusterCuller
+{
+    // 定数
+    public static final float MIN_SCREEN_SIZE = 1.0f;    // これより小さい節点は、先頭のクラスターだけを描画する（ピクセル）
+
+    // 節点の分類
+    private static final int CLASS_OUTSIDE   = 0;    // 視野角錐台の外側
+    private static final int CLASS_INSIDE    = 1;    // 視野角錐台の内側
+    private static final int CLASS_INTERSECT = 2;    // 視野角錐台の境界をまたぐ
+    private static final int CLASS_SMALL     = 3;    // 画面上で、１ピクセルより小さい
+
+    // メンバー変数
+    private final float[] m_f16Mvp     = new float[16];
+    private final float[] m_af24Plane  = new float[6 * 4];    // 視野角錐台の６平面（ax + by + cz + d >= 0が内側）
+    private final float[] m_f16Work    = new float[16];
+    private float m_fWidth;    // ビューポートの幅と高さ（ピクセル）
+    private float m_fHeight;
+    private int[] m_aiRange = new int[2 * 16];    // 描画する範囲（先頭の要素と要素の数の組）
+    private int   m_iCountRange;
+    private int[] m_aiStack = new int[64];    // 辿る節点
+    private int   m_iCountDrawn;    // 直前の間引きで、描画するクラスターの数
+    private int   m_iCountCulled;    // 直前の間引きで、描画しないクラスターの数
+
+    // アクセサ
+    public int getRangeCount()
+    {
+        return m_iCountRange;
+    }
+
+    // i番目の描画する範囲の、並べ替えた番号配列での先頭の要素と、要素の数
+    public int getRangeFirst( int i )
+    {
+        return m_aiRange[i * 2];
+    }
+
+    public int getRangeElementCount( int i )
+    {
+        return m_aiRange[i * 2 + 1];
+    }
+
+    public int getDrawnCount()
+    {
+        return m_iCountDrawn;
+    }
+
+    public int getCulledCount()
+    {
+        return m_iCountCulled;
+    }
+
+    // 行列のセット（f16Modelがnullの場合は、単位行列）
+    public void setMatrix( float[] f16Projection, float[] f16View, float[] f16Model, int iWidth, int iHeight )
+    {
+        Matrix.multiplyMM( m_f16Work, 0, f16Projection, 0, f16View, 0 );
+        if( null == f16Model )
+        {
+            System.arraycopy( m_f16Work, 0, m_f16Mvp, 0, 16 );
+        }
+        else
+        {
+            Matrix.multiplyMM( m_f16Mvp, 0, m_f16Work, 0, f16Model, 0 );
+        }
+        setMatrix( m_f16Mvp, iWidth, iHeight );
+    }
+
+    public void setMatrix( float[] f16Mvp, int iWidth, int iHeight )
+    {
+        if( f16Mvp != m_f16Mvp )
+        {
+            System.arraycopy( f16Mvp, 0, m_f16Mvp, 0, 16 );
+        }
+        m_fWidth = iWidth;
+        m_fHeight = iHeight;
+
+        // クリップ座標の-w <= x, y, z <= wを、行列の行で表す（行列は列優先）
+        for( int iAxis = 0; iAxis < 3; iAxis++ )
+        {
+            for( int iSign = 0; iSign < 2; iSign++ )
+            {
+                int   iBase = ( iAxis * 2 + iSign ) * 4;
+                float fSign = ( 0 == iSign ) ? 1.0f : -1.0f;
+                for( int iColumn = 0; iColumn < 4; iColumn++ )
+                {
+                    m_af24Plane[iBase + iColumn] = m_f16Mvp[iColumn * 4 + 3] + fSign * m_f16Mvp[iColumn * 4 + iAxis];
+                }
+            }
+        }
+    }
+
+    // 階層の間引き（描画する範囲の数を返す）
+    public int cull( ClusterTree clustertree )
+    {
+        m_iCountRange = 0;
+        m_iCountDrawn = 0;
+        m_iCountCulled = 0;
+
+        int iCountStack = 0;
+        m_aiStack[iCountStack++] = 0;
+        while( 0 < iCountStack )
+        {
+            int iNode = m_aiStack[--iCountStack];
+
+            int iClass = classify( clustertree, iNode );
+            if( CLASS_OUTSIDE == iClass )
+            {
+                m_iCountCulled += clustertree.getLeafCount( iNode );
+                continue;
+            }
+            if( CLASS_SMALL == iClass )
+            { // 先頭のクラスターだけ
+                int iLeaf = iNode;
+                while( !clustertree.isLeaf( iLeaf ) )
+                {
+                    iLeaf = clustertree.getLeft( iLeaf );
+                }
+                addRange( clustertree.getFirstElement( iLeaf ), clustertree.getElementCount( iLeaf ) );
+                m_iCountDrawn++;
+                m_iCountCulled += clustertree.getLeafCount( iNode ) - 1;
+                continue;
+            }
+            if( CLASS_INSIDE == iClass
+                    || clustertree.isLeaf( iNode ) )
+            {
+                addRange( clustertree.getFirstElement( iNode ), clustertree.getElementCount( iNode ) );
+                m_iCountDrawn += clustertree.getLeafCount( iNode );
+                continue;
+            }
+
+            // 並べ替えた番号配列の順に範囲を加えるよう、右の子を先に積む
+            if( m_aiStack.length < iCountStack + 2 )
+            {
+                int[] aiStack = new int[m_aiStack.length * 2];
+                System.arraycopy( m_aiStack, 0, aiStack, 0, iCountStack );
+                m_aiStack = aiStack;
+            }
+            m_aiStack[iCountStack++] = clustertree.getRight( iNode );
+            m_aiStack[iCountStack++] = clustertree.getLeft( iNode );
+        }
+        return m_iCountRange;
+    }
+
+    private int classify( ClusterTree clustertree, int iNode )
+    {
+        float fCenterX = ( clustertree.getBound( iNode, 0 ) + clustertree.getBound( iNode, 3 ) ) * 0.5f;
+        float fCenterY = ( clustertree.getBound( iNode, 1 ) + clustertree.getBound( iNode, 4 ) ) * 0.5f;
+        float fCenterZ = ( clustertree.getBound( iNode, 2 ) + clustertree.getBound( iNode, 5 ) ) * 0.5f;
+        float fHalfX   = ( clustertree.getBound( iNode, 3 ) - clustertree.getBound( iNode, 0 ) ) * 0.5f;
+        float fHalfY   = ( clustertree.getBound( iNode, 4 ) - clustertree.getBound( iNode, 1 ) ) * 0.5f;
+        float fHalfZ   = ( clustertree.getBound( iNode, 5 ) - clustertree.getBound( iNode, 2 ) ) * 0.5f;
+
+        boolean bInside = true;
+        for( int iBase = 0; iBase < 6 * 4; iBase += 4 )
+        {
+            float fA        = m_af24Plane[iBase];
+            float fB        = m_af24Plane[iBase + 1];
+            float fC        = m_af24Plane[iBase + 2];
+            float fDistance = fA * fCenterX + fB * fCenterY + fC * fCenterZ + m_af24Plane[iBase + 3];
+            float fRadius   = Math.abs( fA ) * fHalfX + Math.abs( fB ) * fHalfY + Math.abs( fC ) * fHalfZ;
+            if( fDistance + fRadius < 0.0f )
+            {
+                return CLASS_OUTSIDE;
+            }
+            if( fDistance - fRadius < 0.0f )
+            {
+                bInside = false;
+            }
+        }
+
+        // 画面上の幅と高さ（正規化デバイス座標の-1～1が、ビューポートの幅と高さになる）
+        float fSizeX = ( Math.abs( m_f16Mvp[0] ) * fHalfX + Math.abs( m_f16Mvp[4] ) * fHalfY + Math.abs( m_f16Mvp[8] ) * fHalfZ ) * m_fWidth;
+        float fSizeY = ( Math.abs( m_f16Mvp[1] ) * fHalfX + Math.abs( m_f16Mvp[5] ) * fHalfY + Math.abs( m_f16Mvp[9] ) * fHalfZ ) * m_fHeight;
+        if( MIN_SCREEN_SIZE > fSizeX
+                && MIN_SCREEN_SIZE > fSizeY )
+        {
+            return CLASS_SMALL;
+        }
+        return bInside ? CLASS_INSIDE : CLASS_INTERSECT;
+    }
+
+    // 描画する範囲の追加（直前の範囲に続く場合は、つなげる）
+    private void addRange( int iFirst, int iCount )
+    {
+        if( 0 < m_iCountRange
+                && m_aiRange[m_iCountRange * 2 - 2] + m_aiRange[m_iCountRange * 2 - 1] == iFirst )
+        {
+            m_aiRange[m_iCountRange * 2 - 1] += iCount;
+            return;
+        }
+        if( m_aiRange.length < ( m_iCountRange + 1 ) * 2 )
+        {
+            int[] aiRange = new int[m_aiRange.length * 2];
+            System.arraycopy( m_aiRange, 0, aiRange, 0, m_iCountRange * 2 );
+            m_aiRange = aiRange;
+        }
+        m_aiRange[m_iCountRange * 2] = iFirst;
+        m_aiRange[m_iCountRange * 2 + 1] = iCount;
+        m_iCountRange++;
+    }
+}
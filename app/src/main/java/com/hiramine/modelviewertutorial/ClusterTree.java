@@ -0,0 +1,309 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+
+// 部分メッシュの要素（三角形または稜線）のまとまり（クラスター）の、境界ボックスの階層（BVH）
+// ・要素の重心で、長い軸の中央値で二分することを繰り返し、一定数以下の要素のまとまりを葉にする
+// ・要素を葉の順に並べ替えた番号配列を作る（どの節点の要素も、並べ替えた番号配列の連続した範囲になる）
+// ・並べ替えた番号配列は、元の部分メッシュの頂点配列をそのまま指す（要素の番号の順番は、描画にだけ使う）
+// ・境界ボックスは、頂点配列に格納されている座標値の空間（量子化したモデルは、量子化した値）
+// ・作成後は変更しないので、どのスレッドからも読める
+public class ClusterTree
+{
+    // 定数
+    public static final int CLUSTER_ELEMENT = 256;    // 葉の要素の数の上限
+    static final int MIN_CLUSTER_COUNT = 4;    // 階層を作る、葉の数の下限（これより少ない部分メッシュは、まとめて描画する）
+
+    // メンバー変数
+    private final int m_iVertexPer;    // 要素の頂点数（三角形は3、稜線は2）
+    private final SubMesh m_submesh;    // 要素を並べ替えた部分メッシュ
+    private int m_iCountNode;
+    private final float[] m_af6Bounds;    // 節点ごとの境界ボックス（最小xyz、最大xyz）
+    private final int[] m_aiLeft;    // 節点ごとの子の節点の番号（葉は-1）
+    private final int[] m_aiRight;
+    private final int[] m_aiFirst;    // 節点ごとの、並べ替えた番号配列での先頭の要素
+    private final int[] m_aiCount;    // 節点ごとの要素の数
+    private final int[] m_aiLeafCount;    // 節点ごとの葉の数
+
+    // 作成中だけ使う（作成後は手放す）
+    private float[] m_af3Centroid;    // 要素ごとの重心
+    private int[] m_aiOrder;    // 並べ替えた順の、元の要素の番号
+
+    private ClusterTree( SubMesh submesh, int iVertexPer )
+    {
+        m_iVertexPer = iVertexPer;
+        int iCountElement = submesh.getElementCount();
+        int iCountNodeMax = 4 * ( iCountElement / CLUSTER_ELEMENT + 1 );    // 葉の要素は上限の半分より多いので、葉の数は要素の数/上限×2より少ない
+        m_af6Bounds = new float[iCountNodeMax * 6];
+        m_aiLeft = new int[iCountNodeMax];
+        m_aiRight = new int[iCountNodeMax];
+        m_aiFirst = new int[iCountNodeMax];
+        m_aiCount = new int[iCountNodeMax];
+        m_aiLeafCount = new int[iCountNodeMax];
+
+        m_af3Centroid = new float[iCountElement * 3];
+        m_aiOrder = new int[iCountElement];
+        ByteBuffer   btbVertex = (ByteBuffer)submesh.getVertexBuffer();
+        VertexLayout layout    = submesh.getVertexLayout();
+        Buffer       bufIndex  = submesh.getIndexBuffer();
+        for( int i = 0; i < iCountElement; i++ )
+        {
+            m_aiOrder[i] = i;
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                float fSum = 0.0f;
+                for( int iCorner = 0; iCorner < iVertexPer; iCorner++ )
+                {
+                    fSum += InterleavedVertexBuilder.getPosition( btbVertex, layout, Model.getIndex( bufIndex, i * iVertexPer + iCorner ), i3 );
+                }
+                m_af3Centroid[i * 3 + i3] = fSum / iVertexPer;
+            }
+        }
+
+        buildNode( btbVertex, layout, bufIndex, 0, iCountElement );
+
+        Buffer bufIndexOrdered = makeOrderedIndexBuffer( bufIndex, submesh.getIndexType(), iCountElement );
+        m_submesh = new SubMesh( btbVertex, layout, bufIndexOrdered, submesh.getIndexType(), submesh.getFirstElement(), iCountElement );
+        m_af3Centroid = null;
+        m_aiOrder = null;
+    }
+
+    // 部分メッシュの階層の作成（要素が少なく、階層を作っても描画が減らない部分メッシュや、インターリーブした頂点配列でない部分メッシュはnull）
+    public static ClusterTree build( SubMesh submesh, int iVertexPer )
+    {
+        if( MIN_CLUSTER_COUNT * CLUSTER_ELEMENT > submesh.getElementCount()
+                || !( submesh.getVertexBuffer() instanceof ByteBuffer ) )
+        {
+            return null;
+        }
+        return new ClusterTree( submesh, iVertexPer );
+    }
+
+    // アクセサ
+    // 要素を並べ替えた部分メッシュ（元の部分メッシュと、同じ頂点配列を指す）
+    public SubMesh getSubMesh()
+    {
+        return m_submesh;
+    }
+
+    public int getVertexPer()
+    {
+        return m_iVertexPer;
+    }
+
+    public int getNodeCount()
+    {
+        return m_iCountNode;
+    }
+
+    // 葉の数
+    public int getClusterCount()
+    {
+        return m_aiLeafCount[0];
+    }
+
+    // 番号配列と節点の配列のバイト数
+    public long getBytes()
+    {
+        long lSizeofIndex = ( GL10.GL_UNSIGNED_SHORT == m_submesh.getIndexType() ) ? 2L : 4L;
+        return m_submesh.getElementCount() * m_iVertexPer * lSizeofIndex + m_iCountNode * ( 6 * 4L + 5 * 4L );
+    }
+
+    // 節点（ClusterCullerが、根から辿る）
+    boolean isLeaf( int iNode )
+    {
+        return -1 == m_aiLeft[iNode];
+    }
+
+    int getLeft( int iNode )
+    {
+        return m_aiLeft[iNode];
+    }
+
+    int getRight( int iNode )
+    {
+        return m_aiRight[iNode];
+    }
+
+    int getFirstElement( int iNode )
+    {
+        return m_aiFirst[iNode];
+    }
+
+    int getElementCount( int iNode )
+    {
+        return m_aiCount[iNode];
+    }
+
+    int getLeafCount( int iNode )
+    {
+        return m_aiLeafCount[iNode];
+    }
+
+    // 節点の境界ボックスのi6番目の値（最小xyz、最大xyz）
+    float getBound( int iNode, int i6 )
+    {
+        return m_af6Bounds[iNode * 6 + i6];
+    }
+
+    // [iStart, iEnd)の要素の節点の作成（子の節点も作成し、節点の番号を返す）
+    private int buildNode( ByteBuffer btbVertex, VertexLayout layout, Buffer bufIndex, int iStart, int iEnd )
+    {
+        int iNode = m_iCountNode++;
+        m_aiFirst[iNode] = iStart;
+        m_aiCount[iNode] = iEnd - iStart;
+
+        if( CLUSTER_ELEMENT >= iEnd - iStart )
+        { // 葉（要素の頂点から、境界ボックスを求める）
+            m_aiLeft[iNode] = -1;
+            m_aiRight[iNode] = -1;
+            m_aiLeafCount[iNode] = 1;
+            int iBase = iNode * 6;
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                m_af6Bounds[iBase + i3] = Float.MAX_VALUE;
+                m_af6Bounds[iBase + 3 + i3] = -Float.MAX_VALUE;
+            }
+            for( int i = iStart; i < iEnd; i++ )
+            {
+                for( int iCorner = 0; iCorner < m_iVertexPer; iCorner++ )
+                {
+                    int iIndexVertex = Model.getIndex( bufIndex, m_aiOrder[i] * m_iVertexPer + iCorner );
+                    for( int i3 = 0; i3 < 3; i3++ )
+                    {
+                        float fValue = InterleavedVertexBuilder.getPosition( btbVertex, layout, iIndexVertex, i3 );
+                        m_af6Bounds[iBase + i3] = Math.min( m_af6Bounds[iBase + i3], fValue );
+                        m_af6Bounds[iBase + 3 + i3] = Math.max( m_af6Bounds[iBase + 3 + i3], fValue );
+                    }
+                }
+            }
+            return iNode;
+        }
+
+        // 重心の範囲の、一番長い軸の中央値で二分する
+        int iAxis = getLongestAxis( iStart, iEnd );
+        int iMid  = ( iStart + iEnd ) >>> 1;
+        select( iStart, iEnd, iMid, iAxis );
+
+        int iLeft  = buildNode( btbVertex, layout, bufIndex, iStart, iMid );
+        int iRight = buildNode( btbVertex, layout, bufIndex, iMid, iEnd );
+        m_aiLeft[iNode] = iLeft;
+        m_aiRight[iNode] = iRight;
+        m_aiLeafCount[iNode] = m_aiLeafCount[iLeft] + m_aiLeafCount[iRight];
+        for( int i3 = 0; i3 < 3; i3++ )
+        {
+            m_af6Bounds[iNode * 6 + i3] = Math.min( m_af6Bounds[iLeft * 6 + i3], m_af6Bounds[iRight * 6 + i3] );
+            m_af6Bounds[iNode * 6 + 3 + i3] = Math.max( m_af6Bounds[iLeft * 6 + 3 + i3], m_af6Bounds[iRight * 6 + 3 + i3] );
+        }
+        return iNode;
+    }
+
+    // [iStart, iEnd)の要素の重心の範囲の、一番長い軸
+    private int getLongestAxis( int iStart, int iEnd )
+    {
+        float[] af3Min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+        float[] af3Max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        for( int i = iStart; i < iEnd; i++ )
+        {
+            int iElement = m_aiOrder[i];
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                float fValue = m_af3Centroid[iElement * 3 + i3];
+                af3Min[i3] = Math.min( af3Min[i3], fValue );
+                af3Max[i3] = Math.max( af3Max[i3], fValue );
+            }
+        }
+        int iAxis = 0;
+        for( int i3 = 1; i3 < 3; i3++ )
+        {
+            if( af3Max[i3] - af3Min[i3] > af3Max[iAxis] - af3Min[iAxis] )
+            {
+                iAxis = i3;
+            }
+        }
+        return iAxis;
+    }
+
+    // [iStart, iEnd)の要素の、重心のiAxis成分での部分的な並べ替え（iNth番目より前は、iNth番目の要素以下、後ろは以上になる）
+    private void select( int iStart, int iEnd, int iNth, int iAxis )
+    {
+        int iLow  = iStart;
+        int iHigh = iEnd - 1;
+        while( iLow < iHigh )
+        {
+            float fPivot = getKey( ( iLow + iHigh ) >>> 1, iAxis );
+            int   i      = iLow;
+            int   j      = iHigh;
+            while( i <= j )
+            {
+                while( getKey( i, iAxis ) < fPivot )
+                {
+                    i++;
+                }
+                while( getKey( j, iAxis ) > fPivot )
+                {
+                    j--;
+                }
+                if( i <= j )
+                {
+                    int iTemp = m_aiOrder[i];
+                    m_aiOrder[i] = m_aiOrder[j];
+                    m_aiOrder[j] = iTemp;
+                    i++;
+                    j--;
+                }
+            }
+            if( iNth <= j )
+            {
+                iHigh = j;
+            }
+            else if( iNth >= i )
+            {
+                iLow = i;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    private float getKey( int iPosition, int iAxis )
+    {
+        return m_af3Centroid[m_aiOrder[iPosition] * 3 + iAxis];
+    }
+
+    // 葉の順に要素を並べ替えた番号配列
+    private Buffer makeOrderedIndexBuffer( Buffer bufIndex, int iIndexType, int iCountElement )
+    {
+        int iCountIndex = iCountElement * m_iVertexPer;
+        if( GL10.GL_UNSIGNED_SHORT == iIndexType )
+        {
+            ShortBuffer sbSource = (ShortBuffer)bufIndex;
+            ShortBuffer sbIndex  = IndexBufferBuilder.allocateShort( iCountIndex );
+            for( int i = 0; i < iCountElement; i++ )
+            {
+                for( int iCorner = 0; iCorner < m_iVertexPer; iCorner++ )
+                {
+                    sbIndex.put( i * m_iVertexPer + iCorner, sbSource.get( m_aiOrder[i] * m_iVertexPer + iCorner ) );
+                }
+            }
+            return sbIndex;
+        }
+        IntBuffer ibSource = (IntBuffer)bufIndex;
+        IntBuffer ibIndex  = IndexBufferBuilder.allocateInt( iCountIndex );
+        for( int i = 0; i < iCountElement; i++ )
+        {
+            for( int iCorner = 0; iCorner < m_iVertexPer; iCorner++ )
+            {
+                ibIndex.put( i * m_iVertexPer + iCorner, ibSource.get( m_aiOrder[i] * m_iVertexPer + iCorner ) );
+            }
+        }
+        return ibIndex;
+    }
+}
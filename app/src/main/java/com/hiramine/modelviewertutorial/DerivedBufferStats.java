@@ -0,0 +1,107 @@
+package com.hiramine.modelviewertutorial;
+
+import java.util.Locale;
+
+// 派生バッファ（元の頂点と三角形から、必要になった時に作るバッファ）の作成時間とメモリーの集計
+// ・作成した回数、作成にかかった時間の合計、最後に作成した時のバイト数、破棄した回数を、種類ごとに数える
+// ・作成、破棄は、読み込みスレッドとGLスレッドの両方から呼ばれるので、同期する
+public class DerivedBufferStats
+{
+    // 派生バッファの種類
+    public enum EBufferType
+    {
+        BT_EDGE( "edge" ),    // 稜線の番号配列と、稜線の隣接三角形
+        BT_INTERLEAVED( "interleaved" ),    // 座標値と頂点の番号の色を、１頂点ずつまとめた頂点配列
+        BT_FACET_NORMAL( "facet normal" ),    // 面法線
+        BT_LIT_MESH( "lit mesh" ),    // 頂点法線を持つ、陰影付きの描画用の頂点配列と番号配列
+        BT_SUBMESH( "submesh" ),    // 16ビットの番号配列の部分メッシュ
+        BT_CLUSTER_TREE( "cluster tree" ),    // 部分メッシュの要素を、まとまりの階層の順に並べ替えた番号配列と、境界ボックスの階層
+        BT_LOD_CHAIN( "lod chain" ),    // 詳細度の段階ごとの、簡略化したモデルの頂点の座標値と番号配列
+        BT_VERTEX_ID_COLOR( "vertex id color" ),    // 点のピック用の色配列
+        BT_TRIANGLE_PICK( "triangle pick" ),    // 面のピック用の、座標値と三角形の番号の色の配列
+        BT_EDGE_PICK( "edge pick" );    // 線のピック用の、座標値と稜線の番号の色の配列
+
+        private final String m_strName;
+
+        EBufferType( String strName )
+        {
+            m_strName = strName;
+        }
+
+        public String getName()
+        {
+            return m_strName;
+        }
+    }
+
+    // メンバー変数
+    private static final int[]  s_aiCountBuild   = new int[EBufferType.values().length];    // 作成した回数
+    private static final long[] s_alNanosBuild   = new long[EBufferType.values().length];    // 作成にかかった時間の合計
+    private static final long[] s_alBytesLast    = new long[EBufferType.values().length];    // 最後に作成した時のバイト数
+    private static final int[]  s_aiCountDiscard = new int[EBufferType.values().length];    // 破棄した回数
+
+    // 作成の記録（lNanosStartは、作成を開始した時のSystem.nanoTime()）
+    public static void recordBuild( EBufferType eType, long lNanosStart, long lBytes )
+    {
+        long lNanos = System.nanoTime() - lNanosStart;
+        synchronized( DerivedBufferStats.class )
+        {
+            int i = eType.ordinal();
+            s_aiCountBuild[i]++;
+            s_alNanosBuild[i] += lNanos;
+            s_alBytesLast[i] = lBytes;
+        }
+        AppLog.d( "DerivedBufferStats", String.format( Locale.US, "build %s : %.1f ms, %d bytes", eType.getName(), lNanos / 1.0e6, lBytes ) );
+    }
+
+    // 破棄の記録
+    public static synchronized void recordDiscard( EBufferType eType )
+    {
+        s_aiCountDiscard[eType.ordinal()]++;
+    }
+
+    public static synchronized int getBuildCount( EBufferType eType )
+    {
+        return s_aiCountBuild[eType.ordinal()];
+    }
+
+    public static synchronized long getBuildNanos( EBufferType eType )
+    {
+        return s_alNanosBuild[eType.ordinal()];
+    }
+
+    public static synchronized long getLastBytes( EBufferType eType )
+    {
+        return s_alBytesLast[eType.ordinal()];
+    }
+
+    public static synchronized int getDiscardCount( EBufferType eType )
+    {
+        return s_aiCountDiscard[eType.ordinal()];
+    }
+
+    // 集計のクリア
+    public static synchronized void reset()
+    {
+        for( int i = 0; i < s_aiCountBuild.length; i++ )
+        {
+            s_aiCountBuild[i] = 0;
+            s_alNanosBuild[i] = 0;
+            s_alBytesLast[i] = 0;
+            s_aiCountDiscard[i] = 0;
+        }
+    }
+
+    // 集計の文字列（種類ごとに１行）
+    public static synchronized String getSummary()
+    {
+        StringBuilder sb = new StringBuilder();
+        for( EBufferType eType : EBufferType.values() )
+        {
+            int i = eType.ordinal();
+            sb.append( String.format( Locale.US, "%s : %d builds, %.1f ms, %d bytes, %d discards%n",
+                                      eType.getName(), s_aiCountBuild[i], s_alNanosBuild[i] / 1.0e6, s_alBytesLast[i], s_aiCountDiscard[i] ) );
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,338 @@
+package com.hiramine.modelviewertutorial;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// ダイレクトバッファの再利用（モデルを開き直すたびに、ダイレクトバッファを確保し直さないようにする）
+// ・大きさをサイズクラス（２のべき乗を４等分した大きさ）に切り上げたブロックを確保し、返されたブロックはサイズクラスごとに保持して再利用する
+// ・貸し出すバッファは、ブロックの先頭から要求された大きさちょうどを切り出したもの（capacity()は要求された数）
+// ・保持するブロックの合計が上限を超える場合は、返されたブロックを保持せずに、GCに任せる
+// ・返されずに参照されなくなったバッファのブロックは、GCに任せる（貸し出し中の記録からも消す）
+// ・小さなバッファは、再利用せずにそのまま確保する
+// ・貸し出したバッファの内容は不定（前に使った値が残っている）
+public class DirectBufferArena
+{
+    // 定数
+    private static final int  MIN_POOLED_BYTES = 4 * 1024;    // 再利用する最小のバイト数（これより小さいバッファはそのまま確保する）
+    private static final long DEFAULT_BUDGET   = 64L * 1024 * 1024;    // 保持するブロックの合計の上限の既定値
+
+    // 共有のアリーナ
+    private static final DirectBufferArena s_arenaShared = new DirectBufferArena( DEFAULT_BUDGET );
+
+    // 貸し出し中のバッファの記録（バッファが参照されなくなったら、ReferenceQueueに入る）
+    private static final class Lease extends WeakReference<Buffer>
+    {
+        final ByteBuffer m_bbBlock;    // 切り出し元のブロック
+        final int        m_iHash;    // バッファの同一性のハッシュ値
+
+        Lease( Buffer buf, ByteBuffer bbBlock, ReferenceQueue<Buffer> queue )
+        {
+            super( buf, queue );
+            m_bbBlock = bbBlock;
+            m_iHash = System.identityHashCode( buf );
+        }
+    }
+
+    // メンバー変数
+    private final Map<Integer, ArrayDeque<ByteBuffer>> m_mapFreeBlock = new HashMap<>();    // サイズクラスごとの、返されたブロック
+    private final Map<Integer, List<Lease>>            m_mapLease     = new HashMap<>();    // 貸し出し中のバッファ（同一性のハッシュ値ごと）
+    private final ReferenceQueue<Buffer>               m_queueLease   = new ReferenceQueue<>();
+    private long m_lBudget;    // 保持するブロックの合計の上限
+    private long m_lResidentBytes;    // 保持しているブロックの合計
+    private long m_lLeasedBytes;    // 貸し出し中のブロックの合計
+    private long m_lCountHit;    // 保持しているブロックを再利用した回数
+    private long m_lCountMiss;    // ブロックを新たに確保した回数
+    private long m_lCountDrop;    // 上限を超えるため、返されたブロックを保持しなかった回数
+
+    // コンストラクタ
+    public DirectBufferArena( long lBudget )
+    {
+        m_lBudget = lBudget;
+    }
+
+    // 共有のアリーナ
+    public static DirectBufferArena getShared()
+    {
+        return s_arenaShared;
+    }
+
+    // アクセサ
+    public synchronized long getBudget()
+    {
+        return m_lBudget;
+    }
+
+    // 上限の設定（保持しているブロックが上限を超える場合は、超えなくなるまで手放す）
+    public synchronized void setBudget( long lBudget )
+    {
+        m_lBudget = lBudget;
+        shrinkTo( lBudget );
+    }
+
+    public synchronized long getHitCount()
+    {
+        return m_lCountHit;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return m_lCountMiss;
+    }
+
+    public synchronized long getDropCount()
+    {
+        return m_lCountDrop;
+    }
+
+    public synchronized long getResidentBytes()
+    {
+        return m_lResidentBytes;
+    }
+
+    public synchronized long getLeasedBytes()
+    {
+        purge();
+        return m_lLeasedBytes;
+    }
+
+    // バッファの確保（ネイティブのバイトオーダー）
+    public ByteBuffer acquireBytes( int iCount )
+    {
+        if( MIN_POOLED_BYTES > iCount )
+        {
+            return ByteBuffer.allocateDirect( iCount ).order( ByteOrder.nativeOrder() );
+        }
+        synchronized( this )
+        {
+            ByteBuffer bbBlock = takeBlock( sizeClass( iCount ) );
+            ByteBuffer bb      = slice( bbBlock, iCount );
+            lease( bb, bbBlock );
+            return bb;
+        }
+    }
+
+    public FloatBuffer acquireFloats( int iCount )
+    {
+        if( MIN_POOLED_BYTES > iCount * 4 )
+        {
+            return ByteBuffer.allocateDirect( iCount * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+        }
+        synchronized( this )
+        {
+            ByteBuffer  bbBlock = takeBlock( sizeClass( iCount * 4 ) );
+            FloatBuffer fb      = slice( bbBlock, iCount * 4 ).asFloatBuffer();
+            lease( fb, bbBlock );
+            return fb;
+        }
+    }
+
+    public ShortBuffer acquireShorts( int iCount )
+    {
+        if( MIN_POOLED_BYTES > iCount * 2 )
+        {
+            return ByteBuffer.allocateDirect( iCount * 2 ).order( ByteOrder.nativeOrder() ).asShortBuffer();
+        }
+        synchronized( this )
+        {
+            ByteBuffer  bbBlock = takeBlock( sizeClass( iCount * 2 ) );
+            ShortBuffer sb      = slice( bbBlock, iCount * 2 ).asShortBuffer();
+            lease( sb, bbBlock );
+            return sb;
+        }
+    }
+
+    public IntBuffer acquireInts( int iCount )
+    {
+        if( MIN_POOLED_BYTES > iCount * 4 )
+        {
+            return ByteBuffer.allocateDirect( iCount * 4 ).order( ByteOrder.nativeOrder() ).asIntBuffer();
+        }
+        synchronized( this )
+        {
+            ByteBuffer bbBlock = takeBlock( sizeClass( iCount * 4 ) );
+            IntBuffer  ib      = slice( bbBlock, iCount * 4 ).asIntBuffer();
+            lease( ib, bbBlock );
+            return ib;
+        }
+    }
+
+    // バッファを返す（このアリーナから貸し出したもの以外、nullは無視する）
+    // 返した後は、バッファを使ってはいけない（別の確保で再利用される）
+    public synchronized void release( Buffer buf )
+    {
+        if( null == buf )
+        {
+            return;
+        }
+        purge();
+        List<Lease> listLease = m_mapLease.get( System.identityHashCode( buf ) );
+        if( null == listLease )
+        {
+            return;
+        }
+        for( int i = 0; i < listLease.size(); i++ )
+        {
+            Lease lease = listLease.get( i );
+            if( buf == lease.get() )
+            {
+                removeLease( listLease, i, lease );
+                lease.clear();
+                putBlock( lease.m_bbBlock );
+                return;
+            }
+        }
+    }
+
+    // 保持しているブロックを全て手放す（メモリーが足りない時に呼ぶ）
+    public synchronized void trim()
+    {
+        shrinkTo( 0 );
+    }
+
+    // 集計の文字列
+    public synchronized String getSummary()
+    {
+        purge();
+        return String.format( Locale.US, "arena : %d hits, %d misses, %d drops, %d resident bytes, %d leased bytes, %d budget",
+                              m_lCountHit, m_lCountMiss, m_lCountDrop, m_lResidentBytes, m_lLeasedBytes, m_lBudget );
+    }
+
+    // サイズクラス（２のべき乗の区間を４等分した大きさに切り上げる）
+    static int sizeClass( int iBytes )
+    {
+        if( MIN_POOLED_BYTES >= iBytes )
+        {
+            return MIN_POOLED_BYTES;
+        }
+        int iStep = Integer.highestOneBit( iBytes - 1 ) >> 2;
+        return (int)Math.min( ( (long)iBytes + iStep - 1 ) / iStep * iStep, Integer.MAX_VALUE );
+    }
+
+    // サイズクラスのブロックの取得（保持していなければ、新たに確保する）
+    private ByteBuffer takeBlock( int iSizeClass )
+    {
+        purge();
+        ArrayDeque<ByteBuffer> dequeBlock = m_mapFreeBlock.get( iSizeClass );
+        ByteBuffer             bbBlock    = ( null != dequeBlock ) ? dequeBlock.pollLast() : null;
+        if( null != bbBlock )
+        {
+            m_lResidentBytes -= iSizeClass;
+            m_lCountHit++;
+        }
+        else
+        {
+            bbBlock = ByteBuffer.allocateDirect( iSizeClass );
+            m_lCountMiss++;
+        }
+        m_lLeasedBytes += iSizeClass;
+        return bbBlock;
+    }
+
+    // 返されたブロックの保持（上限を超える場合は保持しない）
+    private void putBlock( ByteBuffer bbBlock )
+    {
+        int iSizeClass = bbBlock.capacity();
+        m_lLeasedBytes -= iSizeClass;
+        if( m_lResidentBytes + iSizeClass > m_lBudget )
+        {
+            m_lCountDrop++;
+            return;
+        }
+        ArrayDeque<ByteBuffer> dequeBlock = m_mapFreeBlock.get( iSizeClass );
+        if( null == dequeBlock )
+        {
+            dequeBlock = new ArrayDeque<>();
+            m_mapFreeBlock.put( iSizeClass, dequeBlock );
+        }
+        dequeBlock.addLast( bbBlock );
+        m_lResidentBytes += iSizeClass;
+    }
+
+    // 保持しているブロックを、合計がlBytes以下になるまで手放す（大きいサイズクラスから）
+    private void shrinkTo( long lBytes )
+    {
+        if( m_lResidentBytes <= lBytes )
+        {
+            return;
+        }
+        List<Integer> listSizeClass = new ArrayList<>( m_mapFreeBlock.keySet() );
+        Collections.sort( listSizeClass, Collections.<Integer>reverseOrder() );
+        for( Integer iSizeClass : listSizeClass )
+        {
+            ArrayDeque<ByteBuffer> dequeBlock = m_mapFreeBlock.get( iSizeClass );
+            while( m_lResidentBytes > lBytes && !dequeBlock.isEmpty() )
+            {
+                dequeBlock.pollFirst();
+                m_lResidentBytes -= iSizeClass;
+            }
+            if( dequeBlock.isEmpty() )
+            {
+                m_mapFreeBlock.remove( iSizeClass );
+            }
+        }
+    }
+
+    private void lease( Buffer buf, ByteBuffer bbBlock )
+    {
+        Lease       lease     = new Lease( buf, bbBlock, m_queueLease );
+        List<Lease> listLease = m_mapLease.get( lease.m_iHash );
+        if( null == listLease )
+        {
+            listLease = new ArrayList<>( 1 );
+            m_mapLease.put( lease.m_iHash, listLease );
+        }
+        listLease.add( lease );
+    }
+
+    private void removeLease( List<Lease> listLease, int i, Lease lease )
+    {
+        listLease.remove( i );
+        if( listLease.isEmpty() )
+        {
+            m_mapLease.remove( lease.m_iHash );
+        }
+    }
+
+    // 返されずに参照されなくなったバッファの記録の削除（ブロックはGCに任せる）
+    private void purge()
+    {
+        Object object;
+        while( null != ( object = m_queueLease.poll() ) )
+        {
+            Lease       lease     = (Lease)object;
+            List<Lease> listLease = m_mapLease.get( lease.m_iHash );
+            if( null == listLease )
+            {
+                continue;
+            }
+            int i = listLease.indexOf( lease );
+            if( 0 <= i )
+            {
+                removeLease( listLease, i, lease );
+                m_lLeasedBytes -= lease.m_bbBlock.capacity();
+            }
+        }
+    }
+
+    // ブロックの先頭から、iBytesバイトを切り出す
+    private static ByteBuffer slice( ByteBuffer bbBlock, int iBytes )
+    {
+        ByteBuffer bb = bbBlock.duplicate();
+        bb.clear();
+        bb.limit( iBytes );
+        return bb.slice().order( ByteOrder.nativeOrder() );
+    }
+}
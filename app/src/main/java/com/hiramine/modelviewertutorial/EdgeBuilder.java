@@ -0,0 +1,155 @@
+package com.hiramine.modelviewertutorial;
+
+import java.util.Arrays;
+
+// 稜線の作成（隣り合う三角形で共有される稜線は、一つにまとめる）
+// ・稜線のキーは、両端の頂点番号（小さい方を上位）を詰めたlong値として、オープンアドレス法（線形探索）のハッシュ表で引く
+// ・稜線の番号は、三角形の順に、最初に現れた順に振る（同じ三角形の頂点番号からは、同じ稜線の配列が作られる）
+// ・稜線ごとの隣接三角形は、稜線ごとの開始位置と三角形の番号の配列（CSR形式）で持つ（非多様体の稜線では３つ以上になる）
+public class EdgeBuilder
+{
+    // 定数
+    private static final long EMPTY            = -1L;
+    private static final int  MINIMUM_CAPACITY = 16;
+
+    // メンバー変数
+    private int[] m_ai2EdgeVertexIndex;    // 稜線の頂点の番号の配列（２つの頂点番号で１稜線）
+    private int[] m_ai3TriangleEdgeIndex;    // 三角形ごとの稜線の番号の配列（３つの稜線番号で１三角形）
+    private int[] m_aiEdgeTriangleStart;    // 稜線ごとの、隣接三角形の配列の開始位置（稜線の数＋１個）
+    private int[] m_aiEdgeTriangle;    // 隣接三角形の番号の配列
+    private int   m_iCountEdge;    // 稜線の数
+
+    // アクセサ
+    public int getEdgeCount()
+    {
+        return m_iCountEdge;
+    }
+
+    // 稜線の頂点の番号の配列（先頭から稜線の数×２個が有効）
+    public int[] getEdgeVertexIndexArray()
+    {
+        return m_ai2EdgeVertexIndex;
+    }
+
+    public int[] getTriangleEdgeIndexArray()
+    {
+        return m_ai3TriangleEdgeIndex;
+    }
+
+    public int[] getEdgeTriangleStartArray()
+    {
+        return m_aiEdgeTriangleStart;
+    }
+
+    public int[] getEdgeTriangleArray()
+    {
+        return m_aiEdgeTriangle;
+    }
+
+    // 稜線の作成（戻り値は、稜線の数）
+    public int build( int[] aiTriangleVertexIndex, int iCountTriangle )
+    {
+        // 閉じた三角形メッシュでは、稜線の数は三角形の数の1.5倍
+        int    iCapacity  = Math.max( iCountTriangle * 3 / 2, MINIMUM_CAPACITY );
+        int    iTableSize = Integer.highestOneBit( iCapacity * 2 - 1 ) << 1;
+        long[] alSlotKey  = new long[iTableSize];
+        int[]  aiSlotEdge = new int[iTableSize];
+        Arrays.fill( alSlotKey, EMPTY );
+        m_ai2EdgeVertexIndex = new int[iCapacity * 2];
+        m_ai3TriangleEdgeIndex = new int[iCountTriangle * 3];
+        m_iCountEdge = 0;
+
+        for( int iIndexTriangle = 0; iIndexTriangle < iCountTriangle; iIndexTriangle++ )
+        {
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                int  iIndexVertex1 = aiTriangleVertexIndex[iIndexTriangle * 3 + i3];
+                int  iIndexVertex2 = aiTriangleVertexIndex[iIndexTriangle * 3 + ( i3 + 1 ) % 3];
+                long lKey          = ( (long)Math.min( iIndexVertex1, iIndexVertex2 ) << 32 ) | Math.max( iIndexVertex1, iIndexVertex2 );
+
+                int iMask = alSlotKey.length - 1;
+                int iSlot = hash( lKey ) & iMask;
+                while( EMPTY != alSlotKey[iSlot] && lKey != alSlotKey[iSlot] )
+                {
+                    iSlot = ( iSlot + 1 ) & iMask;
+                }
+                if( EMPTY == alSlotKey[iSlot] )
+                { // 新しい稜線
+                    int iIndexEdge = m_iCountEdge++;
+                    if( m_ai2EdgeVertexIndex.length < m_iCountEdge * 2 )
+                    {
+                        m_ai2EdgeVertexIndex = Arrays.copyOf( m_ai2EdgeVertexIndex, Math.max( m_ai2EdgeVertexIndex.length + ( m_ai2EdgeVertexIndex.length >> 1 ), m_iCountEdge * 2 ) );
+                    }
+                    m_ai2EdgeVertexIndex[iIndexEdge * 2 + 0] = iIndexVertex1;
+                    m_ai2EdgeVertexIndex[iIndexEdge * 2 + 1] = iIndexVertex2;
+                    alSlotKey[iSlot] = lKey;
+                    aiSlotEdge[iSlot] = iIndexEdge;
+
+                    // 使用率が1/2を超えたら、ハッシュ表を大きくする
+                    if( m_iCountEdge * 2 > alSlotKey.length )
+                    {
+                        long[] alSlotKeyNew  = new long[alSlotKey.length * 2];
+                        int[]  aiSlotEdgeNew = new int[alSlotKey.length * 2];
+                        Arrays.fill( alSlotKeyNew, EMPTY );
+                        rehash( alSlotKey, aiSlotEdge, alSlotKeyNew, aiSlotEdgeNew );
+                        alSlotKey = alSlotKeyNew;
+                        aiSlotEdge = aiSlotEdgeNew;
+                    }
+                    m_ai3TriangleEdgeIndex[iIndexTriangle * 3 + i3] = iIndexEdge;
+                }
+                else
+                {
+                    m_ai3TriangleEdgeIndex[iIndexTriangle * 3 + i3] = aiSlotEdge[iSlot];
+                }
+            }
+        }
+
+        buildEdgeTriangle( iCountTriangle );
+        return m_iCountEdge;
+    }
+
+    // 稜線ごとの隣接三角形の作成（三角形ごとの稜線の番号を、稜線の番号で数え上げソートする）
+    private void buildEdgeTriangle( int iCountTriangle )
+    {
+        m_aiEdgeTriangleStart = new int[m_iCountEdge + 1];
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            m_aiEdgeTriangleStart[m_ai3TriangleEdgeIndex[i] + 1]++;
+        }
+        for( int iIndexEdge = 0; iIndexEdge < m_iCountEdge; iIndexEdge++ )
+        {
+            m_aiEdgeTriangleStart[iIndexEdge + 1] += m_aiEdgeTriangleStart[iIndexEdge];
+        }
+        m_aiEdgeTriangle = new int[iCountTriangle * 3];
+        int[] aiFill = Arrays.copyOf( m_aiEdgeTriangleStart, m_iCountEdge );
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            m_aiEdgeTriangle[aiFill[m_ai3TriangleEdgeIndex[i]]++] = i / 3;
+        }
+    }
+
+    private static void rehash( long[] alSlotKey, int[] aiSlotEdge, long[] alSlotKeyNew, int[] aiSlotEdgeNew )
+    {
+        int iMask = alSlotKeyNew.length - 1;
+        for( int i = 0; i < alSlotKey.length; i++ )
+        {
+            if( EMPTY == alSlotKey[i] )
+            {
+                continue;
+            }
+            int iSlot = hash( alSlotKey[i] ) & iMask;
+            while( EMPTY != alSlotKeyNew[iSlot] )
+            {
+                iSlot = ( iSlot + 1 ) & iMask;
+            }
+            alSlotKeyNew[iSlot] = alSlotKey[i];
+            aiSlotEdgeNew[iSlot] = aiSlotEdge[i];
+        }
+    }
+
+    private static int hash( long lKey )
+    {
+        lKey *= 0x9E3779B97F4A7C15L;
+        return (int)( lKey ^ ( lKey >>> 32 ) );
+    }
+}
@@ -0,0 +1,119 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.FloatBuffer;
+
+// float値のダイレクトバッファの作成（ヒープのfloat配列を経由せずに、値を直接ダイレクトバッファに追加していく）
+// ・バッファは共有のアリーナから確保し、足りなければ1.5倍ずつ伸長する（伸長時のコピーもダイレクトバッファ間。古いバッファはアリーナに返す）
+// ・build()で、値の数ちょうどの容量のバッファを取り出す。取り出した後は、このビルダーは使えない
+public class FloatBufferBuilder
+{
+    // 定数
+    private static final int MINIMUM_CAPACITY = 16;
+
+    // メンバー変数
+    private FloatBuffer m_fbValue;    // 値のバッファ（容量分確保）
+    private int         m_iSize;    // 値の数
+
+    // コンストラクタ
+    public FloatBufferBuilder( int iInitialCapacity )
+    {
+        m_fbValue = DirectBufferArena.getShared().acquireFloats( Math.max( iInitialCapacity, MINIMUM_CAPACITY ) );
+        m_iSize = 0;
+    }
+
+    // アクセサ
+    public int size()
+    {
+        return m_iSize;
+    }
+
+    public int capacity()
+    {
+        return m_fbValue.capacity();
+    }
+
+    public float get( int iIndex )
+    {
+        return m_fbValue.get( iIndex );
+    }
+
+    // 内部バッファ（先頭からsize()個までが有効。伸長すると別のバッファになる）
+    public FloatBuffer getBuffer()
+    {
+        return m_fbValue;
+    }
+
+    // 値の全削除（容量はそのまま）
+    public void clear()
+    {
+        m_iSize = 0;
+    }
+
+    // 値の追加
+    public void add( float fValue )
+    {
+        ensureCapacity( m_iSize + 1 );
+        m_fbValue.put( m_iSize++, fValue );
+    }
+
+    // 座標値の追加
+    public void add( float fX, float fY, float fZ )
+    {
+        ensureCapacity( m_iSize + 3 );
+        m_fbValue.put( m_iSize++, fX );
+        m_fbValue.put( m_iSize++, fY );
+        m_fbValue.put( m_iSize++, fZ );
+    }
+
+    // 配列の一部の追加
+    public void add( float[] afValue, int iOffset, int iLength )
+    {
+        ensureCapacity( m_iSize + iLength );
+        m_fbValue.position( m_iSize );
+        m_fbValue.put( afValue, iOffset, iLength );
+        m_fbValue.position( 0 );
+        m_iSize += iLength;
+    }
+
+    // 容量の確保（足りない場合は1.5倍ずつ伸長）
+    public void ensureCapacity( int iCapacity )
+    {
+        if( m_fbValue.capacity() >= iCapacity )
+        {
+            return;
+        }
+        int iNewCapacity = m_fbValue.capacity() + ( m_fbValue.capacity() >> 1 );
+        if( iNewCapacity < iCapacity )
+        {
+            iNewCapacity = iCapacity;
+        }
+        m_fbValue = copyOf( m_fbValue, m_iSize, iNewCapacity );
+    }
+
+    // 値の数ちょうどの容量のバッファの取り出し
+    // 容量が値の数と同じなら、そのまま渡す（見積もった容量で確保した場合は、コピーしない）
+    public FloatBuffer build()
+    {
+        FloatBuffer fbValue = m_fbValue;
+        m_fbValue = null;
+        if( fbValue.capacity() == m_iSize )
+        {
+            fbValue.position( 0 );
+            return fbValue;
+        }
+        return copyOf( fbValue, m_iSize, m_iSize );
+    }
+
+    // 先頭からiCount個の値を、容量iCapacityのバッファにコピーする（コピー元はアリーナに返す）
+    private static FloatBuffer copyOf( FloatBuffer fbValue, int iCount, int iCapacity )
+    {
+        FloatBuffer fbSource = fbValue.duplicate();
+        fbSource.position( 0 );
+        fbSource.limit( iCount );
+        FloatBuffer fbCopy = DirectBufferArena.getShared().acquireFloats( iCapacity );
+        fbCopy.put( fbSource );
+        fbCopy.position( 0 );
+        DirectBufferArena.getShared().release( fbValue );
+        return fbCopy;
+    }
+}
@@ -0,0 +1,182 @@
+package com.hiramine.modelviewertutorial;
+
+import java.util.Locale;
+
+// フレームごとの描画の統計（描画呼び出しの数と、フレームの描画時間）
+// ・描画呼び出しの数は、レンダラーがglDrawArrays()やglDrawElements()を呼ぶたびに数える
+// ・クラスターの数は、レンダラーがクラスターの階層を間引くたびに、描画するものと描画しないものを数える
+// ・詳細度の段階は、詳細度の段階を持つモデルを描画したフレームで、レンダラーが選んだ段階を記録する
+// ・一定間隔ごとに、直前の間隔の平均をログに出す（都度の描画なので、描画しない間は出さない）
+// ・GLスレッドからだけ使う
+public class FrameStats
+{
+    // 定数
+    private static final String TAG                   = "FrameStats";
+    private static final long   REPORT_INTERVAL_NANOS = 1000L * 1000 * 1000;    // ログに出す間隔
+
+    // メンバー変数
+    private final String m_strName;    // ログに出すレンダラーの名前
+    private int  m_iDrawCallCountCurrent;    // 描画中のフレームの描画呼び出しの数
+    private int  m_iDrawCallCount;    // 直前のフレームの描画呼び出しの数
+    private int  m_iClusterDrawnCountCurrent;    // 描画中のフレームの、描画するクラスターの数
+    private int  m_iClusterCulledCountCurrent;    // 描画中のフレームの、間引いたクラスターの数
+    private int  m_iClusterDrawnCount;    // 直前のフレームの、描画するクラスターの数
+    private int  m_iClusterCulledCount;    // 直前のフレームの、間引いたクラスターの数
+    private int  m_iLodLevelCurrent = -1;    // 描画中のフレームで選んだ詳細度の段階（選んでいなければ-1）
+    private int  m_iLodLevel = -1;    // 直前のフレームで選んだ詳細度の段階（選んでいなければ-1）
+    private long m_lNanosFrameStart;
+    private long m_lNanosFrame;    // 直前のフレームの描画時間
+    private long m_lNanosReportStart = -1;    // 集計の開始時刻（まだフレームが無ければ-1）
+    private int  m_iFrameCountReport;    // 集計中のフレーム数
+    private long m_lDrawCallCountReport;    // 集計中の描画呼び出しの数の合計
+    private long m_lNanosFrameReport;    // 集計中の描画時間の合計
+    private long m_lClusterDrawnCountReport;    // 集計中の、描画するクラスターの数の合計
+    private long m_lClusterCulledCountReport;    // 集計中の、間引いたクラスターの数の合計
+
+    // コンストラクタ
+    public FrameStats( String strName )
+    {
+        m_strName = strName;
+    }
+
+    // アクセサ
+    // 直前のフレームの描画呼び出しの数
+    public int getDrawCallCount()
+    {
+        return m_iDrawCallCount;
+    }
+
+    // 描画中のフレームの、ここまでの描画呼び出しの数
+    public int getDrawCallCountCurrent()
+    {
+        return m_iDrawCallCountCurrent;
+    }
+
+    // 直前のフレームの、描画するクラスターの数と、間引いたクラスターの数
+    public int getClusterDrawnCount()
+    {
+        return m_iClusterDrawnCount;
+    }
+
+    public int getClusterCulledCount()
+    {
+        return m_iClusterCulledCount;
+    }
+
+    // 描画中のフレームの、ここまでのクラスターの数
+    public int getClusterDrawnCountCurrent()
+    {
+        return m_iClusterDrawnCountCurrent;
+    }
+
+    public int getClusterCulledCountCurrent()
+    {
+        return m_iClusterCulledCountCurrent;
+    }
+
+    // 直前のフレームで選んだ詳細度の段階（0は元のモデル。詳細度の段階を持つモデルを描画していなければ-1）
+    public int getLodLevel()
+    {
+        return m_iLodLevel;
+    }
+
+    // 描画中のフレームで、ここまでに選んだ詳細度の段階
+    public int getLodLevelCurrent()
+    {
+        return m_iLodLevelCurrent;
+    }
+
+    // 直前のフレームの描画時間
+    public long getFrameNanos()
+    {
+        return m_lNanosFrame;
+    }
+
+    // フレームの描画の開始
+    public void beginFrame( long lNanos )
+    {
+        m_lNanosFrameStart = lNanos;
+        m_iDrawCallCountCurrent = 0;
+        m_iClusterDrawnCountCurrent = 0;
+        m_iClusterCulledCountCurrent = 0;
+        m_iLodLevelCurrent = -1;
+        if( 0 > m_lNanosReportStart )
+        {
+            m_lNanosReportStart = lNanos;
+        }
+    }
+
+    // 描画呼び出し
+    public void addDrawCall()
+    {
+        m_iDrawCallCountCurrent++;
+    }
+
+    public void addDrawCalls( int iCount )
+    {
+        m_iDrawCallCountCurrent += iCount;
+    }
+
+    // クラスターの階層の間引き
+    public void addClusters( int iCountDrawn, int iCountCulled )
+    {
+        m_iClusterDrawnCountCurrent += iCountDrawn;
+        m_iClusterCulledCountCurrent += iCountCulled;
+    }
+
+    // 詳細度の段階の選択
+    public void setLodLevel( int iLevel )
+    {
+        m_iLodLevelCurrent = iLevel;
+    }
+
+    // フレームの描画の終了（ログに出したらtrue）
+    public boolean endFrame( long lNanos )
+    {
+        m_iDrawCallCount = m_iDrawCallCountCurrent;
+        m_iClusterDrawnCount = m_iClusterDrawnCountCurrent;
+        m_iClusterCulledCount = m_iClusterCulledCountCurrent;
+        m_iLodLevel = m_iLodLevelCurrent;
+        m_lNanosFrame = lNanos - m_lNanosFrameStart;
+
+        m_iFrameCountReport++;
+        m_lDrawCallCountReport += m_iDrawCallCount;
+        m_lNanosFrameReport += m_lNanosFrame;
+        m_lClusterDrawnCountReport += m_iClusterDrawnCount;
+        m_lClusterCulledCountReport += m_iClusterCulledCount;
+        if( REPORT_INTERVAL_NANOS > lNanos - m_lNanosReportStart )
+        {
+            return false;
+        }
+        AppLog.d( TAG, getSummary() );
+        m_lNanosReportStart = lNanos;
+        m_iFrameCountReport = 0;
+        m_lDrawCallCountReport = 0;
+        m_lNanosFrameReport = 0;
+        m_lClusterDrawnCountReport = 0;
+        m_lClusterCulledCountReport = 0;
+        return true;
+    }
+
+    // 集計中のフレームの平均（クラスターの階層を間引いていれば、クラスターの数も。詳細度の段階を選んでいれば、直前のフレームの段階も）
+    public String getSummary()
+    {
+        int    iFrameCount = Math.max( 1, m_iFrameCountReport );
+        String strSummary  = String.format( Locale.US, "%s : %d frames, %.1f draw calls/frame, %.2f ms/frame",
+                                            m_strName,
+                                            m_iFrameCountReport,
+                                            (double)m_lDrawCallCountReport / iFrameCount,
+                                            m_lNanosFrameReport / 1e6 / iFrameCount );
+        if( 0 != m_lClusterDrawnCountReport + m_lClusterCulledCountReport )
+        {
+            strSummary += String.format( Locale.US, ", %.1f/%.1f clusters drawn/culled per frame",
+                                         (double)m_lClusterDrawnCountReport / iFrameCount,
+                                         (double)m_lClusterCulledCountReport / iFrameCount );
+        }
+        if( 0 <= m_iLodLevel )
+        {
+            strSummary += String.format( Locale.US, ", LOD level %d", m_iLodLevel );
+        }
+        return strSummary;
+    }
+}
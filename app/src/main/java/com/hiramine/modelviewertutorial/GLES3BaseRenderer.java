@@ -0,0 +1,369 @@
+package com.hiramine.modelviewertutorial;
+
+import android.opengl.GLES30;
+import android.opengl.GLSurfaceView;
+import android.opengl.Matrix;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+// OpenGL ES 3のレンダラーの基底（OpenGLBaseRendererに対応する、プログラマブルパイプライン版）
+// ・行列はglMatrixMode()のスタックではなくfloat[16]で持ち、シェーダーのuniformに渡す
+// ・描画はGLES30の静的関数で行うので、GL10の引数は使わない
+public class GLES3BaseRenderer implements GLSurfaceView.Renderer
+{
+    // 定数
+    private static final String TAG = "GLES3BaseRenderer";
+
+    // 頂点属性の位置（シェーダーのlayout(location)と合わせる）
+    protected static final int ATTRIB_POSITION = 0;
+    protected static final int ATTRIB_COLOR    = 1;
+
+    // 頂点の色で描くシェーダー（軸の描画）
+    private static final String VERTEX_SHADER_COLOR =
+            "#version 300 es\n"
+            + "uniform mat4 uMvp;\n"
+            + "layout(location = 0) in vec4 aPosition;\n"
+            + "layout(location = 1) in vec4 aColor;\n"
+            + "out vec4 vColor;\n"
+            + "void main() {\n"
+            + "    gl_Position = uMvp * aPosition;\n"
+            + "    vColor = aColor;\n"
+            + "}\n";
+    private static final String FRAGMENT_SHADER_COLOR =
+            "#version 300 es\n"
+            + "precision mediump float;\n"
+            + "in vec4 vColor;\n"
+            + "out vec4 fragColor;\n"
+            + "void main() {\n"
+            + "    fragColor = vColor;\n"
+            + "}\n";
+
+    // メンバー変数
+    private int     m_iWidth;    // サーフェースサイズ
+    private int     m_iHeight;    // サーフェースサイズ
+    private boolean m_bViewingFrustumValid;    // 視野角錐台設定の有効性
+    private boolean m_bViewingTransformValid;    // 視点座標変換設定の有効性
+    protected final float[] m_f16Projection = new float[16];    // 投影行列
+    protected final float[] m_f16View       = new float[16];    // 視点座標変換行列
+    private final float[] m_f16ViewProjection = new float[16];    // 投影行列×視点座標変換行列
+    private final float[] m_f16MvpAxis        = new float[16];    // 軸の描画用
+    private final FrameStats m_framestats = new FrameStats( "GLES3" );    // 描画呼び出しの数と描画時間
+    private final FloatBuffer m_fbAxisVertex;    // 軸の頂点
+    private final ByteBuffer  m_btbAxisColor;    // 軸の色
+    private int m_iProgramColor;
+    private int m_iUniformMvpColor;
+    private int m_iVertexArrayAxis;
+    private final int[] m_aiBufferAxis = new int[2];
+
+    // コンストラクタ
+    public GLES3BaseRenderer()
+    {
+        float[] af3Vertex = { 0.0f, 0.0f, 0.0f,
+                10.0f, 0.0f, 0.0f,
+                0.0f, 0.0f, 0.0f,
+                0.0f, 10.0f, 0.0f,
+                0.0f, 0.0f, 0.0f,
+                0.0f, 0.0f, 10.0f, };
+        byte[] abt4Color = { (byte)255, 0, 0, (byte)255,
+                (byte)255, 0, 0, (byte)255,
+                0, (byte)255, 0, (byte)255,
+                0, (byte)255, 0, (byte)255,
+                0, 0, (byte)255, (byte)255,
+                0, 0, (byte)255, (byte)255, };
+        m_fbAxisVertex = OpenGLBaseRenderer.makeFloatBuffer( af3Vertex );
+        m_btbAxisColor = OpenGLBaseRenderer.makeByteBuffer( abt4Color );
+        Matrix.setIdentityM( m_f16Projection, 0 );
+        Matrix.setIdentityM( m_f16View, 0 );
+    }
+
+    // アクセサ
+    public int getWidth()
+    {
+        return m_iWidth;
+    }
+
+    public int getHeight()
+    {
+        return m_iHeight;
+    }
+
+    public boolean isViewingFrustumValid()
+    {
+        return m_bViewingFrustumValid;
+    }
+
+    public boolean isViewingTransformValid()
+    {
+        return m_bViewingTransformValid;
+    }
+
+    void setViewingFrustumValid( boolean arg )
+    {
+        m_bViewingFrustumValid = arg;
+    }
+
+    void setViewingTransformValid( boolean arg )
+    {
+        m_bViewingTransformValid = arg;
+    }
+
+    public FrameStats getFrameStats()
+    {
+        return m_framestats;
+    }
+
+    // 直前のフレームの描画呼び出しの数
+    public int getDrawCallCount()
+    {
+        return m_framestats.getDrawCallCount();
+    }
+
+    // 直前のフレームの、描画したクラスターの数と、間引いたクラスターの数
+    public int getDrawnClusterCount()
+    {
+        return m_framestats.getClusterDrawnCount();
+    }
+
+    public int getCulledClusterCount()
+    {
+        return m_framestats.getClusterCulledCount();
+    }
+
+    public int getLodLevel()
+    {
+        return m_framestats.getLodLevel();
+    }
+
+    // 描画呼び出しを数える（glDrawArrays()、glDrawElements()を呼ぶたびに呼ぶ）
+    protected void countDrawCall()
+    {
+        m_framestats.addDrawCall();
+    }
+
+    // 投影行列×視点座標変換行列×モデル行列（f16Modelがnullの場合は、モデル行列は単位行列）
+    protected void getModelViewProjection( float[] f16Model, float[] f16Result )
+    {
+        Matrix.multiplyMM( m_f16ViewProjection, 0, m_f16Projection, 0, m_f16View, 0 );
+        if( null == f16Model )
+        {
+            System.arraycopy( m_f16ViewProjection, 0, f16Result, 0, 16 );
+            return;
+        }
+        Matrix.multiplyMM( f16Result, 0, m_f16ViewProjection, 0, f16Model, 0 );
+    }
+
+    // シェーダープログラムの作成（失敗した場合は、ログを出して0を返す）
+    protected static int createProgram( String strVertexShader, String strFragmentShader )
+    {
+        int iVertexShader = compileShader( GLES30.GL_VERTEX_SHADER, strVertexShader );
+        if( 0 == iVertexShader )
+        {
+            return 0;
+        }
+        int iFragmentShader = compileShader( GLES30.GL_FRAGMENT_SHADER, strFragmentShader );
+        if( 0 == iFragmentShader )
+        {
+            GLES30.glDeleteShader( iVertexShader );
+            return 0;
+        }
+
+        int iProgram = GLES30.glCreateProgram();
+        GLES30.glAttachShader( iProgram, iVertexShader );
+        GLES30.glAttachShader( iProgram, iFragmentShader );
+        GLES30.glLinkProgram( iProgram );
+        GLES30.glDeleteShader( iVertexShader );    // プログラムにアタッチしている間は、実際には削除されない
+        GLES30.glDeleteShader( iFragmentShader );
+
+        int[] aiStatus = new int[1];
+        GLES30.glGetProgramiv( iProgram, GLES30.GL_LINK_STATUS, aiStatus, 0 );
+        if( GLES30.GL_TRUE != aiStatus[0] )
+        {
+            AppLog.e( TAG, "Failed to link program : " + GLES30.glGetProgramInfoLog( iProgram ) );
+            GLES30.glDeleteProgram( iProgram );
+            return 0;
+        }
+        return iProgram;
+    }
+
+    private static int compileShader( int iType, String strSource )
+    {
+        int iShader = GLES30.glCreateShader( iType );
+        GLES30.glShaderSource( iShader, strSource );
+        GLES30.glCompileShader( iShader );
+
+        int[] aiStatus = new int[1];
+        GLES30.glGetShaderiv( iShader, GLES30.GL_COMPILE_STATUS, aiStatus, 0 );
+        if( GLES30.GL_TRUE != aiStatus[0] )
+        {
+            AppLog.e( TAG, "Failed to compile shader : " + GLES30.glGetShaderInfoLog( iShader ) );
+            GLES30.glDeleteShader( iShader );
+            return 0;
+        }
+        return iShader;
+    }
+
+    // サーフェースが作成された時、再作成された時
+    // （レンダリングスレッドの起動時および、アンドロイドデバイスのスリープからの復帰時。以前のGLの名前は、全て無効になっている）
+    @Override
+    public void onSurfaceCreated( GL10 gl, EGLConfig config )
+    {
+        // クリア処理
+        GLES30.glClearColor( 0.0f, 0.0f, 0.0f, 1.0f ); // クリアカラー
+        GLES30.glClearDepthf( 1.0f ); // クリア深度
+
+        // デプス処理
+        GLES30.glEnable( GLES30.GL_DEPTH_TEST ); // デプステスト
+        GLES30.glDepthFunc( GLES30.GL_LEQUAL ); // デプスファンクの設定（同じか、手前にあるもので上描いていく）
+        GLES30.glDepthMask( true ); // デプスバッファーへの書き込み許可
+
+        // ポリゴン処理
+        GLES30.glDisable( GLES30.GL_CULL_FACE ); // 裏を向いている面のカリング
+        GLES30.glDisable( GLES30.GL_POLYGON_OFFSET_FILL ); // ポリゴンオフセットフィル
+        GLES30.glPolygonOffset( 1.0f, 1.0f ); // ポリゴンオフセット量
+
+        // ブレンド処理
+        GLES30.glDisable( GLES30.GL_BLEND ); // 半透明
+
+        // 軸の描画用のシェーダーと頂点配列
+        m_iProgramColor = createProgram( VERTEX_SHADER_COLOR, FRAGMENT_SHADER_COLOR );
+        m_iUniformMvpColor = GLES30.glGetUniformLocation( m_iProgramColor, "uMvp" );
+
+        int[] aiVertexArray = new int[1];
+        GLES30.glGenVertexArrays( 1, aiVertexArray, 0 );
+        m_iVertexArrayAxis = aiVertexArray[0];
+        GLES30.glGenBuffers( 2, m_aiBufferAxis, 0 );
+        GLES30.glBindVertexArray( m_iVertexArrayAxis );
+        GLES30.glBindBuffer( GLES30.GL_ARRAY_BUFFER, m_aiBufferAxis[0] );
+        GLES30.glBufferData( GLES30.GL_ARRAY_BUFFER, m_fbAxisVertex.capacity() * 4, m_fbAxisVertex.position( 0 ), GLES30.GL_STATIC_DRAW );
+        GLES30.glVertexAttribPointer( ATTRIB_POSITION, 3, GLES30.GL_FLOAT, false, 0, 0 );
+        GLES30.glEnableVertexAttribArray( ATTRIB_POSITION );
+        GLES30.glBindBuffer( GLES30.GL_ARRAY_BUFFER, m_aiBufferAxis[1] );
+        GLES30.glBufferData( GLES30.GL_ARRAY_BUFFER, m_btbAxisColor.capacity(), m_btbAxisColor.position( 0 ), GLES30.GL_STATIC_DRAW );
+        GLES30.glVertexAttribPointer( ATTRIB_COLOR, 4, GLES30.GL_UNSIGNED_BYTE, true, 0, 0 );
+        GLES30.glEnableVertexAttribArray( ATTRIB_COLOR );
+        GLES30.glBindVertexArray( 0 );
+        GLES30.glBindBuffer( GLES30.GL_ARRAY_BUFFER, 0 );
+    }
+
+    // サーフェースが変更された時
+    // （サーフェースが作成された後および、サーフェースのサイズが変更された時）
+    @Override
+    public void onSurfaceChanged( GL10 gl, int width, int height )
+    {
+        m_iWidth = width;
+        m_iHeight = height;
+
+        // ビューポート設定
+        GLES30.glViewport( 0, 0, m_iWidth, m_iHeight );
+
+        // 視野角錐台設定の無効化（描画処理時に再設定され、有効化される）
+        setViewingFrustumValid( false );
+
+        // 視点座標変換設定の無効化（描画処理時に再設定され、有効化される）
+        setViewingTransformValid( false );
+    }
+
+    // フレームの描画
+    @Override
+    public void onDrawFrame( GL10 gl )
+    {
+        m_framestats.beginFrame( System.nanoTime() );
+
+        GLES30.glClear( GLES30.GL_COLOR_BUFFER_BIT | GLES30.GL_DEPTH_BUFFER_BIT );
+
+        if( !isViewingFrustumValid() )
+        {
+            setupViewingFrustum();
+        }
+
+        if( !isViewingTransformValid() )
+        {
+            setupViewingTransform();
+        }
+
+        preRenderScene();
+        renderStockScene();
+        renderScene();
+        postRenderScene();
+
+        m_framestats.endFrame( System.nanoTime() );
+    }
+
+    // 視野角錐台設定
+    protected void setupViewingFrustum()
+    {
+        Matrix.orthoM( m_f16Projection, 0,
+                       -m_iWidth * 0.5f / 10.0f,
+                       m_iWidth * 0.5f / 10.0f,
+                       -m_iHeight * 0.5f / 10.0f,
+                       m_iHeight * 0.5f / 10.0f,
+                       0.1f,
+                       1000.0f );
+
+        setViewingFrustumValid( true );
+    }
+
+    // 視点座標変換設定
+    protected void setupViewingTransform()
+    {
+        Matrix.setLookAtM( m_f16View, 0,
+                           0.0f, 0.0f, 500.0f,
+                           0.0f, 0.0f, 0.0f,
+                           0.0f, 1.0f, 0.0f );
+
+        setViewingTransformValid( true );
+    }
+
+    // シーン描画前の処理
+    protected void preRenderScene()
+    {
+    }
+
+    // シーン描画後の処理
+    protected void postRenderScene()
+    {
+    }
+
+    // ストックシーンの描画
+    protected void renderStockScene()
+    {
+        renderAxis();
+    }
+
+    // シーンの描画
+    protected void renderScene()
+    {
+    }
+
+    // 軸の描画
+    private void renderAxis()
+    {
+        if( 0 == m_iProgramColor )
+        {
+            return;
+        }
+        getModelViewProjection( null, m_f16MvpAxis );
+
+        GLES30.glUseProgram( m_iProgramColor );
+        GLES30.glUniformMatrix4fv( m_iUniformMvpColor, 1, false, m_f16MvpAxis, 0 );
+        GLES30.glLineWidth( 2.0f );
+        GLES30.glBindVertexArray( m_iVertexArrayAxis );
+        GLES30.glDrawArrays( GLES30.GL_LINES, 0, 6 );
+        countDrawCall();
+        GLES30.glBindVertexArray( 0 );
+    }
+
+    // サーフェースがが破棄されようとする時
+    public void preSurfaceDestroy()
+    {
+        GLES30.glDeleteProgram( m_iProgramColor );
+        m_iProgramColor = 0;
+        GLES30.glDeleteVertexArrays( 1, new int[]{ m_iVertexArrayAxis }, 0 );
+        GLES30.glDeleteBuffers( 2, m_aiBufferAxis, 0 );
+        m_iVertexArrayAxis = 0;
+    }
+}
@@ -0,0 +1,525 @@
+package com.hiramine.modelviewertutorial;
+
+import android.opengl.GLES30;
+import android.opengl.Matrix;
+
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+// OpenGL ES 3のモデルの描画（OpenGLModelRendererに対応する、プログラマブルパイプライン版）
+// ・モデルの配列（インターリーブした頂点配列と番号配列）は、セットした時にVBOに一度だけ転送し、部分メッシュごとのVAOで描画する
+// ・読み込み中のモデルは、配列の内容が増えていくので、クライアント側の配列のまま描画する（既定のVAO 0を使う）
+// ・32ビットの番号配列はOpenGL ES 3の標準なので、部分メッシュには分割しない
+public class GLES3ModelRenderer extends GLES3TrackRenderer
+{
+    // シェーダーのuShadingの値
+    protected static final int SHADING_UNLIT   = 0;    // 単色
+    protected static final int SHADING_FACETED = 1;    // 面ごとの陰影（視線方向からの平行光。法線は、画面上の座標値の変化から求める）
+    protected static final int SHADING_NORMAL  = 2;    // 法線の向きを色にする
+    protected static final int SHADING_SMOOTH  = 3;    // 頂点法線による陰影（視線方向からの平行光。法線は、頂点の法線の属性を補間する）
+
+    // 頂点の法線の属性（ストックシーンの色の属性とは、別の番号にする）
+    protected static final int ATTRIB_NORMAL = 2;
+
+    // モデルを描くシェーダー
+    // uIdDivisorが1以上の時は、gl_VertexID / uIdDivisorを要素の番号として、番号の色（各色8ビットの24ビット。PickBufferBuilder.index2rgb()と同じ）で描く（ピック用）
+    private static final String VERTEX_SHADER_MODEL =
+            "#version 300 es\n"
+            + "uniform mat4 uMvp;\n"
+            + "uniform mat4 uModelView;\n"
+            + "uniform mat4 uNormalMatrix;\n"
+            + "uniform int uIdDivisor;\n"
+            + "uniform float uPointSize;\n"
+            + "layout(location = 0) in vec4 aPosition;\n"
+            + "layout(location = 2) in vec3 aNormal;\n"
+            + "out vec3 vPositionView;\n"
+            + "out vec3 vNormalView;\n"
+            + "flat out vec4 vIdColor;\n"
+            + "void main() {\n"
+            + "    gl_Position = uMvp * aPosition;\n"
+            + "    gl_PointSize = uPointSize;\n"
+            + "    vPositionView = ( uModelView * aPosition ).xyz;\n"
+            + "    vNormalView = mat3( uNormalMatrix ) * aNormal;\n"
+            + "    vIdColor = vec4( 0.0 );\n"
+            + "    if( 0 < uIdDivisor ) {\n"
+            + "        int iIndex = gl_VertexID / uIdDivisor;\n"
+            + "        vIdColor = vec4( float( ( iIndex >> 16 ) & 255 ),\n"
+            + "                         float( ( iIndex >> 8 ) & 255 ),\n"
+            + "                         float( iIndex & 255 ),\n"
+            + "                         255.0 ) / 255.0;\n"
+            + "    }\n"
+            + "}\n";
+    private static final String FRAGMENT_SHADER_MODEL =
+            "#version 300 es\n"
+            + "precision highp float;\n"
+            + "uniform vec4 uColor;\n"
+            + "uniform int uShading;\n"
+            + "uniform int uIdDivisor;\n"
+            + "in vec3 vPositionView;\n"
+            + "in vec3 vNormalView;\n"
+            + "flat in vec4 vIdColor;\n"
+            + "out vec4 fragColor;\n"
+            + "void main() {\n"
+            + "    if( 0 < uIdDivisor ) {\n"
+            + "        fragColor = vIdColor;\n"
+            + "        return;\n"
+            + "    }\n"
+            + "    if( 0 == uShading ) {\n"
+            + "        fragColor = uColor;\n"
+            + "        return;\n"
+            + "    }\n"
+            + "    if( 3 == uShading ) {\n"
+            + "        fragColor = vec4( uColor.rgb * ( 0.3 + 0.7 * abs( normalize( vNormalView ).z ) ), uColor.a );\n"
+            + "        return;\n"
+            + "    }\n"
+            + "    vec3 normal = normalize( cross( dFdx( vPositionView ), dFdy( vPositionView ) ) );\n"
+            + "    if( 1 == uShading ) {\n"
+            + "        fragColor = vec4( uColor.rgb * ( 0.3 + 0.7 * abs( normal.z ) ), uColor.a );\n"
+            + "    } else {\n"
+            + "        fragColor = vec4( normal * 0.5 + 0.5, 1.0 );\n"
+            + "    }\n"
+            + "}\n";
+
+    // メンバー変数
+    private int m_iProgramModel;
+    private int m_iUniformMvp;
+    private int m_iUniformModelView;
+    private int m_iUniformNormalMatrix;
+    private int m_iUniformColor;
+    private int m_iUniformShading;
+    private int m_iUniformIdDivisor;
+    private int m_iUniformPointSize;
+    private final GLES3VertexArrayCache m_vertexarraycache = new GLES3VertexArrayCache();    // GPU側に転送した配列（GLスレッドからだけ使う）
+    private final ModelRenderPolicy m_modelrenderpolicy = new ModelRenderPolicy( new ModelRenderPolicy.Uploader()
+    {
+        // VAOとVBOへの転送と削除（プログラムを作成するまでは、転送しない）
+        @Override
+        public boolean isUploadEnabled()
+        {
+            return 0 != m_iProgramModel;
+        }
+
+        @Override
+        public void uploadVertices( Buffer bufVertex, VertexLayout layout )
+        {
+            m_vertexarraycache.getVertexArray( bufVertex, layout, ATTRIB_POSITION );
+        }
+
+        @Override
+        public void uploadSubMesh( SubMesh submesh )
+        {
+            m_vertexarraycache.getVertexArray( submesh, ATTRIB_POSITION );
+        }
+
+        @Override
+        public void deleteSubMesh( SubMesh submesh )
+        {
+            m_vertexarraycache.remove( submesh );
+        }
+
+        @Override
+        public void deleteAll()
+        {
+            m_vertexarraycache.clear();
+        }
+    }, true );    // 描画中のモデルと、転送する配列の方針（OpenGLModelRendererと共通。32ビットの番号配列は、OpenGL ES 3の標準）
+    private final float[] m_f16Model     = new float[16];    // モデル行列
+    private final float[] m_f16ModelView = new float[16];
+    private final float[] m_f16Mvp       = new float[16];
+    private final float[] m_f16NormalMatrix = new float[16];    // 法線の変換行列（モデルビュー行列の逆行列の転置。量子化したモデルの縮尺で掛けた法線も、視点の座標系の向きに戻る）
+    private final float[] m_f16Work         = new float[16];
+    private final ClusterCuller m_clusterculler = new ClusterCuller();    // クラスターの階層の間引き
+    private boolean m_bCulling;    // 描画中のモデルの部分メッシュを、クラスターの階層で間引くかどうか
+
+    // アクセサ
+    public Model getModel()
+    {
+        return m_modelrenderpolicy.getModel();
+    }
+
+    // トラッキング中の描画の三角形の数の上限（読み込みスレッドが、詳細度の段階を作成する時にも使う）
+    public int getInteractiveTriangleBudget()
+    {
+        return m_modelrenderpolicy.getInteractiveTriangleBudget();
+    }
+
+    public void setInteractiveTriangleBudget( int iTriangleBudget )
+    {
+        m_modelrenderpolicy.setInteractiveTriangleBudget( iTriangleBudget );
+    }
+
+    // モデルのセット（新しいモデルの参照を追加し、差し替えたモデルの参照を解除する。前のモデルのVAOとVBOは削除する）
+    public void setModel( Model model )
+    {
+        m_modelrenderpolicy.setModel( model );
+    }
+
+    // VAOとVBOで描画するかどうか（読み込み中のモデルは、クライアント側の配列のまま描画する）
+    public boolean isBufferObjectEnabled()
+    {
+        return m_modelrenderpolicy.isUploadedModel();
+    }
+
+    // GPU側に転送した配列のバイト数
+    public long getBufferObjectBytes()
+    {
+        return m_vertexarraycache.getBytes();
+    }
+
+    // 描画する三角形の部分メッシュ（32ビットの番号配列を描画できるので、分割しない）
+    protected SubMesh[] getTriangleSubMeshes( Model model )
+    {
+        return m_modelrenderpolicy.getTriangleSubMeshes( model );
+    }
+
+    // 描画する稜線の部分メッシュ（稜線を作成していなければ、作成する）
+    protected SubMesh[] getEdgeSubMeshes( Model model )
+    {
+        return m_modelrenderpolicy.getEdgeSubMeshes( model );
+    }
+
+    // 描画に使う派生バッファの事前作成（読み込みスレッドから呼ぶ。最初の描画で、GLスレッドが作成を待たないようにする）
+    public void prepareModel( Model model )
+    {
+        m_modelrenderpolicy.prepareModel( model, true, false, 0.0f, true );
+    }
+
+    // メモリーが足りない時の、派生バッファの破棄（GLスレッドから呼ぶ）
+    // VAOとVBOも全て削除する（破棄される派生バッファの分も含むので。残る配列は、次の描画で転送し直す）
+    public void trimMemory()
+    {
+        m_modelrenderpolicy.trimMemory();
+    }
+
+    // 描画中のモデルと、転送する配列の方針（サブクラスの、派生バッファの事前作成と破棄で使う）
+    protected ModelRenderPolicy getModelRenderPolicy()
+    {
+        return m_modelrenderpolicy;
+    }
+
+    // トラッキング中の描画かどうか（三角形の数が上限を超えるモデルは、トラッキング中は粗い段階で描き、線と点を描かない）
+    protected boolean isInteractiveRendering( Model model )
+    {
+        return m_modelrenderpolicy.isInteractiveRendering( model, getTrackingMode() );
+    }
+
+    // 通常の描画に使う、詳細度の段階のモデル（段階を作成していなければ、モデルそのもの）
+    protected Model getLevelOfDetailModel( Model model )
+    {
+        return m_modelrenderpolicy.getLevelOfDetailModel( model, getTrackingMode(), getPixelPerUnit(), getFrameStats() );
+    }
+
+    // モデルの描画の開始（プログラムと行列のセット。描けない場合はfalse）
+    // 量子化したモデルは、量子化した値×縮尺＋中心が元の座標値になるよう、モデル行列に掛ける
+    protected boolean beginModel( Model model )
+    {
+        if( 0 == m_iProgramModel )
+        {
+            return false;
+        }
+        Matrix.setIdentityM( m_f16Model, 0 );
+        if( model.isQuantized() )
+        {
+            float[] af3Scale  = model.getVertexScale();
+            float[] af3Offset = model.getVertexOffset();
+            Matrix.translateM( m_f16Model, 0, af3Offset[0], af3Offset[1], af3Offset[2] );
+            Matrix.scaleM( m_f16Model, 0, af3Scale[0], af3Scale[1], af3Scale[2] );
+        }
+        Matrix.multiplyMM( m_f16ModelView, 0, m_f16View, 0, m_f16Model, 0 );
+        getModelViewProjection( m_f16Model, m_f16Mvp );
+        m_clusterculler.setMatrix( m_f16Mvp, getWidth(), getHeight() );
+        m_bCulling = !( model instanceof AppendableModel );    // 読み込み中のモデルは、間引かない
+        if( Matrix.invertM( m_f16Work, 0, m_f16ModelView, 0 ) )
+        {
+            Matrix.transposeM( m_f16NormalMatrix, 0, m_f16Work, 0 );
+        }
+        else
+        {
+            Matrix.setIdentityM( m_f16NormalMatrix, 0 );
+        }
+
+        GLES30.glUseProgram( m_iProgramModel );
+        GLES30.glUniformMatrix4fv( m_iUniformMvp, 1, false, m_f16Mvp, 0 );
+        GLES30.glUniformMatrix4fv( m_iUniformModelView, 1, false, m_f16ModelView, 0 );
+        GLES30.glUniformMatrix4fv( m_iUniformNormalMatrix, 1, false, m_f16NormalMatrix, 0 );
+        setShadingMode( SHADING_UNLIT );
+        setIdDivisor( 0 );
+        setPointSize( 5.0f );
+        return true;
+    }
+
+    // モデルの描画の終了
+    protected void endModel()
+    {
+        GLES30.glBindVertexArray( 0 );
+        GLES30.glDisableVertexAttribArray( ATTRIB_POSITION );    // クライアント側の配列で描いた場合の、既定のVAOの状態
+        GLES30.glDisableVertexAttribArray( ATTRIB_NORMAL );
+    }
+
+    protected void setColor( float fRed, float fGreen, float fBlue, float fAlpha )
+    {
+        GLES30.glUniform4f( m_iUniformColor, fRed, fGreen, fBlue, fAlpha );
+    }
+
+    protected void setShadingMode( int iShading )
+    {
+        GLES30.glUniform1i( m_iUniformShading, iShading );
+    }
+
+    // 要素の番号の色で描く時の、１要素の頂点数（0の場合は、番号の色で描かない）
+    protected void setIdDivisor( int iDivisor )
+    {
+        GLES30.glUniform1i( m_iUniformIdDivisor, iDivisor );
+    }
+
+    protected void setPointSize( float fPointSize )
+    {
+        GLES30.glUniform1f( m_iUniformPointSize, fPointSize );
+    }
+
+    // モデルの、描画に使う頂点配列のバインド
+    protected void bindVertices( Model model )
+    {
+        bindVertices( model.getInterleavedVertexBuffer(), model.getVertexLayout() );
+    }
+
+    // layoutの並びの頂点配列のバインド（glDrawArrays()で描く時）
+    protected void bindVertices( Buffer bufVertex, VertexLayout layout )
+    {
+        if( isBufferObjectEnabled() )
+        {
+            GLES30.glBindVertexArray( m_vertexarraycache.getVertexArray( bufVertex, layout, ATTRIB_POSITION ) );
+            return;
+        }
+        bindClientVertices( bufVertex, layout );
+    }
+
+    // クライアント側の頂点配列のバインド（読み込み中のモデルや、ピック要素など、内容が変わる配列。法線を持つ並びは、法線も指定する）
+    protected void bindClientVertices( Buffer bufVertex, VertexLayout layout )
+    {
+        GLES30.glBindVertexArray( 0 );
+        GLES30.glVertexAttribPointer( ATTRIB_POSITION, 3, layout.getPositionType(), false, layout.getStride(), bufVertex.position( layout.getPositionOffset() ) );
+        GLES30.glEnableVertexAttribArray( ATTRIB_POSITION );
+        if( layout.hasNormal() )
+        {
+            GLES30.glVertexAttribPointer( ATTRIB_NORMAL, 3, GLES30.GL_BYTE, true, layout.getStride(), bufVertex.position( layout.getNormalOffset() ) );
+            GLES30.glEnableVertexAttribArray( ATTRIB_NORMAL );
+        }
+        else
+        {
+            GLES30.glDisableVertexAttribArray( ATTRIB_NORMAL );
+        }
+    }
+
+    // 部分メッシュのバインド（頂点の座標値と番号配列）
+    protected void bindSubMesh( SubMesh submesh )
+    {
+        bindSubMesh( submesh, false );
+    }
+
+    // 部分メッシュのバインド（bNormalがtrueの場合は、頂点の法線も）
+    protected void bindSubMesh( SubMesh submesh, boolean bNormal )
+    {
+        if( isBufferObjectEnabled() )
+        {
+            GLES30.glBindVertexArray( m_vertexarraycache.getVertexArray( submesh, ATTRIB_POSITION, bNormal ? ATTRIB_NORMAL : -1 ) );
+            return;
+        }
+        bindClientVertices( submesh.getVertexBuffer(), submesh.getVertexLayout() );
+    }
+
+    // 部分メッシュの先頭からiCount個の要素のバインドと描画（iVertexPerは要素の頂点数）
+    // 完成したモデルの部分メッシュは、クラスターの階層を辿り、視野の中のクラスターだけを描画する（並べ替えた部分メッシュを、バインドして描画する）
+    protected void drawSubMeshElements( int iMode, int iVertexPer, SubMesh submesh, int iCount, boolean bNormal )
+    {
+        ClusterTree clustertree = ( m_bCulling && iCount == submesh.getElementCount() ) ? submesh.getClusterTree( iVertexPer ) : null;
+        if( null == clustertree )
+        {
+            bindSubMesh( submesh, bNormal );
+            drawElements( iMode, iCount * iVertexPer, submesh, 0 );
+            return;
+        }
+        int iCountRange = m_clusterculler.cull( clustertree );
+        getFrameStats().addClusters( m_clusterculler.getDrawnCount(), m_clusterculler.getCulledCount() );
+        if( 0 == iCountRange )
+        {
+            return;
+        }
+        SubMesh submeshOrdered = clustertree.getSubMesh();
+        bindSubMesh( submeshOrdered, bNormal );
+        for( int i = 0; i < iCountRange; i++ )
+        {
+            drawElements( iMode, m_clusterculler.getRangeElementCount( i ) * iVertexPer, submeshOrdered, m_clusterculler.getRangeFirst( i ) * iVertexPer );
+        }
+    }
+
+    // バインドした部分メッシュの番号配列の、iFirstIndex番目からiCountIndex個の描画
+    protected void drawElements( int iMode, int iCountIndex, SubMesh submesh, int iFirstIndex )
+    {
+        if( isBufferObjectEnabled() )
+        {
+            int iSizeofIndex = ( GLES30.GL_UNSIGNED_SHORT == submesh.getIndexType() ) ? 2 : 4;
+            GLES30.glDrawElements( iMode, iCountIndex, submesh.getIndexType(), iFirstIndex * iSizeofIndex );
+        }
+        else
+        {
+            GLES30.glDrawElements( iMode, iCountIndex, submesh.getIndexType(), submesh.getIndexBuffer().position( iFirstIndex ) );
+        }
+        countDrawCall();
+    }
+
+    // バインドした頂点の座標値の配列の描画
+    protected void drawArrays( int iMode, int iFirst, int iCount )
+    {
+        GLES30.glDrawArrays( iMode, iFirst, iCount );
+        countDrawCall();
+    }
+
+    // バインドした頂点の座標値の配列の、点の描画（点の集合の番号配列を持つモデルは、同じ座標の頂点を一度ずつ描く）
+    // 番号配列を持つのは、バッファオブジェクトを使わない読み込み中のモデルだけなので、番号配列はクライアント側のまま渡す
+    // 番号配列の値は元の頂点の番号なので、gl_VertexIDから求める要素の番号は変わらない
+    protected void drawPoints( Model model, int iCountVertex, int iCountPoint )
+    {
+        Buffer bufPoint = model.getPointVertexIndexBuffer();
+        if( null == bufPoint )
+        {
+            drawArrays( GLES30.GL_POINTS, 0, iCountVertex );
+            return;
+        }
+        int iIndexType = ( bufPoint instanceof IntBuffer ) ? GLES30.GL_UNSIGNED_INT : GLES30.GL_UNSIGNED_SHORT;
+        GLES30.glDrawElements( GLES30.GL_POINTS, iCountPoint, iIndexType, bufPoint.position( 0 ) );
+        countDrawCall();
+    }
+
+    // 面の描画（部分メッシュごとに、先頭からiCountTriangle個までを描画する）
+    protected void drawTriangleElements( Model model, int iCountTriangle )
+    {
+        for( SubMesh submesh : getTriangleSubMeshes( model ) )
+        {
+            int iCount = Math.min( submesh.getElementCount(), iCountTriangle - submesh.getFirstElement() );
+            if( 0 >= iCount )
+            {
+                break;
+            }
+            drawSubMeshElements( GLES30.GL_TRIANGLES, 3, submesh, iCount, false );
+        }
+    }
+
+    // 陰影付きの面の描画（頂点法線を持つ部分メッシュごとに、先頭からiCountTriangle個までを描画する）
+    // 陰影付きの部分メッシュがないモデル（読み込み中のモデル）は、単色で描画する
+    protected void drawLitTriangleElements( Model model, int iCountTriangle, float fCreaseAngle )
+    {
+        SubMesh[] aSubMesh = m_modelrenderpolicy.getLitTriangleSubMeshes( model, fCreaseAngle );    // 作り直された前の部分メッシュのVAOとVBOは、削除される
+        if( null == aSubMesh )
+        {
+            setShadingMode( SHADING_UNLIT );
+            drawTriangleElements( model, iCountTriangle );
+            return;
+        }
+
+        setShadingMode( SHADING_SMOOTH );
+        for( SubMesh submesh : aSubMesh )
+        {
+            int iCount = Math.min( submesh.getElementCount(), iCountTriangle - submesh.getFirstElement() );
+            if( 0 >= iCount )
+            {
+                break;
+            }
+            drawSubMeshElements( GLES30.GL_TRIANGLES, 3, submesh, iCount, true );
+        }
+        GLES30.glBindVertexArray( 0 );
+        GLES30.glDisableVertexAttribArray( ATTRIB_NORMAL );
+    }
+
+    // 線の描画（部分メッシュごとに、先頭からiCountEdge個までを描画する）
+    protected void drawEdgeElements( Model model, int iCountEdge )
+    {
+        for( SubMesh submesh : getEdgeSubMeshes( model ) )
+        {
+            int iCount = Math.min( submesh.getElementCount(), iCountEdge - submesh.getFirstElement() );
+            if( 0 >= iCount )
+            {
+                break;
+            }
+            drawSubMeshElements( GLES30.GL_LINES, 2, submesh, iCount, false );
+        }
+    }
+
+    @Override
+    protected void renderScene()
+    {
+        renderModel();
+    }
+
+    protected void renderModel()
+    {
+        Model model = getModel();
+        if( null == model
+                || null == model.getVertexBuffer() )
+        {
+            return;
+        }
+
+        // 要素の数（読み込み中のモデルでは、バッファより先に取得する）
+        int iCountTriangle = model.getTriangleCount();
+        int iCountEdge     = model.getEdgeCount();
+        int iCountVertex   = model.getVertexCount();
+        int iCountPoint    = model.getPointCount();
+
+        if( !beginModel( model ) )
+        {
+            return;
+        }
+
+        // 面の描画
+        if( null != model.getTriangleVertexIndexBuffer() )
+        {
+            setColor( 0.5f, 0.5f, 0.0f, 1.0f );
+            drawTriangleElements( model, iCountTriangle );
+        }
+
+        // 線の描画
+        GLES30.glLineWidth( 2.0f );
+        setColor( 0.0f, 0.5f, 0.5f, 1.0f );
+        drawEdgeElements( model, iCountEdge );
+
+        // 点の描画
+        setColor( 0.5f, 0.0f, 0.5f, 1.0f );
+        bindVertices( model );
+        drawPoints( model, iCountVertex, iCountPoint );
+
+        endModel();
+    }
+
+    @Override
+    public void onSurfaceCreated( GL10 gl, EGLConfig config )
+    {
+        super.onSurfaceCreated( gl, config );
+
+        m_iProgramModel = createProgram( VERTEX_SHADER_MODEL, FRAGMENT_SHADER_MODEL );
+        m_iUniformMvp = GLES30.glGetUniformLocation( m_iProgramModel, "uMvp" );
+        m_iUniformModelView = GLES30.glGetUniformLocation( m_iProgramModel, "uModelView" );
+        m_iUniformNormalMatrix = GLES30.glGetUniformLocation( m_iProgramModel, "uNormalMatrix" );
+        m_iUniformColor = GLES30.glGetUniformLocation( m_iProgramModel, "uColor" );
+        m_iUniformShading = GLES30.glGetUniformLocation( m_iProgramModel, "uShading" );
+        m_iUniformIdDivisor = GLES30.glGetUniformLocation( m_iProgramModel, "uIdDivisor" );
+        m_iUniformPointSize = GLES30.glGetUniformLocation( m_iProgramModel, "uPointSize" );
+
+        // コンテキストが作り直されると、以前のVAOとVBOは無くなっているので、現在のモデルの配列を転送し直す
+        m_vertexarraycache.invalidate();
+        m_modelrenderpolicy.uploadModel();
+    }
+
+    @Override
+    public void preSurfaceDestroy()
+    {
+        m_vertexarraycache.clear();
+        GLES30.glDeleteProgram( m_iProgramModel );
+        m_iProgramModel = 0;
+
+        super.preSurfaceDestroy();
+    }
+}
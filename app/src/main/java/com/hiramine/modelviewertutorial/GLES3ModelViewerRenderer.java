@@ -0,0 +1,151 @@
+package com.hiramine.modelviewertutorial;
+
+// OpenGL ES 3のモデルビューアーのレンダラー（ModelViewerRendererと同じ表示設定、ピック設定に、面のシェーディングを加える）
+public class GLES3ModelViewerRenderer extends GLES3PickRenderer implements ViewerRenderer
+{
+    // メンバー変数
+    public boolean m_bRenderPoint;
+    public boolean m_bRenderLine;
+    public boolean m_bRenderFace;
+    public boolean m_bPickPoint;
+    public boolean m_bPickLine;
+    public boolean m_bPickFace;
+    private EShading m_eShading = EShading.SH_UNLIT;    // 面のシェーディング
+    private volatile float m_fCreaseAngle = NormalGenerator.DEFAULT_CREASE_ANGLE;    // 頂点法線による陰影の、法線を分ける折れ角[deg]
+
+    // コンストラクタ
+    public GLES3ModelViewerRenderer()
+    {
+        m_bRenderPoint = true;
+        m_bRenderLine = true;
+        m_bRenderFace = true;
+        m_bPickPoint = true;
+        m_bPickLine = true;
+        m_bPickFace = true;
+    }
+
+    // 描画する要素
+    @Override
+    public void setRenderElement( OpenGLPickRenderer.ERenderElementType eElementType, boolean bRender )
+    {
+        switch( eElementType )
+        {
+            case RET_POINT:
+                m_bRenderPoint = bRender;
+                break;
+            case RET_LINE:
+                m_bRenderLine = bRender;
+                break;
+            case RET_FACE:
+                m_bRenderFace = bRender;
+                break;
+        }
+    }
+
+    // ピックする要素
+    @Override
+    public void setPickElement( OpenGLPickRenderer.ERenderElementType eElementType, boolean bPick )
+    {
+        switch( eElementType )
+        {
+            case RET_POINT:
+                m_bPickPoint = bPick;
+                break;
+            case RET_LINE:
+                m_bPickLine = bPick;
+                break;
+            case RET_FACE:
+                m_bPickFace = bPick;
+                break;
+        }
+    }
+
+    // 面のシェーディング
+    @Override
+    public void setShading( EShading eShading )
+    {
+        m_eShading = eShading;
+    }
+
+    public EShading getShading()
+    {
+        return m_eShading;
+    }
+
+    @Override
+    public void setCreaseAngle( float fCreaseAngle )
+    {
+        m_fCreaseAngle = fCreaseAngle;
+    }
+
+    @Override
+    protected float getCreaseAngle()
+    {
+        return m_fCreaseAngle;
+    }
+
+    @Override
+    protected int getFaceShadingMode()
+    {
+        switch( m_eShading )
+        {
+            case SH_FACETED:
+                return SHADING_FACETED;
+            case SH_NORMAL:
+                return SHADING_NORMAL;
+            case SH_SMOOTH:
+                return SHADING_SMOOTH;
+            default:
+                return SHADING_UNLIT;
+        }
+    }
+
+    @Override
+    protected boolean isRenderElement( OpenGLPickRenderer.ERenderElementType eElementType )
+    {
+        switch( eElementType )
+        {
+            case RET_POINT:
+                return m_bRenderPoint;
+            case RET_LINE:
+                return m_bRenderLine;
+            case RET_FACE:
+                return m_bRenderFace;
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean isPickElement( OpenGLPickRenderer.ERenderElementType eElementType )
+    {
+        if( null == eElementType )
+        {
+            return false;
+        }
+        switch( eElementType )
+        {
+            case RET_POINT:
+                return m_bPickPoint;
+            case RET_LINE:
+                return m_bPickLine;
+            case RET_FACE:
+                return m_bPickFace;
+        }
+        return false;
+    }
+
+    // 描画に使う派生バッファの事前作成（表示しない要素の派生バッファは作らない）
+    @Override
+    public void prepareModel( Model model )
+    {
+        getModelRenderPolicy().prepareModel( model, m_bRenderFace, EShading.SH_SMOOTH == m_eShading, m_fCreaseAngle, m_bRenderLine );
+    }
+
+    // メモリーが足りない時の、派生バッファの破棄（線を表示していなければ、稜線も破棄する。頂点法線で陰影を付けていなければ、法線も破棄する）
+    @Override
+    public void trimMemory()
+    {
+        super.trimMemory();
+        getModelRenderPolicy().discardDerivedBuffers( !m_bRenderLine, EShading.SH_SMOOTH != m_eShading );
+    }
+}
@@ -0,0 +1,455 @@
+package com.hiramine.modelviewertutorial;
+
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+// OpenGL ES 3のピック（OpenGLPickRendererと同じく、要素タイプ別と要素番号別の２回のオフスクリーン描画の色で、ピック要素を決める）
+// ・要素番号の色は、シェーダーでgl_VertexIDから作るので、色配列は作らない
+// ・面と線は、要素ごとに頂点を持つ配列で描くので、要素番号別の描画は、面、線、点のそれぞれ一度の描画呼び出しで済む
+public class GLES3PickRenderer extends GLES3ModelRenderer
+{
+    // 定数
+    protected static final int NAMEARRAYSIZE    = OpenGLPickRenderer.NAMEARRAYSIZE;    // 名前列の大きさ
+    protected static final int PICKREGIONOFFSET = OpenGLPickRenderer.PICKREGIONOFFSET;    // ピック領域の上下左右のオフセット量
+
+    // メンバー変数
+    protected int[] m_aiName = new int[NAMEARRAYSIZE];
+    private VertexLayout m_layoutPick;    // 面と線のピック用の配列の並び
+    private ByteBuffer   m_btbTrianglePick;    // 面のピック用の、三角形ごとに３頂点を持つ配列（最初のピック時に作成）
+    private ByteBuffer   m_btbEdgePick;    // 線のピック用の、稜線ごとに２頂点を持つ配列（最初のピック時に作成）
+    private FloatBuffer  m_fbPickedElement = OpenGLBaseRenderer.makeFloatBuffer( new float[3 * 3] );    // ピック要素の描画用の頂点の座標値の配列
+
+    @Override
+    public void setModel( Model model )
+    {
+        Arrays.fill( m_aiName, 0 );
+
+        super.setModel( model );
+
+        // ピック用の配列は、ピックするまで作らない（前のモデルの配列は、アリーナに返す。VBOは、super.setModel()で削除済み）
+        OpenGLBaseRenderer.releaseBuffer( m_btbTrianglePick );
+        OpenGLBaseRenderer.releaseBuffer( m_btbEdgePick );
+        m_btbTrianglePick = null;
+        m_btbEdgePick = null;
+    }
+
+    // メモリーが足りない時は、ピック用の配列を破棄する（次のピック時に作り直す。VBOは、super.trimMemory()で削除済み）
+    @Override
+    public void trimMemory()
+    {
+        super.trimMemory();
+
+        if( null != m_btbTrianglePick )
+        {
+            OpenGLBaseRenderer.releaseBuffer( m_btbTrianglePick );
+            m_btbTrianglePick = null;
+            DerivedBufferStats.recordDiscard( DerivedBufferStats.EBufferType.BT_TRIANGLE_PICK );
+        }
+        if( null != m_btbEdgePick )
+        {
+            OpenGLBaseRenderer.releaseBuffer( m_btbEdgePick );
+            m_btbEdgePick = null;
+            DerivedBufferStats.recordDiscard( DerivedBufferStats.EBufferType.BT_EDGE_PICK );
+        }
+    }
+
+    // 要素を描画するかどうか（派生クラスで、表示設定に合わせて変える）
+    protected boolean isRenderElement( OpenGLPickRenderer.ERenderElementType eElementType )
+    {
+        return true;
+    }
+
+    // 要素をピックするかどうか（派生クラスで、ピック設定に合わせて変える）
+    protected boolean isPickElement( OpenGLPickRenderer.ERenderElementType eElementType )
+    {
+        return true;
+    }
+
+    // 面の陰影（派生クラスで、シェーディングの設定に合わせて変える）
+    protected int getFaceShadingMode()
+    {
+        return SHADING_UNLIT;
+    }
+
+    // 頂点法線による陰影の、法線を分ける折れ角[deg]（派生クラスで、設定に合わせて変える）
+    protected float getCreaseAngle()
+    {
+        return NormalGenerator.DEFAULT_CREASE_ANGLE;
+    }
+
+    // ピック面の描画（どの部分メッシュにあるかによらず描画できるよう、座標値を取り出して描画する）
+    protected void drawPickedTriangle( Model model, int iIndexTriangle )
+    {
+        if( iIndexTriangle >= model.getTriangleCount() )
+        {
+            return;
+        }
+        for( int i3 = 0; i3 < 3; i3++ )
+        {
+            putVertex( model, model.getTriangleVertexIndex( iIndexTriangle, i3 ), i3 );
+        }
+        drawPickedElement( GLES30.GL_TRIANGLES, 3 );
+    }
+
+    // ピック線の描画
+    protected void drawPickedEdge( Model model, int iIndexEdge )
+    {
+        if( iIndexEdge >= model.getEdgeCount() )
+        {
+            return;
+        }
+        for( int i2 = 0; i2 < 2; i2++ )
+        {
+            putVertex( model, model.getEdgeVertexIndex( iIndexEdge, i2 ), i2 );
+        }
+        drawPickedElement( GLES30.GL_LINES, 2 );
+    }
+
+    // 頂点の座標値の配列に格納されている値のまま、floatで持つ（量子化したモデルも、同じモデル行列で描画する）
+    private void putVertex( Model model, int iIndexVertex, int i )
+    {
+        m_fbPickedElement.put( i * 3 + 0, model.getVertexValue( iIndexVertex, 0 ) );
+        m_fbPickedElement.put( i * 3 + 1, model.getVertexValue( iIndexVertex, 1 ) );
+        m_fbPickedElement.put( i * 3 + 2, model.getVertexValue( iIndexVertex, 2 ) );
+    }
+
+    private void drawPickedElement( int iMode, int iCountVertex )
+    {
+        bindClientVertices( m_fbPickedElement, VertexLayout.PACKED_FLOAT );
+        drawArrays( iMode, 0, iCountVertex );
+    }
+
+    @Override
+    protected void renderScene()
+    {
+        renderModel( OpenGLPickRenderer.ERenderMode.RM_RENDER );
+    }
+
+    protected void renderModel( OpenGLPickRenderer.ERenderMode eRenderMode )
+    {
+        Model model = getModel();
+        if( null == model
+                || null == model.getVertexBuffer() )
+        {
+            return;
+        }
+
+        // 描画するモデル（通常の描画は、詳細度の段階のモデルで描く。ピックとピック要素は、元のモデルの要素の番号なので、元のモデルで描く）
+        // 段階のモデルは、元のモデルと同じ縮尺と中心で量子化してあるので、同じモデル行列で描画できる
+        Model modelDraw = ( OpenGLPickRenderer.ERenderMode.RM_RENDER == eRenderMode ) ? getLevelOfDetailModel( model ) : model;
+        // トラッキング中の描画では、線と点を描かない
+        boolean bInteractive = OpenGLPickRenderer.ERenderMode.RM_RENDER == eRenderMode && isInteractiveRendering( model );
+
+        // 要素の数（読み込み中のモデルでは、バッファより先に取得する）
+        // 稜線の数は、線を描画する時だけ取得する（稜線は、必要になるまで作らない）
+        int iCountTriangle = modelDraw.getTriangleCount();
+        int iCountVertex   = modelDraw.getVertexCount();
+        int iCountPoint    = modelDraw.getPointCount();
+
+        if( !beginModel( modelDraw ) )
+        {
+            return;
+        }
+
+        // 面の描画
+        if( isRenderElement( OpenGLPickRenderer.ERenderElementType.RET_FACE )
+                && null != model.getTriangleVertexIndexBuffer() )
+        {
+            if( OpenGLPickRenderer.ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
+            {
+                setIdDivisor( 3 );
+                bindVertices( m_btbTrianglePick, m_layoutPick );
+                drawArrays( GLES30.GL_TRIANGLES, 0, iCountTriangle * 3 );
+                setIdDivisor( 0 );
+            }
+            else
+            {
+                if( OpenGLPickRenderer.ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
+                {
+                    setColor( 1.0f, 0.0f, 0.0f, 1.0f );
+                }
+                else
+                {
+                    setColor( 0.5f, 0.5f, 0.0f, 1.0f );
+                    setShadingMode( getFaceShadingMode() );
+                }
+                if( OpenGLPickRenderer.ERenderMode.RM_RENDER == eRenderMode
+                        && SHADING_SMOOTH == getFaceShadingMode() )
+                {
+                    drawLitTriangleElements( modelDraw, iCountTriangle, getCreaseAngle() );
+                }
+                else
+                {
+                    drawTriangleElements( modelDraw, iCountTriangle );
+                }
+                setShadingMode( SHADING_UNLIT );
+            }
+            // ピック面の描画
+            if( OpenGLPickRenderer.ERenderMode.RM_RENDER == eRenderMode
+                    && OpenGLPickRenderer.ERenderElementType.RET_FACE.getValue() == m_aiName[1] )
+            {
+                setColor( 1.0f, 1.0f, 0.0f, 1.0f );
+                drawPickedTriangle( model, m_aiName[2] );
+            }
+        }
+
+        // 線の描画
+        if( isRenderElement( OpenGLPickRenderer.ERenderElementType.RET_LINE )
+                && !bInteractive )
+        {
+            int iCountEdge = modelDraw.getEdgeCount();
+            GLES30.glLineWidth( 2.0f );
+            if( OpenGLPickRenderer.ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
+            {
+                setIdDivisor( 2 );
+                bindVertices( m_btbEdgePick, m_layoutPick );
+                drawArrays( GLES30.GL_LINES, 0, iCountEdge * 2 );
+                setIdDivisor( 0 );
+            }
+            else
+            {
+                if( OpenGLPickRenderer.ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
+                {
+                    setColor( 0.0f, 1.0f, 0.0f, 1.0f );
+                }
+                else
+                {
+                    setColor( 0.0f, 0.5f, 0.5f, 1.0f );
+                }
+                drawEdgeElements( modelDraw, iCountEdge );
+            }
+            // ピック線の描画
+            if( OpenGLPickRenderer.ERenderMode.RM_RENDER == eRenderMode
+                    && OpenGLPickRenderer.ERenderElementType.RET_LINE.getValue() == m_aiName[1] )
+            {
+                GLES30.glLineWidth( 5.0f );
+                setColor( 0.0f, 1.0f, 1.0f, 1.0f );
+                drawPickedEdge( model, m_aiName[2] );
+            }
+        }
+
+        // 点の描画
+        if( isRenderElement( OpenGLPickRenderer.ERenderElementType.RET_POINT )
+                && !bInteractive )
+        {
+            bindVertices( modelDraw );
+            if( OpenGLPickRenderer.ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
+            {
+                setIdDivisor( 1 );
+            }
+            else if( OpenGLPickRenderer.ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
+            {
+                setColor( 0.0f, 0.0f, 1.0f, 1.0f );
+            }
+            else
+            {
+                setColor( 0.5f, 0.0f, 0.5f, 1.0f );
+            }
+            drawPoints( modelDraw, iCountVertex, iCountPoint );
+            setIdDivisor( 0 );
+            // ピック点の描画
+            if( OpenGLPickRenderer.ERenderMode.RM_RENDER == eRenderMode
+                    && OpenGLPickRenderer.ERenderElementType.RET_POINT.getValue() == m_aiName[1] )
+            {
+                setPointSize( 10.0f );
+                setColor( 1.0f, 0.0f, 1.0f, 1.0f );
+                bindVertices( model );
+                drawArrays( GLES30.GL_POINTS, m_aiName[2], 1 );
+            }
+        }
+
+        endModel();
+    }
+
+    // 「要素タイプの優先順位は、点、線、面
+    // 　同じ要素タイプの場合は、ピック領域の中心に近いものが優先」
+    //  に従い、ピックピクセルを一つに絞る（ピックしない要素タイプは除く）
+    protected void DecidePickNameArray( int[][] aaiName )
+    {
+        int  iId_selected          = -1;
+        int  iElementType_selected = OpenGLPickRenderer.ERenderElementType.RET_FACE.getValue() + 1;
+        long lSquareDist_selected  = ( 2 + PICKREGIONOFFSET ) * ( 2 + PICKREGIONOFFSET ) + ( 2 + PICKREGIONOFFSET ) * ( 2 + PICKREGIONOFFSET );
+        long lSquareDist_current;
+        int  x;
+        int  y;
+        for( int i = 0; i < aaiName.length; ++i )
+        {
+            if( 0 == aaiName[i][1] )
+            { // モデルの外側
+                continue;
+            }
+            if( !isPickElement( toElementType( aaiName[i][1] ) ) )
+            { // ピックしない要素タイプ
+                continue;
+            }
+            if( iElementType_selected < aaiName[i][1] )
+            { // 要素タイプ的に、優先順位が低い
+                continue;
+            }
+            if( iElementType_selected > aaiName[i][1] )
+            { // 要素タイプ的に、優先順位が高い
+                iId_selected = i;
+                iElementType_selected = aaiName[i][1];
+                x = i % ( 1 + 2 * PICKREGIONOFFSET ) - PICKREGIONOFFSET;
+                y = i / ( 1 + 2 * PICKREGIONOFFSET ) - PICKREGIONOFFSET;
+                lSquareDist_selected = x * x + y * y;
+                continue;
+            }
+            // 要素タイプ的に、優先順位が同じ場合は、ピック領域の中心に近いものが優先度が高い。
+            x = i % ( 1 + 2 * PICKREGIONOFFSET ) - PICKREGIONOFFSET;
+            y = i / ( 1 + 2 * PICKREGIONOFFSET ) - PICKREGIONOFFSET;
+            lSquareDist_current = x * x + y * y;
+            if( lSquareDist_selected > lSquareDist_current )
+            {
+                iId_selected = i;
+                iElementType_selected = aaiName[i][1];
+                lSquareDist_selected = lSquareDist_current;
+            }
+        }
+
+        if( -1 != iId_selected )
+        { // 名前列メンバの更新
+            System.arraycopy( aaiName[iId_selected], 0, m_aiName, 0, NAMEARRAYSIZE );
+        }
+    }
+
+    private static OpenGLPickRenderer.ERenderElementType toElementType( int iValue )
+    {
+        for( OpenGLPickRenderer.ERenderElementType eElementType : OpenGLPickRenderer.ERenderElementType.values() )
+        {
+            if( eElementType.getValue() == iValue )
+            {
+                return eElementType;
+            }
+        }
+        return null;
+    }
+
+    public boolean doPicking( float fX, float fY )
+    {
+        Model model = getModel();
+        if( null == model )
+        {
+            return false;
+        }
+
+        // 読み込み中のモデルは、ピック用の配列が要素数に追いついていないのでピックしない
+        if( model instanceof AppendableModel
+                && !( (AppendableModel)model ).isComplete() )
+        {
+            return false;
+        }
+        // 要素の数が、要素番号の色で区別できる数を超えるモデルはピックしない（別の要素を選んでしまう）
+        if( !PickBufferBuilder.isElementIdPickable( model ) )
+        {
+            return false;
+        }
+        // ピック用の配列の色は使わず、シェーダーで頂点の番号から色を作る（座標値だけを、一つの配列から読む）
+        m_layoutPick = PickBufferBuilder.getElementPickLayout( model );
+        if( null == m_btbTrianglePick )
+        {
+            long lNanosStart = System.nanoTime();
+            m_btbTrianglePick = PickBufferBuilder.makeTrianglePickBuffer( model, m_layoutPick );
+            DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_TRIANGLE_PICK, lNanosStart, m_btbTrianglePick.capacity() );
+        }
+        if( null == m_btbEdgePick
+                && isRenderElement( OpenGLPickRenderer.ERenderElementType.RET_LINE ) )
+        {
+            long lNanosStart = System.nanoTime();
+            m_btbEdgePick = PickBufferBuilder.makeEdgePickBuffer( model, m_layoutPick );
+            DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_EDGE_PICK, lNanosStart, m_btbEdgePick.capacity() );
+        }
+
+        // オフスクリーン描画用のフレームバッファ（色と深度のレンダーバッファ）
+        int[] aiRenderBuffer = { 0, 0 };
+        GLES30.glGenRenderbuffers( 2, aiRenderBuffer, 0 );
+        GLES30.glBindRenderbuffer( GLES30.GL_RENDERBUFFER, aiRenderBuffer[0] );
+        GLES30.glRenderbufferStorage( GLES30.GL_RENDERBUFFER, GLES30.GL_RGBA8, getWidth(), getHeight() );
+        GLES30.glBindRenderbuffer( GLES30.GL_RENDERBUFFER, aiRenderBuffer[1] );
+        GLES30.glRenderbufferStorage( GLES30.GL_RENDERBUFFER, GLES30.GL_DEPTH_COMPONENT16, getWidth(), getHeight() );
+        GLES30.glBindRenderbuffer( GLES30.GL_RENDERBUFFER, 0 );
+
+        int[] aiFrameBuffer = { 0 };
+        GLES30.glGenFramebuffers( 1, aiFrameBuffer, 0 );
+        GLES30.glBindFramebuffer( GLES30.GL_FRAMEBUFFER, aiFrameBuffer[0] );
+        GLES30.glFramebufferRenderbuffer( GLES30.GL_FRAMEBUFFER, GLES30.GL_COLOR_ATTACHMENT0, GLES30.GL_RENDERBUFFER, aiRenderBuffer[0] );
+        GLES30.glFramebufferRenderbuffer( GLES30.GL_FRAMEBUFFER, GLES30.GL_DEPTH_ATTACHMENT, GLES30.GL_RENDERBUFFER, aiRenderBuffer[1] );
+
+        int iCountHit = 0;
+        if( GLES30.GL_FRAMEBUFFER_COMPLETE == GLES30.glCheckFramebufferStatus( GLES30.GL_FRAMEBUFFER ) )
+        {
+            int[][] aaiName = new int[( 1 + 2 * PICKREGIONOFFSET ) * ( 1 + 2 * PICKREGIONOFFSET )][];
+            for( int i = 0; i < aaiName.length; ++i )
+            {
+                aaiName[i] = new int[NAMEARRAYSIZE];
+            }
+            // ピック領域の色の取得（１ピクセルは、4つのbyteデータ(r,g,b,a)）
+            ByteBuffer btbPixel = OpenGLBaseRenderer.makeByteBuffer( new byte[4 * aaiName.length] );
+
+            GLES30.glDisable( GLES30.GL_DITHER ); // ディザリング（要素番号の色の下位ビットが変わらないように）
+
+            // ピック描画（要素タイプ別）
+            GLES30.glClear( GLES30.GL_COLOR_BUFFER_BIT | GLES30.GL_DEPTH_BUFFER_BIT );
+            renderModel( OpenGLPickRenderer.ERenderMode.RM_PICK_ELEMENTTYPE );
+            readPickRegion( fX, fY, btbPixel );
+            // ピック領域の色をピック名配列に変換
+            for( int i = 0; i < aaiName.length; ++i )
+            {
+                if( (byte)255 == btbPixel.get( i * 4 + 0 ) )
+                { // 面
+                    aaiName[i][1] = OpenGLPickRenderer.ERenderElementType.RET_FACE.getValue();
+                    ++iCountHit;
+                }
+                else if( (byte)255 == btbPixel.get( i * 4 + 1 ) )
+                { // 線
+                    aaiName[i][1] = OpenGLPickRenderer.ERenderElementType.RET_LINE.getValue();
+                    ++iCountHit;
+                }
+                else if( (byte)255 == btbPixel.get( i * 4 + 2 ) )
+                { // 点
+                    aaiName[i][1] = OpenGLPickRenderer.ERenderElementType.RET_POINT.getValue();
+                    ++iCountHit;
+                }
+            }
+            if( 0 != iCountHit )
+            { // ヒットあり
+                // ピック描画（要素番号別）
+                GLES30.glClear( GLES30.GL_COLOR_BUFFER_BIT | GLES30.GL_DEPTH_BUFFER_BIT );
+                renderModel( OpenGLPickRenderer.ERenderMode.RM_PICK_ELEMENTID );
+                readPickRegion( fX, fY, btbPixel );
+                // 色を番号に変換し、名前配列にセット
+                for( int i = 0; i < aaiName.length; ++i )
+                {
+                    aaiName[i][2] = PickBufferBuilder.rgb2index( btbPixel.get( i * 4 + 0 ), btbPixel.get( i * 4 + 1 ), btbPixel.get( i * 4 + 2 ) );
+                }
+
+                // ピックピクセルを一つに絞って、名前列メンバの更新
+                DecidePickNameArray( aaiName );
+            }
+        }
+
+        // ウィンドウシステムが提供するフレームバッファに差し替え
+        GLES30.glBindFramebuffer( GLES30.GL_FRAMEBUFFER, 0 );
+        GLES30.glEnable( GLES30.GL_DITHER );
+
+        // クリーンアップ
+        GLES30.glDeleteFramebuffers( 1, aiFrameBuffer, 0 );
+        GLES30.glDeleteRenderbuffers( 2, aiRenderBuffer, 0 );
+
+        return ( 0 != iCountHit );
+    }
+
+    private void readPickRegion( float fX, float fY, ByteBuffer btbPixel )
+    {
+        GLES30.glReadPixels( (int)fX - PICKREGIONOFFSET,
+                             getHeight() - (int)fY - PICKREGIONOFFSET,
+                             1 + 2 * PICKREGIONOFFSET,
+                             1 + 2 * PICKREGIONOFFSET,
+                             GLES30.GL_RGBA,
+                             GLES30.GL_UNSIGNED_BYTE,
+                             btbPixel.position( 0 ) );
+    }
+}
@@ -0,0 +1,172 @@
+package com.hiramine.modelviewertutorial;
+
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// OpenGL ES 3の頂点配列オブジェクト（VAO）とバッファオブジェクト（VBO）の表
+// ・部分メッシュごとに、頂点配列のVBOと番号配列のVBOを結びつけたVAOを作る。描画時は、VAOをバインドするだけ
+// ・頂点配列は、VertexLayoutの並びで、座標値を位置の属性に結びつける（法線を持つ並びで、法線の属性の指定がある場合は、法線も結びつける）
+// ・VBOは、クライアント側のバッファごとに一度だけ転送する（キーはバッファの同一性。同じ頂点配列を共有する部分メッシュは、同じVBOを使う）
+// ・転送後にバッファの内容を書き換えても反映されないので、内容の変わらないバッファだけを登録する
+// ・GLスレッドからだけ使う
+public class GLES3VertexArrayCache
+{
+    // メンバー変数
+    private final Map<Buffer, Integer> m_mapBufferObject = new IdentityHashMap<>();    // クライアント側のバッファ → VBO
+    private final Map<Object, Integer> m_mapVertexArray  = new IdentityHashMap<>();    // 部分メッシュ、または頂点配列のバッファ → VAO
+    private long m_lBytes;    // 転送したバイト数の合計
+
+    // アクセサ
+    public int getBufferObjectCount()
+    {
+        return m_mapBufferObject.size();
+    }
+
+    public long getBytes()
+    {
+        return m_lBytes;
+    }
+
+    // 部分メッシュのVAO（頂点配列と番号配列。なければ、作成する）
+    public int getVertexArray( SubMesh submesh, int iAttribPosition )
+    {
+        return getVertexArray( submesh, iAttribPosition, -1 );
+    }
+
+    // 部分メッシュのVAO（頂点配列の法線をiAttribNormalの属性に結びつける。-1の場合は、結びつけない）
+    public int getVertexArray( SubMesh submesh, int iAttribPosition, int iAttribNormal )
+    {
+        Integer iName = m_mapVertexArray.get( submesh );
+        if( null != iName )
+        {
+            return iName;
+        }
+        int iBufferVertex = getBufferObject( GLES30.GL_ARRAY_BUFFER, submesh.getVertexBuffer() );
+        int iBufferIndex  = getBufferObject( GLES30.GL_ELEMENT_ARRAY_BUFFER, submesh.getIndexBuffer() );
+
+        int iVertexArray = createVertexArray( iBufferVertex, submesh.getVertexLayout(), iAttribPosition, iAttribNormal );
+        GLES30.glBindVertexArray( iVertexArray );
+        GLES30.glBindBuffer( GLES30.GL_ELEMENT_ARRAY_BUFFER, iBufferIndex );    // 番号配列のバインドは、VAOの状態
+        GLES30.glBindVertexArray( 0 );
+
+        m_mapVertexArray.put( submesh, iVertexArray );
+        return iVertexArray;
+    }
+
+    // 頂点配列だけのVAO（点や、ピック用の配列をglDrawArrays()で描く時。なければ、作成する）
+    public int getVertexArray( Buffer bufVertex, VertexLayout layout, int iAttribPosition )
+    {
+        Integer iName = m_mapVertexArray.get( bufVertex );
+        if( null != iName )
+        {
+            return iName;
+        }
+        int iVertexArray = createVertexArray( getBufferObject( GLES30.GL_ARRAY_BUFFER, bufVertex ), layout, iAttribPosition, -1 );
+        m_mapVertexArray.put( bufVertex, iVertexArray );
+        return iVertexArray;
+    }
+
+    // バッファに対応するVBO（なければ、作成して転送する）
+    public int getBufferObject( int iTarget, Buffer buf )
+    {
+        Integer iName = m_mapBufferObject.get( buf );
+        if( null != iName )
+        {
+            return iName;
+        }
+
+        int[] aiName = new int[1];
+        GLES30.glGenBuffers( 1, aiName, 0 );
+        int iBytes = BufferObjectCache.getByteSize( buf );
+        GLES30.glBindBuffer( iTarget, aiName[0] );
+        GLES30.glBufferData( iTarget, iBytes, buf.position( 0 ), GLES30.GL_STATIC_DRAW );
+        GLES30.glBindBuffer( iTarget, 0 );
+
+        m_mapBufferObject.put( buf, aiName[0] );
+        m_lBytes += iBytes;
+        return aiName[0];
+    }
+
+    // 部分メッシュのVAOと、頂点配列と番号配列のVBOの削除（部分メッシュが作り直されて、使わなくなった時）
+    public void remove( SubMesh submesh )
+    {
+        Integer iVertexArray = m_mapVertexArray.remove( submesh );
+        if( null != iVertexArray )
+        {
+            GLES30.glDeleteVertexArrays( 1, new int[]{ iVertexArray }, 0 );
+        }
+        removeBufferObject( submesh.getVertexBuffer() );
+        removeBufferObject( submesh.getIndexBuffer() );
+    }
+
+    private void removeBufferObject( Buffer buf )
+    {
+        Integer iName = m_mapBufferObject.remove( buf );
+        if( null == iName )
+        {
+            return;
+        }
+        GLES30.glDeleteBuffers( 1, new int[]{ iName }, 0 );
+        m_lBytes -= BufferObjectCache.getByteSize( buf );
+    }
+
+    // 全てのVAOとVBOの削除
+    public void clear()
+    {
+        if( !m_mapVertexArray.isEmpty() )
+        {
+            int[] aiName = toArray( m_mapVertexArray );
+            GLES30.glDeleteVertexArrays( aiName.length, aiName, 0 );
+        }
+        if( !m_mapBufferObject.isEmpty() )
+        {
+            int[] aiName = toArray( m_mapBufferObject );
+            GLES30.glDeleteBuffers( aiName.length, aiName, 0 );
+        }
+        invalidate();
+    }
+
+    // 全てのVAOとVBOを忘れる（GLコンテキストが作り直された時。古い名前は、コンテキストと一緒に破棄済み）
+    public void invalidate()
+    {
+        m_mapVertexArray.clear();
+        m_mapBufferObject.clear();
+        m_lBytes = 0;
+    }
+
+    // 頂点配列のVBOの座標値を、位置の属性に結びつけたVAOの作成
+    // 量子化したモデルのshortの座標値は、正規化せずにそのままfloatにする（縮尺と中心は、モデル行列に掛ける）
+    // byteの法線は、正規化して-1～1にする
+    private static int createVertexArray( int iBufferVertex, VertexLayout layout, int iAttribPosition, int iAttribNormal )
+    {
+        int[] aiName = new int[1];
+        GLES30.glGenVertexArrays( 1, aiName, 0 );
+        GLES30.glBindVertexArray( aiName[0] );
+        GLES30.glBindBuffer( GLES30.GL_ARRAY_BUFFER, iBufferVertex );
+        GLES30.glVertexAttribPointer( iAttribPosition, 3, layout.getPositionType(), false, layout.getStride(), layout.getPositionOffset() );
+        GLES30.glEnableVertexAttribArray( iAttribPosition );
+        if( 0 <= iAttribNormal
+                && layout.hasNormal() )
+        {
+            GLES30.glVertexAttribPointer( iAttribNormal, 3, GLES30.GL_BYTE, true, layout.getStride(), layout.getNormalOffset() );
+            GLES30.glEnableVertexAttribArray( iAttribNormal );
+        }
+        GLES30.glBindVertexArray( 0 );
+        GLES30.glBindBuffer( GLES30.GL_ARRAY_BUFFER, 0 );
+        return aiName[0];
+    }
+
+    private static int[] toArray( Map<?, Integer> map )
+    {
+        int[] aiName = new int[map.size()];
+        int   i      = 0;
+        for( Integer iName : map.values() )
+        {
+            aiName[i++] = iName;
+        }
+        return aiName;
+    }
+}
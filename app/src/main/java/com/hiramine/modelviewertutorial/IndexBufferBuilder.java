@@ -0,0 +1,171 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+
+// 番号配列のダイレクトバッファの作成（ヒープのint配列を経由せずに、番号を直接ダイレクトバッファに追加していく）
+// ・バッファは共有のアリーナから確保し、伸長したり広げたりした後の古いバッファはアリーナに返す
+// ・16ビットの番号配列（ShortBuffer）で開始し、16ビットで表せない番号が追加された時に、一度だけ32ビット（IntBuffer）に広げる
+// ・16ビットで表す番号の上限は、部分メッシュの頂点の数の上限に合わせる（頂点の数が65535以下のモデルは16ビット）
+// ・build()で、番号の数ちょうどの容量のバッファを取り出す。取り出した後は、このビルダーは使えない
+public class IndexBufferBuilder
+{
+    // 定数
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final int MAX_SHORT_INDEX  = SubMeshSplitter.MAX_VERTEX_COUNT - 1;    // 16ビットの番号配列で使う番号の上限
+
+    // メンバー変数
+    private ShortBuffer m_sbIndex;    // 16ビットの番号配列（32ビットに広げた後はnull）
+    private IntBuffer   m_ibIndex;    // 32ビットの番号配列（広げるまではnull）
+    private int         m_iSize;    // 番号の数
+
+    // コンストラクタ
+    public IndexBufferBuilder( int iInitialCapacity )
+    {
+        m_sbIndex = DirectBufferArena.getShared().acquireShorts( Math.max( iInitialCapacity, MINIMUM_CAPACITY ) );
+        m_iSize = 0;
+    }
+
+    // アクセサ
+    public int size()
+    {
+        return m_iSize;
+    }
+
+    public int capacity()
+    {
+        return ( null != m_ibIndex ) ? m_ibIndex.capacity() : m_sbIndex.capacity();
+    }
+
+    // 番号配列の型（GL_UNSIGNED_SHORTまたはGL_UNSIGNED_INT）
+    public int getIndexType()
+    {
+        return ( null != m_ibIndex ) ? OpenGLBaseRenderer.GL_UNSIGNED_INT : GL10.GL_UNSIGNED_SHORT;
+    }
+
+    public int get( int i )
+    {
+        return ( null != m_ibIndex ) ? m_ibIndex.get( i ) : ( m_sbIndex.get( i ) & 0xFFFF );
+    }
+
+    // 番号の追加
+    public void add( int iIndex )
+    {
+        ensureCapacity( m_iSize + 1 );
+        put( m_iSize++, iIndex );
+    }
+
+    // i番目の番号の設定（番号の数を超える位置は、番号の数をそこまで伸ばす）
+    public void set( int i, int iIndex )
+    {
+        ensureCapacity( i + 1 );
+        put( i, iIndex );
+        m_iSize = Math.max( m_iSize, i + 1 );
+    }
+
+    // 容量の確保（足りない場合は1.5倍ずつ伸長）
+    public void ensureCapacity( int iCapacity )
+    {
+        int iCapacityOld = capacity();
+        if( iCapacityOld >= iCapacity )
+        {
+            return;
+        }
+        int iNewCapacity = Math.max( iCapacityOld + ( iCapacityOld >> 1 ), iCapacity );
+        if( null != m_ibIndex )
+        {
+            m_ibIndex = copyOf( m_ibIndex, m_iSize, iNewCapacity );
+        }
+        else
+        {
+            m_sbIndex = copyOf( m_sbIndex, m_iSize, iNewCapacity );
+        }
+    }
+
+    // 番号の数ちょうどの容量のバッファの取り出し（ShortBufferまたはIntBuffer）
+    public Buffer build()
+    {
+        Buffer bufIndex;
+        if( null != m_ibIndex )
+        {
+            bufIndex = ( m_ibIndex.capacity() == m_iSize ) ? m_ibIndex : copyOf( m_ibIndex, m_iSize, m_iSize );
+        }
+        else
+        {
+            bufIndex = ( m_sbIndex.capacity() == m_iSize ) ? m_sbIndex : copyOf( m_sbIndex, m_iSize, m_iSize );
+        }
+        m_sbIndex = null;
+        m_ibIndex = null;
+        bufIndex.position( 0 );
+        return bufIndex;
+    }
+
+    private void put( int i, int iIndex )
+    {
+        if( null == m_ibIndex && MAX_SHORT_INDEX < iIndex )
+        {
+            widen();
+        }
+        if( null != m_ibIndex )
+        {
+            m_ibIndex.put( i, iIndex );
+        }
+        else
+        {
+            m_sbIndex.put( i, (short)iIndex );
+        }
+    }
+
+    // 32ビットの番号配列に広げる（容量はそのまま）
+    private void widen()
+    {
+        IntBuffer ibIndex = DirectBufferArena.getShared().acquireInts( m_sbIndex.capacity() );
+        for( int i = 0; i < m_iSize; i++ )
+        {
+            ibIndex.put( i, m_sbIndex.get( i ) & 0xFFFF );
+        }
+        DirectBufferArena.getShared().release( m_sbIndex );
+        m_ibIndex = ibIndex;
+        m_sbIndex = null;
+    }
+
+    // ネイティブのバイトオーダーのダイレクトバッファの確保（アリーナを使わない。いつ不要になるか決まらないバッファ用）
+    static ShortBuffer allocateShort( int iCapacity )
+    {
+        return ByteBuffer.allocateDirect( iCapacity * 2 ).order( ByteOrder.nativeOrder() ).asShortBuffer();
+    }
+
+    static IntBuffer allocateInt( int iCapacity )
+    {
+        return ByteBuffer.allocateDirect( iCapacity * 4 ).order( ByteOrder.nativeOrder() ).asIntBuffer();
+    }
+
+    private static ShortBuffer copyOf( ShortBuffer sbIndex, int iCount, int iCapacity )
+    {
+        ShortBuffer sbSource = sbIndex.duplicate();
+        sbSource.position( 0 );
+        sbSource.limit( iCount );
+        ShortBuffer sbCopy = DirectBufferArena.getShared().acquireShorts( iCapacity );
+        sbCopy.put( sbSource );
+        sbCopy.position( 0 );
+        DirectBufferArena.getShared().release( sbIndex );
+        return sbCopy;
+    }
+
+    private static IntBuffer copyOf( IntBuffer ibIndex, int iCount, int iCapacity )
+    {
+        IntBuffer ibSource = ibIndex.duplicate();
+        ibSource.position( 0 );
+        ibSource.limit( iCount );
+        IntBuffer ibCopy = DirectBufferArena.getShared().acquireInts( iCapacity );
+        ibCopy.put( ibSource );
+        ibCopy.position( 0 );
+        DirectBufferArena.getShared().release( ibIndex );
+        return ibCopy;
+    }
+}
@@ -0,0 +1,93 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+
+// インターリーブした頂点配列の作成（座標値、法線、色を、１頂点ずつまとめて一つのバッファに詰める）
+// ・描画の各パスが、頂点ごとに離れた複数の配列を読むのではなく、一つの配列を連続して読むようにする
+// ・色には、ピック用の頂点の番号の色を入れる（点の要素番号別のピック描画で、そのまま使う）
+// ・座標値は、モデルの頂点の座標値の配列に格納されている値のまま（量子化したモデルは、量子化した値）
+// ・配列は共有のアリーナから借りるので、使い終わったらアリーナに返す
+public class InterleavedVertexBuilder
+{
+    // モデルの頂点の、インターリーブした配列の作成（頂点ごとに、座標値、頂点の番号の色）
+    public static ByteBuffer build( Model model, VertexLayout layout )
+    {
+        int        iCountVertex   = model.getVertexCount();
+        ByteBuffer btbInterleaved = DirectBufferArena.getShared().acquireBytes( iCountVertex * layout.getStride() );    // ヒープの配列を経由せずに、直接詰める
+        byte[]     abtRGB         = { 0, 0, 0 };
+        for( int i = 0; i < iCountVertex; i++ )
+        {
+            putVertex( btbInterleaved, layout, i, model, i, 0, i, abtRGB );
+        }
+        return btbInterleaved;
+    }
+
+    // btbInterleavedのiRecord番目に、モデルのiIndexVertex番目の頂点の座標値と、法線、iId番の色を詰める
+    // 法線は、並びが法線を持つ場合だけ、iNormal（NormalGenerator.packNormal()で詰めた値）から詰める
+    static void putVertex( ByteBuffer btbInterleaved, VertexLayout layout, int iRecord, Model model, int iIndexVertex, int iNormal, int iId, byte[] abtRGB )
+    {
+        int    iBase     = iRecord * layout.getStride();
+        Buffer bufVertex = model.getVertexBuffer();
+        if( GL10.GL_SHORT == layout.getPositionType() )
+        {
+            ShortBuffer sbVertex = (ShortBuffer)bufVertex;
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                btbInterleaved.putShort( iBase + layout.getPositionOffset() + i3 * 2, sbVertex.get( iIndexVertex * 3 + i3 ) );
+            }
+        }
+        else
+        {
+            FloatBuffer fbVertex = (FloatBuffer)bufVertex;
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                btbInterleaved.putFloat( iBase + layout.getPositionOffset() + i3 * 4, fbVertex.get( iIndexVertex * 3 + i3 ) );
+            }
+        }
+        if( layout.hasNormal() )
+        {
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                btbInterleaved.put( iBase + layout.getNormalOffset() + i3, NormalGenerator.unpackNormal( iNormal, i3 ) );
+            }
+            btbInterleaved.put( iBase + layout.getNormalOffset() + 3, (byte)0 );
+        }
+        if( layout.hasColor() )
+        {
+            PickBufferBuilder.index2rgb( iId, abtRGB );
+            btbInterleaved.put( iBase + layout.getColorOffset() + 0, abtRGB[0] );
+            btbInterleaved.put( iBase + layout.getColorOffset() + 1, abtRGB[1] );
+            btbInterleaved.put( iBase + layout.getColorOffset() + 2, abtRGB[2] );
+            btbInterleaved.put( iBase + layout.getColorOffset() + 3, (byte)255 );
+        }
+    }
+
+    // インターリーブした配列の、iRecord番目の頂点の座標値
+    public static float getPosition( ByteBuffer btbInterleaved, VertexLayout layout, int iRecord, int i3 )
+    {
+        int iPosition = iRecord * layout.getStride() + layout.getPositionOffset();
+        if( GL10.GL_SHORT == layout.getPositionType() )
+        {
+            return btbInterleaved.getShort( iPosition + i3 * 2 );
+        }
+        return btbInterleaved.getFloat( iPosition + i3 * 4 );
+    }
+
+    // インターリーブした配列の、iRecord番目の頂点の法線のi3番目の成分（-1～1）
+    public static float getNormal( ByteBuffer btbInterleaved, VertexLayout layout, int iRecord, int i3 )
+    {
+        return btbInterleaved.get( iRecord * layout.getStride() + layout.getNormalOffset() + i3 ) / (float)VertexLayout.NORMAL_SCALE;
+    }
+
+    // インターリーブした配列の、iRecord番目の頂点の色から求めた番号
+    public static int getId( ByteBuffer btbInterleaved, VertexLayout layout, int iRecord )
+    {
+        int iColor = iRecord * layout.getStride() + layout.getColorOffset();
+        return PickBufferBuilder.rgb2index( btbInterleaved.get( iColor ), btbInterleaved.get( iColor + 1 ), btbInterleaved.get( iColor + 2 ) );
+    }
+}
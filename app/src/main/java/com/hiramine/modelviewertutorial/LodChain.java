@@ -0,0 +1,186 @@
+package com.hiramine.modelviewertutorial;
+
+// モデルの詳細度の段階（元のモデルと、それを簡略化したモデルの列）
+// ・段階0は元のモデル。段階1からは、三角形の数が元のモデルのLEVEL_RATIOSの割合のモデル（前の段階から、続けて簡略化する）
+// ・段階ごとに、簡略化の誤差の目安（元の座標系の長さ）を持つ。描画する時は、画面上の誤差が１ピクセル未満の、最も粗い段階を選ぶ
+// ・最も粗い段階でも、トラッキング中の描画の三角形の数の上限を超える場合は、上限まで簡略化した段階を最後に加える
+// ・簡略化したモデルの頂点の座標値は、元のモデルと同じ縮尺と中心で量子化するので、同じモデル行列で描画できる
+// ・簡略化したモデルも、元のモデルと同じく、頂点キャッシュの効率のために三角形と頂点を並べ替える
+// ・読み込みスレッドで作成してモデルにセットし、GLスレッドは、セットされた後の描画から使う
+// ・簡略化の作業配列が、空きヒープのMAX_HEAP_RATIOの割合を超えるモデルは、段階を作らない（元のモデルだけで描画する）
+public class LodChain
+{
+    // 定数
+    public static final float[] LEVEL_RATIOS                        = { 0.5f, 0.25f, 0.1f };    // 段階ごとの、元のモデルに対する三角形の数の割合
+    public static final int     MIN_TRIANGLE_COUNT                  = 20000;    // 三角形の数がこれより少ないモデルは、トラッキング中の描画の上限を超えなければ、段階を作らない
+    public static final float   MAX_SCREEN_ERROR                    = 1.0f;    // 画面上の誤差の上限（ピクセル）
+    public static final int     DEFAULT_INTERACTIVE_TRIANGLE_BUDGET = 100000;    // トラッキング中の描画の三角形の数の上限の既定値
+    public static final float   MAX_HEAP_RATIO                      = 0.5f;    // 簡略化の作業配列に使う、空きヒープの割合の上限（残りは、簡略化したモデルの作成などに使う）
+
+    // メンバー変数
+    private final Model[] m_amodelLevel;    // 段階ごとのモデル（段階0は元のモデル）
+    private final float[] m_afError;    // 段階ごとの誤差の目安（段階0は0）
+    private final long    m_lBytes;    // 簡略化したモデルの配列のバイト数
+
+    private LodChain( Model[] amodelLevel, float[] afError, long lBytes )
+    {
+        m_amodelLevel = amodelLevel;
+        m_afError = afError;
+        m_lBytes = lBytes;
+    }
+
+    // 段階の作成（三角形が少なく、トラッキング中の描画の三角形の数の上限iTriangleBudget以下のモデルや、大きすぎるモデル、中止された場合はnull）
+    public static LodChain build( Model model, int iTriangleBudget, MeshSimplifier.CancelSignal signal )
+    {
+        Runtime runtime = Runtime.getRuntime();
+        return build( model, iTriangleBudget, signal, runtime.maxMemory() - ( runtime.totalMemory() - runtime.freeMemory() ) );
+    }
+
+    // lHeapFreeは、空きヒープのバイト数
+    static LodChain build( Model model, int iTriangleBudget, MeshSimplifier.CancelSignal signal, long lHeapFree )
+    {
+        int iCountTriangle = model.getTriangleCount();
+        if( MIN_TRIANGLE_COUNT > iCountTriangle
+            && iTriangleBudget >= iCountTriangle )
+        {
+            return null;
+        }
+        long lHeapBytes = MeshSimplifier.estimateHeapBytes( model.getVertexCount(), iCountTriangle );
+        if( lHeapFree * MAX_HEAP_RATIO < lHeapBytes )
+        {
+            AppLog.d( "LodChain", "skipped, " + iCountTriangle + " triangles : " + lHeapBytes + " bytes of heap needed, " + lHeapFree + " bytes free" );
+            return null;
+        }
+        long           lNanosStart = System.nanoTime();
+        MeshSimplifier simplifier  = new MeshSimplifier( model );
+        Model[]        amodelLevel = new Model[LEVEL_RATIOS.length + 2];
+        float[]        afError     = new float[LEVEL_RATIOS.length + 2];
+        long           lBytes      = 0;
+        int            iCountLevel = 1;
+        amodelLevel[0] = model;
+        try
+        {
+            for( int i = 0; i <= LEVEL_RATIOS.length; i++ )
+            {
+                int iTargetTriangle;
+                if( LEVEL_RATIOS.length > i )
+                {
+                    iTargetTriangle = (int)( iCountTriangle * LEVEL_RATIOS[i] );
+                }
+                else if( iTriangleBudget < amodelLevel[iCountLevel - 1].getTriangleCount() )
+                { // トラッキング中の描画の段階
+                    iTargetTriangle = iTriangleBudget;
+                }
+                else
+                {
+                    break;
+                }
+                if( !simplifier.simplify( iTargetTriangle, signal ) )
+                {
+                    release( amodelLevel, iCountLevel );
+                    return null;
+                }
+                if( simplifier.getTriangleCount() >= amodelLevel[iCountLevel - 1].getTriangleCount() )
+                { // これ以上縮約できない
+                    break;
+                }
+                Model modelLevel = simplifier.buildModel();
+                modelLevel.optimizeVertexCache();
+                amodelLevel[iCountLevel] = modelLevel;
+                afError[iCountLevel] = simplifier.getError();
+                lBytes += getBytes( modelLevel );
+                AppLog.d( "LodChain", "level " + iCountLevel + " : " + modelLevel.getTriangleCount() + " triangles, error " + afError[iCountLevel] );
+                iCountLevel++;
+            }
+        }
+        catch( OutOfMemoryError e )
+        { // 作成済みの段階を返してから、呼び出し元に伝える
+            release( amodelLevel, iCountLevel );
+            throw e;
+        }
+        if( 1 == iCountLevel )
+        {
+            return null;
+        }
+        if( iCountLevel < amodelLevel.length )
+        {
+            Model[] amodel = new Model[iCountLevel];
+            float[] af     = new float[iCountLevel];
+            System.arraycopy( amodelLevel, 0, amodel, 0, iCountLevel );
+            System.arraycopy( afError, 0, af, 0, iCountLevel );
+            amodelLevel = amodel;
+            afError = af;
+        }
+        DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_LOD_CHAIN, lNanosStart, lBytes );
+        return new LodChain( amodelLevel, afError, lBytes );
+    }
+
+    // 簡略化したモデルの配列のバイト数（頂点の座標値と、三角形の番号配列）
+    private static long getBytes( Model model )
+    {
+        long lBytes = model.getVertexCount() * 3L * ( model.isQuantized() ? 2 : 4 );
+        return lBytes + model.getTriangleCount() * 3L * ( ( OpenGLBaseRenderer.GL_UNSIGNED_INT == model.getIndexType() ) ? 4 : 2 );
+    }
+
+    // アクセサ
+    // 段階の数（元のモデルを含む）
+    public int getLevelCount()
+    {
+        return m_amodelLevel.length;
+    }
+
+    public Model getModel( int iLevel )
+    {
+        return m_amodelLevel[iLevel];
+    }
+
+    public float getError( int iLevel )
+    {
+        return m_afError[iLevel];
+    }
+
+    public long getBytes()
+    {
+        return m_lBytes;
+    }
+
+    // 画面上の誤差が１ピクセル未満の、最も粗い段階（fPixelPerUnitは、元の座標系の長さ１の、画面上のピクセル数）
+    public int selectLevel( float fPixelPerUnit )
+    {
+        for( int iLevel = m_afError.length - 1; 0 < iLevel; iLevel-- )
+        {
+            if( MAX_SCREEN_ERROR > m_afError[iLevel] * fPixelPerUnit )
+            {
+                return iLevel;
+            }
+        }
+        return 0;
+    }
+
+    // 三角形の数がiTriangleBudget以下の、最も細かい段階（どの段階も上限を超える場合は、最も粗い段階）
+    public int selectLevelWithin( int iTriangleBudget )
+    {
+        for( int iLevel = 0; iLevel < m_amodelLevel.length - 1; iLevel++ )
+        {
+            if( iTriangleBudget >= m_amodelLevel[iLevel].getTriangleCount() )
+            {
+                return iLevel;
+            }
+        }
+        return m_amodelLevel.length - 1;
+    }
+
+    // 簡略化したモデルの参照の解除（元のモデルのバッファをアリーナに返す時に、元のモデルから呼ぶ）
+    void release()
+    {
+        release( m_amodelLevel, m_amodelLevel.length );
+    }
+
+    private static void release( Model[] amodelLevel, int iCountLevel )
+    {
+        for( int iLevel = 1; iLevel < iCountLevel; iLevel++ )
+        {
+            amodelLevel[iLevel].release();
+        }
+    }
+}
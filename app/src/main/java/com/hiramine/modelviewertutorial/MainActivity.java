@@ -6,6 +6,7 @@ import androidx.core.content.ContextCompat;
 
 
 import android.Manifest;
+import android.content.ComponentCallbacks2;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
@@ -16,6 +17,7 @@ import android.view.MenuItem;
 import android.widget.Toast;
 
 import java.io.File;
+import java.util.Locale;
 import java.util.Objects;
 
 public class MainActivity extends AppCompatActivity {
@@ -26,7 +28,6 @@ public class MainActivity extends AppCompatActivity {
 
     //定義
     private ModelViewerView m_modelviewerview;
-    private ModelViewerRenderer mRenderer;
     private String m_strInitialDir = Environment.getExternalStorageDirectory().getPath();    // 初期フォルダ
 
 
@@ -34,6 +35,9 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate( Bundle savedInstanceState )
     {
+        // ログはlogcatに出力する（ビューの作成より前にセットする）
+        AppLog.setSink( new AndroidLogSink() );
+
         super.onCreate( savedInstanceState );
         setContentView( R.layout.activity_main );
 
@@ -41,6 +45,60 @@ public class MainActivity extends AppCompatActivity {
 
         m_modelviewerview = findViewById( R.id.glview );
 
+        // モデルの読み込み状況の表示
+        m_modelviewerview.getModelLoadService().setCallback( new ModelLoadService.Callback()
+        {
+            @Override
+            public void onLoadProgress( String strPath, long lBytesRead, long lBytesTotal )
+            {
+                int iPercent = ( 0 == lBytesTotal ) ? 100 : (int)( lBytesRead * 100 / lBytesTotal );
+                setLoadingSubtitle( String.format( Locale.getDefault(), "Loading… %d%%", iPercent ) );
+            }
+
+            @Override
+            public void onLoadFinished( String strPath )
+            {
+                setLoadingSubtitle( null );
+            }
+
+            @Override
+            public void onLoadFailed( String strPath )
+            {
+                setLoadingSubtitle( null );
+                Toast.makeText( MainActivity.this, "Failed to load file : " + strPath, Toast.LENGTH_SHORT ).show();
+            }
+        } );
+    }
+
+    // アクティビティの破棄時
+    @Override
+    protected void onDestroy()
+    {
+        // 読み込み中のファイルの中止
+        m_modelviewerview.getModelLoadService().shutdown();
+
+        super.onDestroy();
+    }
+
+    // メモリーが足りない時は、必要になった時に作り直せるバッファを破棄する
+    @Override
+    public void onTrimMemory( int iLevel )
+    {
+        super.onTrimMemory( iLevel );
+
+        if( ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW <= iLevel )
+        {
+            m_modelviewerview.trimMemory();
+        }
+    }
+
+    // 読み込み状況のサブタイトル表示
+    private void setLoadingSubtitle( String strSubtitle )
+    {
+        if( null != getSupportActionBar() )
+        {
+            getSupportActionBar().setSubtitle( strSubtitle );
+        }
     }
 
     // 初回表示時、および、ポーズからの復帰時
@@ -159,30 +217,50 @@ public class MainActivity extends AppCompatActivity {
                 return true;
             case R.id.menuitem_render_point:
                 item.setChecked( !item.isChecked() );
-                m_modelviewerview.getRenderer().m_bRenderPoint = item.isChecked();
+                m_modelviewerview.getRenderer().setRenderElement( OpenGLPickRenderer.ERenderElementType.RET_POINT, item.isChecked() );
                 m_modelviewerview.requestRender(); // 再描画
                 return true;
             case R.id.menuitem_render_line:
                 item.setChecked( !item.isChecked() );
-                m_modelviewerview.getRenderer().m_bRenderLine = item.isChecked();
+                m_modelviewerview.getRenderer().setRenderElement( OpenGLPickRenderer.ERenderElementType.RET_LINE, item.isChecked() );
                 m_modelviewerview.requestRender(); // 再描画
                 return true;
             case R.id.menuitem_render_face:
                 item.setChecked( !item.isChecked() );
-                m_modelviewerview.getRenderer().m_bRenderFace = item.isChecked();
+                m_modelviewerview.getRenderer().setRenderElement( OpenGLPickRenderer.ERenderElementType.RET_FACE, item.isChecked() );
                 m_modelviewerview.requestRender(); // 再描画
                 return true;
             case R.id.menuitem_pick_point:
                 item.setChecked( !item.isChecked() );
-                m_modelviewerview.getRenderer().m_bPickPoint = item.isChecked();
+                m_modelviewerview.getRenderer().setPickElement( OpenGLPickRenderer.ERenderElementType.RET_POINT, item.isChecked() );
                 return true;
             case R.id.menuitem_pick_line:
                 item.setChecked( !item.isChecked() );
-                m_modelviewerview.getRenderer().m_bPickLine = item.isChecked();
+                m_modelviewerview.getRenderer().setPickElement( OpenGLPickRenderer.ERenderElementType.RET_LINE, item.isChecked() );
                 return true;
             case R.id.menuitem_pick_face:
                 item.setChecked( !item.isChecked() );
-                m_modelviewerview.getRenderer().m_bPickFace = item.isChecked();
+                m_modelviewerview.getRenderer().setPickElement( OpenGLPickRenderer.ERenderElementType.RET_FACE, item.isChecked() );
+                return true;
+            case R.id.menuitem_shading_unlit:
+                item.setChecked( true );
+                m_modelviewerview.getRenderer().setShading( ViewerRenderer.EShading.SH_UNLIT );
+                m_modelviewerview.requestRender(); // 再描画
+                return true;
+            case R.id.menuitem_shading_faceted:
+                item.setChecked( true );
+                m_modelviewerview.getRenderer().setShading( ViewerRenderer.EShading.SH_FACETED );
+                m_modelviewerview.requestRender(); // 再描画
+                return true;
+            case R.id.menuitem_shading_normal:
+                item.setChecked( true );
+                m_modelviewerview.getRenderer().setShading( ViewerRenderer.EShading.SH_NORMAL );
+                m_modelviewerview.requestRender(); // 再描画
+                return true;
+            case R.id.menuitem_shading_smooth:
+                item.setChecked( true );
+                m_modelviewerview.getRenderer().setShading( ViewerRenderer.EShading.SH_SMOOTH );
+                m_modelviewerview.requestRender(); // 再描画
                 return true;
             case R.id.menuitem_file_open:
                 // ファイル選択アクティビティ
@@ -204,7 +282,7 @@ public class MainActivity extends AppCompatActivity {
             Bundle extras = intent.getExtras();
             if (null != extras) {
                 File file = (File) extras.getSerializable(FileSelectionActivity.EXTRA_FILE);
-                m_modelviewerview.loadModelFile(Objects.requireNonNull(file).getPath(), mRenderer);
+                m_modelviewerview.loadModelFile(Objects.requireNonNull(file).getPath());
                 m_strInitialDir = file.getParent();
             }
         }
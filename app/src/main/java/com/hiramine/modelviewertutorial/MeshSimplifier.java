@@ -0,0 +1,596 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import javax.microedition.khronos.opengles.GL10;
+
+// 二次誤差（quadric error metrics）による、稜線の縮約でのメッシュの簡略化
+// ・頂点ごとに、周りの三角形の平面までの距離の２乗の和を表す二次形式（４×４の対称行列の10成分）を持ち、縮約した頂点は二次形式を足し合わせる
+// ・頂点ごとに、隣の頂点への縮約のうち誤差が最も小さいものを求め、誤差の小さい頂点から順に縮約する（頂点の誤差のヒープ）
+// ・縮約後の頂点の位置は、二次形式を最小にする位置（解けなければ、両端と中点のうち誤差の小さい位置）
+// ・境界の稜線には、稜線を通り三角形に垂直な平面を加えて、輪郭が縮まないようにする
+// ・縮約で向きが反転する三角形ができる場合は、その縮約はしない
+// ・誤差は平面までの距離の２乗の和なので、その平方根は、縮約した頂点の、元の三角形の平面からの距離の上限の目安になる
+// ・元のモデルの配列は変更しない。読み込みスレッドで使う
+public class MeshSimplifier
+{
+    // 中止の確認（縮約の途中で、一定の回数ごとに確認する）
+    public interface CancelSignal
+    {
+        boolean isCancelled();
+    }
+
+    // 定数
+    private static final int    CANCEL_CHECK_INTERVAL = 4096;    // 中止を確認する、縮約の回数の間隔
+    private static final double SINGULAR_EPSILON      = 1e-12;    // 二次形式の行列式が、これより小さければ解かない（行列の大きさに対する比）
+    private static final long   HEAP_BYTES_PER_VERTEX   = 156;    // 頂点あたりの作業配列のバイト数（座標値、二次形式、縮約先と誤差と位置、ヒープと印）
+    private static final long   HEAP_BYTES_PER_TRIANGLE = 25 + 110;    // 三角形あたりの作業配列のバイト数（角の配列と、境界の稜線を求める時のEdgeBuilderの配列）
+
+    // メンバー変数
+    private final Model    m_model;
+    private final double[] m_adPosition;    // 頂点の座標値（元の座標系。３つで１頂点）
+    private final double[] m_adQuadric;    // 頂点の二次形式（10成分で１頂点）
+    private final int[]    m_aiCornerVertex;    // 三角形の角の頂点の番号（３つで１三角形。縮約で付け替える）
+    private final int[]    m_aiCornerNext;    // 同じ頂点の次の角（-1で終わり）
+    private final int[]    m_aiVertexCorner;    // 頂点の最初の角（-1は、縮約で無くなった頂点）
+    private final boolean[] m_abTriangleRemoved;    // 縮約で潰れた三角形
+    private final int[]    m_aiTarget;    // 頂点の、誤差が最も小さい縮約先の頂点
+    private final double[] m_adCost;    // 頂点の、縮約の誤差
+    private final double[] m_ad3Best;    // 頂点の、縮約後の位置（３つで１頂点）
+    private final int[]    m_aiHeap;    // 誤差のヒープ（頂点の番号）
+    private final int[]    m_aiHeapPosition;    // 頂点の、ヒープの中の位置（-1は、ヒープに無い）
+    private final int[]    m_aiMark;    // 隣の頂点を一度ずつ数えるための印
+    private int    m_iCountHeap;
+    private int    m_iMark;
+    private int    m_iCountTriangle;    // 残っている三角形の数
+    private double m_dMaxCost;    // これまでの縮約の誤差の最大
+    private final double[] m_ad10Work   = new double[10];
+    private final double[] m_ad3Work    = new double[3];
+    private final double[] m_ad9Work    = new double[9];
+    private final double[] m_ad3Before  = new double[3];
+    private final double[] m_ad3After   = new double[3];
+
+    // 作業配列のヒープのバイト数の見積もり（コンストラクタで確保する前に、空きヒープと比べるため）
+    public static long estimateHeapBytes( int iCountVertex, int iCountTriangle )
+    {
+        return iCountVertex * HEAP_BYTES_PER_VERTEX + iCountTriangle * HEAP_BYTES_PER_TRIANGLE;
+    }
+
+    // コンストラクタ（頂点の二次形式と、頂点ごとの最初の縮約を求める）
+    public MeshSimplifier( Model model )
+    {
+        m_model = model;
+        int iCountVertex   = model.getVertexCount();
+        int iCountTriangle = model.getTriangleCount();
+        m_adPosition = new double[iCountVertex * 3];
+        m_adQuadric = new double[iCountVertex * 10];
+        m_aiCornerVertex = new int[iCountTriangle * 3];
+        m_aiCornerNext = new int[iCountTriangle * 3];
+        m_aiVertexCorner = new int[iCountVertex];
+        m_abTriangleRemoved = new boolean[iCountTriangle];
+        m_aiTarget = new int[iCountVertex];
+        m_adCost = new double[iCountVertex];
+        m_ad3Best = new double[iCountVertex * 3];
+        m_aiHeap = new int[iCountVertex];
+        m_aiHeapPosition = new int[iCountVertex];
+        m_aiMark = new int[iCountVertex];
+        m_iCountTriangle = iCountTriangle;
+
+        for( int i = 0; i < iCountVertex * 3; i++ )
+        {
+            m_adPosition[i] = model.getVertex( i / 3, i % 3 );
+        }
+        Arrays.fill( m_aiVertexCorner, -1 );
+        for( int iCorner = 0; iCorner < iCountTriangle * 3; iCorner++ )
+        {
+            int iIndexVertex = model.getTriangleVertexIndex( iCorner / 3, iCorner % 3 );
+            m_aiCornerVertex[iCorner] = iIndexVertex;
+            m_aiCornerNext[iCorner] = m_aiVertexCorner[iIndexVertex];
+            m_aiVertexCorner[iIndexVertex] = iCorner;
+        }
+
+        // 三角形の平面
+        double[] ad3Normal = new double[3];
+        for( int iIndexTriangle = 0; iIndexTriangle < iCountTriangle; iIndexTriangle++ )
+        {
+            if( !computeNormal( iIndexTriangle, -1, null, ad3Normal ) )
+            { // 潰れた三角形
+                continue;
+            }
+            double dD = -dot( ad3Normal, m_adPosition, m_aiCornerVertex[iIndexTriangle * 3] );
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                addPlane( m_aiCornerVertex[iIndexTriangle * 3 + i3], ad3Normal[0], ad3Normal[1], ad3Normal[2], dD );
+            }
+        }
+
+        // 境界の稜線の、三角形に垂直な平面（隣接三角形が一つの稜線）
+        int[] aiTriangleVertexIndex = new int[iCountTriangle * 3];
+        System.arraycopy( m_aiCornerVertex, 0, aiTriangleVertexIndex, 0, iCountTriangle * 3 );
+        EdgeBuilder builder              = new EdgeBuilder();
+        int         iCountEdge           = builder.build( aiTriangleVertexIndex, iCountTriangle );
+        int[]       aiEdgeVertexIndex    = builder.getEdgeVertexIndexArray();
+        int[]       aiEdgeTriangleStart  = builder.getEdgeTriangleStartArray();
+        int[]       aiEdgeTriangle       = builder.getEdgeTriangleArray();
+        double[]    ad3Edge              = new double[3];
+        for( int iIndexEdge = 0; iIndexEdge < iCountEdge; iIndexEdge++ )
+        {
+            if( 1 != aiEdgeTriangleStart[iIndexEdge + 1] - aiEdgeTriangleStart[iIndexEdge]
+                    || !computeNormal( aiEdgeTriangle[aiEdgeTriangleStart[iIndexEdge]], -1, null, ad3Normal ) )
+            {
+                continue;
+            }
+            int iVertex0 = aiEdgeVertexIndex[iIndexEdge * 2];
+            int iVertex1 = aiEdgeVertexIndex[iIndexEdge * 2 + 1];
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                ad3Edge[i3] = m_adPosition[iVertex1 * 3 + i3] - m_adPosition[iVertex0 * 3 + i3];
+            }
+            double dX = ad3Edge[1] * ad3Normal[2] - ad3Edge[2] * ad3Normal[1];
+            double dY = ad3Edge[2] * ad3Normal[0] - ad3Edge[0] * ad3Normal[2];
+            double dZ = ad3Edge[0] * ad3Normal[1] - ad3Edge[1] * ad3Normal[0];
+            double dLength = Math.sqrt( dX * dX + dY * dY + dZ * dZ );
+            if( 0.0 == dLength )
+            {
+                continue;
+            }
+            dX /= dLength;
+            dY /= dLength;
+            dZ /= dLength;
+            double dD = -( dX * m_adPosition[iVertex0 * 3] + dY * m_adPosition[iVertex0 * 3 + 1] + dZ * m_adPosition[iVertex0 * 3 + 2] );
+            addPlane( iVertex0, dX, dY, dZ, dD );
+            addPlane( iVertex1, dX, dY, dZ, dD );
+        }
+
+        // 頂点ごとの最初の縮約
+        Arrays.fill( m_aiHeapPosition, -1 );
+        for( int iIndexVertex = 0; iIndexVertex < iCountVertex; iIndexVertex++ )
+        {
+            updateVertex( iIndexVertex );
+        }
+    }
+
+    // アクセサ
+    // 残っている三角形の数
+    public int getTriangleCount()
+    {
+        return m_iCountTriangle;
+    }
+
+    // これまでの縮約の誤差の目安（元の座標系の長さ）
+    public float getError()
+    {
+        return (float)Math.sqrt( m_dMaxCost );
+    }
+
+    // 三角形の数がiTargetTriangle以下になるまでの縮約（縮約できる頂点が無くなれば、そこで止める）
+    // 中止されたらfalse
+    public boolean simplify( int iTargetTriangle, CancelSignal signal )
+    {
+        int iCountCollapse = 0;
+        while( iTargetTriangle < m_iCountTriangle
+                && 0 < m_iCountHeap )
+        {
+            if( null != signal
+                    && 0 == ++iCountCollapse % CANCEL_CHECK_INTERVAL
+                    && signal.isCancelled() )
+            {
+                return false;
+            }
+            int iIndexVertex = m_aiHeap[0];
+            if( !collapse( iIndexVertex ) )
+            { // 向きが反転する三角形ができるので、周りの頂点が縮約されるまで、ヒープから外す
+                removeHeap( iIndexVertex );
+            }
+        }
+        return null == signal || !signal.isCancelled();
+    }
+
+    // 現在の三角形からのモデルの作成（残っている頂点だけを詰める。量子化したモデルからは、同じ縮尺と中心で量子化したモデルを作る）
+    // 配列は、アリーナから借りずにGCに任せる
+    public Model buildModel()
+    {
+        int[] aiNewIndex = new int[m_aiVertexCorner.length];
+        Arrays.fill( aiNewIndex, -1 );
+        int[] aiTriangleVertexIndex = new int[m_iCountTriangle * 3];
+        int   iCountIndex           = 0;
+        int   iCountVertex          = 0;
+        int[] aiVertex              = new int[m_aiVertexCorner.length];    // 新しい番号の頂点の、元の番号
+        for( int iIndexTriangle = 0; iIndexTriangle < m_abTriangleRemoved.length; iIndexTriangle++ )
+        {
+            if( m_abTriangleRemoved[iIndexTriangle] )
+            {
+                continue;
+            }
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                int iIndexVertex = m_aiCornerVertex[iIndexTriangle * 3 + i3];
+                if( -1 == aiNewIndex[iIndexVertex] )
+                {
+                    aiNewIndex[iIndexVertex] = iCountVertex;
+                    aiVertex[iCountVertex++] = iIndexVertex;
+                }
+                aiTriangleVertexIndex[iCountIndex++] = aiNewIndex[iIndexVertex];
+            }
+        }
+        int    iIndexType             = ( SubMeshSplitter.MAX_VERTEX_COUNT < iCountVertex ) ? OpenGLBaseRenderer.GL_UNSIGNED_INT : GL10.GL_UNSIGNED_SHORT;
+        Buffer bufTriangleVertexIndex = Model.makeIndexBuffer( aiTriangleVertexIndex, iCountIndex, iIndexType );
+
+        if( !m_model.isQuantized() )
+        {
+            FloatBuffer fbVertex = ByteBuffer.allocateDirect( iCountVertex * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+            for( int i = 0; i < iCountVertex * 3; i++ )
+            {
+                fbVertex.put( i, (float)m_adPosition[aiVertex[i / 3] * 3 + i % 3] );
+            }
+            return new Model( fbVertex, bufTriangleVertexIndex, null, null );
+        }
+        float[]     af3Scale  = m_model.getVertexScale();
+        float[]     af3Offset = m_model.getVertexOffset();
+        ShortBuffer sbVertex  = ByteBuffer.allocateDirect( iCountVertex * 3 * 2 ).order( ByteOrder.nativeOrder() ).asShortBuffer();
+        for( int i = 0; i < iCountVertex * 3; i++ )
+        {
+            int i3     = i % 3;
+            int iValue = (int)Math.round( ( m_adPosition[aiVertex[i / 3] * 3 + i3] - af3Offset[i3] ) / af3Scale[i3] );
+            sbVertex.put( i, (short)Math.max( -VertexQuantizer.QUANTIZE_MAX, Math.min( VertexQuantizer.QUANTIZE_MAX, iValue ) ) );
+        }
+        return new Model( sbVertex, af3Scale, af3Offset, m_model.getQuantizeError(), bufTriangleVertexIndex, null, null );
+    }
+
+    // 頂点の、縮約先への縮約（向きが反転する三角形ができる場合は、縮約せずにfalse）
+    private boolean collapse( int iVertexFrom )
+    {
+        int    iVertexTo = m_aiTarget[iVertexFrom];
+        double dX        = m_ad3Best[iVertexFrom * 3];
+        double dY        = m_ad3Best[iVertexFrom * 3 + 1];
+        double dZ        = m_ad3Best[iVertexFrom * 3 + 2];
+        m_ad3Work[0] = dX;
+        m_ad3Work[1] = dY;
+        m_ad3Work[2] = dZ;
+        if( isFlipped( iVertexFrom, iVertexTo ) || isFlipped( iVertexTo, iVertexFrom ) )
+        {
+            return false;
+        }
+        m_dMaxCost = Math.max( m_dMaxCost, m_adCost[iVertexFrom] );
+
+        // 縮約元の三角形は、縮約先を含めば潰れ、含まなければ縮約先に付け替える
+        int iCornerLast = -1;
+        for( int iCorner = m_aiVertexCorner[iVertexFrom]; -1 != iCorner; iCorner = m_aiCornerNext[iCorner] )
+        {
+            int iIndexTriangle = iCorner / 3;
+            iCornerLast = iCorner;
+            if( m_abTriangleRemoved[iIndexTriangle] )
+            {
+                continue;
+            }
+            if( hasVertex( iIndexTriangle, iVertexTo ) )
+            {
+                m_abTriangleRemoved[iIndexTriangle] = true;
+                m_iCountTriangle--;
+                continue;
+            }
+            m_aiCornerVertex[iCorner] = iVertexTo;
+        }
+
+        // 縮約元の角を縮約先の角につなげ、潰れた三角形の角を除く
+        if( -1 != iCornerLast )
+        {
+            m_aiCornerNext[iCornerLast] = m_aiVertexCorner[iVertexTo];
+            m_aiVertexCorner[iVertexTo] = m_aiVertexCorner[iVertexFrom];
+        }
+        m_aiVertexCorner[iVertexFrom] = -1;
+        int iCornerPrevious = -1;
+        for( int iCorner = m_aiVertexCorner[iVertexTo]; -1 != iCorner; iCorner = m_aiCornerNext[iCorner] )
+        {
+            if( m_abTriangleRemoved[iCorner / 3] )
+            {
+                if( -1 == iCornerPrevious )
+                {
+                    m_aiVertexCorner[iVertexTo] = m_aiCornerNext[iCorner];
+                }
+                else
+                {
+                    m_aiCornerNext[iCornerPrevious] = m_aiCornerNext[iCorner];
+                }
+                continue;
+            }
+            iCornerPrevious = iCorner;
+        }
+
+        // 縮約先の位置と二次形式
+        m_adPosition[iVertexTo * 3] = dX;
+        m_adPosition[iVertexTo * 3 + 1] = dY;
+        m_adPosition[iVertexTo * 3 + 2] = dZ;
+        for( int i = 0; i < 10; i++ )
+        {
+            m_adQuadric[iVertexTo * 10 + i] += m_adQuadric[iVertexFrom * 10 + i];
+        }
+        removeHeap( iVertexFrom );
+
+        // 縮約先と、その隣の頂点の縮約を求め直す
+        updateVertex( iVertexTo );
+        int iMark = nextMark();
+        m_aiMark[iVertexTo] = iMark;
+        for( int iCorner = m_aiVertexCorner[iVertexTo]; -1 != iCorner; iCorner = m_aiCornerNext[iCorner] )
+        {
+            int iBase = iCorner / 3 * 3;
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                int iIndexVertex = m_aiCornerVertex[iBase + i3];
+                if( iMark != m_aiMark[iIndexVertex] )
+                {
+                    m_aiMark[iIndexVertex] = iMark;
+                    updateVertex( iIndexVertex );
+                }
+            }
+        }
+        return true;
+    }
+
+    // 頂点iVertexMoveをm_ad3Workに動かした時に、iVertexOtherを含まない周りの三角形の向きが反転するか、潰れるかどうか
+    private boolean isFlipped( int iVertexMove, int iVertexOther )
+    {
+        double[] ad3Before = m_ad3Before;
+        double[] ad3After  = m_ad3After;
+        for( int iCorner = m_aiVertexCorner[iVertexMove]; -1 != iCorner; iCorner = m_aiCornerNext[iCorner] )
+        {
+            int iIndexTriangle = iCorner / 3;
+            if( m_abTriangleRemoved[iIndexTriangle]
+                    || hasVertex( iIndexTriangle, iVertexOther ) )
+            {
+                continue;
+            }
+            if( !computeNormal( iIndexTriangle, -1, null, ad3Before ) )
+            {
+                continue;
+            }
+            if( !computeNormal( iIndexTriangle, iVertexMove, m_ad3Work, ad3After )
+                    || 0.0 >= ad3Before[0] * ad3After[0] + ad3Before[1] * ad3After[1] + ad3Before[2] * ad3After[2] )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 頂点の、誤差が最も小さい縮約先と縮約後の位置を求め、ヒープを更新する（隣の頂点が無ければ、ヒープから外す）
+    private void updateVertex( int iIndexVertex )
+    {
+        int    iMark     = nextMark();
+        double dCostBest = Double.MAX_VALUE;
+        int    iTarget   = -1;
+        m_aiMark[iIndexVertex] = iMark;
+        for( int iCorner = m_aiVertexCorner[iIndexVertex]; -1 != iCorner; iCorner = m_aiCornerNext[iCorner] )
+        {
+            if( m_abTriangleRemoved[iCorner / 3] )
+            {
+                continue;
+            }
+            int iBase = iCorner / 3 * 3;
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                int iOther = m_aiCornerVertex[iBase + i3];
+                if( iMark == m_aiMark[iOther] )
+                {
+                    continue;
+                }
+                m_aiMark[iOther] = iMark;
+                double dCost = computeCollapse( iIndexVertex, iOther, m_ad3Work );
+                if( dCost < dCostBest )
+                {
+                    dCostBest = dCost;
+                    iTarget = iOther;
+                    System.arraycopy( m_ad3Work, 0, m_ad3Best, iIndexVertex * 3, 3 );
+                }
+            }
+        }
+        if( -1 == iTarget )
+        {
+            removeHeap( iIndexVertex );
+            return;
+        }
+        m_aiTarget[iIndexVertex] = iTarget;
+        m_adCost[iIndexVertex] = dCostBest;
+        if( -1 == m_aiHeapPosition[iIndexVertex] )
+        {
+            m_aiHeap[m_iCountHeap] = iIndexVertex;
+            m_aiHeapPosition[iIndexVertex] = m_iCountHeap;
+            m_iCountHeap++;
+        }
+        siftUp( m_aiHeapPosition[iIndexVertex] );
+        siftDown( m_aiHeapPosition[iIndexVertex] );
+    }
+
+    // ２頂点の縮約の誤差と、縮約後の位置（ad3Position）
+    private double computeCollapse( int iVertex0, int iVertex1, double[] ad3Position )
+    {
+        double[] q = m_ad10Work;
+        for( int i = 0; i < 10; i++ )
+        {
+            q[i] = m_adQuadric[iVertex0 * 10 + i] + m_adQuadric[iVertex1 * 10 + i];
+        }
+
+        // 二次形式を最小にする位置（３×３の連立方程式を、余因子で解く）
+        double dC00  = q[4] * q[7] - q[5] * q[5];
+        double dC01  = q[2] * q[5] - q[1] * q[7];
+        double dC02  = q[1] * q[5] - q[2] * q[4];
+        double dDet  = q[0] * dC00 + q[1] * dC01 + q[2] * dC02;
+        double dNorm = Math.max( Math.abs( q[0] ), Math.max( Math.abs( q[4] ), Math.abs( q[7] ) ) );
+        if( Math.abs( dDet ) > SINGULAR_EPSILON * dNorm * dNorm * dNorm )
+        {
+            double dC11 = q[0] * q[7] - q[2] * q[2];
+            double dC12 = q[1] * q[2] - q[0] * q[5];
+            double dC22 = q[0] * q[4] - q[1] * q[1];
+            ad3Position[0] = -( dC00 * q[3] + dC01 * q[6] + dC02 * q[8] ) / dDet;
+            ad3Position[1] = -( dC01 * q[3] + dC11 * q[6] + dC12 * q[8] ) / dDet;
+            ad3Position[2] = -( dC02 * q[3] + dC12 * q[6] + dC22 * q[8] ) / dDet;
+            return Math.max( 0.0, evaluate( q, ad3Position[0], ad3Position[1], ad3Position[2] ) );
+        }
+
+        // 解けなければ、両端と中点のうち誤差の小さい位置
+        double dCostBest = Double.MAX_VALUE;
+        for( int i = 0; i < 3; i++ )
+        {
+            double dT = i * 0.5;
+            double dX = m_adPosition[iVertex0 * 3] + ( m_adPosition[iVertex1 * 3] - m_adPosition[iVertex0 * 3] ) * dT;
+            double dY = m_adPosition[iVertex0 * 3 + 1] + ( m_adPosition[iVertex1 * 3 + 1] - m_adPosition[iVertex0 * 3 + 1] ) * dT;
+            double dZ = m_adPosition[iVertex0 * 3 + 2] + ( m_adPosition[iVertex1 * 3 + 2] - m_adPosition[iVertex0 * 3 + 2] ) * dT;
+            double dCost = evaluate( q, dX, dY, dZ );
+            if( dCost < dCostBest )
+            {
+                dCostBest = dCost;
+                ad3Position[0] = dX;
+                ad3Position[1] = dY;
+                ad3Position[2] = dZ;
+            }
+        }
+        return Math.max( 0.0, dCostBest );
+    }
+
+    // 二次形式の値（点から、足し合わせた平面までの距離の２乗の和）
+    private static double evaluate( double[] q, double dX, double dY, double dZ )
+    {
+        return q[0] * dX * dX + 2.0 * q[1] * dX * dY + 2.0 * q[2] * dX * dZ + 2.0 * q[3] * dX
+               + q[4] * dY * dY + 2.0 * q[5] * dY * dZ + 2.0 * q[6] * dY
+               + q[7] * dZ * dZ + 2.0 * q[8] * dZ
+               + q[9];
+    }
+
+    // 平面ax + by + cz + d = 0の二次形式を、頂点の二次形式に足す
+    private void addPlane( int iIndexVertex, double dA, double dB, double dC, double dD )
+    {
+        int iBase = iIndexVertex * 10;
+        m_adQuadric[iBase] += dA * dA;
+        m_adQuadric[iBase + 1] += dA * dB;
+        m_adQuadric[iBase + 2] += dA * dC;
+        m_adQuadric[iBase + 3] += dA * dD;
+        m_adQuadric[iBase + 4] += dB * dB;
+        m_adQuadric[iBase + 5] += dB * dC;
+        m_adQuadric[iBase + 6] += dB * dD;
+        m_adQuadric[iBase + 7] += dC * dC;
+        m_adQuadric[iBase + 8] += dC * dD;
+        m_adQuadric[iBase + 9] += dD * dD;
+    }
+
+    // 三角形の単位法線（iVertexMoveの頂点は、ad3Moveの位置にあるものとする）（潰れた三角形はfalse）
+    private boolean computeNormal( int iIndexTriangle, int iVertexMove, double[] ad3Move, double[] ad3Normal )
+    {
+        double[] ad9 = m_ad9Work;
+        for( int i3 = 0; i3 < 3; i3++ )
+        {
+            int iIndexVertex = m_aiCornerVertex[iIndexTriangle * 3 + i3];
+            for( int j = 0; j < 3; j++ )
+            {
+                ad9[i3 * 3 + j] = ( iIndexVertex == iVertexMove ) ? ad3Move[j] : m_adPosition[iIndexVertex * 3 + j];
+            }
+        }
+        double dX1 = ad9[3] - ad9[0];
+        double dY1 = ad9[4] - ad9[1];
+        double dZ1 = ad9[5] - ad9[2];
+        double dX2 = ad9[6] - ad9[0];
+        double dY2 = ad9[7] - ad9[1];
+        double dZ2 = ad9[8] - ad9[2];
+        double dX  = dY1 * dZ2 - dZ1 * dY2;
+        double dY  = dZ1 * dX2 - dX1 * dZ2;
+        double dZ  = dX1 * dY2 - dY1 * dX2;
+        double dLength = Math.sqrt( dX * dX + dY * dY + dZ * dZ );
+        if( 0.0 == dLength )
+        {
+            return false;
+        }
+        ad3Normal[0] = dX / dLength;
+        ad3Normal[1] = dY / dLength;
+        ad3Normal[2] = dZ / dLength;
+        return true;
+    }
+
+    private static double dot( double[] ad3Normal, double[] adPosition, int iIndexVertex )
+    {
+        return ad3Normal[0] * adPosition[iIndexVertex * 3] + ad3Normal[1] * adPosition[iIndexVertex * 3 + 1] + ad3Normal[2] * adPosition[iIndexVertex * 3 + 2];
+    }
+
+    private boolean hasVertex( int iIndexTriangle, int iIndexVertex )
+    {
+        return iIndexVertex == m_aiCornerVertex[iIndexTriangle * 3]
+               || iIndexVertex == m_aiCornerVertex[iIndexTriangle * 3 + 1]
+               || iIndexVertex == m_aiCornerVertex[iIndexTriangle * 3 + 2];
+    }
+
+    private int nextMark()
+    {
+        return ++m_iMark;
+    }
+
+    // ヒープ（誤差の小さい頂点が先頭）
+    private void removeHeap( int iIndexVertex )
+    {
+        int iPosition = m_aiHeapPosition[iIndexVertex];
+        if( -1 == iPosition )
+        {
+            return;
+        }
+        m_aiHeapPosition[iIndexVertex] = -1;
+        m_iCountHeap--;
+        if( iPosition == m_iCountHeap )
+        {
+            return;
+        }
+        int iLast = m_aiHeap[m_iCountHeap];
+        m_aiHeap[iPosition] = iLast;
+        m_aiHeapPosition[iLast] = iPosition;
+        siftUp( iPosition );
+        siftDown( m_aiHeapPosition[iLast] );
+    }
+
+    private void siftUp( int iPosition )
+    {
+        int    iIndexVertex = m_aiHeap[iPosition];
+        double dCost        = m_adCost[iIndexVertex];
+        while( 0 < iPosition )
+        {
+            int iParent = ( iPosition - 1 ) / 2;
+            if( m_adCost[m_aiHeap[iParent]] <= dCost )
+            {
+                break;
+            }
+            m_aiHeap[iPosition] = m_aiHeap[iParent];
+            m_aiHeapPosition[m_aiHeap[iPosition]] = iPosition;
+            iPosition = iParent;
+        }
+        m_aiHeap[iPosition] = iIndexVertex;
+        m_aiHeapPosition[iIndexVertex] = iPosition;
+    }
+
+    private void siftDown( int iPosition )
+    {
+        int    iIndexVertex = m_aiHeap[iPosition];
+        double dCost        = m_adCost[iIndexVertex];
+        while( true )
+        {
+            int iChild = iPosition * 2 + 1;
+            if( iChild >= m_iCountHeap )
+            {
+                break;
+            }
+            if( iChild + 1 < m_iCountHeap
+                    && m_adCost[m_aiHeap[iChild + 1]] < m_adCost[m_aiHeap[iChild]] )
+            {
+                iChild++;
+            }
+            if( dCost <= m_adCost[m_aiHeap[iChild]] )
+            {
+                break;
+            }
+            m_aiHeap[iPosition] = m_aiHeap[iChild];
+            m_aiHeapPosition[m_aiHeap[iPosition]] = iPosition;
+            iPosition = iChild;
+        }
+        m_aiHeap[iPosition] = iIndexVertex;
+        m_aiHeapPosition[iIndexVertex] = iPosition;
+    }
+}
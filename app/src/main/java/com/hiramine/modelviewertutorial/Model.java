@@ -1,75 +1,845 @@
 package com.hiramine.modelviewertutorial;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 
+import javax.microedition.khronos.opengles.GL10;
+
 public class Model {
+    // 稜線（必要になった時に作成し、メモリーが足りない時は破棄する）
+    // 稜線の番号配列と、それから作る部分メッシュをまとめて持ち、まとめて差し替える
+    private static final class EdgeSet
+    {
+        final Buffer m_bufEdgeVertexIndex;    // 稜線の番号配列（２つの頂点番号で１稜線）（三角形の頂点の番号の配列と同じ型）
+        final int[]  m_aiEdgeTriangleStart;    // 稜線ごとの、隣接三角形の配列の開始位置（キャッシュから読み込んだ場合はnull）
+        final int[]  m_aiEdgeTriangle;    // 稜線に隣接する三角形の番号の配列（キャッシュから読み込んだ場合はnull）
+        SubMesh[] m_aSubMeshWhole;    // 全体を一つにした稜線の部分メッシュ
+        SubMesh[] m_aSubMeshSplit;    // 16ビットの番号配列に分割した稜線の部分メッシュ
+
+        EdgeSet( Buffer bufEdgeVertexIndex, int[] aiEdgeTriangleStart, int[] aiEdgeTriangle )
+        {
+            m_bufEdgeVertexIndex = bufEdgeVertexIndex;
+            m_aiEdgeTriangleStart = aiEdgeTriangleStart;
+            m_aiEdgeTriangle = aiEdgeTriangle;
+        }
+    }
+
+    // 陰影付きの描画用の三角形（頂点法線を持つ頂点配列と、その頂点を指す三角形の番号配列）（折り目の角度ごとに作る）
+    // 角ごとに法線の異なる頂点は分けるので、頂点の数はモデルの頂点の数以上になる。三角形の順番は、モデルの三角形と同じ
+    private static final class LitMesh
+    {
+        final float        m_fCreaseAngle;    // 折り目の角度（度）
+        final VertexLayout m_layout;    // 頂点配列の並び（座標値、法線、モデルの頂点の番号の色）
+        final ByteBuffer   m_btbVertex;
+        final Buffer       m_bufTriangleVertexIndex;
+        final int          m_iIndexType;
+        SubMesh[] m_aSubMeshWhole;    // 全体を一つにした部分メッシュ
+        SubMesh[] m_aSubMeshSplit;    // 16ビットの番号配列に分割した部分メッシュ
+
+        LitMesh( float fCreaseAngle, VertexLayout layout, ByteBuffer btbVertex, Buffer bufTriangleVertexIndex, int iIndexType )
+        {
+            m_fCreaseAngle = fCreaseAngle;
+            m_layout = layout;
+            m_btbVertex = btbVertex;
+            m_bufTriangleVertexIndex = bufTriangleVertexIndex;
+            m_iIndexType = iIndexType;
+        }
+    }
+
     // メンバー変数
-    private FloatBuffer m_fbVertex;                // 頂点の座標値の配列（３つの座標値で１頂点）
-    private ShortBuffer m_sbTriangleVertexIndex;    // 三角形の頂点の番号の配列（３つの頂点番号で１三角形）（unsigned shortの上限は65535）
-    private ShortBuffer m_sbEdgeVertexIndex;        // 稜線の番号配列（２つの頂点番号で１稜線）（unsigned shortの上限は65535）
+    private Buffer      m_bufVertex;                // 頂点の座標値の配列（３つの座標値で１頂点）（FloatBuffer、量子化した場合はShortBuffer）
+    private int         m_iVertexType = GL10.GL_FLOAT;    // 頂点の座標値の型（GL_FLOATまたはGL_SHORT）
+    private float[]     m_af3VertexScale;    // 量子化した座標値の縮尺（量子化していない場合はnull）
+    private float[]     m_af3VertexOffset;    // 量子化した座標値の中心（量子化していない場合はnull）
+    private float       m_fQuantizeError;    // 量子化による、座標値の最大誤差
+    private Buffer      m_bufTriangleVertexIndex;    // 三角形の頂点の番号の配列（３つの頂点番号で１三角形）（頂点の数が65535以下ならShortBuffer、超えたらIntBuffer）
+    private int         m_iIndexType;    // 番号配列の型（GL_UNSIGNED_SHORTまたはGL_UNSIGNED_INT）
+    private volatile ByteBuffer m_btbInterleavedVertex;    // インターリーブした頂点配列（座標値と頂点の番号の色）（必要になった時に作成する）
+    private FloatBuffer m_fbFileFacetNormal;    // ファイルの面法線（三角形ごとに３成分）（なければnull。面法線を作成したら手放す）
+    private volatile FloatBuffer m_fbFacetNormal;    // 面法線（三角形ごとに３成分の単位ベクトル）（必要になった時に作成する）
+    private volatile LitMesh   m_litmesh;    // 陰影付きの描画用の三角形（必要になった時に作成する）
+    private volatile EdgeSet   m_edgeset;    // 稜線（必要になった時に作成する）
+    private volatile SubMesh[] m_aSubMeshWhole;    // 全体を一つにした三角形の部分メッシュ（必要になった時に作成する）
+    private volatile SubMesh[] m_aSubMeshSplit;    // 16ビットの番号配列に分割した三角形の部分メッシュ（必要になった時に作成する）
+    private volatile LodChain  m_lodchain;    // 詳細度の段階（読み込みスレッドが、表示した後に作成してセットする）
+    private float[]     m_af6Bounds;    // バウンディングボックス（最小のxyz、最大のxyz）（必要になった時に計算する）
+    private int         m_iCountReference = 1;    // 参照の数（作成したスレッドの分の１から始まり、０になったらバッファをアリーナに返す）
 
     // コンストラクタ
     public Model( float[] af3Vertex )
     {
-        m_fbVertex = OpenGLBaseRenderer.makeFloatBuffer( af3Vertex );
+        this( OpenGLBaseRenderer.makeFloatBuffer( af3Vertex ) );
+    }
 
-        // 頂点の数
-        int iCountPoint = af3Vertex.length / 3;
-        // 三角形の数
-        int iCountTriangle = iCountPoint / 3;
+    // コンストラクタ（三角形ごとに３頂点を持つ頂点配列から作成する。同じ座標の頂点は共有する）
+    public Model( FloatBuffer fbVertex )
+    {
+        this( fbVertex, fbVertex.capacity() / 3 );
+    }
 
-        short[] asTriangleVertexIndex = new short[iCountTriangle * 3];
-        for( int iIndexTriangle = 0; iIndexTriangle < iCountTriangle; iIndexTriangle++ )
+    // コンストラクタ（先頭からiCountVertex個の頂点を使用する）
+    public Model( FloatBuffer fbVertex, int iCountVertex )
+    {
+        // 頂点の共有化
+        VertexWelder welder = new VertexWelder( 0.0f );
+        welder.weld( fbVertex, iCountVertex );
+        m_bufVertex = welder.buildVertexBuffer();
+
+        // 番号配列の型は、頂点の数で決まる（共有化の途中で、16ビットで表せない番号になった時に32ビットに広げている）
+        m_iIndexType = welder.getIndexType();
+        m_bufTriangleVertexIndex = welder.buildVertexIndexBuffer();
+
+        // 稜線は、線を描画する時か、稜線の情報が必要になった時に作成する
+    }
+
+    // コンストラクタ（キャッシュなどから、作成済みの各バッファを受け取る場合）（番号配列は、ShortBufferまたはIntBuffer）
+    // 稜線の番号配列がnullの場合は、必要になった時に作成する
+    public Model( FloatBuffer fbVertex, Buffer bufTriangleVertexIndex, Buffer bufEdgeVertexIndex, float[] af6Bounds )
+    {
+        m_bufVertex = fbVertex;
+        m_bufTriangleVertexIndex = bufTriangleVertexIndex;
+        if( null != bufEdgeVertexIndex )
+        {
+            m_edgeset = new EdgeSet( bufEdgeVertexIndex, null, null );
+        }
+        m_iIndexType = ( bufTriangleVertexIndex instanceof IntBuffer ) ? OpenGLBaseRenderer.GL_UNSIGNED_INT : GL10.GL_UNSIGNED_SHORT;
+        m_af6Bounds = af6Bounds;
+    }
+
+    // コンストラクタ（キャッシュなどから、量子化済みの頂点の座標値の配列を受け取る場合）
+    public Model( ShortBuffer sbVertex, float[] af3VertexScale, float[] af3VertexOffset, float fQuantizeError,
+                  Buffer bufTriangleVertexIndex, Buffer bufEdgeVertexIndex, float[] af6Bounds )
+    {
+        this( (FloatBuffer)null, bufTriangleVertexIndex, bufEdgeVertexIndex, af6Bounds );
+        m_bufVertex = sbVertex;
+        m_iVertexType = GL10.GL_SHORT;
+        m_af3VertexScale = af3VertexScale;
+        m_af3VertexOffset = af3VertexOffset;
+        m_fQuantizeError = fQuantizeError;
+    }
+
+    // コンストラクタ（派生クラスが各バッファを自分で管理する場合）
+    protected Model()
+    {
+    }
+
+    // 三角形ごとに３頂点を持つ場合の、三角形の頂点の番号の配列の作成
+    static ShortBuffer makeTriangleVertexIndexBuffer( int iCountTriangle )
+    {
+        ShortBuffer sbTriangleVertexIndex = IndexBufferBuilder.allocateShort( iCountTriangle * 3 );
+        for( int i = 0; i < iCountTriangle * 3; i++ )
         {
-            asTriangleVertexIndex[iIndexTriangle * 3 + 0] = (short)( iIndexTriangle * 3 + 0 );
-            asTriangleVertexIndex[iIndexTriangle * 3 + 1] = (short)( iIndexTriangle * 3 + 1 );
-            asTriangleVertexIndex[iIndexTriangle * 3 + 2] = (short)( iIndexTriangle * 3 + 2 );
+            sbTriangleVertexIndex.put( i, (short)i );
         }
-        m_sbTriangleVertexIndex = OpenGLBaseRenderer.makeShortBuffer( asTriangleVertexIndex );
+        return sbTriangleVertexIndex;
+    }
 
+    // 三角形ごとに３頂点を持つ場合の、稜線の番号配列の作成
+    static ShortBuffer makeEdgeVertexIndexBuffer( int iCountTriangle )
+    {
         // 稜線の数は、三角形の数の３倍。稜線の頂点の数は、稜線の数の２倍
-        short[] asEdgeVertexIndex = new short[iCountTriangle * 3 * 2];
+        ShortBuffer sbEdgeVertexIndex = IndexBufferBuilder.allocateShort( iCountTriangle * 3 * 2 );
         for( int iIndexTriangle = 0; iIndexTriangle < iCountTriangle; iIndexTriangle++ )
         {
-            asEdgeVertexIndex[iIndexTriangle * 6 + 0] = asTriangleVertexIndex[iIndexTriangle * 3 + 0];
-            asEdgeVertexIndex[iIndexTriangle * 6 + 1] = asTriangleVertexIndex[iIndexTriangle * 3 + 1];
-            asEdgeVertexIndex[iIndexTriangle * 6 + 2] = asTriangleVertexIndex[iIndexTriangle * 3 + 1];
-            asEdgeVertexIndex[iIndexTriangle * 6 + 3] = asTriangleVertexIndex[iIndexTriangle * 3 + 2];
-            asEdgeVertexIndex[iIndexTriangle * 6 + 4] = asTriangleVertexIndex[iIndexTriangle * 3 + 2];
-            asEdgeVertexIndex[iIndexTriangle * 6 + 5] = asTriangleVertexIndex[iIndexTriangle * 3 + 0];
+            sbEdgeVertexIndex.put( iIndexTriangle * 6 + 0, (short)( iIndexTriangle * 3 + 0 ) );
+            sbEdgeVertexIndex.put( iIndexTriangle * 6 + 1, (short)( iIndexTriangle * 3 + 1 ) );
+            sbEdgeVertexIndex.put( iIndexTriangle * 6 + 2, (short)( iIndexTriangle * 3 + 1 ) );
+            sbEdgeVertexIndex.put( iIndexTriangle * 6 + 3, (short)( iIndexTriangle * 3 + 2 ) );
+            sbEdgeVertexIndex.put( iIndexTriangle * 6 + 4, (short)( iIndexTriangle * 3 + 2 ) );
+            sbEdgeVertexIndex.put( iIndexTriangle * 6 + 5, (short)( iIndexTriangle * 3 + 0 ) );
+        }
+        return sbEdgeVertexIndex;
+    }
+
+    // int配列の先頭からiCount個の番号からの、番号配列の作成
+    static Buffer makeIndexBuffer( int[] aiIndex, int iCount, int iIndexType )
+    {
+        if( OpenGLBaseRenderer.GL_UNSIGNED_INT == iIndexType )
+        {
+            IntBuffer ibIndex = IndexBufferBuilder.allocateInt( iCount );
+            ibIndex.put( aiIndex, 0, iCount );
+            ibIndex.position( 0 );
+            return ibIndex;
+        }
+        ShortBuffer sbIndex = IndexBufferBuilder.allocateShort( iCount );
+        for( int i = 0; i < iCount; i++ )
+        {
+            sbIndex.put( i, (short)aiIndex[i] );
+        }
+        return sbIndex;
+    }
+
+    // 番号配列のi番目の番号
+    static int getIndex( Buffer bufIndex, int i )
+    {
+        if( bufIndex instanceof IntBuffer )
+        {
+            return ( (IntBuffer)bufIndex ).get( i );
+        }
+        return ( (ShortBuffer)bufIndex ).get( i ) & 0xFFFF;
+    }
+
+    // 頂点の座標値の配列のi番目の値
+    private static float getValue( Buffer bufVertex, int i )
+    {
+        if( bufVertex instanceof ShortBuffer )
+        {
+            return ( (ShortBuffer)bufVertex ).get( i );
+        }
+        return ( (FloatBuffer)bufVertex ).get( i );
+    }
+
+    // 頂点の座標値の量子化（16ビットにして、頂点の座標値の配列のメモリーを半分にする）（戻り値は、座標値の最大誤差）
+    // 描画する前に、読み込みスレッドで呼ぶ
+    public float quantize()
+    {
+        if( GL10.GL_SHORT == m_iVertexType )
+        {
+            return m_fQuantizeError;
+        }
+        VertexQuantizer quantizer = new VertexQuantizer( getBounds() );
+        Buffer          bufVertex = m_bufVertex;
+        m_bufVertex = quantizer.quantize( (FloatBuffer)bufVertex, getVertexCount() );
+        DirectBufferArena.getShared().release( bufVertex );    // 量子化は公開前に行うので、量子化前の配列はすぐに返せる
+        m_iVertexType = GL10.GL_SHORT;
+        m_af3VertexScale = quantizer.getScale();
+        m_af3VertexOffset = quantizer.getOffset();
+        m_fQuantizeError = quantizer.getMaxError();
+
+        // 作成済みのインターリーブした配列と部分メッシュは、量子化前の頂点の座標値を指しているので、作り直す（面法線は、元の座標系なのでそのまま）
+        DirectBufferArena.getShared().release( m_btbInterleavedVertex );
+        m_btbInterleavedVertex = null;
+        m_aSubMeshWhole = null;
+        m_aSubMeshSplit = null;
+        m_litmesh = null;
+        EdgeSet edgeset = m_edgeset;
+        if( null != edgeset )
+        {
+            m_edgeset = new EdgeSet( edgeset.m_bufEdgeVertexIndex, edgeset.m_aiEdgeTriangleStart, edgeset.m_aiEdgeTriangle );
+        }
+        return m_fQuantizeError;
+    }
+
+    // 頂点キャッシュの効率のための、三角形と頂点の並べ替え（戻り値は、並べ替える前と後のACMR。三角形が多すぎて並べ替えない場合はnull）
+    // 描画する前に、読み込みスレッドで呼ぶ。描画の見た目は変わらない（三角形ごとの頂点の順番は、そのまま）
+    // 頂点の座標値と番号配列は、ダイレクトバッファのまま、その場で並べ替える（ヒープに確保するのは、番号配列と並べ替えの作業配列だけ）
+    // ファイルの面法線は、読み込み中のモデルと共有しているので、並べ替えたものを新たに作る
+    public float[] optimizeVertexCache()
+    {
+        long lNanosStart    = System.nanoTime();
+        int  iCountTriangle = getTriangleCount();
+        int  iCountVertex   = getVertexCount();
+        if( VertexCacheOptimizer.MAX_TRIANGLE_COUNT < iCountTriangle )
+        {
+            AppLog.d( "Model", "vertex cache : skipped, " + iCountTriangle + " triangles" );
+            return null;
+        }
+        int[] aiTriangleVertexIndex = new int[iCountTriangle * 3];
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            aiTriangleVertexIndex[i] = getIndex( m_bufTriangleVertexIndex, i );
+        }
+        float fAcmrBefore     = VertexCacheOptimizer.measureAcmr( aiTriangleVertexIndex, iCountTriangle, VertexCacheOptimizer.MEASURE_CACHE_SIZE );
+        int[] aiTriangleOrder = VertexCacheOptimizer.reorderTriangles( aiTriangleVertexIndex, iCountTriangle, iCountVertex );
+        int[] aiVertexOrder   = VertexCacheOptimizer.reorderVertices( aiTriangleVertexIndex, iCountTriangle, iCountVertex );
+        float fAcmrAfter      = VertexCacheOptimizer.measureAcmr( aiTriangleVertexIndex, iCountTriangle, VertexCacheOptimizer.MEASURE_CACHE_SIZE );
+
+        // 番号配列
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            if( m_bufTriangleVertexIndex instanceof IntBuffer )
+            {
+                ( (IntBuffer)m_bufTriangleVertexIndex ).put( i, aiTriangleVertexIndex[i] );
+            }
+            else
+            {
+                ( (ShortBuffer)m_bufTriangleVertexIndex ).put( i, (short)aiTriangleVertexIndex[i] );
+            }
+        }
+        aiTriangleVertexIndex = null;    // 以降の並べ替えの間に回収できるようにする
+
+        // 頂点の座標値
+        if( m_bufVertex instanceof ShortBuffer )
+        {
+            permute( (ShortBuffer)m_bufVertex, aiVertexOrder );
+        }
+        else
+        {
+            permute( (FloatBuffer)m_bufVertex, aiVertexOrder );
+        }
+
+        // 面法線（三角形ごと）
+        if( null != m_fbFileFacetNormal )
+        {
+            FloatBuffer fbFileFacetNormal = ByteBuffer.allocateDirect( iCountTriangle * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+            for( int iIndexTriangle = 0; iIndexTriangle < iCountTriangle; iIndexTriangle++ )
+            {
+                for( int i3 = 0; i3 < 3; i3++ )
+                {
+                    fbFileFacetNormal.put( iIndexTriangle * 3 + i3, m_fbFileFacetNormal.get( aiTriangleOrder[iIndexTriangle] * 3 + i3 ) );
+                }
+            }
+            m_fbFileFacetNormal = fbFileFacetNormal;
+        }
+        if( null != m_fbFacetNormal )
+        {
+            permute( m_fbFacetNormal, aiTriangleOrder );
+        }
+
+        // 作成済みのインターリーブした配列、部分メッシュ、稜線は、並べ替える前の番号なので、作り直す
+        DirectBufferArena.getShared().release( m_btbInterleavedVertex );
+        m_btbInterleavedVertex = null;
+        m_aSubMeshWhole = null;
+        m_aSubMeshSplit = null;
+        m_litmesh = null;
+        m_edgeset = null;
+        AppLog.d( "Model", "vertex cache : ACMR " + fAcmrBefore + " -> " + fAcmrAfter + ", " + ( System.nanoTime() - lNanosStart ) / 1000000 + " ms" );
+        return new float[]{ fAcmrBefore, fAcmrAfter };
+    }
+
+    // ３成分ずつの値の、その場での並べ替え（i番目に、元のaiOrder[i]番目を入れる）
+    // 置換の巡回ごとに、巡回の先頭の値だけを退避して辿るので、バッファの写しを作らない
+    private static void permute( FloatBuffer fb, int[] aiOrder )
+    {
+        boolean[] abDone = new boolean[aiOrder.length];
+        float[]   af3    = new float[3];
+        for( int iStart = 0; iStart < aiOrder.length; iStart++ )
+        {
+            if( abDone[iStart] )
+            {
+                continue;
+            }
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                af3[i3] = fb.get( iStart * 3 + i3 );
+            }
+            int i = iStart;
+            while( true )
+            {
+                abDone[i] = true;
+                int iSource = aiOrder[i];
+                for( int i3 = 0; i3 < 3; i3++ )
+                {
+                    fb.put( i * 3 + i3, ( iStart == iSource ) ? af3[i3] : fb.get( iSource * 3 + i3 ) );
+                }
+                if( iStart == iSource )
+                {
+                    break;
+                }
+                i = iSource;
+            }
+        }
+    }
+
+    private static void permute( ShortBuffer sb, int[] aiOrder )
+    {
+        boolean[] abDone = new boolean[aiOrder.length];
+        short[]   as3    = new short[3];
+        for( int iStart = 0; iStart < aiOrder.length; iStart++ )
+        {
+            if( abDone[iStart] )
+            {
+                continue;
+            }
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                as3[i3] = sb.get( iStart * 3 + i3 );
+            }
+            int i = iStart;
+            while( true )
+            {
+                abDone[i] = true;
+                int iSource = aiOrder[i];
+                for( int i3 = 0; i3 < 3; i3++ )
+                {
+                    sb.put( i * 3 + i3, ( iStart == iSource ) ? as3[i3] : sb.get( iSource * 3 + i3 ) );
+                }
+                if( iStart == iSource )
+                {
+                    break;
+                }
+                i = iSource;
+            }
+        }
+    }
+
+    // 参照の追加（モデルを保持する側が、使い始める時に呼ぶ）
+    public synchronized void retain()
+    {
+        m_iCountReference++;
+    }
+
+    // 参照の解除（最後の参照が解除されたら、バッファをアリーナに返す。その後は、モデルを使ってはいけない）
+    public void release()
+    {
+        synchronized( this )
+        {
+            if( 0 < --m_iCountReference )
+            {
+                return;
+            }
+        }
+        releaseBuffers();
+    }
+
+    // バッファをアリーナに返す（アリーナから確保していないバッファ、キャッシュのファイルをマップしたバッファなどは、無視される）
+    // 稜線と部分メッシュは、破棄や作り直しの途中で参照が残りうるので、GCに任せる
+    protected void releaseBuffers()
+    {
+        DirectBufferArena.getShared().release( m_bufVertex );
+        DirectBufferArena.getShared().release( m_bufTriangleVertexIndex );
+        DirectBufferArena.getShared().release( m_btbInterleavedVertex );
+        DirectBufferArena.getShared().release( m_fbFacetNormal );
+        LodChain lodchain = m_lodchain;
+        if( null != lodchain )
+        {
+            lodchain.release();
         }
-        m_sbEdgeVertexIndex = OpenGLBaseRenderer.makeShortBuffer( asEdgeVertexIndex );
     }
 
     // アクセサ
-    public FloatBuffer getVertexBuffer()
+    public Buffer getVertexBuffer()
+    {
+        return m_bufVertex;
+    }
+
+    public int getVertexType()
+    {
+        return m_iVertexType;
+    }
+
+    public boolean isQuantized()
+    {
+        return GL10.GL_SHORT == getVertexType();
+    }
+
+    // 描画に使う頂点配列の並び（座標値、頂点の番号の色を、１頂点ずつまとめたインターリーブした並び）
+    public VertexLayout getVertexLayout()
+    {
+        return new VertexLayout( getVertexType(), false, true );
+    }
+
+    // 描画に使う頂点配列（getVertexLayout()の並び）（作成していなければ、作成する）
+    // 頂点の座標値の配列から作るので、座標値の値は同じ（量子化したモデルは、量子化した値）
+    public Buffer getInterleavedVertexBuffer()
+    {
+        ByteBuffer btbInterleavedVertex = m_btbInterleavedVertex;
+        if( null == btbInterleavedVertex )
+        {
+            btbInterleavedVertex = buildInterleavedVertexBuffer();
+        }
+        return btbInterleavedVertex;
+    }
+
+    private synchronized ByteBuffer buildInterleavedVertexBuffer()
+    {
+        if( null != m_btbInterleavedVertex )
+        { // 他のスレッドが作成済み
+            return m_btbInterleavedVertex;
+        }
+        long         lNanosStart          = System.nanoTime();
+        VertexLayout layout               = getVertexLayout();
+        ByteBuffer   btbInterleavedVertex = InterleavedVertexBuilder.build( this, layout );
+        m_btbInterleavedVertex = btbInterleavedVertex;
+        DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_INTERLEAVED, lNanosStart, btbInterleavedVertex.capacity() );
+        AppLog.d( "Model", "interleaved vertex : " + layout.getStride() + " bytes/vertex" );
+        return btbInterleavedVertex;
+    }
+
+    // 量子化した座標値の縮尺と中心（元の座標値は、量子化した値×縮尺＋中心）
+    public float[] getVertexScale()
+    {
+        return m_af3VertexScale;
+    }
+
+    public float[] getVertexOffset()
+    {
+        return m_af3VertexOffset;
+    }
+
+    public float getQuantizeError()
     {
-        return m_fbVertex;
+        return m_fQuantizeError;
     }
 
-    public ShortBuffer getTriangleVertexIndexBuffer()
+    // 頂点の座標値の配列に格納されている値（量子化している場合は、量子化した値）
+    public float getVertexValue( int iIndexVertex, int i3 )
     {
-        return m_sbTriangleVertexIndex;
+        return getValue( getVertexBuffer(), iIndexVertex * 3 + i3 );
     }
 
-    public ShortBuffer getEdgeVertexIndexBuffer()
+    // 頂点の座標値（量子化している場合は、元の座標値に戻す）
+    public float getVertex( int iIndexVertex, int i3 )
     {
-        return m_sbEdgeVertexIndex;
+        return dequantize( getVertexValue( iIndexVertex, i3 ), i3 );
+    }
+
+    private float dequantize( float fValue, int i3 )
+    {
+        if( isQuantized() )
+        {
+            return fValue * m_af3VertexScale[i3] + m_af3VertexOffset[i3];
+        }
+        return fValue;
+    }
+
+    public Buffer getTriangleVertexIndexBuffer()
+    {
+        return m_bufTriangleVertexIndex;
+    }
+
+    // 稜線の番号配列（作成していなければ、作成する）
+    public Buffer getEdgeVertexIndexBuffer()
+    {
+        return getEdgeSet().m_bufEdgeVertexIndex;
+    }
+
+    // 作成済みの稜線の番号配列（作成していなければnull）
+    public Buffer getBuiltEdgeVertexIndexBuffer()
+    {
+        EdgeSet edgeset = m_edgeset;
+        return ( null != edgeset ) ? edgeset.m_bufEdgeVertexIndex : null;
+    }
+
+    public int getIndexType()
+    {
+        return m_iIndexType;
+    }
+
+    // 三角形のi3番目の頂点の番号
+    public int getTriangleVertexIndex( int iIndexTriangle, int i3 )
+    {
+        return getIndex( m_bufTriangleVertexIndex, iIndexTriangle * 3 + i3 );
+    }
+
+    // 稜線のi2番目の頂点の番号
+    public int getEdgeVertexIndex( int iIndexEdge, int i2 )
+    {
+        return getIndex( getEdgeSet().m_bufEdgeVertexIndex, iIndexEdge * 2 + i2 );
     }
 
     public int getVertexCount()
     {
-        return m_fbVertex.capacity() / 3;
+        return m_bufVertex.capacity() / 3;
+    }
+
+    // 点の集合（点の描画とピックで、同じ座標の頂点を一度ずつ描くための、点ごとの頂点の番号の配列）
+    // 共有化した頂点は、それ自体が重なりのない点の集合なので、番号配列は持たない（null。頂点を先頭から順に描く）
+    public Buffer getPointVertexIndexBuffer()
+    {
+        return null;
+    }
+
+    public int getPointCount()
+    {
+        return getVertexCount();
     }
 
     public int getTriangleCount()
     {
-        return getVertexCount() / 3;
+        return m_bufTriangleVertexIndex.capacity() / 3;
     }
 
     public int getEdgeCount()
     {
-        return getTriangleCount() * 3;
+        return getEdgeSet().m_bufEdgeVertexIndex.capacity() / 2;
+    }
+
+    // 描画する三角形の部分メッシュ
+    // ・16ビットの番号配列のモデル、または32ビットの番号配列を描画できる場合は、全体を一つの部分メッシュとする
+    // ・それ以外の場合は、頂点の数が65535以下の部分メッシュに分割する（分割は最初の一回だけ）
+    public SubMesh[] getTriangleSubMeshes( boolean bElementIndexUint )
+    {
+        if( GL10.GL_UNSIGNED_SHORT == m_iIndexType || bElementIndexUint )
+        {
+            SubMesh[] aSubMesh = m_aSubMeshWhole;
+            if( null == aSubMesh )
+            {
+                aSubMesh = new SubMesh[]{ new SubMesh( getInterleavedVertexBuffer(), getVertexLayout(), m_bufTriangleVertexIndex, m_iIndexType, 0, getTriangleCount() ) };
+                m_aSubMeshWhole = aSubMesh;
+            }
+            return aSubMesh;
+        }
+        SubMesh[] aSubMesh = m_aSubMeshSplit;
+        if( null == aSubMesh )
+        {
+            long lNanosStart = System.nanoTime();
+            aSubMesh = SubMeshSplitter.splitTriangles( this );
+            DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_SUBMESH, lNanosStart, getSubMeshBytes( aSubMesh ) );
+            m_aSubMeshSplit = aSubMesh;
+        }
+        return aSubMesh;
+    }
+
+    // 描画する稜線の部分メッシュ（稜線を作成していなければ、作成する）
+    public synchronized SubMesh[] getEdgeSubMeshes( boolean bElementIndexUint )
+    {
+        EdgeSet edgeset = getEdgeSet();
+        if( GL10.GL_UNSIGNED_SHORT == m_iIndexType || bElementIndexUint )
+        {
+            if( null == edgeset.m_aSubMeshWhole )
+            {
+                edgeset.m_aSubMeshWhole = new SubMesh[]{ new SubMesh( getInterleavedVertexBuffer(), getVertexLayout(), edgeset.m_bufEdgeVertexIndex, m_iIndexType,
+                                                                      0, edgeset.m_bufEdgeVertexIndex.capacity() / 2 ) };
+            }
+            return edgeset.m_aSubMeshWhole;
+        }
+        if( null == edgeset.m_aSubMeshSplit )
+        {
+            long lNanosStart = System.nanoTime();
+            edgeset.m_aSubMeshSplit = SubMeshSplitter.splitEdges( this );
+            DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_SUBMESH, lNanosStart, getSubMeshBytes( edgeset.m_aSubMeshSplit ) );
+        }
+        return edgeset.m_aSubMeshSplit;
+    }
+
+    // 分割した部分メッシュのバイト数（頂点配列と番号配列は、それぞれ一つのバッファを切り出したもの）
+    private static long getSubMeshBytes( SubMesh[] aSubMesh )
+    {
+        long lBytes = 0;
+        for( SubMesh submesh : aSubMesh )
+        {
+            Buffer bufVertex = submesh.getVertexBuffer();
+            lBytes += bufVertex.capacity() * ( ( bufVertex instanceof ByteBuffer ) ? 1L : ( GL10.GL_SHORT == submesh.getVertexType() ) ? 2L : 4L );
+            lBytes += submesh.getIndexBuffer().capacity() * 2L;
+        }
+        return lBytes;
+    }
+
+    // ファイルの面法線のセット（読み込み時に、三角形の順番のまま渡す）（正しくない面法線は、面法線を作成する時に計算し直す）
+    public void setFileFacetNormalBuffer( FloatBuffer fbFileFacetNormal )
+    {
+        m_fbFileFacetNormal = fbFileFacetNormal;
+    }
+
+    // 面法線（作成していなければ、作成する）
+    public FloatBuffer getFacetNormalBuffer()
+    {
+        FloatBuffer fbFacetNormal = m_fbFacetNormal;
+        if( null == fbFacetNormal )
+        {
+            fbFacetNormal = buildFacetNormalBuffer();
+        }
+        return fbFacetNormal;
+    }
+
+    private synchronized FloatBuffer buildFacetNormalBuffer()
+    {
+        if( null != m_fbFacetNormal )
+        { // 他のスレッドが作成済み
+            return m_fbFacetNormal;
+        }
+        long            lNanosStart   = System.nanoTime();
+        NormalGenerator generator     = new NormalGenerator();
+        FloatBuffer     fbFacetNormal = generator.makeFacetNormals( this, m_fbFileFacetNormal );
+        m_fbFacetNormal = fbFacetNormal;
+        m_fbFileFacetNormal = null;
+        DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_FACET_NORMAL, lNanosStart, fbFacetNormal.capacity() * 4L );
+        AppLog.d( "Model", "facet normal : " + generator.getReusedCount() + " / " + getTriangleCount() + " reused from file" );
+        return fbFacetNormal;
+    }
+
+    // 陰影付きの描画用の三角形の部分メッシュ（作成していないか、折り目の角度（度）が異なれば、作成する）
+    // 分割の規則は、getTriangleSubMeshes()と同じ
+    public synchronized SubMesh[] getLitTriangleSubMeshes( boolean bElementIndexUint, float fCreaseAngle )
+    {
+        LitMesh litmesh = m_litmesh;
+        if( null == litmesh || fCreaseAngle != litmesh.m_fCreaseAngle )
+        {
+            litmesh = buildLitMesh( fCreaseAngle );
+        }
+        if( GL10.GL_UNSIGNED_SHORT == litmesh.m_iIndexType || bElementIndexUint )
+        {
+            if( null == litmesh.m_aSubMeshWhole )
+            {
+                litmesh.m_aSubMeshWhole = new SubMesh[]{ new SubMesh( litmesh.m_btbVertex, litmesh.m_layout, litmesh.m_bufTriangleVertexIndex, litmesh.m_iIndexType,
+                                                                      0, getTriangleCount() ) };
+            }
+            return litmesh.m_aSubMeshWhole;
+        }
+        if( null == litmesh.m_aSubMeshSplit )
+        {
+            long lNanosStart = System.nanoTime();
+            litmesh.m_aSubMeshSplit = SubMeshSplitter.split( litmesh.m_bufTriangleVertexIndex, 3, litmesh.m_btbVertex.capacity() / litmesh.m_layout.getStride(),
+                                                             SubMeshSplitter.MAX_VERTEX_COUNT, litmesh.m_btbVertex, litmesh.m_layout );
+            DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_SUBMESH, lNanosStart, getSubMeshBytes( litmesh.m_aSubMeshSplit ) );
+        }
+        return litmesh.m_aSubMeshSplit;
+    }
+
+    // 陰影付きの描画用の三角形の作成（頂点配列と番号配列は、描画中に作り直されても残りうるので、アリーナから借りずにGCに任せる）
+    private LitMesh buildLitMesh( float fCreaseAngle )
+    {
+        FloatBuffer     fbFacetNormal = getFacetNormalBuffer();
+        long            lNanosStart   = System.nanoTime();
+        NormalGenerator generator     = new NormalGenerator();
+        int             iCountVertex  = generator.smooth( this, fbFacetNormal, fCreaseAngle );
+
+        VertexLayout layout         = new VertexLayout( getVertexType(), true, true );
+        ByteBuffer   btbVertex      = ByteBuffer.allocateDirect( iCountVertex * layout.getStride() ).order( ByteOrder.nativeOrder() );
+        int[]        aiSourceVertex = generator.getSourceVertexArray();
+        int[]        aiNormal       = generator.getVertexNormalArray();
+        byte[]       abtRGB         = { 0, 0, 0 };
+        for( int i = 0; i < iCountVertex; i++ )
+        { // 色は、モデルの頂点の番号の色
+            InterleavedVertexBuilder.putVertex( btbVertex, layout, i, this, aiSourceVertex[i], aiNormal[i], aiSourceVertex[i], abtRGB );
+        }
+        int    iIndexType             = ( SubMeshSplitter.MAX_VERTEX_COUNT < iCountVertex ) ? OpenGLBaseRenderer.GL_UNSIGNED_INT : GL10.GL_UNSIGNED_SHORT;
+        Buffer bufTriangleVertexIndex = makeIndexBuffer( generator.getCornerVertexArray(), getTriangleCount() * 3, iIndexType );
+        LitMesh litmesh = new LitMesh( fCreaseAngle, layout, btbVertex, bufTriangleVertexIndex, iIndexType );
+        m_litmesh = litmesh;
+
+        long lBytes = btbVertex.capacity() + bufTriangleVertexIndex.capacity() * ( ( GL10.GL_UNSIGNED_SHORT == iIndexType ) ? 2L : 4L );
+        DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_LIT_MESH, lNanosStart, lBytes );
+        AppLog.d( "Model", "lit mesh : crease " + fCreaseAngle + " deg, " + iCountVertex + " vertices (" + getVertexCount() + " welded)" );
+        return litmesh;
+    }
+
+    // 法線の破棄（メモリーが足りない時に呼ぶ。次に必要になった時に作り直す。ファイルの面法線は、手放した後は使わない）
+    public synchronized void discardNormals()
+    {
+        if( null != m_litmesh )
+        {
+            m_litmesh = null;
+            DerivedBufferStats.recordDiscard( DerivedBufferStats.EBufferType.BT_LIT_MESH );
+        }
+        if( null != m_fbFacetNormal )
+        {
+            DirectBufferArena.getShared().release( m_fbFacetNormal );
+            m_fbFacetNormal = null;
+            DerivedBufferStats.recordDiscard( DerivedBufferStats.EBufferType.BT_FACET_NORMAL );
+        }
+    }
+
+    // 稜線に隣接する三角形の数（境界の稜線は１、非多様体の稜線は３以上）
+    public int getEdgeTriangleCount( int iIndexEdge )
+    {
+        EdgeSet edgeset = getEdgeTriangleSet();
+        return edgeset.m_aiEdgeTriangleStart[iIndexEdge + 1] - edgeset.m_aiEdgeTriangleStart[iIndexEdge];
+    }
+
+    // 稜線に隣接するi番目の三角形の番号
+    public int getEdgeTriangle( int iIndexEdge, int i )
+    {
+        EdgeSet edgeset = getEdgeTriangleSet();
+        return edgeset.m_aiEdgeTriangle[edgeset.m_aiEdgeTriangleStart[iIndexEdge] + i];
+    }
+
+    // 稜線が作成済みかどうか
+    public boolean hasEdges()
+    {
+        return null != m_edgeset;
+    }
+
+    // 稜線の破棄（メモリーが足りない時に呼ぶ。次に必要になった時に作り直す）
+    public void discardEdges()
+    {
+        if( null != m_edgeset )
+        {
+            m_edgeset = null;
+            DerivedBufferStats.recordDiscard( DerivedBufferStats.EBufferType.BT_EDGE );
+        }
+    }
+
+    // 稜線（作成していなければ、作成する）
+    private EdgeSet getEdgeSet()
+    {
+        EdgeSet edgeset = m_edgeset;
+        if( null == edgeset )
+        {
+            edgeset = buildEdgeSet( false );
+        }
+        return edgeset;
+    }
+
+    // 隣接三角形を持つ稜線（キャッシュから読み込んだモデルなど、隣接三角形が無い場合は作り直す）
+    private EdgeSet getEdgeTriangleSet()
+    {
+        EdgeSet edgeset = m_edgeset;
+        if( null == edgeset || null == edgeset.m_aiEdgeTriangleStart )
+        {
+            edgeset = buildEdgeSet( true );
+        }
+        return edgeset;
+    }
+
+    // 稜線の作成（隣り合う三角形で共有される稜線は一つにまとめる）
+    // 稜線の番号の振り方は常に同じなので、隣接三角形だけを作り直す場合は、作成済みの稜線の番号配列をそのまま使う
+    private synchronized EdgeSet buildEdgeSet( boolean bEdgeTriangle )
+    {
+        EdgeSet edgeset = m_edgeset;
+        if( null != edgeset && ( !bEdgeTriangle || null != edgeset.m_aiEdgeTriangleStart ) )
+        { // 他のスレッドが作成済み
+            return edgeset;
+        }
+
+        long  lNanosStart           = System.nanoTime();
+        int   iCountTriangle        = getTriangleCount();
+        int[] aiTriangleVertexIndex = new int[iCountTriangle * 3];
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            aiTriangleVertexIndex[i] = getTriangleVertexIndex( i / 3, i % 3 );
+        }
+        EdgeBuilder builder    = new EdgeBuilder();
+        int         iCountEdge = builder.build( aiTriangleVertexIndex, iCountTriangle );
+        Buffer bufEdgeVertexIndex = ( null != edgeset ) ? edgeset.m_bufEdgeVertexIndex
+                                                        : makeIndexBuffer( builder.getEdgeVertexIndexArray(), iCountEdge * 2, m_iIndexType );
+        EdgeSet edgesetNew = new EdgeSet( bufEdgeVertexIndex, builder.getEdgeTriangleStartArray(), builder.getEdgeTriangleArray() );
+        if( null != edgeset )
+        { // 部分メッシュは、同じ稜線の番号配列から作ったものなので、引き継ぐ
+            edgesetNew.m_aSubMeshWhole = edgeset.m_aSubMeshWhole;
+            edgesetNew.m_aSubMeshSplit = edgeset.m_aSubMeshSplit;
+        }
+        edgeset = edgesetNew;
+        m_edgeset = edgeset;
+
+        long lBytes = bufEdgeVertexIndex.capacity() * ( ( GL10.GL_UNSIGNED_SHORT == m_iIndexType ) ? 2L : 4L )
+                      + ( edgeset.m_aiEdgeTriangleStart.length + edgeset.m_aiEdgeTriangle.length ) * 4L;
+        DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_EDGE, lNanosStart, lBytes );
+        return edgeset;
+    }
+
+    // 詳細度の段階（作成していなければnull）
+    public LodChain getLodChain()
+    {
+        return m_lodchain;
+    }
+
+    public void setLodChain( LodChain lodchain )
+    {
+        m_lodchain = lodchain;
+    }
+
+    // バウンディングボックス（最小のxyz、最大のxyz）
+    public float[] getBounds()
+    {
+        if( null == m_af6Bounds )
+        {
+            m_af6Bounds = computeBounds();
+        }
+        return m_af6Bounds;
+    }
+
+    // バウンディングボックスの計算
+    protected float[] computeBounds()
+    {
+        int     iCountVertex = getVertexCount();
+        Buffer  bufVertex    = getVertexBuffer();
+        float[] af6Bounds    = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        for( int iIndexVertex = 0; iIndexVertex < iCountVertex; iIndexVertex++ )
+        {
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                float fValue = dequantize( getValue( bufVertex, iIndexVertex * 3 + i3 ), i3 );
+                af6Bounds[i3] = Math.min( af6Bounds[i3], fValue );
+                af6Bounds[3 + i3] = Math.max( af6Bounds[3 + i3], fValue );
+            }
+        }
+        return af6Bounds;
     }
 }
@@ -0,0 +1,682 @@
+package com.hiramine.modelviewertutorial;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Properties;
+
+// 読み込み済みモデルのキャッシュ
+// ・元ファイルのパス、サイズ、更新時刻をキーとして、キャッシュディレクトリに保存する
+// ・各配列はリトルエンディアンのまま保存し、読み込み時はファイルをメモリマップして、そのままバッファとして使う
+// ・合計サイズが上限を超えたら、最も長く使われていないファイルから削除する
+//   使った順番は、索引ファイルに記録する（ファイルの更新時刻は、書き換えられないファイルシステムがあるので使わない）
+// ・ヘッダーの確認を通っても中身が壊れているファイルは、削除して、元ファイルの解析に戻す
+//
+// ファイル形式（リトルエンディアン）
+//  0 : マジックナンバー（"MVC1"）
+//  4 : バージョン
+//  8 : 元ファイルのサイズ
+// 16 : 元ファイルの更新時刻
+// 24 : 頂点座標の数
+// 28 : 三角形の頂点番号の数
+// 32 : 稜線の頂点番号の数（0の場合は稜線を保存していないので、読み込んだ後、必要になった時に作成する）
+// 36 : 元ファイルのパスのバイト数
+// 40 : バウンディングボックス（float×6）
+// 64 : 頂点番号のバイト数（2または4）
+// 68 : 頂点座標のバイト数（4、量子化している場合は2）
+// 72 : 量子化した頂点座標の縮尺（float×3）
+// 84 : 量子化した頂点座標の中心（float×3）
+// 96 : 量子化による頂点座標の最大誤差
+// 100: 予約
+// 104: 元ファイルのパス（UTF-8）
+// 以降、頂点座標、三角形の頂点番号、稜線の頂点番号の順に、それぞれ8バイト境界から格納する
+public class ModelCache
+{
+    // 定数
+    private static final int     MAGIC             = 0x3143564D;    // "MVC1"
+    private static final int     VERSION           = 5;
+    private static final int     HEADER_SIZE       = 104;
+    private static final int     SECTION_ALIGN     = 8;
+    private static final int     WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final String  FILE_EXTENSION    = ".mvc";
+    private static final String  TEMP_EXTENSION    = ".tmp";
+    private static final String  ACCESS_INDEX_NAME = "access.properties";    // 使った順番の索引ファイル（キャッシュファイル名＝順番）
+    private static final Charset CHARSET_PATH      = Charset.forName( "UTF-8" );
+
+    // メンバー変数
+    private final File m_dirCache;
+    private final long m_lMaxBytes;    // キャッシュの合計サイズの上限
+    private Properties m_propertiesAccess;    // キャッシュファイル名ごとの、使った順番（読み込むまではnull）
+    private long       m_lAccessSequence;    // 最後に使った順番
+
+    // コンストラクタ
+    public ModelCache( File dirCache, long lMaxBytes )
+    {
+        m_dirCache = dirCache;
+        m_lMaxBytes = lMaxBytes;
+    }
+
+    // キャッシュからの取得（キャッシュが無い、または元ファイルが更新されている場合はnull）
+    public synchronized Model get( File fileSource )
+    {
+        File fileCache = getCacheFile( fileSource );
+        if( !fileCache.isFile() )
+        {
+            return null;
+        }
+
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile( fileCache, "r" );
+            FileChannel channel = raf.getChannel();
+            long        lSize   = channel.size();
+            if( HEADER_SIZE > lSize )
+            {
+                return null;
+            }
+            MappedByteBuffer mbb = channel.map( FileChannel.MapMode.READ_ONLY, 0, lSize );
+            mbb.order( ByteOrder.LITTLE_ENDIAN );
+
+            // ヘッダーの確認
+            if( MAGIC != mbb.getInt( 0 )
+                || VERSION != mbb.getInt( 4 )
+                || fileSource.length() != mbb.getLong( 8 )
+                || fileSource.lastModified() != mbb.getLong( 16 ) )
+            {
+                return null;
+            }
+            int iCountVertexFloat   = mbb.getInt( 24 );
+            int iCountTriangleIndex = mbb.getInt( 28 );
+            int iCountEdgeIndex     = mbb.getInt( 32 );
+            int iLengthPath         = mbb.getInt( 36 );
+            int iSizeIndex          = mbb.getInt( 64 );
+            int iSizeVertex         = mbb.getInt( 68 );
+            if( 0 > iCountVertexFloat || 0 > iCountTriangleIndex || 0 > iCountEdgeIndex || 0 > iLengthPath
+                || ( 2 != iSizeIndex && 4 != iSizeIndex )
+                || ( 2 != iSizeVertex && 4 != iSizeVertex ) )
+            {
+                return null;
+            }
+            float[] af6Bounds = new float[6];
+            for( int i = 0; i < 6; i++ )
+            {
+                af6Bounds[i] = mbb.getFloat( 40 + i * 4 );
+            }
+
+            // 各セクションの位置
+            long lOffsetVertex   = align( HEADER_SIZE + (long)iLengthPath );
+            long lOffsetTriangle = align( lOffsetVertex + (long)iCountVertexFloat * iSizeVertex );
+            long lOffsetEdge     = align( lOffsetTriangle + (long)iCountTriangleIndex * iSizeIndex );
+            if( lOffsetEdge + (long)iCountEdgeIndex * iSizeIndex > lSize )
+            {
+                return null;
+            }
+
+            // 元ファイルのパスの確認（キーのハッシュ値の衝突対策）
+            byte[] abPath = new byte[iLengthPath];
+            mbb.position( HEADER_SIZE );
+            mbb.get( abPath );
+            if( !fileSource.getAbsolutePath().equals( new String( abPath, CHARSET_PATH ) ) )
+            {
+                return null;
+            }
+
+            ByteBuffer  bbVertex               = slice( mbb, lOffsetVertex, (long)iCountVertexFloat * iSizeVertex );
+            Buffer      bufTriangleVertexIndex = asIndexBuffer( slice( mbb, lOffsetTriangle, (long)iCountTriangleIndex * iSizeIndex ), iSizeIndex );
+            Buffer      bufEdgeVertexIndex     = null;    // 稜線を保存していなければ、必要になった時に作成する
+            if( 0 < iCountEdgeIndex )
+            {
+                bufEdgeVertexIndex = asIndexBuffer( slice( mbb, lOffsetEdge, (long)iCountEdgeIndex * iSizeIndex ), iSizeIndex );
+            }
+            if( !isIndexInRange( bufTriangleVertexIndex, iCountVertexFloat / 3 )
+                || ( null != bufEdgeVertexIndex && !isIndexInRange( bufEdgeVertexIndex, iCountVertexFloat / 3 ) ) )
+            { // 範囲外の頂点番号は、描画時にバッファの外を読むので、壊れたファイルとして扱う
+                throw new IllegalArgumentException( "vertex index out of range" );
+            }
+            if( ByteOrder.LITTLE_ENDIAN != ByteOrder.nativeOrder() )
+            { // ネイティブのバイトオーダーと異なる場合は、マップしたままではOpenGLに渡せないので、複製する
+                bufTriangleVertexIndex = copyToNativeOrder( bufTriangleVertexIndex );
+                if( null != bufEdgeVertexIndex )
+                {
+                    bufEdgeVertexIndex = copyToNativeOrder( bufEdgeVertexIndex );
+                }
+            }
+
+            // 最近使ったキャッシュとして記録する
+            touch( fileCache );
+
+            if( 2 == iSizeVertex )
+            { // 量子化した頂点座標
+                float[] af3Scale  = new float[3];
+                float[] af3Offset = new float[3];
+                for( int i = 0; i < 3; i++ )
+                {
+                    af3Scale[i] = mbb.getFloat( 72 + i * 4 );
+                    af3Offset[i] = mbb.getFloat( 84 + i * 4 );
+                }
+                ShortBuffer sbVertex = bbVertex.asShortBuffer();
+                if( ByteOrder.LITTLE_ENDIAN != ByteOrder.nativeOrder() )
+                {
+                    sbVertex = (ShortBuffer)copyToNativeOrder( sbVertex );
+                }
+                return new Model( sbVertex, af3Scale, af3Offset, mbb.getFloat( 96 ),
+                                  bufTriangleVertexIndex, bufEdgeVertexIndex, af6Bounds );
+            }
+            FloatBuffer fbVertex = bbVertex.asFloatBuffer();
+            if( ByteOrder.LITTLE_ENDIAN != ByteOrder.nativeOrder() )
+            {
+                fbVertex = copyToNativeOrder( fbVertex );
+            }
+            return new Model( fbVertex, bufTriangleVertexIndex, bufEdgeVertexIndex, af6Bounds );
+        }
+        catch( IOException e )
+        {
+            AppLog.e( "ModelCache", "get error : " + e );
+            return null;
+        }
+        catch( RuntimeException e )
+        { // 中身が壊れたファイル（BufferUnderflowException、IndexOutOfBoundsException、IllegalArgumentExceptionなど）
+            AppLog.e( "ModelCache", "get error, delete " + fileCache.getName() + " : " + e );
+            closeQuietly( raf );
+            raf = null;
+            delete( fileCache );
+            return null;
+        }
+        finally
+        {
+            // マップしたバッファは、チャンネルを閉じても有効
+            closeQuietly( raf );
+        }
+    }
+
+    // キャッシュへの保存
+    public synchronized boolean put( File fileSource, Model model )
+    {
+        int    iCountVertexFloat   = model.getVertexCount() * 3;
+        int    iCountTriangleIndex = model.getTriangleCount() * 3;
+        Buffer bufEdgeVertexIndex  = model.getBuiltEdgeVertexIndexBuffer();    // 稜線は、作成済みの場合だけ保存する
+        int    iCountEdgeIndex     = ( null != bufEdgeVertexIndex ) ? bufEdgeVertexIndex.capacity() : 0;
+        int    iSizeIndex          = ( model.getTriangleVertexIndexBuffer() instanceof IntBuffer ) ? 4 : 2;
+        int    iSizeVertex         = model.isQuantized() ? 2 : 4;
+        byte[] abPath              = fileSource.getAbsolutePath().getBytes( CHARSET_PATH );
+
+        long lOffsetVertex   = align( HEADER_SIZE + (long)abPath.length );
+        long lOffsetTriangle = align( lOffsetVertex + (long)iCountVertexFloat * iSizeVertex );
+        long lOffsetEdge     = align( lOffsetTriangle + (long)iCountTriangleIndex * iSizeIndex );
+        long lSize           = lOffsetEdge + (long)iCountEdgeIndex * iSizeIndex;
+        if( lSize > m_lMaxBytes )
+        { // 上限を超えるモデルはキャッシュしない
+            return false;
+        }
+        if( !m_dirCache.isDirectory() && !m_dirCache.mkdirs() )
+        {
+            return false;
+        }
+
+        File             fileCache = getCacheFile( fileSource );
+        File             fileTemp  = new File( fileCache.getPath() + TEMP_EXTENSION );
+        RandomAccessFile raf       = null;
+        try
+        {
+            raf = new RandomAccessFile( fileTemp, "rw" );
+            raf.setLength( 0 );
+            FileChannel channel = raf.getChannel();
+            ByteBuffer  bb      = ByteBuffer.allocateDirect( WRITE_BUFFER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+
+            // ヘッダー
+            bb.putInt( MAGIC );
+            bb.putInt( VERSION );
+            bb.putLong( fileSource.length() );
+            bb.putLong( fileSource.lastModified() );
+            bb.putInt( iCountVertexFloat );
+            bb.putInt( iCountTriangleIndex );
+            bb.putInt( iCountEdgeIndex );
+            bb.putInt( abPath.length );
+            float[] af6Bounds = model.getBounds();
+            for( int i = 0; i < 6; i++ )
+            {
+                bb.putFloat( af6Bounds[i] );
+            }
+            bb.putInt( iSizeIndex );
+            bb.putInt( iSizeVertex );
+            float[] af3Scale  = model.isQuantized() ? model.getVertexScale() : new float[]{ 1.0f, 1.0f, 1.0f };
+            float[] af3Offset = model.isQuantized() ? model.getVertexOffset() : new float[3];
+            for( int i = 0; i < 3; i++ )
+            {
+                bb.putFloat( af3Scale[i] );
+            }
+            for( int i = 0; i < 3; i++ )
+            {
+                bb.putFloat( af3Offset[i] );
+            }
+            bb.putFloat( model.getQuantizeError() );
+            bb.putInt( 0 );
+            bb.flip();
+            writeFully( channel, bb );
+            writeFully( channel, ByteBuffer.wrap( abPath ) );
+
+            // 各セクション（表示中のモデルのバッファの位置を変えないよう、複製を使う）
+            channel.position( lOffsetVertex );
+            if( model.isQuantized() )
+            {
+                writeShorts( channel, bb, ( (ShortBuffer)model.getVertexBuffer() ).duplicate(), iCountVertexFloat );
+            }
+            else
+            {
+                writeFloats( channel, bb, ( (FloatBuffer)model.getVertexBuffer() ).duplicate(), iCountVertexFloat );
+            }
+            channel.position( lOffsetTriangle );
+            writeIndices( channel, bb, model.getTriangleVertexIndexBuffer(), iCountTriangleIndex );
+            if( null != bufEdgeVertexIndex )
+            {
+                channel.position( lOffsetEdge );
+                writeIndices( channel, bb, bufEdgeVertexIndex, iCountEdgeIndex );
+            }
+            raf.close();
+            raf = null;
+
+            // 書き込みが完了してから置き換える（書き込み途中のファイルを読み込まないように）
+            if( fileCache.exists() && !fileCache.delete() )
+            {
+                return false;
+            }
+            if( !fileTemp.renameTo( fileCache ) )
+            {
+                return false;
+            }
+            touch( fileCache );
+        }
+        catch( IOException e )
+        {
+            AppLog.e( "ModelCache", "put error : " + e );
+            return false;
+        }
+        finally
+        {
+            closeQuietly( raf );
+            if( fileTemp.exists() )
+            {
+                fileTemp.delete();
+            }
+        }
+
+        evict();
+        return true;
+    }
+
+    // キャッシュの合計サイズ
+    public synchronized long getTotalBytes()
+    {
+        long lTotal = 0;
+        for( File file : listCacheFiles() )
+        {
+            lTotal += file.length();
+        }
+        return lTotal;
+    }
+
+    // 上限を超えている間、最も長く使われていないキャッシュから削除する
+    private void evict()
+    {
+        File[] afile  = listCacheFiles();
+        long   lTotal = 0;
+        for( File file : afile )
+        {
+            lTotal += file.length();
+        }
+        if( lTotal <= m_lMaxBytes )
+        {
+            return;
+        }
+
+        // 使った順番の古い順（索引に無いファイルは、最も古いとみなし、その中では更新時刻の古い順）
+        final Properties properties = loadAccessIndex();
+        Arrays.sort( afile, new Comparator<File>()
+        {
+            @Override
+            public int compare( File file1, File file2 )
+            {
+                long l1 = getAccessSequence( properties, file1.getName() );
+                long l2 = getAccessSequence( properties, file2.getName() );
+                if( l1 == l2 )
+                {
+                    l1 = file1.lastModified();
+                    l2 = file2.lastModified();
+                }
+                return ( l1 < l2 ) ? -1 : ( ( l1 == l2 ) ? 0 : 1 );
+            }
+        } );
+        for( File file : afile )
+        {
+            if( lTotal <= m_lMaxBytes )
+            {
+                break;
+            }
+            long lLength = file.length();
+            if( file.delete() )
+            {   // マップ中のファイルを削除しても、マップしたバッファはそのまま使える
+                lTotal -= lLength;
+                properties.remove( file.getName() );
+            }
+        }
+        saveAccessIndex( properties );
+    }
+
+    // キャッシュファイルと、その索引の削除
+    private void delete( File fileCache )
+    {
+        if( fileCache.exists() && !fileCache.delete() )
+        {
+            AppLog.e( "ModelCache", "delete error : " + fileCache.getName() );
+        }
+        Properties properties = loadAccessIndex();
+        if( null != properties.remove( fileCache.getName() ) )
+        {
+            saveAccessIndex( properties );
+        }
+    }
+
+    // 最近使ったキャッシュとしての記録（索引ファイルに、次の順番を書き込む）
+    private void touch( File fileCache )
+    {
+        Properties properties = loadAccessIndex();
+        properties.setProperty( fileCache.getName(), Long.toString( ++m_lAccessSequence ) );
+        saveAccessIndex( properties );
+    }
+
+    // 使った順番（索引に無ければ0）
+    private static long getAccessSequence( Properties properties, String strName )
+    {
+        try
+        {
+            return Long.parseLong( properties.getProperty( strName, "0" ) );
+        }
+        catch( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    // 使った順番の索引の読み込み（読み込み済みなら、それを返す。読めない場合は空の索引）
+    private Properties loadAccessIndex()
+    {
+        if( null != m_propertiesAccess )
+        {
+            return m_propertiesAccess;
+        }
+        Properties properties = new Properties();
+        File       fileIndex  = new File( m_dirCache, ACCESS_INDEX_NAME );
+        if( fileIndex.isFile() )
+        {
+            FileInputStream fis = null;
+            try
+            {
+                fis = new FileInputStream( fileIndex );
+                properties.load( fis );
+            }
+            catch( IOException | IllegalArgumentException e )
+            {
+                AppLog.e( "ModelCache", "load access index error : " + e );
+                properties.clear();
+            }
+            finally
+            {
+                closeQuietly( fis );
+            }
+        }
+        for( String strName : properties.stringPropertyNames() )
+        {
+            m_lAccessSequence = Math.max( m_lAccessSequence, getAccessSequence( properties, strName ) );
+        }
+        m_propertiesAccess = properties;
+        return properties;
+    }
+
+    // 使った順番の索引の保存（書き込みが完了してから置き換える）
+    private void saveAccessIndex( Properties properties )
+    {
+        if( !m_dirCache.isDirectory() )
+        {
+            return;
+        }
+        File             fileIndex = new File( m_dirCache, ACCESS_INDEX_NAME );
+        File             fileTemp  = new File( fileIndex.getPath() + TEMP_EXTENSION );
+        FileOutputStream fos       = null;
+        try
+        {
+            fos = new FileOutputStream( fileTemp );
+            properties.store( fos, null );
+            fos.close();
+            fos = null;
+            if( ( fileIndex.exists() && !fileIndex.delete() )
+                || !fileTemp.renameTo( fileIndex ) )
+            {
+                AppLog.e( "ModelCache", "save access index error : rename" );
+            }
+        }
+        catch( IOException e )
+        {
+            AppLog.e( "ModelCache", "save access index error : " + e );
+        }
+        finally
+        {
+            closeQuietly( fos );
+            if( fileTemp.exists() )
+            {
+                fileTemp.delete();
+            }
+        }
+    }
+
+    private File[] listCacheFiles()
+    {
+        File[] afile = m_dirCache.listFiles();
+        if( null == afile )
+        {
+            return new File[0];
+        }
+        int iCount = 0;
+        for( File file : afile )
+        {
+            if( file.getName().endsWith( FILE_EXTENSION ) )
+            {
+                afile[iCount++] = file;
+            }
+        }
+        return Arrays.copyOf( afile, iCount );
+    }
+
+    // キャッシュファイル（パス、サイズ、更新時刻のハッシュ値をファイル名とする）
+    File getCacheFile( File fileSource )
+    {
+        long lHash = 0xcbf29ce484222325L;    // FNV-1a
+        lHash = hash( lHash, fileSource.getAbsolutePath().getBytes( CHARSET_PATH ) );
+        lHash = hash( lHash, fileSource.length() );
+        lHash = hash( lHash, fileSource.lastModified() );
+        return new File( m_dirCache, String.format( Locale.US, "%016x", lHash ) + FILE_EXTENSION );
+    }
+
+    private static long hash( long lHash, byte[] ab )
+    {
+        for( byte b : ab )
+        {
+            lHash ^= ( b & 0xff );
+            lHash *= 0x100000001b3L;
+        }
+        return lHash;
+    }
+
+    private static long hash( long lHash, long lValue )
+    {
+        for( int i = 0; i < 8; i++ )
+        {
+            lHash ^= ( lValue >>> ( i * 8 ) ) & 0xff;
+            lHash *= 0x100000001b3L;
+        }
+        return lHash;
+    }
+
+    private static long align( long lOffset )
+    {
+        return ( lOffset + SECTION_ALIGN - 1 ) & ~( (long)SECTION_ALIGN - 1 );
+    }
+
+    private static ByteBuffer slice( MappedByteBuffer mbb, long lOffset, long lLength )
+    {
+        ByteBuffer bb = mbb.duplicate();
+        bb.limit( (int)( lOffset + lLength ) );
+        bb.position( (int)lOffset );
+        return bb.slice().order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    private static FloatBuffer copyToNativeOrder( FloatBuffer fb )
+    {
+        FloatBuffer fbCopy = ByteBuffer.allocateDirect( fb.remaining() * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+        fbCopy.put( fb );
+        fbCopy.position( 0 );
+        return fbCopy;
+    }
+
+    private static Buffer asIndexBuffer( ByteBuffer bb, int iSizeIndex )
+    {
+        return ( 4 == iSizeIndex ) ? bb.asIntBuffer() : bb.asShortBuffer();
+    }
+
+    // 頂点番号が、全て頂点の数未満かどうか
+    private static boolean isIndexInRange( Buffer bufIndex, int iCountVertex )
+    {
+        for( int i = 0; i < bufIndex.capacity(); i++ )
+        {
+            int iIndexVertex = Model.getIndex( bufIndex, i );
+            if( 0 > iIndexVertex || iCountVertex <= iIndexVertex )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Buffer copyToNativeOrder( Buffer bufIndex )
+    {
+        if( bufIndex instanceof IntBuffer )
+        {
+            IntBuffer ib     = (IntBuffer)bufIndex;
+            IntBuffer ibCopy = ByteBuffer.allocateDirect( ib.remaining() * 4 ).order( ByteOrder.nativeOrder() ).asIntBuffer();
+            ibCopy.put( ib );
+            ibCopy.position( 0 );
+            return ibCopy;
+        }
+        ShortBuffer sb     = (ShortBuffer)bufIndex;
+        ShortBuffer sbCopy = ByteBuffer.allocateDirect( sb.remaining() * 2 ).order( ByteOrder.nativeOrder() ).asShortBuffer();
+        sbCopy.put( sb );
+        sbCopy.position( 0 );
+        return sbCopy;
+    }
+
+    private static void writeFloats( FileChannel channel, ByteBuffer bb, FloatBuffer fb, int iCount ) throws IOException
+    {
+        fb.position( 0 );
+        fb.limit( iCount );
+        while( fb.hasRemaining() )
+        {
+            bb.clear();
+            FloatBuffer fbChunk = bb.asFloatBuffer();
+            int         iChunk  = Math.min( fbChunk.capacity(), fb.remaining() );
+            FloatBuffer fbSrc   = fb.slice();
+            fbSrc.limit( iChunk );
+            fbChunk.put( fbSrc );
+            fb.position( fb.position() + iChunk );
+            bb.limit( iChunk * 4 );
+            writeFully( channel, bb );
+        }
+    }
+
+    private static void writeShorts( FileChannel channel, ByteBuffer bb, ShortBuffer sb, int iCount ) throws IOException
+    {
+        sb.position( 0 );
+        sb.limit( iCount );
+        while( sb.hasRemaining() )
+        {
+            bb.clear();
+            ShortBuffer sbChunk = bb.asShortBuffer();
+            int         iChunk  = Math.min( sbChunk.capacity(), sb.remaining() );
+            ShortBuffer sbSrc   = sb.slice();
+            sbSrc.limit( iChunk );
+            sbChunk.put( sbSrc );
+            sb.position( sb.position() + iChunk );
+            bb.limit( iChunk * 2 );
+            writeFully( channel, bb );
+        }
+    }
+
+    // 番号配列の書き込み（表示中のモデルのバッファの位置を変えないよう、複製を使う）
+    private static void writeIndices( FileChannel channel, ByteBuffer bb, Buffer bufIndex, int iCount ) throws IOException
+    {
+        if( bufIndex instanceof IntBuffer )
+        {
+            writeInts( channel, bb, ( (IntBuffer)bufIndex ).duplicate(), iCount );
+        }
+        else
+        {
+            writeShorts( channel, bb, ( (ShortBuffer)bufIndex ).duplicate(), iCount );
+        }
+    }
+
+    private static void writeInts( FileChannel channel, ByteBuffer bb, IntBuffer ib, int iCount ) throws IOException
+    {
+        ib.position( 0 );
+        ib.limit( iCount );
+        while( ib.hasRemaining() )
+        {
+            bb.clear();
+            IntBuffer ibChunk = bb.asIntBuffer();
+            int       iChunk  = Math.min( ibChunk.capacity(), ib.remaining() );
+            IntBuffer ibSrc   = ib.slice();
+            ibSrc.limit( iChunk );
+            ibChunk.put( ibSrc );
+            ib.position( ib.position() + iChunk );
+            bb.limit( iChunk * 4 );
+            writeFully( channel, bb );
+        }
+    }
+
+    private static void writeFully( FileChannel channel, ByteBuffer bb ) throws IOException
+    {
+        while( bb.hasRemaining() )
+        {
+            channel.write( bb );
+        }
+    }
+
+    private static void closeQuietly( Closeable closeable )
+    {
+        if( null == closeable )
+        {
+            return;
+        }
+        try
+        {
+            closeable.close();
+        }
+        catch( IOException e )
+        {
+            AppLog.e( "ModelCache", "close error : " + e );
+        }
+    }
+}
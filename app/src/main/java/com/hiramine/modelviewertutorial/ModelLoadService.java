@@ -0,0 +1,398 @@
+package com.hiramine.modelviewertutorial;
+
+import android.opengl.GLSurfaceView;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+// モデルの非同期読み込みサービス
+// ・読み込みはワーカースレッドで行い、UIスレッドをブロックしない
+// ・読み込んだバイト数で進捗を通知する
+// ・大きなアスキー形式のファイルは、段階的に読み込まず、全コアで並列にパースする（パース中も、進捗を通知し、中止できる）
+// ・別のファイルを開くと、読み込み中のファイルは中止する
+// ・レンダラーへのモデルの受け渡しは、queueEventでGLスレッドで行う
+// ・キャッシュがあれば、ファイルを解析せずにキャッシュから読み込む
+// ・頂点の共有化の後に、頂点キャッシュの効率のため、三角形と頂点を並べ替える（キャッシュには、並べ替えたまま保存する。三角形が多すぎるモデルは並べ替えない）
+// ・表示した後に、同じワーカースレッドで詳細度の段階を作成し、モデルにセットする（次の読み込みを開始すると、中止する）
+public class ModelLoadService {
+    // 読み込み状況の通知先（UIスレッドで呼ばれる）
+    public interface Callback
+    {
+        // 読み込みの進捗
+        void onLoadProgress( String strPath, long lBytesRead, long lBytesTotal );
+
+        // 読み込みの完了
+        void onLoadFinished( String strPath );
+
+        // 読み込みの失敗
+        void onLoadFailed( String strPath );
+    }
+
+    // 定数
+    private static final long PROGRESS_INTERVAL_NANOS = 100L * 1000 * 1000;    // 進捗の通知間隔
+
+    // メンバー変数
+    private final GLSurfaceView       m_glsurfaceview;
+    private final ViewerRenderer m_renderer;
+    private final ModelCache          m_modelcache;    // 読み込み済みモデルのキャッシュ（nullの場合は使わない）
+    private final ExecutorService     m_executor;
+    private final Handler             m_handlerUI;
+    private Callback m_callback;
+    private volatile boolean m_bQuantizeVertex;    // 頂点の座標値を16ビットに量子化するかどうか
+    private LoadTask m_taskCurrent;    // 最後に開始した読み込み（UIスレッドからのみアクセス）
+
+    // コンストラクタ
+    public ModelLoadService( GLSurfaceView glsurfaceview, ViewerRenderer renderer, ModelCache modelcache )
+    {
+        m_glsurfaceview = glsurfaceview;
+        m_renderer = renderer;
+        m_modelcache = modelcache;
+        m_executor = Executors.newSingleThreadExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "ModelLoadService" );
+                thread.setPriority( Thread.NORM_PRIORITY - 1 );
+                return thread;
+            }
+        } );
+        m_handlerUI = new Handler( Looper.getMainLooper() );
+    }
+
+    // アクセサ
+    public void setCallback( Callback callback )
+    {
+        m_callback = callback;
+    }
+
+    // 頂点の座標値の量子化の指定（次に読み込むモデルから有効）
+    public void setQuantizeVertex( boolean bQuantizeVertex )
+    {
+        m_bQuantizeVertex = bQuantizeVertex;
+    }
+
+    public boolean isQuantizeVertex()
+    {
+        return m_bQuantizeVertex;
+    }
+
+    public boolean isLoading()
+    {
+        return null != m_taskCurrent && !m_taskCurrent.m_bFinished;
+    }
+
+    // 読み込みの開始（読み込み中のファイルがあれば中止する）
+    public void load( String strPath )
+    {
+        cancel();
+        m_taskCurrent = new LoadTask( strPath );
+        m_executor.execute( m_taskCurrent );
+    }
+
+    // 読み込みの中止
+    public void cancel()
+    {
+        if( null == m_taskCurrent )
+        {
+            return;
+        }
+        m_taskCurrent.m_bCancelled = true;
+        m_taskCurrent = null;
+    }
+
+    // 終了処理
+    public void shutdown()
+    {
+        cancel();
+        m_executor.shutdownNow();
+    }
+
+    // 読み込み処理（ワーカースレッドで実行される）
+    private class LoadTask implements Runnable, StlFileLoader.StreamingListener, MeshSimplifier.CancelSignal
+    {
+        private final String    m_strPath;
+        volatile boolean        m_bCancelled;
+        volatile boolean        m_bFinished;
+        private AppendableModel m_modelLoading;    // 読み込み中のモデル
+        private long            m_lTimeLastProgress;    // 最後に進捗を通知した時刻
+
+        LoadTask( String strPath )
+        {
+            m_strPath = strPath;
+        }
+
+        @Override
+        public void run()
+        {
+            if( isCancelled() )
+            {
+                m_bFinished = true;
+                return;
+            }
+
+            File fileSource = new File( m_strPath );
+            if( null != m_modelcache )
+            {
+                Model modelCached = m_modelcache.get( fileSource );
+                if( null != modelCached )
+                { // キャッシュから読み込めた場合は、解析しない
+                    m_bFinished = true;
+                    if( !isCancelled() )
+                    {
+                        finishLoad( modelCached );
+                        buildLodChain( modelCached );
+                    }
+                    modelCached.release();
+                    return;
+                }
+            }
+
+            Model modelWelded = loadModel();
+
+            if( isCancelled() )
+            { // 中止（表示中の読み込み途中のモデルは、後から開始した読み込みで差し替わらない限り破棄する）
+                m_bFinished = true;
+                discardLoadingModel();
+                if( null != modelWelded )
+                {
+                    modelWelded.release();
+                }
+                return;
+            }
+
+            if( null == modelWelded )
+            { // 失敗
+                m_bFinished = true;
+                discardLoadingModel();
+                postToUI( new Runnable()
+                {
+                    public void run()
+                    {
+                        if( null != m_callback )
+                        {
+                            m_callback.onLoadFailed( m_strPath );
+                        }
+                    }
+                } );
+                return;
+            }
+
+            // 頂点キャッシュの効率のための、三角形と頂点の並べ替え（キャッシュにも並べ替えたまま保存する）
+            modelWelded.optimizeVertexCache();
+            if( m_bQuantizeVertex )
+            { // 量子化（キャッシュにも量子化したまま保存する）
+                float fError = modelWelded.quantize();
+                AppLog.i( "ModelLoadService", "quantized " + m_strPath + " : max error " + fError );
+            }
+            m_bFinished = true;
+            if( isCancelled() )
+            {
+                discardLoadingModel();
+                modelWelded.release();
+                return;
+            }
+
+            // 完了（ピック用の色配列などを、全三角形で作り直すため、改めてセットする）
+            finishLoad( modelWelded );
+
+            // 次回はキャッシュから読み込む
+            if( null != m_modelcache )
+            {
+                m_modelcache.put( fileSource, modelWelded );
+            }
+
+            // 詳細度の段階（キャッシュには保存しない）
+            buildLodChain( modelWelded );
+
+            // 読み込みスレッドの参照を解除する（レンダラーが差し替えた時に、バッファがアリーナに返る）
+            modelWelded.release();
+        }
+
+        // ファイルの読み込みと頂点の共有化（失敗時、中止時はnull）
+        // 大きなアスキー形式のファイルは、全コアで並列にパースする（読み込み中のモデルは表示しないが、読み込み全体が早く終わる。進捗の通知と中止は、段階的読み込みと同じ）
+        // それ以外は、段階的に読み込み、読み込み中のモデルを表示する（バイナリ形式は、メモリマップしたファイルから読む）
+        private Model loadModel()
+        {
+            if( StlFileLoader.isParallelParsed( m_strPath ) )
+            {
+                return StlFileLoader.loadParallel( m_strPath, this );
+            }
+
+            AppendableModel model = StlFileLoader.loadStreaming( m_strPath, this );
+            if( null == model
+                    || isCancelled() )
+            {
+                return null;
+            }
+
+            // 頂点の共有化（共有化が済むまでは、読み込んだままのモデルを表示しておく）
+            Model modelWelded = new Model( model.getVertexBuffer(), model.getVertexCount() );
+            modelWelded.setFileFacetNormalBuffer( model.getFileFacetNormalBuffer() );    // 三角形の順番は変わらない
+            return modelWelded;
+        }
+
+        // 読み込んだモデルをレンダラーにセットし、完了を通知する
+        private void finishLoad( final Model model )
+        {
+            // 稜線の作成や部分メッシュへの分割は時間がかかるので、描画スレッドではなく、ここで済ませておく
+            m_renderer.prepareModel( model );
+
+            // GLスレッドでセットするまでに、読み込みスレッドの参照が解除されても、バッファが返らないようにする
+            model.retain();
+            m_glsurfaceview.queueEvent( new Runnable()
+            {
+                public void run()
+                {
+                    if( !m_bCancelled )
+                    {
+                        m_renderer.setModel( model );
+                    }
+                    model.release();
+                }
+            } );
+            m_glsurfaceview.requestRender(); // 再描画
+            postToUI( new Runnable()
+            {
+                public void run()
+                {
+                    if( null != m_callback )
+                    {
+                        m_callback.onLoadFinished( m_strPath );
+                    }
+                }
+            } );
+        }
+
+        // 詳細度の段階の作成（表示中のモデルに、後からセットする。セットした後の描画から使われる）
+        // 段階のモデルの派生バッファも、ここで作成しておく（ヒープが足りなければ、段階を作らない）
+        private void buildLodChain( Model model )
+        {
+            if( null != model.getLodChain() )
+            { // キャッシュから同じモデルを読み込んだ場合など
+                return;
+            }
+            LodChain lodchain = null;
+            try
+            {
+                lodchain = LodChain.build( model, m_renderer.getInteractiveTriangleBudget(), this );
+                if( null == lodchain )
+                {
+                    return;
+                }
+                for( int iLevel = 1; iLevel < lodchain.getLevelCount() && !isCancelled(); iLevel++ )
+                {
+                    m_renderer.prepareModel( lodchain.getModel( iLevel ) );
+                }
+            }
+            catch( OutOfMemoryError e )
+            { // 段階が作れなくても、元のモデルだけで描画できる
+                AppLog.e( "ModelLoadService", "lod chain " + m_strPath + " : " + e );
+                if( null != lodchain )
+                {
+                    lodchain.release();
+                }
+                return;
+            }
+            if( isCancelled() )
+            {
+                lodchain.release();
+                return;
+            }
+            model.setLodChain( lodchain );
+            AppLog.i( "ModelLoadService", "lod chain " + m_strPath + " : " + lodchain.getLevelCount() + " levels, " + lodchain.getBytes() + " bytes" );
+            m_glsurfaceview.requestRender(); // 再描画
+        }
+
+        @Override
+        public void onModelCreated( final AppendableModel model )
+        {
+            m_modelLoading = model;
+            // レンダラーの状態はGLスレッドで変更する
+            m_glsurfaceview.queueEvent( new Runnable()
+            {
+                public void run()
+                {
+                    if( !m_bCancelled )
+                    {
+                        m_renderer.setModel( model );
+                    }
+                }
+            } );
+        }
+
+        @Override
+        public void onTrianglesAppended( AppendableModel model )
+        {
+            m_glsurfaceview.requestRender(); // 再描画
+        }
+
+        @Override
+        public void onProgress( final long lBytesRead, final long lBytesTotal )
+        {
+            long lTimeNow = System.nanoTime();
+            if( lBytesRead < lBytesTotal
+                    && PROGRESS_INTERVAL_NANOS > lTimeNow - m_lTimeLastProgress )
+            {
+                return;
+            }
+            m_lTimeLastProgress = lTimeNow;
+            postToUI( new Runnable()
+            {
+                public void run()
+                {
+                    if( null != m_callback )
+                    {
+                        m_callback.onLoadProgress( m_strPath, lBytesRead, lBytesTotal );
+                    }
+                }
+            } );
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return m_bCancelled || Thread.currentThread().isInterrupted();
+        }
+
+        // 読み込み途中のモデルが表示中であれば、破棄する
+        private void discardLoadingModel()
+        {
+            final AppendableModel model = m_modelLoading;
+            if( null == model )
+            {
+                return;
+            }
+            m_glsurfaceview.queueEvent( new Runnable()
+            {
+                public void run()
+                {
+                    if( model == m_renderer.getModel() )
+                    {
+                        m_renderer.setModel( null );
+                    }
+                }
+            } );
+            m_glsurfaceview.requestRender(); // 再描画
+        }
+
+        // UIスレッドへの通知（中止された読み込みの通知は捨てる）
+        private void postToUI( final Runnable runnable )
+        {
+            m_handlerUI.post( new Runnable()
+            {
+                public void run()
+                {
+                    if( !m_bCancelled )
+                    {
+                        runnable.run();
+                    }
+                }
+            } );
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+
+// モデルの描画の方針（OpenGL ES 1のOpenGLModelRendererと、OpenGL ES 3のGLES3ModelRendererが、ひとつずつ持つ）
+// ・描画中のモデルの参照（セットしたモデルの参照を追加し、差し替えたモデルの参照を解除する）
+// ・GPU側に転送する配列（モデルをセットした時や、コンテキストを作り直した時に転送し、差し替えた時や、メモリーが足りない時に削除する）
+// ・陰影付きの部分メッシュ（作り直されたら、前の分の転送した配列を削除する）
+// ・詳細度の段階の選択と、トラッキング中の描画の三角形の数の上限
+// ・読み込みスレッドでの、派生バッファの事前作成と、メモリーが足りない時の派生バッファの破棄
+// ・GPU側への転送と削除の方法は、パイプラインごとに違うので、レンダラーがUploaderとして実装する
+public class ModelRenderPolicy
+{
+    // GPU側に転送した配列の管理（レンダラーが実装する。GLスレッドから呼ばれる）
+    public interface Uploader
+    {
+        // 転送できるかどうか（バッファオブジェクトを使えない場合や、GLの準備ができていない場合はfalse）
+        boolean isUploadEnabled();
+
+        // layoutの並びの頂点配列の転送
+        void uploadVertices( Buffer bufVertex, VertexLayout layout );
+
+        // 部分メッシュの配列の転送
+        void uploadSubMesh( SubMesh submesh );
+
+        // 部分メッシュの転送した配列の削除（なければ何もしない）
+        void deleteSubMesh( SubMesh submesh );
+
+        // 転送した配列の全削除
+        void deleteAll();
+    }
+
+    // メンバー変数
+    private final Uploader m_uploader;
+    private Model m_model;
+    private volatile boolean m_bElementIndexUint;    // 32ビットの番号配列を描画できるかどうか（読み込みスレッドの事前作成でも使う）
+    private SubMesh[] m_aSubMeshLit;    // 直前に描画した、陰影付きの三角形の部分メッシュ
+    private volatile int m_iInteractiveTriangleBudget = LodChain.DEFAULT_INTERACTIVE_TRIANGLE_BUDGET;    // トラッキング中の描画の三角形の数の上限
+
+    // コンストラクタ
+    public ModelRenderPolicy( Uploader uploader, boolean bElementIndexUint )
+    {
+        m_uploader = uploader;
+        m_bElementIndexUint = bElementIndexUint;
+    }
+
+    // アクセサ
+    public Model getModel()
+    {
+        return m_model;
+    }
+
+    public boolean isElementIndexUint()
+    {
+        return m_bElementIndexUint;
+    }
+
+    public void setElementIndexUint( boolean bElementIndexUint )
+    {
+        m_bElementIndexUint = bElementIndexUint;
+    }
+
+    // トラッキング中の描画の三角形の数の上限（読み込みスレッドが、詳細度の段階を作成する時にも使う）
+    public int getInteractiveTriangleBudget()
+    {
+        return m_iInteractiveTriangleBudget;
+    }
+
+    public void setInteractiveTriangleBudget( int iTriangleBudget )
+    {
+        m_iInteractiveTriangleBudget = iTriangleBudget;
+    }
+
+    // モデルのセット（新しいモデルの参照を追加し、差し替えたモデルの参照を解除する）
+    // 前のモデルの転送した配列を削除し、新しいモデルの配列を転送する（配列はアリーナに返ると、別の用途で使われる）
+    public void setModel( Model model )
+    {
+        if( model == m_model )
+        {
+            return;
+        }
+        if( null != model )
+        {
+            model.retain();
+        }
+        Model modelOld = m_model;
+        m_model = model;
+
+        m_uploader.deleteAll();
+        m_aSubMeshLit = null;
+        uploadModel();
+
+        if( null != modelOld )
+        {
+            modelOld.release();
+        }
+    }
+
+    // 転送した配列で描画するモデルかどうか
+    // 読み込み中のモデルは、配列の内容が増えていくので、クライアント側の配列のまま描画する
+    public boolean isUploadedModel()
+    {
+        return null != m_model
+               && !( m_model instanceof AppendableModel );
+    }
+
+    // モデルの配列の転送（インターリーブした頂点配列と、作成済みの面と線の部分メッシュ。ピック用の配列は、最初のピック時に転送する）
+    // コンテキストが作り直された時も、レンダラーから呼ぶ
+    public void uploadModel()
+    {
+        if( !isUploadedModel()
+            || null == m_model.getVertexBuffer()
+            || !m_uploader.isUploadEnabled() )
+        {
+            return;
+        }
+        m_uploader.uploadVertices( m_model.getInterleavedVertexBuffer(), m_model.getVertexLayout() );
+        if( null != m_model.getTriangleVertexIndexBuffer() )
+        {
+            uploadSubMeshes( getTriangleSubMeshes( m_model ) );
+        }
+        if( m_model.hasEdges() )    // 稜線は、ここでは作らない
+        {
+            uploadSubMeshes( getEdgeSubMeshes( m_model ) );
+        }
+    }
+
+    // 部分メッシュの配列の転送（クラスターの階層を作成済みの部分メッシュは、描画に使う、並べ替えた部分メッシュを転送する）
+    private void uploadSubMeshes( SubMesh[] aSubMesh )
+    {
+        for( SubMesh submesh : aSubMesh )
+        {
+            ClusterTree clustertree = submesh.peekClusterTree();
+            m_uploader.uploadSubMesh( ( null != clustertree ) ? clustertree.getSubMesh() : submesh );
+        }
+    }
+
+    // 描画する三角形の部分メッシュ
+    public SubMesh[] getTriangleSubMeshes( Model model )
+    {
+        return model.getTriangleSubMeshes( m_bElementIndexUint );
+    }
+
+    // 描画する稜線の部分メッシュ（稜線を作成していなければ、作成する）
+    public SubMesh[] getEdgeSubMeshes( Model model )
+    {
+        return model.getEdgeSubMeshes( m_bElementIndexUint );
+    }
+
+    // 描画する陰影付きの三角形の部分メッシュ（陰影付きの部分メッシュがないモデル（読み込み中のモデル）はnull）
+    // 作り直された場合は、前の部分メッシュと、その並べ替えた部分メッシュの、転送した配列を削除する
+    public SubMesh[] getLitTriangleSubMeshes( Model model, float fCreaseAngle )
+    {
+        SubMesh[] aSubMesh = model.getLitTriangleSubMeshes( m_bElementIndexUint, fCreaseAngle );
+        if( null == aSubMesh
+            || aSubMesh == m_aSubMeshLit )
+        {
+            return aSubMesh;
+        }
+        if( null != m_aSubMeshLit )
+        {
+            for( SubMesh submesh : m_aSubMeshLit )
+            {
+                m_uploader.deleteSubMesh( submesh );
+                if( null != submesh.peekClusterTree() )
+                {
+                    m_uploader.deleteSubMesh( submesh.peekClusterTree().getSubMesh() );
+                }
+            }
+        }
+        m_aSubMeshLit = aSubMesh;
+        return aSubMesh;
+    }
+
+    // トラッキング中の描画かどうか（三角形の数が上限を超えるモデルは、トラッキング中は粗い段階で描き、線と点を描かない）
+    // 指を離した時の再描画は、トラッキングが終わっているので、元の品質で描く
+    public boolean isInteractiveRendering( Model model, OpenGLTrackRenderer.ETrackingMode eTrackingMode )
+    {
+        return OpenGLTrackRenderer.ETrackingMode.TM_NONE != eTrackingMode
+               && m_iInteractiveTriangleBudget < model.getTriangleCount();
+    }
+
+    // 通常の描画に使う、詳細度の段階のモデル（段階を作成していなければ、モデルそのもの）
+    // 画面上の誤差が１ピクセル未満の、最も粗い段階を選び、フレームの統計に記録する（fPixelPerUnitは、元の座標系の長さ１の、画面上のピクセル数）
+    // トラッキング中の描画では、三角形の数が上限以下の段階まで粗くする
+    public Model getLevelOfDetailModel( Model model, OpenGLTrackRenderer.ETrackingMode eTrackingMode, float fPixelPerUnit, FrameStats framestats )
+    {
+        LodChain lodchain = model.getLodChain();
+        if( null == lodchain )
+        {
+            return model;
+        }
+        int iLevel = lodchain.selectLevel( fPixelPerUnit );
+        if( isInteractiveRendering( model, eTrackingMode ) )
+        {
+            iLevel = Math.max( iLevel, lodchain.selectLevelWithin( m_iInteractiveTriangleBudget ) );
+        }
+        framestats.setLodLevel( iLevel );
+        return lodchain.getModel( iLevel );
+    }
+
+    // 描画に使う派生バッファの事前作成（読み込みスレッドから呼ぶ。最初の描画で、GLスレッドが作成を待たないようにする）
+    // 表示しない要素の派生バッファは作らない（bLitがtrueの場合は、単色の部分メッシュの代わりに、fCreaseAngleの陰影付きの部分メッシュを作る）
+    public void prepareModel( Model model, boolean bRenderFace, boolean bLit, float fCreaseAngle, boolean bRenderLine )
+    {
+        if( bRenderFace )
+        {
+            if( bLit )
+            {
+                prepareClusterTrees( model.getLitTriangleSubMeshes( m_bElementIndexUint, fCreaseAngle ), 3 );
+            }
+            else
+            {
+                prepareClusterTrees( getTriangleSubMeshes( model ), 3 );
+            }
+        }
+        if( bRenderLine )
+        {
+            prepareClusterTrees( getEdgeSubMeshes( model ), 2 );
+        }
+    }
+
+    // 部分メッシュのクラスターの階層の事前作成（iVertexPerは要素の頂点数）
+    private static void prepareClusterTrees( SubMesh[] aSubMesh, int iVertexPer )
+    {
+        if( null == aSubMesh )
+        {
+            return;
+        }
+        for( SubMesh submesh : aSubMesh )
+        {
+            submesh.getClusterTree( iVertexPer );
+        }
+    }
+
+    // メモリーが足りない時の、転送した配列の全削除（GLスレッドから呼ぶ。破棄される派生バッファの分も含むので。残る配列は、次の描画で転送し直す）
+    public void trimMemory()
+    {
+        m_uploader.deleteAll();
+        m_aSubMeshLit = null;
+    }
+
+    // メモリーが足りない時の、表示しない派生バッファの破棄（bEdgesがtrueの場合は稜線を、bNormalsがtrueの場合は法線を破棄する）
+    // 再利用のために保持しているダイレクトバッファも手放す
+    public void discardDerivedBuffers( boolean bEdges, boolean bNormals )
+    {
+        if( bEdges
+            && null != m_model )
+        {
+            m_model.discardEdges();
+        }
+        if( bNormals
+            && null != m_model )
+        {
+            m_model.discardNormals();
+        }
+        DirectBufferArena.getShared().trim();
+    }
+}
@@ -13,7 +13,7 @@ import java.util.Locale;
 import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.opengles.GL11;
 
-public class ModelViewerRenderer extends OpenGLPickRenderer {
+public class ModelViewerRenderer extends OpenGLPickRenderer implements ViewerRenderer {
     // メンバー変数
     public boolean	m_bRenderPoint;
     public boolean	m_bRenderLine;
@@ -21,6 +21,8 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
     public boolean	m_bPickPoint;
     public boolean	m_bPickLine;
     public boolean	m_bPickFace;
+    private EShading m_eShading = EShading.SH_UNLIT;    // 面のシェーディング（固定機能パイプラインでは、法線の向きの色は単色で描画する）
+    private volatile float m_fCreaseAngle = NormalGenerator.DEFAULT_CREASE_ANGLE;    // 頂点法線による陰影の、法線を分ける折れ角[deg]
     private Paint m_paintMessageTexture;
     private int         m_iMessageTextureID;
     private FloatBuffer m_fbVertexMessageTexture;
@@ -51,6 +53,88 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
         m_fbTextureMessageTexture = makeFloatBuffer( f4TextureCoord );
     }
 
+    // 描画する要素
+    @Override
+    public void setRenderElement( ERenderElementType eElementType, boolean bRender )
+    {
+        switch( eElementType )
+        {
+            case RET_POINT:
+                m_bRenderPoint = bRender;
+                break;
+            case RET_LINE:
+                m_bRenderLine = bRender;
+                break;
+            case RET_FACE:
+                m_bRenderFace = bRender;
+                break;
+        }
+    }
+
+    // ピックする要素
+    @Override
+    public void setPickElement( ERenderElementType eElementType, boolean bPick )
+    {
+        switch( eElementType )
+        {
+            case RET_POINT:
+                m_bPickPoint = bPick;
+                break;
+            case RET_LINE:
+                m_bPickLine = bPick;
+                break;
+            case RET_FACE:
+                m_bPickFace = bPick;
+                break;
+        }
+    }
+
+    // 面のシェーディング（面ごとの陰影と、頂点法線による陰影は、頂点法線を持つ三角形をライティングして描画する）
+    @Override
+    public void setShading( EShading eShading )
+    {
+        m_eShading = eShading;
+    }
+
+    public EShading getShading()
+    {
+        return m_eShading;
+    }
+
+    @Override
+    public void setCreaseAngle( float fCreaseAngle )
+    {
+        m_fCreaseAngle = fCreaseAngle;
+    }
+
+    // ライティングして描画するかどうか
+    private boolean isLitShading()
+    {
+        return EShading.SH_FACETED == m_eShading
+                || EShading.SH_SMOOTH == m_eShading;
+    }
+
+    // ライティングの頂点法線の折れ角（面ごとの陰影は、同一平面の三角形の間でだけ頂点を共有する）
+    private float getLitCreaseAngle()
+    {
+        return ( EShading.SH_FACETED == m_eShading ) ? 0.0f : m_fCreaseAngle;
+    }
+
+    // 描画に使う派生バッファの事前作成（表示しない要素の派生バッファは作らない）
+    @Override
+    public void prepareModel( Model model )
+    {
+        getModelRenderPolicy().prepareModel( model, m_bRenderFace, isLitShading(), getLitCreaseAngle(), m_bRenderLine );
+    }
+
+    // メモリーが足りない時の、派生バッファの破棄（線を表示していなければ、稜線も破棄する。ライティングしていなければ、法線も破棄する）
+    @Override
+    public void trimMemory()
+    {
+        super.trimMemory();
+        getModelRenderPolicy().discardDerivedBuffers( !m_bRenderLine, !isLitShading() );
+    }
+
     @Override
     protected void renderModel( ERenderMode eRenderMode )
     {
@@ -69,37 +153,46 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
         }
         GL11 gl11 = (GL11)gl;
 
+        // 描画するモデル（通常の描画は、詳細度の段階のモデルで描く。ピックとピック要素は、元のモデルの要素の番号なので、元のモデルで描く）
+        // 段階のモデルは、元のモデルと同じ縮尺と中心で量子化してあるので、同じ変換で描画できる
+        Model modelDraw = ( ERenderMode.RM_RENDER == eRenderMode ) ? getLevelOfDetailModel( model ) : model;
+        // トラッキング中の描画では、線と点を描かない
+        boolean bInteractive = ERenderMode.RM_RENDER == eRenderMode && isInteractiveRendering( model );
+
+        // 要素の数（読み込み中のモデルでは、バッファより先に取得する）
+        // 稜線の数は、線を描画する時だけ取得する（稜線は、必要になるまで作らない）
+        int iCountTriangle = modelDraw.getTriangleCount();
+        int iCountVertex   = modelDraw.getVertexCount();
+        int iCountPoint    = modelDraw.getPointCount();
+
         // 頂点配列の有効化
         gl.glEnableClientState( GL10.GL_VERTEX_ARRAY );
 
         // 頂点配列の指定
-        gl.glVertexPointer( 3, GL10.GL_FLOAT, 0, model.getVertexBuffer() );
+        setVertexPointer( modelDraw );
+        pushVertexTransform( modelDraw );
 
         // 面の描画
         if( m_bRenderFace
                 && null != model.getTriangleVertexIndexBuffer() )
         {
-            if( ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
+            if( ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
             {
-                gl.glEnableClientState( GL10.GL_COLOR_ARRAY );
-                gl.glColorPointer( 4, // Must be 4.
-                        GL10.GL_UNSIGNED_BYTE,
-                        0,
-                        getTriangleIdColorBuffer() );
+                gl.glColor4f( 1.0f, 0.0f, 0.0f, 1.0f );
             }
-            else if( ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
+            else if( ERenderMode.RM_RENDER == eRenderMode )
             {
-                gl.glColor4f( 1.0f, 0.0f, 0.0f, 1.0f );
+                gl.glColor4f( 0.5f, 0.5f, 0.0f, 1.0f );
+            }
+            if( ERenderMode.RM_RENDER == eRenderMode
+                    && isLitShading() )
+            {
+                drawLitTriangleElements( modelDraw, iCountTriangle, getLitCreaseAngle() );
             }
             else
             {
-                gl.glColor4f( 0.5f, 0.5f, 0.0f, 1.0f );
+                drawTriangles( modelDraw, iCountTriangle, eRenderMode );
             }
-            gl.glDrawElements( GL10.GL_TRIANGLES,
-                    model.getTriangleVertexIndexBuffer().capacity(),
-                    GL10.GL_UNSIGNED_SHORT,
-                    model.getTriangleVertexIndexBuffer().position( 0 ) );
-            gl.glDisableClientState( GL10.GL_COLOR_ARRAY );
             // ピック面の描画
             if( ERenderMode.RM_RENDER == eRenderMode )
             {
@@ -107,39 +200,20 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
                 {
                     int iIndexTriangle = m_aiName[2];
                     gl.glColor4f( 1.0f, 1.0f, 0.0f, 1.0f );
-                    gl.glDrawElements( GL10.GL_TRIANGLES,
-                            3,
-                            GL10.GL_UNSIGNED_SHORT,
-                            model.getTriangleVertexIndexBuffer().position( 3 * iIndexTriangle ) );
+                    drawPickedTriangle( model, iIndexTriangle );
                 }
             }
         }
 
         // 線の描画
         if( m_bRenderLine
-                && null != model.getEdgeVertexIndexBuffer() )
+                && !bInteractive )
         {
+            int iCountEdge = modelDraw.getEdgeCount();
             gl.glLineWidth( 2.0f );
             if( ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
             {
-                int    iCountTriangle = model.getTriangleCount();
-                int    iIndexTriangle;
-                int    i3;
-                int    iIndexEdge;
-                byte[] abtRGB         = { 0, 0, 0 };
-                for( iIndexTriangle = 0; iIndexTriangle < iCountTriangle; ++iIndexTriangle )
-                {
-                    for( i3 = 0; i3 < 3; ++i3 )
-                    {
-                        iIndexEdge = iIndexTriangle * 3 + i3;
-                        index2rgb( iIndexEdge, abtRGB );
-                        gl11.glColor4ub( abtRGB[0], abtRGB[1], abtRGB[2], (byte)255 );
-                        gl.glDrawElements( GL10.GL_LINES,
-                                2,
-                                GL10.GL_UNSIGNED_SHORT,
-                                model.getEdgeVertexIndexBuffer().position( 2 * iIndexEdge ) );
-                    }
-                }
+                drawEdgesForPick( model, iCountEdge );
             }
             else
             {
@@ -151,10 +225,7 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
                 {
                     gl.glColor4f( 0.0f, 0.5f, 0.5f, 1.0f );
                 }
-                gl.glDrawElements( GL10.GL_LINES,
-                        model.getEdgeVertexIndexBuffer().capacity(),
-                        GL10.GL_UNSIGNED_SHORT,
-                        model.getEdgeVertexIndexBuffer().position( 0 ) );
+                drawEdgeElements( modelDraw, iCountEdge );
             }
             // ピック線の描画
             if( ERenderMode.RM_RENDER == eRenderMode )
@@ -164,26 +235,21 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
                     int iIndexEdge = m_aiName[2];
                     gl.glLineWidth( 5.0f );
                     gl.glColor4f( 0.0f, 1.0f, 1.0f, 1.0f );
-                    gl.glDrawElements( GL10.GL_LINES,
-                            2,
-                            GL10.GL_UNSIGNED_SHORT,
-                            model.getEdgeVertexIndexBuffer().position( 2 * iIndexEdge ) );
+                    drawPickedEdge( model, iIndexEdge );
                 }
             }
         }
 
         // 点の描画
-        if( m_bRenderPoint )
+        if( m_bRenderPoint
+                && !bInteractive )
         // && null != model.getVertexBuffer() )
         {
             gl.glPointSize( 5.0f );
             if( ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
             {
                 gl.glEnableClientState( GL10.GL_COLOR_ARRAY );
-                gl.glColorPointer( 4, // Must be 4.
-                        GL10.GL_UNSIGNED_BYTE,
-                        0,
-                        getVertexIdColorBuffer() );
+                setVertexIdColorPointer( model );
             }
             else if( ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
             {
@@ -193,7 +259,7 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
             {
                 gl.glColor4f( 0.5f, 0.0f, 0.5f, 1.0f );
             }
-            gl.glDrawArrays( GL10.GL_POINTS, 0, model.getVertexCount() );
+            drawPoints( modelDraw, iCountVertex, iCountPoint );
             gl.glDisableClientState( GL10.GL_COLOR_ARRAY );
             // ピック点の描画
             if( ERenderMode.RM_RENDER == eRenderMode )
@@ -202,12 +268,16 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
                 {
                     gl.glPointSize( 10.0f );
                     gl.glColor4f( 1.0f, 0.0f, 1.0f, 1.0f );
+                    setVertexPointer( model );
                     int iIndexPoint = m_aiName[2];
                     gl.glDrawArrays( GL10.GL_POINTS, iIndexPoint, 1 );
+                    countDrawCall();
                 }
             }
         }
 
+        popVertexTransform();
+
         // 頂点配列の無効化
         gl.glDisableClientState( GL10.GL_VERTEX_ARRAY );
     }
@@ -284,6 +354,7 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
     public void onDrawFrame( GL10 gl )
     {
         long lTimeMillisStart = System.currentTimeMillis();
+        getFrameStats().beginFrame( System.nanoTime() );
 
         gl.glClear( GL10.GL_COLOR_BUFFER_BIT | GL10.GL_DEPTH_BUFFER_BIT );
 
@@ -315,11 +386,15 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
         {
             lTimeMillisDiff = 1;
         }
-        String strMessage = String.format( Locale.getDefault(), "%5d[fps] ( %6.4f[spf] )", (int)( 1000.0 / lTimeMillisDiff + 0.5 ), lTimeMillisDiff / 1000.0 );
+        String strMessage = String.format( Locale.getDefault(), "%5d[fps] ( %6.4f[spf] ) %d[draws] %d/%d[clusters] %d[lod]", (int)( 1000.0 / lTimeMillisDiff + 0.5 ), lTimeMillisDiff / 1000.0, getFrameStats().getDrawCallCountCurrent(),
+                                           getFrameStats().getClusterDrawnCountCurrent(), getFrameStats().getClusterDrawnCountCurrent() + getFrameStats().getClusterCulledCountCurrent(),
+                                           Math.max( 0, getFrameStats().getLodLevelCurrent() ) );
 
         gl.glPushMatrix();
         renderMessage( gl, strMessage );
         gl.glPopMatrix();
+
+        getFrameStats().endFrame( System.nanoTime() );
     }
 
     private void renderMessage( GL10 gl, String strMessage )
@@ -407,6 +482,7 @@ public class ModelViewerRenderer extends OpenGLPickRenderer {
 
         gl.glColor4f( 1.0f, 1.0f, 0.0f, 1.0f );
         gl.glDrawArrays( GL10.GL_TRIANGLE_STRIP, 0, 4 );
+        countDrawCall();
 
         gl.glDisableClientState( GL10.GL_VERTEX_ARRAY );
         gl.glDisableClientState( GL10.GL_TEXTURE_COORD_ARRAY );
@@ -1,17 +1,26 @@
 package com.hiramine.modelviewertutorial;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.opengl.GLSurfaceView;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
-import android.widget.Toast;
+
+import java.io.File;
 
 public class ModelViewerView extends GLSurfaceView implements GestureDetector.OnGestureListener {
 
+    // 定数
+    private static final long MODEL_CACHE_MAX_BYTES = 256L * 1024 * 1024;    // モデルのキャッシュの合計サイズの上限
+    private static final long ARENA_BUDGET          = 64L * 1024 * 1024;    // 再利用のために保持するダイレクトバッファの合計の上限
+    private static final long ARENA_BUDGET_LOW_RAM  = 16L * 1024 * 1024;    // 同上（メモリの少ない端末）
+    private static final int  GLES_VERSION_3        = 0x30000;    // OpenGL ES 3.0（ConfigurationInfo.reqGlEsVersionの値）
+
     // メンバー変数
-    private ModelViewerRenderer m_renderer;
+    private ViewerRenderer m_renderer;
     private GestureDetector	m_gesturedetector;	// 長押し用
+    private ModelLoadService m_modelloadservice;    // モデルの非同期読み込み
     public  OpenGLTrackRenderer.ETrackingMode m_eTrackingMode_1fingerdrag;
 
     // コンストラクタ
@@ -19,9 +28,19 @@ public class ModelViewerView extends GLSurfaceView implements GestureDetector.On
     {
         super( context );
 
-        // Rendererの作成
-        m_renderer = new ModelViewerRenderer();
+        ActivityManager activitymanager = (ActivityManager)context.getSystemService( Context.ACTIVITY_SERVICE );
 
+        // Rendererの作成（OpenGL ES 3に対応した端末では、プログラマブルパイプラインで描画する）
+        if( null != activitymanager
+                && GLES_VERSION_3 <= activitymanager.getDeviceConfigurationInfo().reqGlEsVersion )
+        {
+            setEGLContextClientVersion( 3 );    // setRenderer()よりも前に呼び出す必要あり
+            m_renderer = new GLES3ModelViewerRenderer();
+        }
+        else
+        {
+            m_renderer = new ModelViewerRenderer();
+        }
 
         // GLSurfaceViewにRendererをセット
         setRenderer( m_renderer );
@@ -29,6 +48,17 @@ public class ModelViewerView extends GLSurfaceView implements GestureDetector.On
         // 絶え間ないレンダリングではなく都度のレンダリング（setRenderer()よりも後に呼び出す必要あり）
         setRenderMode( GLSurfaceView.RENDERMODE_WHEN_DIRTY );
 
+        // モデルの読み込みサービスの作成
+        m_modelloadservice = new ModelLoadService( this, m_renderer,
+                                                   new ModelCache( new File( context.getCacheDir(), "models" ), MODEL_CACHE_MAX_BYTES ) );
+
+        // メモリの少ない端末では、頂点の座標値を16ビットに量子化して、メモリを節約する
+        boolean bLowRam = ( null != activitymanager && activitymanager.isLowRamDevice() );
+        m_modelloadservice.setQuantizeVertex( bLowRam );
+
+        // モデルを開き直す時に再利用するダイレクトバッファの上限
+        DirectBufferArena.getShared().setBudget( bLowRam ? ARENA_BUDGET_LOW_RAM : ARENA_BUDGET );
+
         // モデルの作成および登録
        // m_renderer.setModel( makeModel() );
 
@@ -40,11 +70,16 @@ public class ModelViewerView extends GLSurfaceView implements GestureDetector.On
     }
 
     // アクセサ
-    public ModelViewerRenderer getRenderer()
+    public ViewerRenderer getRenderer()
     {
         return m_renderer;
     }
 
+    public ModelLoadService getModelLoadService()
+    {
+        return m_modelloadservice;
+    }
+
 
     @Override
     public boolean onTouchEvent( MotionEvent event )
@@ -83,6 +118,7 @@ public class ModelViewerView extends GLSurfaceView implements GestureDetector.On
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_POINTER_UP:
                 m_renderer.endTracking();
+                requestRender(); // 再描画（トラッキング中に粗く描いたモデルを、元の品質で描き直す）
                 break;
             // トラッキング
             case MotionEvent.ACTION_MOVE:
@@ -211,16 +247,24 @@ public class ModelViewerView extends GLSurfaceView implements GestureDetector.On
         return false;
     }
 
-    public void loadModelFile( String strPath, ModelViewerRenderer m_renderer )
+    // モデルファイルの読み込み
+    // 読み込みサービスのワーカースレッドで段階的に読み込み、三角形が追加されるたびに再描画する
+    public void loadModelFile( String strPath )
     {
-        Model model = StlFileLoader.load( strPath );
-        if( null == model )
+        m_modelloadservice.load( strPath );
+    }
+
+    // 必要になった時に作り直せるバッファ（稜線、ピック用の配列など）の破棄
+    public void trimMemory()
+    {
+        // 描画中のバッファを破棄しないよう、GLスレッドで破棄する
+        queueEvent( new Runnable()
         {
-            Toast.makeText( getContext(), "Failed to load file : " + strPath, Toast.LENGTH_SHORT ).show();
-            return;
-        }
-        m_renderer.setModel( model );
-        requestRender(); // 再描画
+            public void run()
+            {
+                m_renderer.trimMemory();
+            }
+        } );
     }
 
     // OpenGL描画コンテキストの消失と再作成の対応。
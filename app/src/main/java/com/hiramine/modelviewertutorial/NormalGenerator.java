@@ -0,0 +1,319 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 法線の作成
+// ・面法線 : ファイルの面法線が正しい（有限で、長さがほぼ１）場合はそのまま使い、それ以外は三角形の座標値から計算する
+// 　三角形の範囲ごとに、並列に計算する。面法線は、元の座標系（量子化する前の座標値）での単位ベクトル
+// ・頂点法線 : 頂点を共有する三角形の面法線のうち、折り目の角度以内で向きの揃ったものを平均する
+// 　同じ頂点でも、角ごとに法線が異なる場合は、法線ごとに頂点を分ける（折り目の角度が180度以上なら分けない）
+// 　頂点法線は、頂点配列に格納された座標値の座標系での向き（量子化したモデルでは、縮尺を掛けて、モデル行列で正しい向きになるようにする）
+public class NormalGenerator
+{
+    // 定数
+    public static final float DEFAULT_CREASE_ANGLE = 40.0f;    // 折り目の角度の既定値（度）
+    static final int PARALLEL_RANGE_TRIANGLE = 16 * 1024;    // 一つのタスクで処理する三角形の数
+    private static final float FILE_NORMAL_TOLERANCE = 0.01f;    // ファイルの面法線の、長さの２乗の１からの許容差
+    private static final float CREASE_COS_EPSILON    = 1.0e-4f;    // 同じ平面の三角形の面法線を、丸め誤差があっても平均するための余裕
+
+    // メンバー変数
+    private int   m_iCountReused;    // ファイルの面法線をそのまま使った三角形の数
+    private int   m_iCountVertex;    // 頂点法線ごとに分けた頂点の数
+    private int[] m_aiSourceVertex;    // 分けた頂点ごとの、モデルの頂点の番号
+    private int[] m_aiVertexNormal;    // 分けた頂点ごとの、頂点法線（packNormal()で詰めた値）
+    private int[] m_aiCornerVertex;    // 三角形の角ごとの、分けた頂点の番号（三角形の頂点の番号の配列と同じ並び）
+
+    // 範囲ごとの処理
+    interface RangeTask
+    {
+        void run( int iStart, int iEnd );
+    }
+
+    // アクセサ
+    public int getReusedCount()
+    {
+        return m_iCountReused;
+    }
+
+    public int getVertexCount()
+    {
+        return m_iCountVertex;
+    }
+
+    public int[] getSourceVertexArray()
+    {
+        return m_aiSourceVertex;
+    }
+
+    public int[] getVertexNormalArray()
+    {
+        return m_aiVertexNormal;
+    }
+
+    public int[] getCornerVertexArray()
+    {
+        return m_aiCornerVertex;
+    }
+
+    // 面法線の作成（三角形ごとに３成分）（fbFileNormalは、ファイルの面法線。なければnull）
+    // 配列は共有のアリーナから借りるので、使い終わったらアリーナに返す
+    public FloatBuffer makeFacetNormals( final Model model, final FloatBuffer fbFileNormal )
+    {
+        int                 iCountTriangle = model.getTriangleCount();
+        final FloatBuffer   fbFacetNormal  = DirectBufferArena.getShared().acquireFloats( iCountTriangle * 3 );
+        final AtomicInteger aiCountReused  = new AtomicInteger();
+        invokeRanges( iCountTriangle, new RangeTask()
+        {
+            @Override
+            public void run( int iStart, int iEnd )
+            {
+                float[] af3Normal    = new float[3];
+                int     iCountReused = 0;
+                for( int iIndexTriangle = iStart; iIndexTriangle < iEnd; iIndexTriangle++ )
+                {
+                    if( null != fbFileNormal
+                            && readFileNormal( fbFileNormal, iIndexTriangle, af3Normal ) )
+                    {
+                        iCountReused++;
+                    }
+                    else
+                    {
+                        computeFacetNormal( model, iIndexTriangle, af3Normal );
+                    }
+                    for( int i3 = 0; i3 < 3; i3++ )
+                    {
+                        fbFacetNormal.put( iIndexTriangle * 3 + i3, af3Normal[i3] );
+                    }
+                }
+                aiCountReused.addAndGet( iCountReused );
+            }
+        } );
+        m_iCountReused = aiCountReused.get();
+        return fbFacetNormal;
+    }
+
+    // ファイルの面法線の読み込み（正しい場合だけ、単位ベクトルにしてtrue）
+    private static boolean readFileNormal( FloatBuffer fbFileNormal, int iIndexTriangle, float[] af3Normal )
+    {
+        float fX       = fbFileNormal.get( iIndexTriangle * 3 + 0 );
+        float fY       = fbFileNormal.get( iIndexTriangle * 3 + 1 );
+        float fZ       = fbFileNormal.get( iIndexTriangle * 3 + 2 );
+        float fLength2 = fX * fX + fY * fY + fZ * fZ;
+        if( !( FILE_NORMAL_TOLERANCE >= Math.abs( fLength2 - 1.0f ) ) )
+        { // 長さが１でない（０や、NaNを含む）
+            return false;
+        }
+        float fLength = (float)Math.sqrt( fLength2 );
+        af3Normal[0] = fX / fLength;
+        af3Normal[1] = fY / fLength;
+        af3Normal[2] = fZ / fLength;
+        return true;
+    }
+
+    // 三角形の座標値からの面法線の計算（面積が０の三角形は、０ベクトル）
+    static void computeFacetNormal( Model model, int iIndexTriangle, float[] af3Normal )
+    {
+        int   iIndexVertex0 = model.getTriangleVertexIndex( iIndexTriangle, 0 );
+        int   iIndexVertex1 = model.getTriangleVertexIndex( iIndexTriangle, 1 );
+        int   iIndexVertex2 = model.getTriangleVertexIndex( iIndexTriangle, 2 );
+        float fX1           = model.getVertex( iIndexVertex1, 0 ) - model.getVertex( iIndexVertex0, 0 );
+        float fY1           = model.getVertex( iIndexVertex1, 1 ) - model.getVertex( iIndexVertex0, 1 );
+        float fZ1           = model.getVertex( iIndexVertex1, 2 ) - model.getVertex( iIndexVertex0, 2 );
+        float fX2           = model.getVertex( iIndexVertex2, 0 ) - model.getVertex( iIndexVertex0, 0 );
+        float fY2           = model.getVertex( iIndexVertex2, 1 ) - model.getVertex( iIndexVertex0, 1 );
+        float fZ2           = model.getVertex( iIndexVertex2, 2 ) - model.getVertex( iIndexVertex0, 2 );
+        af3Normal[0] = fY1 * fZ2 - fZ1 * fY2;
+        af3Normal[1] = fZ1 * fX2 - fX1 * fZ2;
+        af3Normal[2] = fX1 * fY2 - fY1 * fX2;
+        normalize( af3Normal );
+    }
+
+    // 頂点法線の作成（戻り値は、法線ごとに分けた頂点の数）
+    // fCreaseAngle（度）より大きな角度で交わる三角形の面法線は、平均しない
+    public int smooth( final Model model, final FloatBuffer fbFacetNormal, float fCreaseAngle )
+    {
+        final int iCountTriangle = model.getTriangleCount();
+        int       iCountVertex   = model.getVertexCount();
+
+        // 頂点ごとの、角（三角形の番号×３＋三角形の中での順番）の表
+        final int[] aiVertexCornerStart = new int[iCountVertex + 1];
+        for( int iCorner = 0; iCorner < iCountTriangle * 3; iCorner++ )
+        {
+            aiVertexCornerStart[model.getTriangleVertexIndex( iCorner / 3, iCorner % 3 ) + 1]++;
+        }
+        int iMaxDegree = 0;
+        for( int iIndexVertex = 0; iIndexVertex < iCountVertex; iIndexVertex++ )
+        {
+            iMaxDegree = Math.max( iMaxDegree, aiVertexCornerStart[iIndexVertex + 1] );
+            aiVertexCornerStart[iIndexVertex + 1] += aiVertexCornerStart[iIndexVertex];
+        }
+        final int[] aiVertexCorner = new int[iCountTriangle * 3];
+        int[]       aiFill         = Arrays.copyOf( aiVertexCornerStart, iCountVertex );
+        for( int iCorner = 0; iCorner < iCountTriangle * 3; iCorner++ )
+        {
+            aiVertexCorner[aiFill[model.getTriangleVertexIndex( iCorner / 3, iCorner % 3 )]++] = iCorner;
+        }
+        aiFill = null;
+
+        // 角ごとの法線（三角形の範囲ごとに並列に計算し、詰めた値を角ごとに持つ）
+        final float   fCosCrease    = ( 180.0f <= fCreaseAngle ) ? -2.0f : (float)Math.cos( Math.toRadians( fCreaseAngle ) ) - CREASE_COS_EPSILON;
+        final float[] af3Scale      = model.isQuantized() ? model.getVertexScale() : null;
+        final int[]   aiCornerValue = new int[iCountTriangle * 3];    // 角の法線を詰めた値。頂点を分けた後は、分けた頂点の番号で上書きする
+        invokeRanges( iCountTriangle, new RangeTask()
+        {
+            @Override
+            public void run( int iStart, int iEnd )
+            {
+                float[] af3Sum = new float[3];
+                for( int iCorner = iStart * 3; iCorner < iEnd * 3; iCorner++ )
+                {
+                    int     iIndexVertex = model.getTriangleVertexIndex( iCorner / 3, iCorner % 3 );
+                    int     iFacet       = iCorner / 3 * 3;
+                    float   fX           = fbFacetNormal.get( iFacet + 0 );
+                    float   fY           = fbFacetNormal.get( iFacet + 1 );
+                    float   fZ           = fbFacetNormal.get( iFacet + 2 );
+                    boolean bDegenerate  = 0.0f == fX && 0.0f == fY && 0.0f == fZ;    // 面積が０の三角形の角は、全ての面法線を平均する
+                    af3Sum[0] = 0.0f;
+                    af3Sum[1] = 0.0f;
+                    af3Sum[2] = 0.0f;
+                    for( int i = aiVertexCornerStart[iIndexVertex]; i < aiVertexCornerStart[iIndexVertex + 1]; i++ )
+                    {
+                        int   iFacetOther = aiVertexCorner[i] / 3 * 3;
+                        float fXOther     = fbFacetNormal.get( iFacetOther + 0 );
+                        float fYOther     = fbFacetNormal.get( iFacetOther + 1 );
+                        float fZOther     = fbFacetNormal.get( iFacetOther + 2 );
+                        if( bDegenerate
+                                || iFacetOther == iFacet
+                                || fCosCrease <= fX * fXOther + fY * fYOther + fZ * fZOther )
+                        {
+                            af3Sum[0] += fXOther;
+                            af3Sum[1] += fYOther;
+                            af3Sum[2] += fZOther;
+                        }
+                    }
+                    if( null != af3Scale )
+                    { // 量子化した座標値の座標系での向き
+                        af3Sum[0] *= af3Scale[0];
+                        af3Sum[1] *= af3Scale[1];
+                        af3Sum[2] *= af3Scale[2];
+                    }
+                    normalize( af3Sum );
+                    aiCornerValue[iCorner] = packNormal( af3Sum[0], af3Sum[1], af3Sum[2] );
+                }
+            }
+        } );
+
+        // 頂点ごとに、詰めた法線が同じ角は同じ頂点、異なる角は別の頂点にする（頂点の順番は、モデルの頂点の順番のまま）
+        int[] aiSourceVertex = new int[iCountVertex + ( iCountVertex >> 2 )];
+        int[] aiVertexNormal = new int[aiSourceVertex.length];
+        int   iCountNew      = 0;
+        int[] aiLocalNormal  = new int[iMaxDegree];
+        int[] aiLocalVertex  = new int[iMaxDegree];
+        for( int iIndexVertex = 0; iIndexVertex < iCountVertex; iIndexVertex++ )
+        {
+            int iCountLocal = 0;
+            for( int i = aiVertexCornerStart[iIndexVertex]; i < aiVertexCornerStart[iIndexVertex + 1]; i++ )
+            {
+                int iCorner = aiVertexCorner[i];
+                int iNormal = aiCornerValue[iCorner];
+                int iLocal  = 0;
+                while( iLocal < iCountLocal && aiLocalNormal[iLocal] != iNormal )
+                {
+                    iLocal++;
+                }
+                if( iLocal == iCountLocal )
+                { // 新しい法線
+                    if( aiSourceVertex.length == iCountNew )
+                    {
+                        aiSourceVertex = Arrays.copyOf( aiSourceVertex, iCountNew + ( iCountNew >> 1 ) + 1 );
+                        aiVertexNormal = Arrays.copyOf( aiVertexNormal, aiSourceVertex.length );
+                    }
+                    aiSourceVertex[iCountNew] = iIndexVertex;
+                    aiVertexNormal[iCountNew] = iNormal;
+                    aiLocalNormal[iCountLocal] = iNormal;
+                    aiLocalVertex[iCountLocal] = iCountNew;
+                    iCountLocal++;
+                    iCountNew++;
+                }
+                aiCornerValue[iCorner] = aiLocalVertex[iLocal];
+            }
+        }
+
+        m_iCountVertex = iCountNew;
+        m_aiSourceVertex = aiSourceVertex;
+        m_aiVertexNormal = aiVertexNormal;
+        m_aiCornerVertex = aiCornerValue;
+        return iCountNew;
+    }
+
+    // 単位ベクトル化（長さが０の場合は、そのまま）
+    private static void normalize( float[] af3 )
+    {
+        float fLength = (float)Math.sqrt( af3[0] * af3[0] + af3[1] * af3[1] + af3[2] * af3[2] );
+        if( 0.0f < fLength )
+        {
+            af3[0] /= fLength;
+            af3[1] /= fLength;
+            af3[2] /= fLength;
+        }
+    }
+
+    // 単位ベクトルを、GL_BYTEの３成分（-127～127）にして、一つのintに詰める
+    static int packNormal( float fX, float fY, float fZ )
+    {
+        return ( ( Math.round( fX * VertexLayout.NORMAL_SCALE ) & 0xFF ) << 16 )
+               | ( ( Math.round( fY * VertexLayout.NORMAL_SCALE ) & 0xFF ) << 8 )
+               | ( Math.round( fZ * VertexLayout.NORMAL_SCALE ) & 0xFF );
+    }
+
+    // 詰めた法線のi3番目の成分（GL_BYTEの値）
+    static byte unpackNormal( int iNormal, int i3 )
+    {
+        return (byte)( iNormal >> ( ( 2 - i3 ) * 8 ) );
+    }
+
+    // 範囲ごとの処理の実行（数が少なければ、このスレッドで処理する）
+    static void invokeRanges( int iCount, RangeTask task )
+    {
+        if( PARALLEL_RANGE_TRIANGLE >= iCount
+                || 1 == Runtime.getRuntime().availableProcessors() )
+        {
+            task.run( 0, iCount );
+            return;
+        }
+        ForkJoinPool.commonPool().invoke( new RangeAction( task, 0, iCount ) );
+    }
+
+    // 範囲を半分ずつに分けて、並列に処理する
+    private static class RangeAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeTask m_task;
+        private final int       m_iStart;
+        private final int       m_iEnd;
+
+        RangeAction( RangeTask task, int iStart, int iEnd )
+        {
+            m_task = task;
+            m_iStart = iStart;
+            m_iEnd = iEnd;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if( PARALLEL_RANGE_TRIANGLE >= m_iEnd - m_iStart )
+            {
+                m_task.run( m_iStart, m_iEnd );
+                return;
+            }
+            int iMiddle = ( m_iStart + m_iEnd ) >>> 1;
+            invokeAll( new RangeAction( m_task, m_iStart, iMiddle ), new RangeAction( m_task, iMiddle, m_iEnd ) );
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.hiramine.modelviewertutorial;
 import android.opengl.GLSurfaceView;
 import android.opengl.GLU;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -15,6 +16,9 @@ public class OpenGLBaseRenderer implements GLSurfaceView.Renderer {
 
     private static final android.opengl.GLU GLU = null;
 
+    // 定数
+    public static final int GL_UNSIGNED_INT = 0x1405;    // 32ビットの番号配列の型（OES_element_index_uint拡張）
+
     // static関数
     // byteバッファーの作成
     public static ByteBuffer makeByteBuffer(byte[] arr )
@@ -48,6 +52,26 @@ public class OpenGLBaseRenderer implements GLSurfaceView.Renderer {
         return fb;
     }
 
+    // 空のbyteバッファーの作成（配列を経由せずに、値を直接書き込む場合）
+    // 共有のアリーナから借りるので、使い終わったらreleaseBuffer()で返す。内容は不定
+    public static ByteBuffer allocateByteBuffer( int iCount )
+    {
+        return DirectBufferArena.getShared().acquireBytes( iCount * SIZEOF_BYTE );
+    }
+
+    // 空のfloatバッファーの作成（配列を経由せずに、値を直接書き込む場合）
+    // 共有のアリーナから借りるので、使い終わったらreleaseBuffer()で返す。内容は不定
+    public static FloatBuffer allocateFloatBuffer( int iCount )
+    {
+        return DirectBufferArena.getShared().acquireFloats( iCount );
+    }
+
+    // allocateByteBuffer()、allocateFloatBuffer()で作成したバッファーを、共有のアリーナに返す（nullは無視する）
+    public static void releaseBuffer( Buffer buf )
+    {
+        DirectBufferArena.getShared().release( buf );
+    }
+
     // 定数
     private static final int SIZEOF_BYTE  = Byte.SIZE / 8;    // Byte.SIZEで、byte型のビット数が得られるので、8で割って、バイト数を得る
     private static final int SIZEOF_SHORT = Short.SIZE / 8;    // Short.SIZEで、short型のビット数が得られるので、8で割って、バイト数を得る
@@ -56,6 +80,7 @@ public class OpenGLBaseRenderer implements GLSurfaceView.Renderer {
     private GL10 m_gl;    // OpenGLオブジェクト
     private FloatBuffer m_fbVertex;                        // 軸の頂点
     private ByteBuffer  m_fbColor;
+    private final FrameStats m_framestats = new FrameStats( "GLES1" );    // 描画呼び出しの数と描画時間
 
     // コンストラクタ
     public OpenGLBaseRenderer()
@@ -97,6 +122,33 @@ public class OpenGLBaseRenderer implements GLSurfaceView.Renderer {
         return m_iHeight;
     }
 
+    public FrameStats getFrameStats() {
+        return m_framestats;
+    }
+
+    // 直前のフレームの描画呼び出しの数
+    public int getDrawCallCount() {
+        return m_framestats.getDrawCallCount();
+    }
+
+    // 直前のフレームの、描画したクラスターの数と、間引いたクラスターの数
+    public int getDrawnClusterCount() {
+        return m_framestats.getClusterDrawnCount();
+    }
+
+    public int getCulledClusterCount() {
+        return m_framestats.getClusterCulledCount();
+    }
+
+    public int getLodLevel() {
+        return m_framestats.getLodLevel();
+    }
+
+    // 描画呼び出しを数える（glDrawArrays()、glDrawElements()を呼ぶたびに呼ぶ）
+    protected void countDrawCall() {
+        m_framestats.addDrawCall();
+    }
+
     public boolean isViewingFrustumValid() {
         return m_bViewingFrustumValid;
     }
@@ -173,6 +225,8 @@ public class OpenGLBaseRenderer implements GLSurfaceView.Renderer {
     @Override
     public void onDrawFrame( GL10 gl )
     {
+        m_framestats.beginFrame( System.nanoTime() );
+
         gl.glClear( GL10.GL_COLOR_BUFFER_BIT | GL10.GL_DEPTH_BUFFER_BIT );
 
         if( !isViewingFrustumValid() )
@@ -196,6 +250,8 @@ public class OpenGLBaseRenderer implements GLSurfaceView.Renderer {
         gl.glPopMatrix();
 
         postRenderScene();
+
+        m_framestats.endFrame( System.nanoTime() );
     }
 
     // 視野角錐台設定
@@ -261,6 +317,7 @@ public class OpenGLBaseRenderer implements GLSurfaceView.Renderer {
 
         m_gl.glLineWidth( 2.0f );
         m_gl.glDrawArrays( GL10.GL_LINES, 0, 6 );
+        countDrawCall();
 
         m_gl.glDisableClientState( GL10.GL_VERTEX_ARRAY );
         m_gl.glDisableClientState( GL10.GL_COLOR_ARRAY );
@@ -1,28 +1,346 @@
 package com.hiramine.modelviewertutorial;
 
 import android.graphics.Paint;
+import android.opengl.Matrix;
 
+import java.nio.Buffer;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
 
 public class OpenGLModelRenderer extends OpenGLTrackRenderer {
     // メンバー変数
-    private Model m_model;
     private Paint m_paintMessageTexture;
     private int         m_iMessageTextureID;
     private FloatBuffer m_fbVertexMessageTexture;
     private FloatBuffer m_fbTextureMessageTexture;
+    private boolean m_bBufferObjectSupported;    // バッファオブジェクト（VBO）を使えるかどうか（OpenGL ES 1.1以降）
+    private final BufferObjectCache m_bufferobjectcache = new BufferObjectCache();    // GPU側に転送した配列（GLスレッドからだけ使う）
+    private final ModelRenderPolicy m_modelrenderpolicy = new ModelRenderPolicy(new ModelRenderPolicy.Uploader() {
+        // バッファオブジェクト（VBO）への転送と削除
+        @Override
+        public boolean isUploadEnabled() {
+            return m_bBufferObjectSupported;
+        }
+
+        @Override
+        public void uploadVertices(Buffer bufVertex, VertexLayout layout) {
+            m_bufferobjectcache.get(getGL11(), GL11.GL_ARRAY_BUFFER, bufVertex);
+        }
+
+        @Override
+        public void uploadSubMesh(SubMesh submesh) {
+            GL11 gl11 = getGL11();
+            m_bufferobjectcache.get(gl11, GL11.GL_ARRAY_BUFFER, submesh.getVertexBuffer());
+            m_bufferobjectcache.get(gl11, GL11.GL_ELEMENT_ARRAY_BUFFER, submesh.getIndexBuffer());
+        }
+
+        @Override
+        public void deleteSubMesh(SubMesh submesh) {
+            deleteBufferObject(submesh.getVertexBuffer());
+            deleteBufferObject(submesh.getIndexBuffer());
+        }
+
+        @Override
+        public void deleteAll() {
+            GL11 gl11 = getGL11();
+            if (null != gl11) {
+                m_bufferobjectcache.clear(gl11);
+            }
+        }
+    }, false);    // 描画中のモデルと、転送する配列の方針（GLES3ModelRendererと共通。32ビットの番号配列は、OES_element_index_uint拡張があれば描画できる）
+    private final ClusterCuller m_clusterculler = new ClusterCuller();    // クラスターの階層の間引き
+    private final float[] m_f16Model = new float[16];    // モデル行列（量子化したモデルの、縮尺と中心）
+    private boolean m_bCulling;    // 描画中のモデルの部分メッシュを、クラスターの階層で間引くかどうか
+
+    // 陰影付きの描画の光源（視線方向からの平行光。環境光で、光の当たらない面も真っ黒にはしない）
+    private static final float[] LIGHT_POSITION = {0.0f, 0.0f, 1.0f, 0.0f};
+    private static final float[] LIGHT_AMBIENT = {0.3f, 0.3f, 0.3f, 1.0f};
+    private static final float[] LIGHT_DIFFUSE = {0.7f, 0.7f, 0.7f, 1.0f};
 
 
     // アクセサ
     public Model getModel() {
-        return m_model;
+        return m_modelrenderpolicy.getModel();
+    }
+
+    // トラッキング中の描画の三角形の数の上限（読み込みスレッドが、詳細度の段階を作成する時にも使う）
+    public int getInteractiveTriangleBudget() {
+        return m_modelrenderpolicy.getInteractiveTriangleBudget();
     }
 
+    public void setInteractiveTriangleBudget(int iTriangleBudget) {
+        m_modelrenderpolicy.setInteractiveTriangleBudget(iTriangleBudget);
+    }
+
+    // モデルのセット（新しいモデルの参照を追加し、差し替えたモデルの参照を解除する。前のモデルのバッファオブジェクトは削除する）
     public void setModel(Model model) {
-        m_model = model;
+        m_modelrenderpolicy.setModel(model);
+    }
+
+    // バッファオブジェクトで描画するかどうか
+    // 読み込み中のモデルは、配列の内容が増えていくので、クライアント側の配列のまま描画する
+    public boolean isBufferObjectEnabled() {
+        return m_bBufferObjectSupported
+                && m_modelrenderpolicy.isUploadedModel();
+    }
+
+    // GPU側に転送した配列の数とバイト数
+    public int getBufferObjectCount() {
+        return m_bufferobjectcache.getCount();
+    }
+
+    public long getBufferObjectBytes() {
+        return m_bufferobjectcache.getBytes();
+    }
+
+    // 配列に対応するバッファオブジェクトの削除（配列をアリーナに返す前に呼ぶ）
+    protected void deleteBufferObject(Buffer buf) {
+        GL11 gl11 = getGL11();
+        if (null != gl11) {
+            m_bufferobjectcache.remove(gl11, buf);
+        }
+    }
+
+    private GL11 getGL11() {
+        GL10 gl = getGL();
+        return (gl instanceof GL11) ? (GL11) gl : null;
+    }
+
+    public boolean isElementIndexUintSupported() {
+        return m_modelrenderpolicy.isElementIndexUint();
+    }
+
+    // 描画する三角形の部分メッシュ
+    protected SubMesh[] getTriangleSubMeshes(Model model) {
+        return m_modelrenderpolicy.getTriangleSubMeshes(model);
+    }
+
+    // 描画する稜線の部分メッシュ（稜線を作成していなければ、作成する）
+    protected SubMesh[] getEdgeSubMeshes(Model model) {
+        return m_modelrenderpolicy.getEdgeSubMeshes(model);
+    }
+
+    // 描画に使う派生バッファの事前作成（読み込みスレッドから呼ぶ。最初の描画で、GLスレッドが作成を待たないようにする）
+    public void prepareModel(Model model) {
+        m_modelrenderpolicy.prepareModel(model, true, false, 0.0f, true);
+    }
+
+    // メモリーが足りない時の、派生バッファの破棄（GLスレッドから呼ぶ）
+    // バッファオブジェクトも全て削除する（破棄される派生バッファの分も含むので。残る配列は、次の描画で転送し直す）
+    public void trimMemory() {
+        m_modelrenderpolicy.trimMemory();
+    }
+
+    // 描画中のモデルと、転送する配列の方針（サブクラスの、派生バッファの事前作成と破棄で使う）
+    protected ModelRenderPolicy getModelRenderPolicy() {
+        return m_modelrenderpolicy;
+    }
+
+    // 頂点配列の指定（モデルの、描画に使う頂点配列の並びで指定する）
+    protected void setVertexPointer(Model model) {
+        setVertexPointer(model.getVertexLayout(), model.getInterleavedVertexBuffer());
+    }
+
+    protected void setVertexPointer(SubMesh submesh) {
+        setVertexPointer(submesh.getVertexLayout(), submesh.getVertexBuffer());
+    }
+
+    // 頂点配列の指定（layoutの並びの配列の、座標値を指す。バッファオブジェクトで描画する時は、転送済みのバッファオブジェクトを指す）
+    // 指定後は、GL_ARRAY_BUFFERのバインドを解除しておく（ピック要素などのクライアント側の配列は、そのまま指定できる）
+    protected void setVertexPointer(VertexLayout layout, Buffer buf) {
+        if (isBufferObjectEnabled()) {
+            GL11 gl11 = getGL11();
+            gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, m_bufferobjectcache.get(gl11, GL11.GL_ARRAY_BUFFER, buf));
+            gl11.glVertexPointer(3, layout.getPositionType(), layout.getStride(), layout.getPositionOffset());
+            gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+        } else {
+            getGL().glVertexPointer(3, layout.getPositionType(), layout.getStride(), buf.position(layout.getPositionOffset()));
+        }
+    }
+
+    // 色配列の指定（layoutの並びの配列の、RGBAの符号なしbyteの色を指す）
+    protected void setColorPointer(VertexLayout layout, Buffer buf) {
+        if (isBufferObjectEnabled()) {
+            GL11 gl11 = getGL11();
+            gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, m_bufferobjectcache.get(gl11, GL11.GL_ARRAY_BUFFER, buf));
+            gl11.glColorPointer(4, GL10.GL_UNSIGNED_BYTE, layout.getStride(), layout.getColorOffset());    // Must be 4.
+            gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+        } else {
+            getGL().glColorPointer(4, GL10.GL_UNSIGNED_BYTE, layout.getStride(), buf.position(layout.getColorOffset()));    // Must be 4.
+        }
+    }
+
+    // 色配列の指定（色だけの、RGBAの符号なしbyteの配列）
+    protected void setColorPointer(Buffer buf) {
+        if (isBufferObjectEnabled()) {
+            GL11 gl11 = getGL11();
+            gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, m_bufferobjectcache.get(gl11, GL11.GL_ARRAY_BUFFER, buf));
+            gl11.glColorPointer(4, GL10.GL_UNSIGNED_BYTE, 0, 0);    // Must be 4.
+            gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+        } else {
+            getGL().glColorPointer(4, GL10.GL_UNSIGNED_BYTE, 0, buf.position(0));    // Must be 4.
+        }
+    }
+
+    // 法線配列の指定（layoutの並びの配列の、符号付きbyteの法線を指す）
+    protected void setNormalPointer(VertexLayout layout, Buffer buf) {
+        if (isBufferObjectEnabled()) {
+            GL11 gl11 = getGL11();
+            gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, m_bufferobjectcache.get(gl11, GL11.GL_ARRAY_BUFFER, buf));
+            gl11.glNormalPointer(GL10.GL_BYTE, layout.getStride(), layout.getNormalOffset());
+            gl11.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+        } else {
+            getGL().glNormalPointer(GL10.GL_BYTE, layout.getStride(), buf.position(layout.getNormalOffset()));
+        }
+    }
+
+    // 部分メッシュの先頭からiCount個の要素の描画（iVertexPerは要素の頂点数。頂点配列などは、指定済みであること）
+    // 完成したモデルの部分メッシュは、クラスターの階層を辿り、視野の中のクラスターだけを描画する（並べ替えた番号配列も、同じ頂点配列を指す）
+    protected void drawSubMeshElements(int iMode, int iVertexPer, SubMesh submesh, int iCount) {
+        ClusterTree clustertree = (m_bCulling && iCount == submesh.getElementCount()) ? submesh.getClusterTree(iVertexPer) : null;
+        if (null == clustertree) {
+            drawElements(iMode, iCount * iVertexPer, submesh, 0);
+            return;
+        }
+        int iCountRange = m_clusterculler.cull(clustertree);
+        getFrameStats().addClusters(m_clusterculler.getDrawnCount(), m_clusterculler.getCulledCount());
+        SubMesh submeshOrdered = clustertree.getSubMesh();
+        for (int i = 0; i < iCountRange; i++) {
+            drawElements(iMode, m_clusterculler.getRangeElementCount(i) * iVertexPer, submeshOrdered, m_clusterculler.getRangeFirst(i) * iVertexPer);
+        }
+    }
+
+    // 部分メッシュの番号配列の、iFirstIndex番目からiCountIndex個の描画
+    protected void drawElements(int iMode, int iCountIndex, SubMesh submesh, int iFirstIndex) {
+        if (isBufferObjectEnabled()) {
+            GL11 gl11 = getGL11();
+            int iSizeofIndex = (GL10.GL_UNSIGNED_SHORT == submesh.getIndexType()) ? 2 : 4;
+            gl11.glBindBuffer(GL11.GL_ELEMENT_ARRAY_BUFFER, m_bufferobjectcache.get(gl11, GL11.GL_ELEMENT_ARRAY_BUFFER, submesh.getIndexBuffer()));
+            gl11.glDrawElements(iMode, iCountIndex, submesh.getIndexType(), iFirstIndex * iSizeofIndex);
+            gl11.glBindBuffer(GL11.GL_ELEMENT_ARRAY_BUFFER, 0);
+        } else {
+            getGL().glDrawElements(iMode, iCountIndex, submesh.getIndexType(), submesh.getIndexBuffer().position(iFirstIndex));
+        }
+        countDrawCall();
+    }
+
+    // 点の描画（点の集合の番号配列を持つモデルは、同じ座標の頂点を一度ずつ描く。頂点配列などは、指定済みであること）
+    // 番号配列を持たないモデルや、32ビットの番号配列を描画できない場合は、頂点を先頭からiCountVertex個描く
+    // 番号配列を持つのは、バッファオブジェクトを使わない読み込み中のモデルだけなので、番号配列はクライアント側のまま渡す
+    protected void drawPoints(Model model, int iCountVertex, int iCountPoint) {
+        Buffer bufPoint = model.getPointVertexIndexBuffer();
+        if (null != bufPoint
+                && (bufPoint instanceof ShortBuffer || isElementIndexUintSupported())) {
+            int iIndexType = (bufPoint instanceof IntBuffer) ? GL_UNSIGNED_INT : GL10.GL_UNSIGNED_SHORT;
+            getGL().glDrawElements(GL10.GL_POINTS, iCountPoint, iIndexType, bufPoint.position(0));
+        } else {
+            getGL().glDrawArrays(GL10.GL_POINTS, 0, iCountVertex);
+        }
+        countDrawCall();
+    }
+
+    // トラッキング中の描画かどうか（三角形の数が上限を超えるモデルは、トラッキング中は粗い段階で描き、線と点を描かない）
+    protected boolean isInteractiveRendering(Model model) {
+        return m_modelrenderpolicy.isInteractiveRendering(model, getTrackingMode());
+    }
+
+    // 通常の描画に使う、詳細度の段階のモデル（段階を作成していなければ、モデルそのもの）
+    protected Model getLevelOfDetailModel(Model model) {
+        return m_modelrenderpolicy.getLevelOfDetailModel(model, getTrackingMode(), getPixelPerUnit(), getFrameStats());
+    }
+
+    // モデルの座標系への変換の開始（量子化したモデルは、量子化した値×縮尺＋中心が元の座標値になるよう、モデルビュー行列に掛ける）
+    // 同じ変換で、クラスターの階層の間引きの行列もセットする（読み込み中のモデルは、間引かない）
+    protected void pushVertexTransform(Model model) {
+        GL10 gl = getGL();
+        gl.glPushMatrix();
+        Matrix.setIdentityM(m_f16Model, 0);
+        if (model.isQuantized()) {
+            float[] af3Scale = model.getVertexScale();
+            float[] af3Offset = model.getVertexOffset();
+            gl.glTranslatef(af3Offset[0], af3Offset[1], af3Offset[2]);
+            gl.glScalef(af3Scale[0], af3Scale[1], af3Scale[2]);
+            Matrix.translateM(m_f16Model, 0, af3Offset[0], af3Offset[1], af3Offset[2]);
+            Matrix.scaleM(m_f16Model, 0, af3Scale[0], af3Scale[1], af3Scale[2]);
+        }
+        m_bCulling = !(model instanceof AppendableModel);
+        m_clusterculler.setMatrix(m_f16Projection, m_f16View, m_f16Model, getWidth(), getHeight());
+    }
+
+    // モデルの座標系への変換の終了
+    protected void popVertexTransform() {
+        getGL().glPopMatrix();
+    }
+
+    // 面の描画（部分メッシュごとに、先頭からiCountTriangle個までを描画する）
+    protected void drawTriangleElements(Model model, int iCountTriangle) {
+        for (SubMesh submesh : getTriangleSubMeshes(model)) {
+            int iCount = Math.min(submesh.getElementCount(), iCountTriangle - submesh.getFirstElement());
+            if (0 >= iCount) {
+                break;
+            }
+            setVertexPointer(submesh);
+            drawSubMeshElements(GL10.GL_TRIANGLES, 3, submesh, iCount);
+        }
+        setVertexPointer(model);
+    }
+
+    // 陰影付きの面の描画（頂点法線を持つ部分メッシュごとに、先頭からiCountTriangle個までを描画する。色は、glColorの色）
+    // 陰影付きの部分メッシュがないモデル（読み込み中のモデル）は、単色で描画する
+    protected void drawLitTriangleElements(Model model, int iCountTriangle, float fCreaseAngle) {
+        SubMesh[] aSubMesh = m_modelrenderpolicy.getLitTriangleSubMeshes(model, fCreaseAngle);    // 作り直された前の部分メッシュのバッファオブジェクトは、削除される
+        if (null == aSubMesh) {
+            drawTriangleElements(model, iCountTriangle);
+            return;
+        }
+
+        GL10 gl = getGL();
+        gl.glEnable(GL10.GL_LIGHTING);
+        gl.glEnable(GL10.GL_LIGHT0);
+        gl.glEnable(GL10.GL_COLOR_MATERIAL);
+        gl.glLightModelf(GL10.GL_LIGHT_MODEL_TWO_SIDE, 1.0f);    // STLの三角形の向きは揃っていないことがあるので、裏面も照らす
+        gl.glMatrixMode(GL10.GL_MODELVIEW);
+        gl.glPushMatrix();
+        gl.glLoadIdentity();    // 光源の位置は、視点の座標系で指定する
+        gl.glLightfv(GL10.GL_LIGHT0, GL10.GL_POSITION, LIGHT_POSITION, 0);
+        gl.glPopMatrix();
+        gl.glLightfv(GL10.GL_LIGHT0, GL10.GL_AMBIENT, LIGHT_AMBIENT, 0);
+        gl.glLightfv(GL10.GL_LIGHT0, GL10.GL_DIFFUSE, LIGHT_DIFFUSE, 0);
+        gl.glEnableClientState(GL10.GL_NORMAL_ARRAY);
+
+        for (SubMesh submesh : aSubMesh) {
+            int iCount = Math.min(submesh.getElementCount(), iCountTriangle - submesh.getFirstElement());
+            if (0 >= iCount) {
+                break;
+            }
+            setVertexPointer(submesh);
+            setNormalPointer(submesh.getVertexLayout(), submesh.getVertexBuffer());
+            drawSubMeshElements(GL10.GL_TRIANGLES, 3, submesh, iCount);
+        }
+
+        gl.glDisableClientState(GL10.GL_NORMAL_ARRAY);
+        gl.glDisable(GL10.GL_COLOR_MATERIAL);
+        gl.glDisable(GL10.GL_LIGHT0);
+        gl.glDisable(GL10.GL_LIGHTING);
+        setVertexPointer(model);
+    }
+
+    // 線の描画（部分メッシュごとに、先頭からiCountEdge個までを描画する）
+    protected void drawEdgeElements(Model model, int iCountEdge) {
+        for (SubMesh submesh : getEdgeSubMeshes(model)) {
+            int iCount = Math.min(submesh.getElementCount(), iCountEdge - submesh.getFirstElement());
+            if (0 >= iCount) {
+                break;
+            }
+            setVertexPointer(submesh);
+            drawSubMeshElements(GL10.GL_LINES, 2, submesh, iCount);
+        }
+        setVertexPointer(model);
     }
 
     @Override
@@ -31,46 +349,50 @@ public class OpenGLModelRenderer extends OpenGLTrackRenderer {
     }
 
     protected void renderModel() {
-        if (null == m_model
-                || null == m_model.getVertexBuffer()) {
+        Model model = getModel();
+        if (null == model
+                || null == model.getVertexBuffer()) {
             return;
         }
 
         GL10 gl = getGL();
 
+        // 要素の数（読み込み中のモデルでは、バッファより先に取得する）
+        int iCountTriangle = model.getTriangleCount();
+        int iCountEdge = model.getEdgeCount();
+        int iCountVertex = model.getVertexCount();
+        int iCountPoint = model.getPointCount();
+
         // 頂点配列の有効化
         gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
 
         // 頂点配列の指定
-        gl.glVertexPointer(3, GL10.GL_FLOAT, 0, m_model.getVertexBuffer());
+        setVertexPointer(model);
+        pushVertexTransform(model);
 
         // 面の描画
-        if (null != m_model.getTriangleVertexIndexBuffer()) {
+        if (null != model.getTriangleVertexIndexBuffer()) {
             gl.glColor4f(0.5f, 0.5f, 0.0f, 1.0f);
-            gl.glDrawElements(GL10.GL_TRIANGLES,
-                    m_model.getTriangleVertexIndexBuffer().capacity(),
-                    GL10.GL_UNSIGNED_SHORT,
-                    m_model.getTriangleVertexIndexBuffer().position(0));
+            drawTriangleElements(model, iCountTriangle);
         }
 
         // 線の描画
-        if (null != m_model.getEdgeVertexIndexBuffer()) {
+        if (null != model.getEdgeVertexIndexBuffer()) {
             gl.glLineWidth(2.0f);
             gl.glColor4f(0.0f, 0.5f, 0.5f, 1.0f);
-            gl.glDrawElements(GL10.GL_LINES,
-                    m_model.getEdgeVertexIndexBuffer().capacity(),
-                    GL10.GL_UNSIGNED_SHORT,
-                    m_model.getEdgeVertexIndexBuffer().position(0));
+            drawEdgeElements(model, iCountEdge);
         }
 
         // 点の描画
-        // if( null != m_model.getVertexBuffer() )
+        // if( null != model.getVertexBuffer() )
         {
             gl.glPointSize(5.0f);
             gl.glColor4f(0.5f, 0.0f, 0.5f, 1.0f);
-            gl.glDrawArrays(GL10.GL_POINTS, 0, m_model.getVertexCount());
+            drawPoints(model, iCountVertex, iCountPoint);
         }
 
+        popVertexTransform();
+
         // 頂点配列の無効化
         gl.glDisableClientState(GL10.GL_VERTEX_ARRAY);
     }
@@ -79,6 +401,18 @@ public class OpenGLModelRenderer extends OpenGLTrackRenderer {
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
         super.onSurfaceCreated(gl, config);
 
+        // 32ビットの番号配列を描画できるかどうか
+        String strExtensions = gl.glGetString(GL10.GL_EXTENSIONS);
+        m_modelrenderpolicy.setElementIndexUint(null != strExtensions && strExtensions.contains("GL_OES_element_index_uint"));
+
+        // バッファオブジェクトを使えるかどうか（OpenGL ES 1.0には無い）
+        String strVersion = gl.glGetString(GL10.GL_VERSION);
+        m_bBufferObjectSupported = gl instanceof GL11
+                && null != strVersion && !strVersion.contains(" 1.0");
+
+        // コンテキストが作り直されると、以前のバッファオブジェクトは無くなっているので、現在のモデルの配列を転送し直す
+        m_bufferobjectcache.invalidate();
+        m_modelrenderpolicy.uploadModel();
 
     }
 
@@ -1,6 +1,7 @@
 package com.hiramine.modelviewertutorial;
 
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 
 import javax.microedition.khronos.opengles.GL10;
@@ -36,33 +37,31 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
 
     // 定数
     protected static final int NAMEARRAYSIZE    = 10;    // 名前列の大きさ
-    private static final   int REDMASK          = 0xF800;
-    private static final   int GREENMASK        = 0x7E0;
-    private static final   int BLUEMASK         = 0x1F;
 
     protected static final int PICKREGIONOFFSET = 10;    // ピック領域の上下左右のオフセット量
 
     // メンバー変数
     protected int[] m_aiName = new int[NAMEARRAYSIZE];
-    private ByteBuffer m_btbVertexIdColor;
-    private ByteBuffer m_btbTriangleIdColor;
+    private ByteBuffer   m_btbVertexIdColor;    // 点のピック用の色配列（インターリーブした頂点配列を持たないモデルだけ。最初のピック時に作成）
+    private VertexLayout m_layoutPick;    // 面と線のピック用の配列の並び
+    private ByteBuffer   m_btbTrianglePick;    // 面のピック用の、三角形ごとに３頂点を持つ、座標値と三角形の番号の色の配列（最初のピック時に作成）
+    private ByteBuffer   m_btbEdgePick;    // 線のピック用の、稜線ごとに２頂点を持つ、座標値と稜線の番号の色の配列（最初の線のピック時に作成）
+    private FloatBuffer  m_fbPickedElement = makeFloatBuffer( new float[3 * 3] );    // ピック要素の描画用の頂点の座標値の配列
 
     // アクセサ
-    public ByteBuffer getVertexIdColorBuffer()
+    public ByteBuffer getTrianglePickBuffer()
     {
-        return m_btbVertexIdColor;
+        return m_btbTrianglePick;
     }
 
-    public ByteBuffer getTriangleIdColorBuffer()
+    public ByteBuffer getEdgePickBuffer()
     {
-        return m_btbTriangleIdColor;
+        return m_btbEdgePick;
     }
 
     protected void index2rgb( int iIndex, byte[] abtRGB )
     {
-        abtRGB[0] = (byte)( ( iIndex & REDMASK ) >> 11 << 3 );// 赤は、5ビット、32階調
-        abtRGB[1] = (byte)( ( iIndex & GREENMASK ) >> 5 << 2 );// 緑は、6ビット、64階調
-        abtRGB[2] = (byte)( ( iIndex & BLUEMASK ) << 3 );// 青は、5ビット、32階調
+        PickBufferBuilder.index2rgb( iIndex, abtRGB );
     }
 
     @Override
@@ -72,47 +71,157 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
 
         super.setModel( model );
 
-        if( null == model )
+        // ピック用の配列は、ピックするまで作らない（前のモデルの配列は、アリーナに返す。バッファオブジェクトは、super.setModel()で削除済み）
+        releaseBuffer( m_btbVertexIdColor );
+        releaseBuffer( m_btbTrianglePick );
+        releaseBuffer( m_btbEdgePick );
+        m_btbVertexIdColor = null;
+        m_btbTrianglePick = null;
+        m_btbEdgePick = null;
+    }
+
+    // メモリーが足りない時は、ピック用の配列を破棄する（次のピック時に作り直す）
+    @Override
+    public void trimMemory()
+    {
+        super.trimMemory();
+
+        // バッファオブジェクトは、super.trimMemory()で削除済み
+        if( null != m_btbVertexIdColor )
         {
+            releaseBuffer( m_btbVertexIdColor );
             m_btbVertexIdColor = null;
-            m_btbTriangleIdColor = null;
+            DerivedBufferStats.recordDiscard( DerivedBufferStats.EBufferType.BT_VERTEX_ID_COLOR );
+        }
+        if( null != m_btbTrianglePick )
+        {
+            releaseBuffer( m_btbTrianglePick );
+            m_btbTrianglePick = null;
+            DerivedBufferStats.recordDiscard( DerivedBufferStats.EBufferType.BT_TRIANGLE_PICK );
+        }
+        if( null != m_btbEdgePick )
+        {
+            releaseBuffer( m_btbEdgePick );
+            m_btbEdgePick = null;
+            DerivedBufferStats.recordDiscard( DerivedBufferStats.EBufferType.BT_EDGE_PICK );
+        }
+    }
+
+    // 点のピック用の色配列の指定（インターリーブした頂点配列は、頂点の番号の色を持っているので、それを指す）
+    protected void setVertexIdColorPointer( Model model )
+    {
+        VertexLayout layout = model.getVertexLayout();
+        if( layout.hasColor() )
+        {
+            setColorPointer( layout, model.getInterleavedVertexBuffer() );
+            return;
+        }
+        if( null == m_btbVertexIdColor )
+        {
+            long lNanosStart = System.nanoTime();
+            m_btbVertexIdColor = PickBufferBuilder.makeVertexIdColorBuffer( model );
+            DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_VERTEX_ID_COLOR, lNanosStart, m_btbVertexIdColor.capacity() );
+        }
+        setColorPointer( m_btbVertexIdColor );
+    }
+
+    // 面のピック用の配列の作成
+    protected void makeTrianglePickBuffer( Model model )
+    {
+        long lNanosStart = System.nanoTime();
+        m_layoutPick = PickBufferBuilder.getElementPickLayout( model );
+        m_btbTrianglePick = PickBufferBuilder.makeTrianglePickBuffer( model, m_layoutPick );
+        DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_TRIANGLE_PICK, lNanosStart, m_btbTrianglePick.capacity() );
+    }
+
+    // 線のピック用の配列の作成
+    protected void makeEdgePickBuffer( Model model )
+    {
+        long lNanosStart = System.nanoTime();
+        m_layoutPick = PickBufferBuilder.getElementPickLayout( model );
+        m_btbEdgePick = PickBufferBuilder.makeEdgePickBuffer( model, m_layoutPick );
+        DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_EDGE_PICK, lNanosStart, m_btbEdgePick.capacity() );
+    }
+
+    // 要素番号別のピック描画で、要素ごとに頂点を持つ配列を描画する（座標値と、要素の番号の色を、一つの配列から読む）
+    private void drawElementPickBuffer( Model model, ByteBuffer btbPick, int iMode, int iCountVertex )
+    {
+        GL10 gl = getGL();
+        setVertexPointer( m_layoutPick, btbPick );
+        gl.glEnableClientState( GL10.GL_COLOR_ARRAY );
+        setColorPointer( m_layoutPick, btbPick );
+        gl.glDrawArrays( iMode, 0, iCountVertex );
+        countDrawCall();
+        gl.glDisableClientState( GL10.GL_COLOR_ARRAY );
+        setVertexPointer( model );
+    }
+
+    // 面の描画（要素番号別のピック描画では、三角形ごとに３頂点を持つ配列で描画する）
+    protected void drawTriangles( Model model, int iCountTriangle, ERenderMode eRenderMode )
+    {
+        if( ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
+        {
+            drawElementPickBuffer( model, m_btbTrianglePick, GL10.GL_TRIANGLES, iCountTriangle * 3 );
             return;
         }
+        drawTriangleElements( model, iCountTriangle );
+    }
 
-        byte[] abtRGB = { 0, 0, 0 };
+    // 要素番号別のピック描画での線の描画（稜線ごとに２頂点を持つ配列で、一度に描画する）
+    protected void drawEdgesForPick( Model model, int iCountEdge )
+    {
+        if( null == m_btbEdgePick )
+        {
+            makeEdgePickBuffer( model );
+        }
+        drawElementPickBuffer( model, m_btbEdgePick, GL10.GL_LINES, iCountEdge * 2 );
+    }
 
-        int    iCountPoint      = model.getVertexCount();
-        byte[] abt4PointIdColor = new byte[iCountPoint * 4];
-        for( int i = 0; i < iCountPoint; i++ )
+    // ピック面の描画（どの部分メッシュにあるかによらず描画できるよう、座標値を取り出して描画する）
+    protected void drawPickedTriangle( Model model, int iIndexTriangle )
+    {
+        if( iIndexTriangle >= model.getTriangleCount() )
         {
-            index2rgb( i, abtRGB );
-            abt4PointIdColor[i * 4 + 0] = abtRGB[0];
-            abt4PointIdColor[i * 4 + 1] = abtRGB[1];
-            abt4PointIdColor[i * 4 + 2] = abtRGB[2];
-            abt4PointIdColor[i * 4 + 3] = (byte)255;
+            return;
+        }
+        for( int i3 = 0; i3 < 3; i3++ )
+        {
+            putVertex( model, model.getTriangleVertexIndex( iIndexTriangle, i3 ), i3 );
         }
-        m_btbVertexIdColor = makeByteBuffer( abt4PointIdColor );
+        drawPickedElement( model, GL10.GL_TRIANGLES, 3 );
+    }
 
-        int    iCountTriangle      = model.getTriangleCount();
-        byte[] abt4TriangleIdColor = new byte[iCountTriangle * 3 * 4];
-        for( int i = 0; i < iCountTriangle; i++ )
+    // ピック線の描画
+    protected void drawPickedEdge( Model model, int iIndexEdge )
+    {
+        if( iIndexEdge >= model.getEdgeCount() )
         {
-            index2rgb( i, abtRGB );
-            abt4TriangleIdColor[i * 12 + 0] = abtRGB[0];
-            abt4TriangleIdColor[i * 12 + 1] = abtRGB[1];
-            abt4TriangleIdColor[i * 12 + 2] = abtRGB[2];
-            abt4TriangleIdColor[i * 12 + 3] = (byte)255;
-            abt4TriangleIdColor[i * 12 + 4] = abtRGB[0];
-            abt4TriangleIdColor[i * 12 + 5] = abtRGB[1];
-            abt4TriangleIdColor[i * 12 + 6] = abtRGB[2];
-            abt4TriangleIdColor[i * 12 + 7] = (byte)255;
-            abt4TriangleIdColor[i * 12 + 8] = abtRGB[0];
-            abt4TriangleIdColor[i * 12 + 9] = abtRGB[1];
-            abt4TriangleIdColor[i * 12 + 10] = abtRGB[2];
-            abt4TriangleIdColor[i * 12 + 11] = (byte)255;
+            return;
+        }
+        for( int i2 = 0; i2 < 2; i2++ )
+        {
+            putVertex( model, model.getEdgeVertexIndex( iIndexEdge, i2 ), i2 );
         }
-        m_btbTriangleIdColor = makeByteBuffer( abt4TriangleIdColor );
+        drawPickedElement( model, GL10.GL_LINES, 2 );
     }
+
+    // 頂点の座標値の配列に格納されている値のまま、floatで持つ（量子化したモデルも、同じモデルビュー行列で描画する）
+    private void putVertex( Model model, int iIndexVertex, int i )
+    {
+        m_fbPickedElement.put( i * 3 + 0, model.getVertexValue( iIndexVertex, 0 ) );
+        m_fbPickedElement.put( i * 3 + 1, model.getVertexValue( iIndexVertex, 1 ) );
+        m_fbPickedElement.put( i * 3 + 2, model.getVertexValue( iIndexVertex, 2 ) );
+    }
+
+    private void drawPickedElement( Model model, int iMode, int iCountVertex )
+    {
+        GL10 gl = getGL();
+        gl.glVertexPointer( 3, GL10.GL_FLOAT, 0, m_fbPickedElement.position( 0 ) );
+        gl.glDrawArrays( iMode, 0, iCountVertex );
+        countDrawCall();
+        setVertexPointer( model );
+    }
+
     @Override
     protected void renderScene()
     {
@@ -136,36 +245,31 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
         }
         GL11 gl11 = (GL11)gl;
 
+        // 要素の数（読み込み中のモデルでは、バッファより先に取得する）
+        int iCountTriangle = model.getTriangleCount();
+        int iCountEdge     = model.getEdgeCount();
+        int iCountVertex   = model.getVertexCount();
+        int iCountPoint    = model.getPointCount();
+
         // 頂点配列の有効化
         gl.glEnableClientState( GL10.GL_VERTEX_ARRAY );
 
         // 頂点配列の指定
-        gl.glVertexPointer( 3, GL10.GL_FLOAT, 0, model.getVertexBuffer() );
+        setVertexPointer( model );
+        pushVertexTransform( model );
 
         // 面の描画
         if( null != model.getTriangleVertexIndexBuffer() )
         {
-            if( ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
-            {
-                gl.glEnableClientState( GL10.GL_COLOR_ARRAY );
-                gl.glColorPointer( 4, // Must be 4.
-                        GL10.GL_UNSIGNED_BYTE,
-                        0,
-                        m_btbTriangleIdColor );
-            }
-            else if( ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
+            if( ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
             {
                 gl.glColor4f( 1.0f, 0.0f, 0.0f, 1.0f );
             }
-            else
+            else if( ERenderMode.RM_RENDER == eRenderMode )
             {
                 gl.glColor4f( 0.5f, 0.5f, 0.0f, 1.0f );
             }
-            gl.glDrawElements( GL10.GL_TRIANGLES,
-                    model.getTriangleVertexIndexBuffer().capacity(),
-                    GL10.GL_UNSIGNED_SHORT,
-                    model.getTriangleVertexIndexBuffer().position( 0 ) );
-            gl.glDisableClientState( GL10.GL_COLOR_ARRAY );
+            drawTriangles( model, iCountTriangle, eRenderMode );
             // ピック面の描画
             if( ERenderMode.RM_RENDER == eRenderMode )
             {
@@ -173,10 +277,7 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
                 {
                     int iIndexTriangle = m_aiName[2];
                     gl.glColor4f( 1.0f, 1.0f, 0.0f, 1.0f );
-                    gl.glDrawElements( GL10.GL_TRIANGLES,
-                            3,
-                            GL10.GL_UNSIGNED_SHORT,
-                            model.getTriangleVertexIndexBuffer().position( 3 * iIndexTriangle ) );
+                    drawPickedTriangle( model, iIndexTriangle );
                 }
             }
         }
@@ -187,24 +288,7 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
             gl.glLineWidth( 2.0f );
             if( ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
             {
-                int    iCountTriangle = model.getTriangleCount();
-                int    iIndexTriangle;
-                int    i3;
-                int    iIndexEdge;
-                byte[] abtRGB         = { 0, 0, 0 };
-                for( iIndexTriangle = 0; iIndexTriangle < iCountTriangle; ++iIndexTriangle )
-                {
-                    for( i3 = 0; i3 < 3; ++i3 )
-                    {
-                        iIndexEdge = iIndexTriangle * 3 + i3;
-                        index2rgb( iIndexEdge, abtRGB );
-                        gl11.glColor4ub( abtRGB[0], abtRGB[1], abtRGB[2], (byte)255 );
-                        gl.glDrawElements( GL10.GL_LINES,
-                                2,
-                                GL10.GL_UNSIGNED_SHORT,
-                                model.getEdgeVertexIndexBuffer().position( 2 * iIndexEdge ) );
-                    }
-                }
+                drawEdgesForPick( model, iCountEdge );
             }
             else
             {
@@ -216,10 +300,7 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
                 {
                     gl.glColor4f( 0.0f, 0.5f, 0.5f, 1.0f );
                 }
-                gl.glDrawElements( GL10.GL_LINES,
-                        model.getEdgeVertexIndexBuffer().capacity(),
-                        GL10.GL_UNSIGNED_SHORT,
-                        model.getEdgeVertexIndexBuffer().position( 0 ) );
+                drawEdgeElements( model, iCountEdge );
             }
             // ピック線の描画
             if( ERenderMode.RM_RENDER == eRenderMode )
@@ -229,10 +310,7 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
                     int iIndexEdge = m_aiName[2];
                     gl.glLineWidth( 5.0f );
                     gl.glColor4f( 0.0f, 1.0f, 1.0f, 1.0f );
-                    gl.glDrawElements( GL10.GL_LINES,
-                            2,
-                            GL10.GL_UNSIGNED_SHORT,
-                            model.getEdgeVertexIndexBuffer().position( 2 * iIndexEdge ) );
+                    drawPickedEdge( model, iIndexEdge );
                 }
             }
         }
@@ -244,10 +322,7 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
             if( ERenderMode.RM_PICK_ELEMENTID == eRenderMode )
             {
                 gl.glEnableClientState( GL10.GL_COLOR_ARRAY );
-                gl.glColorPointer( 4, // Must be 4.
-                        GL10.GL_UNSIGNED_BYTE,
-                        0,
-                        m_btbVertexIdColor );
+                setVertexIdColorPointer( model );
             }
             else if( ERenderMode.RM_PICK_ELEMENTTYPE == eRenderMode )
             {
@@ -257,7 +332,7 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
             {
                 gl.glColor4f( 0.5f, 0.0f, 0.5f, 1.0f );
             }
-            gl.glDrawArrays( GL10.GL_POINTS, 0, model.getVertexCount() );
+            drawPoints( model, iCountVertex, iCountPoint );
             gl.glDisableClientState( GL10.GL_COLOR_ARRAY );
             // ピック点の描画
             if( ERenderMode.RM_RENDER == eRenderMode )
@@ -268,20 +343,20 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
                     gl.glColor4f( 1.0f, 0.0f, 1.0f, 1.0f );
                     int iIndexPoint = m_aiName[2];
                     gl.glDrawArrays( GL10.GL_POINTS, iIndexPoint, 1 );
+                    countDrawCall();
                 }
             }
         }
 
+        popVertexTransform();
+
         // 頂点配列の無効化
         gl.glDisableClientState( GL10.GL_VERTEX_ARRAY );
     }
 
     private int rgb2index( byte r, byte g, byte b )
     {
-        // (符号付きbyte値 & 0xFF) で、符号なしbyte値が得られる
-        return ( ( ( r & 0xFF ) >> 3 ) << 11 )
-                + ( ( ( g & 0xFF ) >> 2 ) << 5 )
-                + ( ( b & 0xFF ) >> 3 );
+        return PickBufferBuilder.rgb2index( r, g, b );
     }
 
     // 「要素タイプの優先順位は、点、線、面
@@ -337,6 +412,22 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
             return false;
         }
 
+        // 読み込み中のモデルは、ピック用の色配列が要素数に追いついていないのでピックしない
+        if( getModel() instanceof AppendableModel
+                && !( (AppendableModel)getModel() ).isComplete() )
+        {
+            return false;
+        }
+        // 要素の数が、要素番号の色で区別できる数を超えるモデルはピックしない（別の要素を選んでしまう）
+        if( !PickBufferBuilder.isElementIdPickable( getModel() ) )
+        {
+            return false;
+        }
+        if( null == m_btbTrianglePick )
+        {
+            makeTrianglePickBuffer( getModel() );
+        }
+
         GL10 gl = getGL();
 
         if( !( gl instanceof GL11ExtensionPack) )
@@ -405,6 +496,7 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
 
             gl.glDisable( GL10.GL_LIGHTING ); // 光
             gl.glDisable( GL10.GL_BLEND ); // 半透明およびアンチエイリアシング
+            gl.glDisable( GL10.GL_DITHER ); // ディザリング（要素番号の色の下位ビットが変わらないように）
 
             // ピック描画（要素タイプ別）
             gl.glClear( GL10.GL_COLOR_BUFFER_BIT | GL10.GL_DEPTH_BUFFER_BIT );
@@ -467,6 +559,7 @@ public class OpenGLPickRenderer extends OpenGLModelRenderer {
 
         // ウィンドウシステムが提供するフレームバッファに差し替え
         gl11ex.glBindFramebufferOES( GL11ExtensionPack.GL_FRAMEBUFFER_OES, 0 );
+        gl.glEnable( GL10.GL_DITHER );
 
         // クリーンアップ
         gl.glDeleteTextures( 1, aiTexture, 0 );
@@ -18,7 +18,7 @@ public class OpenGLTrackRenderer extends OpenGLBaseRenderer {
     }
 
     // メンバー変数
-    private ETrackingMode m_eTrackingMode = ETrackingMode.TM_NONE;    // トラッキングモード
+    private volatile ETrackingMode m_eTrackingMode = ETrackingMode.TM_NONE;    // トラッキングモード（UIスレッドでセットし、GLスレッドの描画でも見る）
     private float m_fLastX;                                    // トラッキング中の直前座標X
     private float m_fLastY;                                    // トラッキング中の直前座標Y
     private float m_fRenderingRate;                                // 描画倍率
@@ -27,12 +27,17 @@ public class OpenGLTrackRenderer extends OpenGLBaseRenderer {
     protected float m_fRenderingCenterY;                            // 描画中心座標Y
     private float[] m_f16MatrixTemp1 = new float[16];            // テンポラリ行列
     private float[] m_f16MatrixTemp2 = new float[16];            // テンポラリ行列
+    protected final float[] m_f16Projection = new float[16];    // 投影行列（glOrthof()で設定したものと同じ。間引きに使う）
+    protected final float[] m_f16View = new float[16];    // 視点座標変換行列（gluLookAt()とフォーム行列で設定したものと同じ。間引きに使う）
+    private final float[] m_f16LookAt = new float[16];    // 視点の行列（GLスレッド用。トラッキングのテンポラリ行列は、UIスレッドが使う）
 
     // コンストラクタ
     public OpenGLTrackRenderer()
     {
         m_fRenderingRate = 10.0f;
         Matrix.setIdentityM( m_f16ObjectForm, 0 );
+        Matrix.setIdentityM( m_f16Projection, 0 );
+        Matrix.setIdentityM( m_f16View, 0 );
     }
 
     // アクセサ
@@ -41,6 +46,12 @@ public class OpenGLTrackRenderer extends OpenGLBaseRenderer {
         return m_eTrackingMode;
     }
 
+    // 元の座標系の長さ１の、画面上のピクセル数（平行投影で、幅getWidth()ピクセルのビューポートに、幅getWidth() / 描画倍率の範囲を映すので、描画倍率に等しい）
+    public float getPixelPerUnit()
+    {
+        return m_fRenderingRate;
+    }
+
     // トラッキング操作の開始
     public void beginTracking( float fX, float fY, ETrackingMode eTrackingMode )
     {
@@ -118,6 +129,13 @@ public class OpenGLTrackRenderer extends OpenGLBaseRenderer {
                 0.1f, // near
                 1000.0f ); // far
         gl.glMatrixMode( GL10.GL_MODELVIEW );
+        Matrix.orthoM( m_f16Projection, 0,
+                -getWidth() * 0.5f / m_fRenderingRate,
+                getWidth() * 0.5f / m_fRenderingRate,
+                -getHeight() * 0.5f / m_fRenderingRate,
+                getHeight() * 0.5f / m_fRenderingRate,
+                0.1f,
+                1000.0f );
 
         setViewingFrustumValid( true );
     }
@@ -134,6 +152,11 @@ public class OpenGLTrackRenderer extends OpenGLBaseRenderer {
                 m_fRenderingCenterX, m_fRenderingCenterY, 0.0f,
                 0.0f, 1.0f, 0.0f );
         gl.glMultMatrixf( m_f16ObjectForm, 0 ); // 表示回転（＝モデル回転）
+        Matrix.setLookAtM( m_f16LookAt, 0,
+                m_fRenderingCenterX, m_fRenderingCenterY, 500,
+                m_fRenderingCenterX, m_fRenderingCenterY, 0.0f,
+                0.0f, 1.0f, 0.0f );
+        Matrix.multiplyMM( m_f16View, 0, m_f16LookAt, 0, m_f16ObjectForm, 0 );
 
         setViewingTransformValid( true );
     }
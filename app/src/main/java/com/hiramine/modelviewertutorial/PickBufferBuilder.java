@@ -0,0 +1,94 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.ByteBuffer;
+
+// ピック用の配列の作成（要素番号を色にした配列など。GLに依存しないので、描画スレッド以外やJVMのベンチマークからも使える）
+// ・配列は共有のアリーナから借りるので、使い終わったらアリーナに返す
+// ・要素番号の色は、各色8ビットの24ビット（ピック描画の描画先は、GL_RGBA、GL_UNSIGNED_BYTEのテクスチャかレンダーバッファなので、色の値がそのまま読み戻せる）
+public class PickBufferBuilder
+{
+    // 定数
+    public static final int MAX_ELEMENT_COUNT = 1 << 24;    // 要素番号の色で区別できる要素の数の上限
+
+    // 要素番号から色への変換（赤が上位、青が下位の8ビット）
+    public static void index2rgb( int iIndex, byte[] abtRGB )
+    {
+        abtRGB[0] = (byte)( iIndex >> 16 );
+        abtRGB[1] = (byte)( iIndex >> 8 );
+        abtRGB[2] = (byte)iIndex;
+    }
+
+    // 色から要素番号への変換
+    public static int rgb2index( byte r, byte g, byte b )
+    {
+        // (符号付きbyte値 & 0xFF) で、符号なしbyte値が得られる
+        return ( ( r & 0xFF ) << 16 )
+                | ( ( g & 0xFF ) << 8 )
+                | ( b & 0xFF );
+    }
+
+    // 要素番号の色でピックできるモデルかどうか（三角形、頂点、作成済みの稜線の数が、24ビットで表せる数以下）
+    public static boolean isElementIdPickable( Model model )
+    {
+        return MAX_ELEMENT_COUNT >= model.getTriangleCount()
+                && MAX_ELEMENT_COUNT >= model.getVertexCount()
+                && ( !model.hasEdges() || MAX_ELEMENT_COUNT >= model.getEdgeCount() );
+    }
+
+    // 点のピック用の色配列の作成（頂点ごとに、頂点の番号の色）（インターリーブした配列を持たない、読み込み中のモデル用）
+    public static ByteBuffer makeVertexIdColorBuffer( Model model )
+    {
+        byte[]     abtRGB           = { 0, 0, 0 };
+        int        iCountPoint      = model.getVertexCount();
+        ByteBuffer btb4PointIdColor = DirectBufferArena.getShared().acquireBytes( iCountPoint * 4 );    // ヒープの配列を経由せずに、直接詰める
+        for( int i = 0; i < iCountPoint; i++ )
+        {
+            index2rgb( i, abtRGB );
+            btb4PointIdColor.put( i * 4 + 0, abtRGB[0] );
+            btb4PointIdColor.put( i * 4 + 1, abtRGB[1] );
+            btb4PointIdColor.put( i * 4 + 2, abtRGB[2] );
+            btb4PointIdColor.put( i * 4 + 3, (byte)255 );
+        }
+        return btb4PointIdColor;
+    }
+
+    // 面と線のピック用の配列の並び（座標値はモデルと同じ型で、要素の番号の色を持つ）
+    public static VertexLayout getElementPickLayout( Model model )
+    {
+        return new VertexLayout( model.getVertexType(), false, true );
+    }
+
+    // 面のピック用の、三角形ごとに３頂点を持つインターリーブした配列の作成（頂点ごとに、座標値と三角形の番号の色）
+    // 頂点は三角形間で共有されているので、三角形ごとの色を頂点の色として持たせるには、三角形ごとに３頂点を持つ配列が必要
+    public static ByteBuffer makeTrianglePickBuffer( Model model, VertexLayout layout )
+    {
+        int        iCountTriangle  = model.getTriangleCount();
+        ByteBuffer btbTrianglePick = DirectBufferArena.getShared().acquireBytes( iCountTriangle * 3 * layout.getStride() );
+        byte[]     abtRGB          = { 0, 0, 0 };
+        for( int i = 0; i < iCountTriangle; i++ )
+        {
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                InterleavedVertexBuilder.putVertex( btbTrianglePick, layout, i * 3 + i3, model, model.getTriangleVertexIndex( i, i3 ), 0, i, abtRGB );
+            }
+        }
+        return btbTrianglePick;
+    }
+
+    // 線のピック用の、稜線ごとに２頂点を持つインターリーブした配列の作成（頂点ごとに、座標値と稜線の番号の色）
+    // 稜線ごとに色を持つので、一度の描画呼び出しで全ての稜線を描ける（OpenGL ES 3では、頂点の番号÷2から色を作る）
+    public static ByteBuffer makeEdgePickBuffer( Model model, VertexLayout layout )
+    {
+        int        iCountEdge  = model.getEdgeCount();
+        ByteBuffer btbEdgePick = DirectBufferArena.getShared().acquireBytes( iCountEdge * 2 * layout.getStride() );
+        byte[]     abtRGB      = { 0, 0, 0 };
+        for( int i = 0; i < iCountEdge; i++ )
+        {
+            for( int i2 = 0; i2 < 2; i2++ )
+            {
+                InterleavedVertexBuilder.putVertex( btbEdgePick, layout, i * 2 + i2, model, model.getEdgeVertexIndex( i, i2 ), 0, i, abtRGB );
+            }
+        }
+        return btbEdgePick;
+    }
+}
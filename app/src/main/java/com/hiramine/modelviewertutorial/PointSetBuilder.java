@@ -0,0 +1,151 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+// 点の集合の作成（三角形ごとに３頂点を持つ頂点配列から、同じ座標の頂点を一度ずつ描くための、頂点の番号の配列を作る）
+// ・頂点を一つずつ追加し、その座標で最初に現れた頂点の番号だけを、点の番号配列に加える（番号は、元の頂点の番号のまま）
+// ・座標値のキーとハッシュ値は、VertexWelderの許容誤差0の場合と同じもの（座標値のビット列。-0.0と0.0は同じとみなす）
+// ・番号配列は、頂点の番号が65535以下の間はShortBuffer、超えたらIntBufferに広げる
+// ・追加は一つのスレッドから行う。番号配列は、伸ばす時に、書き込み済みの範囲をコピーした新しい配列に差し替えるので、
+//   点の数を公開してから番号配列を取得すれば、公開済みの範囲は常に読める（アリーナを使わない。いつ不要になるか決まらないバッファ用）
+public class PointSetBuilder
+{
+    // 定数
+    private static final int EMPTY            = -1;
+    private static final int MINIMUM_CAPACITY = 16;
+
+    // メンバー変数
+    private int[]           m_ai3Key = new int[MINIMUM_CAPACITY * 3];    // 点のキーの配列（３つのint値で１点）
+    private int[]           m_aiSlot = newTable( MINIMUM_CAPACITY * 2 );    // ハッシュ表（点の番号、空きはEMPTY）（大きさは２のべき乗）
+    private volatile Buffer m_bufPointVertexIndex = IndexBufferBuilder.allocateShort( MINIMUM_CAPACITY );    // 点ごとの、元の頂点の番号
+    private int             m_iCountPoint;    // 点の数
+
+    // アクセサ
+    public int getPointCount()
+    {
+        return m_iCountPoint;
+    }
+
+    // 点の番号配列（ShortBufferまたはIntBuffer。先頭から点の数が有効）
+    public Buffer getPointVertexIndexBuffer()
+    {
+        return m_bufPointVertexIndex;
+    }
+
+    // 頂点の追加（新しい座標の点ならtrue）
+    public boolean add( float fX, float fY, float fZ, int iIndexVertex )
+    {
+        int iKeyX = VertexWelder.bitKey( fX );
+        int iKeyY = VertexWelder.bitKey( fY );
+        int iKeyZ = VertexWelder.bitKey( fZ );
+        int iMask = m_aiSlot.length - 1;
+        int iSlot = VertexWelder.hash( iKeyX, iKeyY, iKeyZ ) & iMask;
+        while( true )
+        {
+            int iIndexPoint = m_aiSlot[iSlot];
+            if( EMPTY == iIndexPoint )
+            {
+                break;
+            }
+            if( iKeyX == m_ai3Key[iIndexPoint * 3 + 0]
+                && iKeyY == m_ai3Key[iIndexPoint * 3 + 1]
+                && iKeyZ == m_ai3Key[iIndexPoint * 3 + 2] )
+            {
+                return false;
+            }
+            iSlot = ( iSlot + 1 ) & iMask;
+        }
+
+        // 追加
+        int iIndexPoint = m_iCountPoint++;
+        if( m_ai3Key.length < m_iCountPoint * 3 )
+        {
+            m_ai3Key = Arrays.copyOf( m_ai3Key, m_ai3Key.length * 2 );
+        }
+        m_ai3Key[iIndexPoint * 3 + 0] = iKeyX;
+        m_ai3Key[iIndexPoint * 3 + 1] = iKeyY;
+        m_ai3Key[iIndexPoint * 3 + 2] = iKeyZ;
+        m_aiSlot[iSlot] = iIndexPoint;
+        putIndex( iIndexPoint, iIndexVertex );
+
+        // 使用率が1/2を超えたら、ハッシュ表を大きくする
+        if( m_iCountPoint * 2 > m_aiSlot.length )
+        {
+            rehash( m_aiSlot.length * 2 );
+        }
+        return true;
+    }
+
+    // 追加の終了（ハッシュ表を解放する。その後は、追加できない）
+    public void finish()
+    {
+        m_ai3Key = null;
+        m_aiSlot = null;
+    }
+
+    // 点の番号配列への書き込み（容量が足りないか、16ビットで表せない番号になったら、伸ばしてから書き込む）
+    private void putIndex( int iIndexPoint, int iIndexVertex )
+    {
+        Buffer bufIndex = m_bufPointVertexIndex;
+        if( bufIndex.capacity() <= iIndexPoint
+            || ( bufIndex instanceof ShortBuffer && 0xFFFF < iIndexVertex ) )
+        {
+            int iCapacity = ( bufIndex.capacity() <= iIndexPoint ) ? bufIndex.capacity() * 2 : bufIndex.capacity();
+            bufIndex = copyOf( bufIndex, iIndexPoint, iCapacity, bufIndex instanceof IntBuffer || 0xFFFF < iIndexVertex );
+            m_bufPointVertexIndex = bufIndex;
+        }
+        if( bufIndex instanceof IntBuffer )
+        {
+            ( (IntBuffer)bufIndex ).put( iIndexPoint, iIndexVertex );
+        }
+        else
+        {
+            ( (ShortBuffer)bufIndex ).put( iIndexPoint, (short)iIndexVertex );
+        }
+    }
+
+    private static Buffer copyOf( Buffer bufIndex, int iCount, int iCapacity, boolean bInt )
+    {
+        if( !bInt )
+        {
+            ShortBuffer sbCopy = IndexBufferBuilder.allocateShort( iCapacity );
+            for( int i = 0; i < iCount; i++ )
+            {
+                sbCopy.put( i, ( (ShortBuffer)bufIndex ).get( i ) );
+            }
+            return sbCopy;
+        }
+        IntBuffer ibCopy = IndexBufferBuilder.allocateInt( iCapacity );
+        for( int i = 0; i < iCount; i++ )
+        {
+            ibCopy.put( i, Model.getIndex( bufIndex, i ) );
+        }
+        return ibCopy;
+    }
+
+    private void rehash( int iTableSize )
+    {
+        int[] aiSlot = newTable( iTableSize );
+        int   iMask  = iTableSize - 1;
+        for( int iIndexPoint = 0; iIndexPoint < m_iCountPoint; iIndexPoint++ )
+        {
+            int iSlot = VertexWelder.hash( m_ai3Key[iIndexPoint * 3 + 0], m_ai3Key[iIndexPoint * 3 + 1], m_ai3Key[iIndexPoint * 3 + 2] ) & iMask;
+            while( EMPTY != aiSlot[iSlot] )
+            {
+                iSlot = ( iSlot + 1 ) & iMask;
+            }
+            aiSlot[iSlot] = iIndexPoint;
+        }
+        m_aiSlot = aiSlot;
+    }
+
+    private static int[] newTable( int iTableSize )
+    {
+        int[] aiSlot = new int[iTableSize];
+        Arrays.fill( aiSlot, EMPTY );
+        return aiSlot;
+    }
+}
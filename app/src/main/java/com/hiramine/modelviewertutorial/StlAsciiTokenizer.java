@@ -0,0 +1,462 @@
+package com.hiramine.modelviewertutorial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// アスキーSTLのバイト列トークナイザー
+// 再利用するバイト配列からバイト単位で走査し、行頭のキーワードの判定と浮動小数点数の解析を、Stringを作らずに行う
+public class StlAsciiTokenizer {
+    // キーワード（行頭のトークンの種類）
+    public static final int KEYWORD_EOF      = -1;    // ストリームの終端
+    public static final int KEYWORD_OTHER    = 0;    // その他（outer, loop, endloop, endsolid など）
+    public static final int KEYWORD_SOLID    = 1;
+    public static final int KEYWORD_FACET    = 2;
+    public static final int KEYWORD_VERTEX   = 3;
+    public static final int KEYWORD_ENDFACET = 4;
+
+    // 定数
+    private static final int BUFFER_SIZE    = 64 * 1024;    // 読み込みバッファのバイト数
+    private static final int MAX_TOKEN_SIZE = 64;    // 数値トークンの最大バイト数
+
+    // キーワードを小文字化して8バイトまでlongに詰めた値（Stringを作らずに比較するため）
+    private static final long PACKED_SOLID    = pack( "solid" );
+    private static final long PACKED_FACET    = pack( "facet" );
+    private static final long PACKED_VERTEX   = pack( "vertex" );
+    private static final long PACKED_ENDFACET = pack( "endfacet" );
+
+    // 10のべき乗（doubleで正確に表せる範囲）
+    private static final double[] POWER_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22 };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;    // doubleで正確に表せる仮数の上限
+
+    // メンバー変数
+    private InputStream m_is;
+    private final byte[] m_abtBuffer = new byte[BUFFER_SIZE];    // 読み込みバッファ
+    private final byte[] m_abtToken  = new byte[MAX_TOKEN_SIZE];    // 数値トークンのコピー先
+    private int     m_iPosition;    // バッファ中の読み込み位置
+    private int     m_iLimit;    // バッファ中の有効バイト数
+    private long    m_lBufferOffset;    // バッファ先頭のストリーム中のオフセット
+    private long    m_lRemaining;    // ストリームから読み込める残りのバイト数
+    private long    m_lKeywordOffset;    // 最後に返したキーワードのストリーム中のオフセット
+    private boolean m_bLineStart;    // 行頭にいるかどうか
+
+    // コンストラクタ
+    public StlAsciiTokenizer( InputStream is )
+    {
+        reset( is );
+    }
+
+    // コンストラクタ（ストリームの先頭から指定バイト数だけを読み込む）
+    public StlAsciiTokenizer( InputStream is, long lLength )
+    {
+        reset( is, lLength );
+    }
+
+    // 読み込み対象の差し替え（バッファは再利用する）
+    public void reset( InputStream is )
+    {
+        reset( is, Long.MAX_VALUE );
+    }
+
+    public void reset( InputStream is, long lLength )
+    {
+        m_is = is;
+        m_iPosition = 0;
+        m_iLimit = 0;
+        m_lBufferOffset = 0;
+        m_lRemaining = lLength;
+        m_lKeywordOffset = -1;
+        m_bLineStart = true;
+    }
+
+    // アクセサ
+    // 読み込み済みのバイト数（ストリーム中の現在位置）
+    public long getOffset()
+    {
+        return m_lBufferOffset + m_iPosition;
+    }
+
+    // 最後にnextKeyword()で返したキーワードの先頭バイトの、ストリーム中のオフセット
+    public long getKeywordOffset()
+    {
+        return m_lKeywordOffset;
+    }
+
+    public void close() throws IOException
+    {
+        m_is.close();
+    }
+
+    // 次の空でない行に進み、行頭のトークンのキーワードを返す（現在の行の残りは読み飛ばす）
+    public int nextKeyword() throws IOException
+    {
+        if( !m_bLineStart )
+        {
+            skipLine();
+        }
+
+        while( true )
+        {
+            int iByte = peek();
+            if( -1 == iByte )
+            {
+                return KEYWORD_EOF;
+            }
+            if( isLineEnd( iByte ) )
+            { // 空行
+                ++m_iPosition;
+                continue;
+            }
+            if( isSeparator( iByte ) )
+            {
+                ++m_iPosition;
+                continue;
+            }
+            break;
+        }
+        m_lKeywordOffset = m_lBufferOffset + m_iPosition;
+
+        // トークンを小文字化してlongに詰める（8バイトを超えるトークンはキーワードではない）
+        long lPacked = 0;
+        int  iLength = 0;
+        while( true )
+        {
+            int iByte = peek();
+            if( -1 == iByte
+                    || isSeparator( iByte )
+                    || isLineEnd( iByte ) )
+            {
+                break;
+            }
+            ++m_iPosition;
+            if( 8 > iLength )
+            {
+                lPacked = ( lPacked << 8 ) | toLowerCase( iByte );
+            }
+            ++iLength;
+        }
+        m_bLineStart = false;
+
+        if( 8 < iLength )
+        {
+            return KEYWORD_OTHER;
+        }
+        if( PACKED_VERTEX == lPacked )
+        {
+            return KEYWORD_VERTEX;
+        }
+        if( PACKED_FACET == lPacked )
+        {
+            return KEYWORD_FACET;
+        }
+        if( PACKED_ENDFACET == lPacked )
+        {
+            return KEYWORD_ENDFACET;
+        }
+        if( PACKED_SOLID == lPacked )
+        {
+            return KEYWORD_SOLID;
+        }
+        return KEYWORD_OTHER;
+    }
+
+    // 現在の行の次のトークンを浮動小数点数として解析する（Float.parseFloatと同じ値を返す）
+    public float nextFloat() throws IOException
+    {
+        // 区切り文字の読み飛ばし
+        while( true )
+        {
+            int iByte = peek();
+            if( -1 == iByte
+                    || isLineEnd( iByte ) )
+            {
+                throw new NumberFormatException( "missing value" );
+            }
+            if( !isSeparator( iByte ) )
+            {
+                break;
+            }
+            ++m_iPosition;
+        }
+
+        // トークンのコピー（バッファの境界をまたぐ場合があるので）
+        int iLength = 0;
+        while( true )
+        {
+            int iByte = peek();
+            if( -1 == iByte
+                    || isSeparator( iByte )
+                    || isLineEnd( iByte ) )
+            {
+                break;
+            }
+            if( MAX_TOKEN_SIZE <= iLength )
+            {
+                throw new NumberFormatException( "too long value" );
+            }
+            m_abtToken[iLength++] = (byte)iByte;
+            ++m_iPosition;
+        }
+
+        return parseFloat( m_abtToken, 0, iLength );
+    }
+
+    // バイト列を浮動小数点数として解析する
+    // 仮数と指数がdoubleで正確に計算できる範囲は直接計算し、それ以外はFloat.parseFloatに任せる
+    static float parseFloat( byte[] abtToken, int iOffset, int iLength )
+    {
+        int     i          = iOffset;
+        int     iEnd       = iOffset + iLength;
+        boolean bNegative  = false;
+        long    lMantissa  = 0;
+        int     iDigits    = 0;    // 仮数に取り込んだ有効桁数
+        int     iExponent  = 0;    // 10進指数
+        boolean bAnyDigit  = false;
+        boolean bTruncated = false;    // 桁落ちしたかどうか
+
+        // 符号
+        if( i < iEnd && ( '-' == abtToken[i] || '+' == abtToken[i] ) )
+        {
+            bNegative = ( '-' == abtToken[i] );
+            ++i;
+        }
+        // 整数部
+        for( ; i < iEnd; ++i )
+        {
+            int iDigit = abtToken[i] - '0';
+            if( 0 > iDigit || 9 < iDigit )
+            {
+                break;
+            }
+            bAnyDigit = true;
+            if( 18 > iDigits )
+            {
+                lMantissa = lMantissa * 10 + iDigit;
+                if( 0 != lMantissa )
+                {
+                    ++iDigits;
+                }
+            }
+            else
+            {
+                ++iExponent;
+                bTruncated |= ( 0 != iDigit );
+            }
+        }
+        // 小数部
+        if( i < iEnd && '.' == abtToken[i] )
+        {
+            for( ++i; i < iEnd; ++i )
+            {
+                int iDigit = abtToken[i] - '0';
+                if( 0 > iDigit || 9 < iDigit )
+                {
+                    break;
+                }
+                bAnyDigit = true;
+                if( 18 > iDigits )
+                {
+                    lMantissa = lMantissa * 10 + iDigit;
+                    if( 0 != lMantissa )
+                    {
+                        ++iDigits;
+                    }
+                    --iExponent;
+                }
+                else
+                {
+                    bTruncated |= ( 0 != iDigit );
+                }
+            }
+        }
+        // 指数部
+        if( bAnyDigit && i < iEnd && ( 'e' == abtToken[i] || 'E' == abtToken[i] ) )
+        {
+            ++i;
+            boolean bNegativeExponent = false;
+            if( i < iEnd && ( '-' == abtToken[i] || '+' == abtToken[i] ) )
+            {
+                bNegativeExponent = ( '-' == abtToken[i] );
+                ++i;
+            }
+            int     iExponentValue = 0;
+            boolean bAnyExponent   = false;
+            for( ; i < iEnd; ++i )
+            {
+                int iDigit = abtToken[i] - '0';
+                if( 0 > iDigit || 9 < iDigit )
+                {
+                    break;
+                }
+                bAnyExponent = true;
+                if( 10000 > iExponentValue )
+                {
+                    iExponentValue = iExponentValue * 10 + iDigit;
+                }
+            }
+            if( !bAnyExponent )
+            {
+                return parseFloatFallback( abtToken, iOffset, iLength );
+            }
+            iExponent += bNegativeExponent ? -iExponentValue : iExponentValue;
+        }
+
+        // 想定外の文字が残っている場合（NaN, Infinity, 16進表記, 接尾辞など）
+        if( !bAnyDigit || i != iEnd || bTruncated )
+        {
+            return parseFloatFallback( abtToken, iOffset, iLength );
+        }
+
+        if( 0 == lMantissa )
+        {
+            return bNegative ? -0.0f : 0.0f;
+        }
+
+        // 仮数も10のべき乗もdoubleで正確に表せれば、一回の乗除算で正しく丸められたdoubleが得られる
+        if( MAX_EXACT_MANTISSA < lMantissa
+                || 22 < iExponent
+                || -22 > iExponent )
+        {
+            return parseFloatFallback( abtToken, iOffset, iLength );
+        }
+        double dValue = ( 0 <= iExponent ) ? lMantissa * POWER_OF_TEN[iExponent] : lMantissa / POWER_OF_TEN[-iExponent];
+
+        // doubleからfloatへの丸めは、doubleの値がfloatの丸めの中点ちょうどの場合だけ二重丸めで結果が変わりうる
+        if( Float.MIN_NORMAL > dValue
+                || Float.MAX_VALUE < dValue )
+        {
+            return parseFloatFallback( abtToken, iOffset, iLength );
+        }
+        long lBits = Double.doubleToRawLongBits( dValue );
+        if( ( 1L << 28 ) == ( lBits & ( ( 1L << 29 ) - 1 ) ) )
+        {
+            return parseFloatFallback( abtToken, iOffset, iLength );
+        }
+        float fValue = (float)dValue;
+        return bNegative ? -fValue : fValue;
+    }
+
+    // 一般の場合の解析（Stringを作る）
+    private static float parseFloatFallback( byte[] abtToken, int iOffset, int iLength )
+    {
+        return Float.parseFloat( new String( abtToken, iOffset, iLength, StandardCharsets.US_ASCII ) );
+    }
+
+    // 現在の行の次のトークンの読み飛ばし（行の終わりで、トークンがなければfalse）
+    public boolean skipToken() throws IOException
+    {
+        while( true )
+        {
+            int iByte = peek();
+            if( -1 == iByte
+                    || isLineEnd( iByte ) )
+            {
+                return false;
+            }
+            if( !isSeparator( iByte ) )
+            {
+                break;
+            }
+            ++m_iPosition;
+        }
+        while( true )
+        {
+            int iByte = peek();
+            if( -1 == iByte
+                    || isSeparator( iByte )
+                    || isLineEnd( iByte ) )
+            {
+                return true;
+            }
+            ++m_iPosition;
+        }
+    }
+
+    // 現在の行の残りの読み飛ばし
+    public void skipLine() throws IOException
+    {
+        while( true )
+        {
+            int iByte = peek();
+            if( -1 == iByte )
+            {
+                break;
+            }
+            ++m_iPosition;
+            if( isLineEnd( iByte ) )
+            {
+                break;
+            }
+        }
+        m_bLineStart = true;
+    }
+
+    // 現在の位置のバイトの取得（バッファが空の場合は読み込む。終端では-1）
+    private int peek() throws IOException
+    {
+        if( m_iPosition >= m_iLimit )
+        {
+            if( !fill() )
+            {
+                return -1;
+            }
+        }
+        return m_abtBuffer[m_iPosition] & 0xFF;
+    }
+
+    // バッファの読み込み
+    private boolean fill() throws IOException
+    {
+        m_lBufferOffset += m_iLimit;
+        m_iPosition = 0;
+        m_iLimit = 0;
+        if( 0 >= m_lRemaining )
+        {
+            return false;
+        }
+        int iSize = (int)Math.min( BUFFER_SIZE, m_lRemaining );
+        int iRead = m_is.read( m_abtBuffer, 0, iSize );
+        while( 0 == iRead )
+        {
+            iRead = m_is.read( m_abtBuffer, 0, iSize );
+        }
+        if( 0 > iRead )
+        {
+            m_lRemaining = 0;
+            return false;
+        }
+        m_iLimit = iRead;
+        m_lRemaining -= iRead;
+        return true;
+    }
+
+    // 区切り文字（StringTokenizerで使っていた「, \t」のうち改行以外）
+    private static boolean isSeparator( int iByte )
+    {
+        return ' ' == iByte || '\t' == iByte || ',' == iByte;
+    }
+
+    // 行末文字
+    private static boolean isLineEnd( int iByte )
+    {
+        return '\n' == iByte || '\r' == iByte;
+    }
+
+    private static int toLowerCase( int iByte )
+    {
+        return ( 'A' <= iByte && 'Z' >= iByte ) ? ( iByte + ( 'a' - 'A' ) ) : iByte;
+    }
+
+    private static long pack( String strKeyword )
+    {
+        long lPacked = 0;
+        for( int i = 0; i < strKeyword.length(); ++i )
+        {
+            lPacked = ( lPacked << 8 ) | strKeyword.charAt( i );
+        }
+        return lPacked;
+    }
+}
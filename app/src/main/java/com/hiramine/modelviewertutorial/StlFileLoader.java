@@ -1,13 +1,59 @@
 package com.hiramine.modelviewertutorial;
 
-import android.util.Log;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.util.StringTokenizer;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class StlFileLoader {
+    // 定数（バイナリSTL）
+    private static final int BINARY_HEADER_SIZE   = 80;    // ヘッダーのバイト数
+    private static final int BINARY_COUNT_SIZE    = 4;    // 三角形数（uint32）のバイト数
+    private static final int BINARY_FACET_SIZE    = 50;    // 三角形レコードのバイト数（法線12 + 頂点36 + 属性2）
+    private static final int BINARY_NORMAL_SIZE   = 12;    // 三角形レコード中の法線のバイト数
+    private static final int BINARY_DATA_OFFSET   = BINARY_HEADER_SIZE + BINARY_COUNT_SIZE;
+    // 定数（アスキーSTL）
+    private static final int ASCII_FACET_SIZE_ESTIMATE = 256;    // 三角形１つ分のおおよそのバイト数（容量見積もり用）
+    // 定数（並列パース）
+    private static final long PARALLEL_MIN_FILE_SIZE   = 8L * 1024 * 1024;    // 並列パースするファイルサイズの下限
+    private static final long PARALLEL_MIN_CHUNK_SIZE  = 1024L * 1024;    // チャンクのバイト数の下限
+    private static final int  PARALLEL_CHUNK_PER_CORE  = 4;    // コアあたりのチャンク数（負荷の偏りをならすため）
+    private static final int  PARALLEL_CHECK_TRIANGLE  = 4096;    // 各チャンクが進捗を加算し、中止を確認する三角形の間隔
+    private static final long PARALLEL_POLL_MILLIS     = 50;    // ローディングスレッドが進捗を通知し、中止を確認する間隔
+    // 定数（段階的読み込み）
+    private static final int STREAMING_BATCH_TRIANGLE = 4096;    // 一度に公開する三角形の数
+
+    // 段階的読み込みのリスナー（ローディングスレッドから呼ばれる）
+    public interface StreamingListener
+    {
+        // モデルが作成された時（三角形はまだない）
+        void onModelCreated( AppendableModel model );
+
+        // 三角形が追加された時
+        void onTrianglesAppended( AppendableModel model );
+
+        // 読み込みの進捗（読み込み済みのバイト数／ファイルのバイト数）
+        void onProgress( long lBytesRead, long lBytesTotal );
+
+        // 読み込みを中止するかどうか（三角形の追加ごとに確認する）
+        boolean isCancelled();
+    }
+
     public static Model load( String strPath )
     {
         File file = new File( strPath );
@@ -16,134 +62,790 @@ public class StlFileLoader {
             return null;
         }
 
-        // ファーストパース（要素数カウント）
-        int[] aiCountTriangle = new int[1];
-        if( !parse_first( strPath, aiCountTriangle ) )
+        // バイナリ形式の場合
+        if( isBinary( file ) )
+        {
+            return load_binary( file );
+        }
+
+        // 大きなファイルは、全コアで分割して並列にパースする
+        if( isParallelSize( file ) )
+        {
+            return load_ascii_parallel( file );
+        }
+        return load_ascii( file );
+    }
+
+    // 全コアで並列にパースするファイルかどうか（大きなアスキー形式のファイル）
+    // 並列パースは、段階的には公開できないが、読み込み全体が早く終わるので、段階的読み込みではなくloadParallel()で読み込む
+    public static boolean isParallelParsed( String strPath )
+    {
+        File file = new File( strPath );
+        return isParallelSize( file )
+                && !isBinary( file );
+    }
+
+    private static boolean isParallelSize( File file )
+    {
+        return PARALLEL_MIN_FILE_SIZE <= file.length()
+                && 1 < Runtime.getRuntime().availableProcessors();
+    }
+
+    // 並列読み込み（アスキー形式のみ）
+    // 全コアでパースし、ローディングスレッドは、完了を待つ間に進捗を通知し、中止を確認する（中止すると、各チャンクも途中で止まる）
+    // 読み込み中のモデルは公開しない（listenerのonModelCreated()、onTrianglesAppended()は呼ばない。失敗時、中止時はnull）
+    public static Model loadParallel( String strPath, StreamingListener listener )
+    {
+        File file = new File( strPath );
+        if( 0 == file.length() )
         {
             return null;
         }
+        return load_ascii_parallel( file, countParallelChunk( file ), listener );
+    }
 
-        // 領域確保
-        if( 0 == aiCountTriangle[0] )
+    // 段階的読み込み
+    // パースした三角形を一定数ごとにモデルに追加して公開するので、読み込み中のモデルを描画できる
+    // 読み込みが完了したモデルを返す（失敗時、中止時はnull）
+    public static AppendableModel loadStreaming( String strPath, StreamingListener listener )
+    {
+        File file = new File( strPath );
+        if( 0 == file.length() )
         {
             return null;
         }
-        float[] af3Vertex = new float[aiCountTriangle[0] * 3 * 3];
 
-        // セカンドパース（値詰め）
-        if( !parse_second( strPath, af3Vertex ) )
+        // バイナリ形式の場合
+        if( isBinary( file ) )
+        {
+            return load_binary_streaming( file, listener );
+        }
+
+        AppendableModel model = new AppendableModel( estimateAsciiVertexCapacity( file.length() ) / ( 3 * 3 ) );
+        listener.onModelCreated( model );
+        FloatBufferBuilder fa3Vertex = new FloatBufferBuilder( STREAMING_BATCH_TRIANGLE * 3 * 3 );
+        FloatBufferBuilder fa3Normal = new FloatBufferBuilder( STREAMING_BATCH_TRIANGLE * 3 );
+        if( !parse( file.getPath(), fa3Vertex, fa3Normal, model, listener ) )
         {
             return null;
         }
+        if( listener.isCancelled()
+                || 0 == model.getTriangleCount() )
+        {
+            return null;
+        }
+        model.complete();
+        return model;
+    }
 
-        return new Model( af3Vertex );
+    // アスキー形式の読み込み
+    static Model load_ascii( File file )
+    {
+        // パース（ファイルサイズから見積もった容量で開始し、足りなければ伸長する）
+        FloatBufferBuilder fa3Vertex = new FloatBufferBuilder( estimateAsciiVertexCapacity( file.length() ) );
+        FloatBufferBuilder fa3Normal = new FloatBufferBuilder( estimateAsciiVertexCapacity( file.length() ) / 3 );
+        if( !parse( file.getPath(), fa3Vertex, fa3Normal )
+                || 0 == fa3Vertex.size() )
+        { // 借りたバッファはアリーナに返す
+            DirectBufferArena.getShared().release( fa3Vertex.getBuffer() );
+            DirectBufferArena.getShared().release( fa3Normal.getBuffer() );
+            return null;
+        }
+
+        // パースしたダイレクトバッファのまま共有化する（切り詰めたコピーは作らない）
+        // 共有化した頂点配列は別のバッファなので、パースした頂点配列はアリーナに返す（ファイルの面法線は、面法線を作成するまでモデルが使う）
+        Model model = new Model( fa3Vertex.getBuffer(), fa3Vertex.size() / 3 );
+        DirectBufferArena.getShared().release( fa3Vertex.getBuffer() );
+        model.setFileFacetNormalBuffer( fa3Normal.getBuffer() );
+        return model;
+    }
+
+    // アスキー形式のファイルサイズから、頂点の座標値の数を見積もる
+    private static int estimateAsciiVertexCapacity( long lLength )
+    {
+        long lCountTriangle = lLength / ASCII_FACET_SIZE_ESTIMATE + 1;
+        return (int)Math.min( lCountTriangle * 3 * 3, Integer.MAX_VALUE - 8 );
+    }
+
+    private static boolean parse( String strPath, FloatBufferBuilder fa3Vertex, FloatBufferBuilder fa3Normal )
+    {
+        return parse( strPath, fa3Vertex, fa3Normal, null, null );
     }
 
-    private static boolean parse_first( String strPath, int[] aiCountTriangle )
+    // パース（モデルの指定がある場合は、一定数ごとに三角形をモデルに追加し、配列は空にする）
+    // fa3Normalには、三角形ごとに、ファイルの面法線を詰める（読めない面法線は０ベクトル）
+    private static boolean parse( String strPath, FloatBufferBuilder fa3Vertex, FloatBufferBuilder fa3Normal, AppendableModel model, StreamingListener listener )
     {
         // インプットのチェック
-        if( null == aiCountTriangle )
+        if( null == fa3Vertex
+                || null == fa3Normal )
         {
             return false;
         }
-        // アウトプットの初期化
-        aiCountTriangle[0] = 0;
+        float[] af9Facet  = new float[3 * 3];    // 読み込み中の三角形の頂点の座標値
+        float[] af3Normal = new float[3];    // 読み込み中の三角形の面法線
+        int     iIndex3   = 0;
+        long    lLength  = new File( strPath ).length();
 
         try
         {
-            BufferedReader br             = new BufferedReader( new FileReader( strPath ) );
-            int            iIndexTriangle = 0;
-            while( true )
+            StlAsciiTokenizer tokenizer = new StlAsciiTokenizer( new FileInputStream( strPath ) );
+            try
             {
-                String strReadString = br.readLine();
-                if( null == strReadString )
+                while( true )
                 {
-                    break;
-                }
-                StringTokenizer stReadString = new StringTokenizer( strReadString, ", \t\r\n" );
-                if( !stReadString.hasMoreTokens() )
-                {
-                    continue;
-                }
-                String token = stReadString.nextToken();
-                if( token.equalsIgnoreCase( "endfacet" ) )
-                {
-                    ++iIndexTriangle;
-                    continue;
+                    int iKeyword = tokenizer.nextKeyword();
+                    if( StlAsciiTokenizer.KEYWORD_EOF == iKeyword )
+                    {
+                        break;
+                    }
+                    if( StlAsciiTokenizer.KEYWORD_VERTEX == iKeyword )
+                    {
+                        if( 3 <= iIndex3 )
+                        {
+                            continue;
+                        }
+                        af9Facet[iIndex3 * 3 + 0] = tokenizer.nextFloat();
+                        af9Facet[iIndex3 * 3 + 1] = tokenizer.nextFloat();
+                        af9Facet[iIndex3 * 3 + 2] = tokenizer.nextFloat();
+                        ++iIndex3;
+                        continue;
+                    }
+                    else if( StlAsciiTokenizer.KEYWORD_FACET == iKeyword )
+                    { // 面法線ベクトル
+                        iIndex3 = 0;
+                        readFacetNormal( tokenizer, af3Normal );
+                        continue;
+                    }
+                    else if( StlAsciiTokenizer.KEYWORD_ENDFACET == iKeyword )
+                    { // 三角形の確定
+                        fa3Vertex.add( af9Facet, 0, 3 * 3 );
+                        fa3Normal.add( af3Normal, 0, 3 );
+                        Arrays.fill( af9Facet, 0.0f );
+                        Arrays.fill( af3Normal, 0.0f );
+                        if( null != model
+                                && STREAMING_BATCH_TRIANGLE * 3 * 3 <= fa3Vertex.size() )
+                        {
+                            publish( fa3Vertex, fa3Normal, model, listener );
+                            listener.onProgress( tokenizer.getOffset(), lLength );
+                            if( listener.isCancelled() )
+                            {
+                                return false;
+                            }
+                        }
+                        continue;
+                    }
+                    else if( StlAsciiTokenizer.KEYWORD_SOLID == iKeyword )
+                    { // ソリッド名
+                        continue;
+                    }
                 }
             }
-            br.close();
-            aiCountTriangle[0] = iIndexTriangle;
+            finally
+            {
+                tokenizer.close();
+            }
+            if( null != model )
+            {
+                publish( fa3Vertex, fa3Normal, model, listener );
+                listener.onProgress( lLength, lLength );
+            }
             return true;
         }
         catch( Exception e )
         {
-            Log.e( "StlFileLoader", "parse_first error : " + e );
+            AppLog.e( "StlFileLoader", "parse error : " + e );
             return false;
         }
     }
 
-    private static boolean parse_second( String strPath, float[] af3Vertex )
+    // 「facet normal nx ny nz」の行の、面法線の読み込み（読めない場合は０ベクトル。面法線を作成する時に、座標値から計算する）
+    private static void readFacetNormal( StlAsciiTokenizer tokenizer, float[] af3Normal ) throws IOException
     {
-        // インプットのチェック
-        if( null == af3Vertex )
+        try
+        {
+            if( !tokenizer.skipToken() )    // 「normal」
+            {
+                return;
+            }
+            af3Normal[0] = tokenizer.nextFloat();
+            af3Normal[1] = tokenizer.nextFloat();
+            af3Normal[2] = tokenizer.nextFloat();
+        }
+        catch( NumberFormatException e )
+        {
+            Arrays.fill( af3Normal, 0.0f );
+        }
+    }
+
+    // 溜めた三角形のモデルへの追加と通知
+    private static void publish( FloatBufferBuilder fa3Vertex, FloatBufferBuilder fa3Normal, AppendableModel model, StreamingListener listener )
+    {
+        if( 0 == fa3Vertex.size() )
+        {
+            return;
+        }
+        model.append( fa3Vertex.getBuffer(), fa3Normal.getBuffer(), fa3Vertex.size() / ( 3 * 3 ) );
+        fa3Vertex.clear();
+        fa3Normal.clear();
+        listener.onTrianglesAppended( model );
+    }
+
+    // アスキー形式の並列読み込み
+    // ファイルを「facet」行の先頭で区切ったバイト範囲（チャンク）に分け、
+    // 1. 各チャンクの三角形数を数え（プレスキャン）、2. その累積から決まる最終バッファ中の各チャンクの位置に、並列に値を詰める
+    static Model load_ascii_parallel( File file )
+    {
+        return load_ascii_parallel( file, countParallelChunk( file ) );
+    }
+
+    private static int countParallelChunk( File file )
+    {
+        return (int)Math.max( 1, Math.min( Runtime.getRuntime().availableProcessors() * PARALLEL_CHUNK_PER_CORE,
+                                           file.length() / PARALLEL_MIN_CHUNK_SIZE ) );
+    }
+
+    static Model load_ascii_parallel( File file, int iCountChunk )
+    {
+        return load_ascii_parallel( file, iCountChunk, null );
+    }
+
+    // リスナーの指定がある場合は、完了を待つ間に、処理済みのバイト数で進捗を通知し、中止を確認する
+    // 進捗は、プレスキャンと値詰めでファイルを２回読むので、その合計の半分
+    static Model load_ascii_parallel( File file, int iCountChunk, StreamingListener listener )
+    {
+        long             lLength  = file.length();
+        ParallelProgress progress = new ParallelProgress( lLength, listener );
+        try
+        {
+            // チャンクの作成（名目上の境界は等分）
+            AsciiChunk[] aChunk = new AsciiChunk[iCountChunk];
+            for( int i = 0; i < iCountChunk; ++i )
+            {
+                aChunk[i] = new AsciiChunk( file.getPath(), lLength * i / iCountChunk );
+            }
+
+            // 境界を「facet」行の先頭に合わせる
+            if( !invokeChunks( aChunk, AsciiChunkAction.PHASE_ALIGN, null, null, progress ) )
+            {
+                return null;
+            }
+            for( int i = 0; i < iCountChunk; ++i )
+            {
+                aChunk[i].m_lEnd = ( iCountChunk - 1 == i ) ? lLength : aChunk[i + 1].m_lStart;
+            }
+
+            // プレスキャン（チャンクごとの三角形数）
+            if( !invokeChunks( aChunk, AsciiChunkAction.PHASE_COUNT, null, null, progress ) )
+            {
+                return null;
+            }
+            long lCountTriangle = 0;
+            for( int i = 0; i < iCountChunk; ++i )
+            {
+                aChunk[i].m_iIndexTriangleStart = (int)lCountTriangle;
+                lCountTriangle += aChunk[i].m_iCountTriangle;
+            }
+            if( 0 == lCountTriangle
+                    || Integer.MAX_VALUE / ( 3 * 3 * 4 ) < lCountTriangle )
+            {
+                return null;
+            }
+
+            // 領域確保（ダイレクトバッファは0で初期化されている）
+            FloatBuffer fbVertex = ByteBuffer.allocateDirect( (int)lCountTriangle * 3 * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+            FloatBuffer fbNormal = ByteBuffer.allocateDirect( (int)lCountTriangle * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+
+            // 値詰め（各チャンクは自分の領域にだけ書き込む）
+            if( !invokeChunks( aChunk, AsciiChunkAction.PHASE_PARSE, fbVertex, fbNormal, progress ) )
+            {
+                return null;
+            }
+            if( null != listener )
+            {
+                listener.onProgress( lLength, lLength );
+            }
+
+            Model model = new Model( fbVertex );
+            model.setFileFacetNormalBuffer( fbNormal );
+            return model;
+        }
+        catch( Exception e )
+        {
+            AppLog.e( "StlFileLoader", "load_ascii_parallel error : " + e );
+            return null;
+        }
+    }
+
+    // 全チャンクの処理（中止した場合はfalse。中止した場合も、全チャンクが止まるまで待つ）
+    private static boolean invokeChunks( AsciiChunk[] aChunk, int iPhase, FloatBuffer fbVertex, FloatBuffer fbNormal, ParallelProgress progress ) throws ExecutionException
+    {
+        final List<AsciiChunkAction> listAction = new ArrayList<>( aChunk.length );
+        for( AsciiChunk chunk : aChunk )
+        {
+            listAction.add( new AsciiChunkAction( chunk, iPhase, fbVertex, fbNormal, progress ) );
+        }
+        RecursiveAction action = new RecursiveAction()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute()
+            {
+                invokeAll( listAction );
+            }
+        };
+        StreamingListener listener = progress.m_listener;
+        if( null == listener )
+        {
+            ForkJoinPool.commonPool().invoke( action );
+            return true;
+        }
+        if( listener.isCancelled() )
         {
             return false;
         }
-        int iIndexTriangle = 0;
-        int iIndex3        = 0;
 
+        // ローディングスレッドは、完了を待つ間に、進捗を通知し、中止を確認する（リスナーは、ローディングスレッドからだけ呼ぶ）
+        ForkJoinPool.commonPool().execute( action );
         try
         {
-            BufferedReader br = new BufferedReader( new FileReader( strPath ) );
             while( true )
             {
-                String strReadString = br.readLine();
-                if( null == strReadString )
+                try
+                {
+                    action.get( PARALLEL_POLL_MILLIS, TimeUnit.MILLISECONDS );
+                    return true;
+                }
+                catch( TimeoutException e )
+                {
+                    if( listener.isCancelled() )
+                    {
+                        break;
+                    }
+                    listener.onProgress( progress.m_lBytesDone.get() / 2, progress.m_lLength );
+                }
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        progress.m_bAborted = true;
+        action.quietlyJoin();
+        return false;
+    }
+
+    // 並列パースの進捗と中止（全チャンクで共有する）
+    private static class ParallelProgress {
+        final long              m_lLength;    // ファイルのバイト数
+        final StreamingListener m_listener;    // 進捗の通知先（nullの場合は通知しない）
+        final AtomicLong        m_lBytesDone = new AtomicLong();    // 処理済みのバイト数（プレスキャンと値詰めの合計）
+        volatile boolean        m_bAborted;    // 中止したかどうか（各チャンクが一定数の三角形ごとに確認する）
+
+        ParallelProgress( long lLength, StreamingListener listener )
+        {
+            m_lLength = lLength;
+            m_listener = listener;
+        }
+    }
+
+    // 並列パースの処理単位
+    private static class AsciiChunkAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        static final int PHASE_ALIGN = 0;
+        static final int PHASE_COUNT = 1;
+        static final int PHASE_PARSE = 2;
+
+        private final AsciiChunk  m_chunk;
+        private final int         m_iPhase;
+        private final FloatBuffer m_fbVertex;
+        private final FloatBuffer m_fbNormal;
+        private final ParallelProgress m_progress;
+
+        AsciiChunkAction( AsciiChunk chunk, int iPhase, FloatBuffer fbVertex, FloatBuffer fbNormal, ParallelProgress progress )
+        {
+            m_chunk = chunk;
+            m_iPhase = iPhase;
+            m_fbVertex = fbVertex;
+            m_fbNormal = fbNormal;
+            m_progress = progress;
+        }
+
+        @Override
+        protected void compute()
+        {
+            try
+            {
+                switch( m_iPhase )
                 {
-                    break;
+                    case PHASE_ALIGN:
+                        m_chunk.align();
+                        break;
+                    case PHASE_COUNT:
+                        m_chunk.count( m_progress );
+                        break;
+                    case PHASE_PARSE:
+                        m_chunk.parse( m_fbVertex, m_fbNormal, m_progress );
+                        break;
                 }
-                StringTokenizer stReadString = new StringTokenizer( strReadString, ", \t\r\n" );
-                if( !stReadString.hasMoreTokens() )
+            }
+            catch( IOException e )
+            {
+                throw new UncheckedIOException( e );
+            }
+        }
+    }
+
+    // アスキーファイルのバイト範囲（チャンク）
+    private static class AsciiChunk {
+        private final String m_strPath;
+        long m_lStart;    // 範囲の先頭（「facet」トークンの位置）
+        long m_lEnd;    // 範囲の終端（次のチャンクの先頭）
+        int  m_iCountTriangle;    // 範囲中の三角形の数
+        int  m_iIndexTriangleStart;    // 範囲中の最初の三角形の番号
+        long m_lOffsetReported;    // 進捗に加算済みの、範囲中のバイト数（フェーズごとに0から）
+
+        AsciiChunk( String strPath, long lStart )
+        {
+            m_strPath = strPath;
+            m_lStart = lStart;
+        }
+
+        // 範囲の先頭を、名目上の位置以降で最初の「facet」行の先頭に合わせる
+        void align() throws IOException
+        {
+            if( 0 == m_lStart )
+            {
+                return;
+            }
+            // 名目上の位置の直前から読み、途中の行を読み飛ばす（直前が改行なら、名目上の位置がそのまま行頭になる）
+            long              lOffset   = m_lStart - 1;
+            StlAsciiTokenizer tokenizer = open( lOffset, Long.MAX_VALUE );
+            try
+            {
+                tokenizer.skipLine();
+                while( true )
                 {
-                    continue;
+                    int iKeyword = tokenizer.nextKeyword();
+                    if( StlAsciiTokenizer.KEYWORD_EOF == iKeyword )
+                    {
+                        m_lStart = new File( m_strPath ).length();
+                        return;
+                    }
+                    if( StlAsciiTokenizer.KEYWORD_FACET == iKeyword )
+                    {
+                        m_lStart = lOffset + tokenizer.getKeywordOffset();
+                        return;
+                    }
                 }
-                String token = stReadString.nextToken();
-                if( token.equalsIgnoreCase( "vertex" ) )
+            }
+            finally
+            {
+                tokenizer.close();
+            }
+        }
+
+        // 三角形の数を数える（中止した場合は、途中の数のまま返る）
+        void count( ParallelProgress progress ) throws IOException
+        {
+            m_iCountTriangle = 0;
+            m_lOffsetReported = 0;
+            if( m_lStart >= m_lEnd )
+            {
+                return;
+            }
+            StlAsciiTokenizer tokenizer = open( m_lStart, m_lEnd - m_lStart );
+            try
+            {
+                while( true )
                 {
-                    if( 3 <= iIndex3 )
+                    int iKeyword = tokenizer.nextKeyword();
+                    if( StlAsciiTokenizer.KEYWORD_EOF == iKeyword )
                     {
-                        continue;
+                        break;
+                    }
+                    if( StlAsciiTokenizer.KEYWORD_ENDFACET == iKeyword )
+                    {
+                        ++m_iCountTriangle;
+                        if( 0 == m_iCountTriangle % PARALLEL_CHECK_TRIANGLE
+                                && !report( tokenizer, progress ) )
+                        {
+                            return;
+                        }
                     }
-                    af3Vertex[iIndexTriangle * 9 + iIndex3 * 3 + 0] = Float.valueOf( stReadString.nextToken() );
-                    af3Vertex[iIndexTriangle * 9 + iIndex3 * 3 + 1] = Float.valueOf( stReadString.nextToken() );
-                    af3Vertex[iIndexTriangle * 9 + iIndex3 * 3 + 2] = Float.valueOf( stReadString.nextToken() );
-                    ++iIndex3;
-                    continue;
                 }
-                else if( token.equalsIgnoreCase( "facet" ) )
-                { // 面法線ベクトル
-                    iIndex3 = 0;
-                    continue;
+                report( tokenizer, progress );
+            }
+            finally
+            {
+                tokenizer.close();
+            }
+        }
+
+        // 値詰め（逐次版のparse()と同じ規則で、範囲中の三角形をバッファ中の自分の位置に書き込む。中止した場合は、途中で返る）
+        void parse( FloatBuffer fbVertex, FloatBuffer fbNormal, ParallelProgress progress ) throws IOException
+        {
+            m_lOffsetReported = 0;
+            if( 0 == m_iCountTriangle )
+            {
+                return;
+            }
+            float[] af9Facet       = new float[3 * 3];
+            float[] af3Normal      = new float[3];
+            int     iIndex3        = 0;
+            int     iIndexTriangle = 0;
+
+            StlAsciiTokenizer tokenizer = open( m_lStart, m_lEnd - m_lStart );
+            try
+            {
+                while( iIndexTriangle < m_iCountTriangle )
+                {
+                    int iKeyword = tokenizer.nextKeyword();
+                    if( StlAsciiTokenizer.KEYWORD_EOF == iKeyword )
+                    {
+                        break;
+                    }
+                    if( StlAsciiTokenizer.KEYWORD_VERTEX == iKeyword )
+                    {
+                        if( 3 <= iIndex3 )
+                        {
+                            continue;
+                        }
+                        af9Facet[iIndex3 * 3 + 0] = tokenizer.nextFloat();
+                        af9Facet[iIndex3 * 3 + 1] = tokenizer.nextFloat();
+                        af9Facet[iIndex3 * 3 + 2] = tokenizer.nextFloat();
+                        ++iIndex3;
+                    }
+                    else if( StlAsciiTokenizer.KEYWORD_FACET == iKeyword )
+                    { // 面法線ベクトル
+                        iIndex3 = 0;
+                        readFacetNormal( tokenizer, af3Normal );
+                    }
+                    else if( StlAsciiTokenizer.KEYWORD_ENDFACET == iKeyword )
+                    { // 三角形の確定
+                        int iIndex = ( m_iIndexTriangleStart + iIndexTriangle ) * 3 * 3;
+                        for( int i9 = 0; i9 < 3 * 3; ++i9 )
+                        {
+                            fbVertex.put( iIndex + i9, af9Facet[i9] );
+                        }
+                        for( int i3 = 0; i3 < 3; ++i3 )
+                        {
+                            fbNormal.put( iIndex / 3 + i3, af3Normal[i3] );
+                        }
+                        Arrays.fill( af9Facet, 0.0f );
+                        Arrays.fill( af3Normal, 0.0f );
+                        ++iIndexTriangle;
+                        if( 0 == iIndexTriangle % PARALLEL_CHECK_TRIANGLE
+                                && !report( tokenizer, progress ) )
+                        {
+                            return;
+                        }
+                    }
                 }
-                else if( token.equalsIgnoreCase( "endfacet" ) )
+                report( tokenizer, progress );
+            }
+            finally
+            {
+                tokenizer.close();
+            }
+        }
+
+        // 前回からの読み込み済みのバイト数の加算（中止した場合はfalse）
+        private boolean report( StlAsciiTokenizer tokenizer, ParallelProgress progress )
+        {
+            long lOffset = tokenizer.getOffset();
+            progress.m_lBytesDone.addAndGet( lOffset - m_lOffsetReported );
+            m_lOffsetReported = lOffset;
+            return !progress.m_bAborted;
+        }
+
+        private StlAsciiTokenizer open( long lOffset, long lLength ) throws IOException
+        {
+            FileInputStream fis = new FileInputStream( m_strPath );
+            try
+            {
+                fis.getChannel().position( lOffset );
+            }
+            catch( IOException e )
+            {
+                fis.close();
+                throw e;
+            }
+            return new StlAsciiTokenizer( fis, lLength );
+        }
+    }
+
+    // バイナリ形式かどうかの判定
+    // 「solid」で始まるバイナリファイルも存在するので、ヘッダーの三角形数とファイルサイズの整合性を優先して判定する
+    private static boolean isBinary( File file )
+    {
+        long lLength = file.length();
+        if( BINARY_DATA_OFFSET > lLength )
+        {
+            return false;
+        }
+
+        try
+        {
+            RandomAccessFile raf = new RandomAccessFile( file, "r" );
+            byte[] abtHeader = new byte[BINARY_DATA_OFFSET];
+            raf.readFully( abtHeader );
+            raf.close();
+
+            // 三角形数とファイルサイズが一致すればバイナリ
+            long lCountTriangle = ByteBuffer.wrap( abtHeader ).order( ByteOrder.LITTLE_ENDIAN ).getInt( BINARY_HEADER_SIZE ) & 0xFFFFFFFFL;
+            if( BINARY_DATA_OFFSET + lCountTriangle * BINARY_FACET_SIZE == lLength )
+            {
+                return true;
+            }
+
+            // 一致しない場合は、「solid」で始まればアスキー、そうでなければバイナリ
+            String strHead = new String( abtHeader, 0, 5, "US-ASCII" );
+            return !strHead.equalsIgnoreCase( "solid" );
+        }
+        catch( Exception e )
+        {
+            AppLog.e( "StlFileLoader", "isBinary error : " + e );
+            return false;
+        }
+    }
+
+    // バイナリ形式の読み込み
+    // ファイルをメモリマップし、三角形レコードの頂点座標値を、Modelが使用するダイレクトバッファに直接詰める
+    private static Model load_binary( File file )
+    {
+        try
+        {
+            RandomAccessFile raf = new RandomAccessFile( file, "r" );
+            FileChannel      fc  = raf.getChannel();
+            try
+            {
+                MappedByteBuffer mbb = fc.map( FileChannel.MapMode.READ_ONLY, 0, fc.size() );
+                mbb.order( ByteOrder.LITTLE_ENDIAN ); // バイナリSTLはリトルエンディアン
+
+                // 三角形数（ファイルサイズで切り詰める）
+                long lCountTriangle = mbb.getInt( BINARY_HEADER_SIZE ) & 0xFFFFFFFFL;
+                long lCountInFile   = ( fc.size() - BINARY_DATA_OFFSET ) / BINARY_FACET_SIZE;
+                if( lCountTriangle > lCountInFile )
+                {
+                    lCountTriangle = lCountInFile;
+                }
+                if( 0 == lCountTriangle
+                        || Integer.MAX_VALUE / ( 3 * 3 * 4 ) < lCountTriangle )
                 {
-                    ++iIndexTriangle;
-                    continue;
+                    return null;
                 }
-                else if( token.equalsIgnoreCase( "solid" ) )
-                { // ソリッド名
-                    continue;
+                int iCountTriangle = (int)lCountTriangle;
+
+                // 領域確保
+                FloatBuffer fbVertex = ByteBuffer.allocateDirect( iCountTriangle * 3 * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+                FloatBuffer fbNormal = ByteBuffer.allocateDirect( iCountTriangle * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+
+                // 値詰め（属性は読み飛ばす）
+                int iIndex = 0;
+                for( int iIndexTriangle = 0; iIndexTriangle < iCountTriangle; iIndexTriangle++ )
+                {
+                    int iOffsetNormal = BINARY_DATA_OFFSET + iIndexTriangle * BINARY_FACET_SIZE;
+                    for( int i3 = 0; i3 < 3; i3++ )
+                    {
+                        fbNormal.put( iIndexTriangle * 3 + i3, mbb.getFloat( iOffsetNormal + i3 * 4 ) );
+                    }
+                    int iOffset = iOffsetNormal + BINARY_NORMAL_SIZE;
+                    for( int i9 = 0; i9 < 9; i9++ )
+                    {
+                        fbVertex.put( iIndex++, mbb.getFloat( iOffset + i9 * 4 ) );
+                    }
                 }
+                Model model = new Model( fbVertex );
+                model.setFileFacetNormalBuffer( fbNormal );
+                return model;
+            }
+            finally
+            {
+                fc.close();
+                raf.close();
             }
-            br.close();
-            return true;
         }
         catch( Exception e )
         {
-            Log.e( "StlFileLoader", "parse_second error : " + e );
-            return false;
+            AppLog.e( "StlFileLoader", "load_binary error : " + e );
+            return null;
         }
     }
 
+    // バイナリ形式の段階的読み込み
+    private static AppendableModel load_binary_streaming( File file, StreamingListener listener )
+    {
+        try
+        {
+            RandomAccessFile raf = new RandomAccessFile( file, "r" );
+            FileChannel      fc  = raf.getChannel();
+            try
+            {
+                MappedByteBuffer mbb = fc.map( FileChannel.MapMode.READ_ONLY, 0, fc.size() );
+                mbb.order( ByteOrder.LITTLE_ENDIAN ); // バイナリSTLはリトルエンディアン
+
+                // 三角形数（ファイルサイズで切り詰める）
+                long lCountTriangle = mbb.getInt( BINARY_HEADER_SIZE ) & 0xFFFFFFFFL;
+                long lCountInFile   = ( fc.size() - BINARY_DATA_OFFSET ) / BINARY_FACET_SIZE;
+                if( lCountTriangle > lCountInFile )
+                {
+                    lCountTriangle = lCountInFile;
+                }
+                if( 0 == lCountTriangle
+                        || Integer.MAX_VALUE / ( 3 * 3 * 4 ) < lCountTriangle )
+                {
+                    return null;
+                }
+                int iCountTriangle = (int)lCountTriangle;
+
+                AppendableModel model = new AppendableModel( iCountTriangle );
+                listener.onModelCreated( model );
+
+                // 一定数ごとに値を詰めて公開する
+                float[] af3Batch       = new float[STREAMING_BATCH_TRIANGLE * 3 * 3];
+                float[] af3BatchNormal = new float[STREAMING_BATCH_TRIANGLE * 3];
+                for( int iIndexStart = 0; iIndexStart < iCountTriangle; iIndexStart += STREAMING_BATCH_TRIANGLE )
+                {
+                    int iCountBatch = Math.min( STREAMING_BATCH_TRIANGLE, iCountTriangle - iIndexStart );
+                    int iIndex       = 0;
+                    int iIndexNormal = 0;
+                    for( int iIndexTriangle = iIndexStart; iIndexTriangle < iIndexStart + iCountBatch; iIndexTriangle++ )
+                    {
+                        int iOffsetNormal = BINARY_DATA_OFFSET + iIndexTriangle * BINARY_FACET_SIZE;
+                        for( int i3 = 0; i3 < 3; i3++ )
+                        {
+                            af3BatchNormal[iIndexNormal++] = mbb.getFloat( iOffsetNormal + i3 * 4 );
+                        }
+                        int iOffset = iOffsetNormal + BINARY_NORMAL_SIZE;
+                        for( int i9 = 0; i9 < 9; i9++ )
+                        {
+                            af3Batch[iIndex++] = mbb.getFloat( iOffset + i9 * 4 );
+                        }
+                    }
+                    model.append( af3Batch, 0, af3BatchNormal, iCountBatch );
+                    listener.onTrianglesAppended( model );
+                    listener.onProgress( BINARY_DATA_OFFSET + (long)( iIndexStart + iCountBatch ) * BINARY_FACET_SIZE, fc.size() );
+                    if( listener.isCancelled() )
+                    {
+                        return null;
+                    }
+                }
+                model.complete();
+                return model;
+            }
+            finally
+            {
+                fc.close();
+                raf.close();
+            }
+        }
+        catch( Exception e )
+        {
+            AppLog.e( "StlFileLoader", "load_binary_streaming error : " + e );
+            return null;
+        }
+    }
 }
@@ -0,0 +1,108 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+
+// 部分メッシュ（glDrawElementsで一度に描画する単位）
+// ・三角形の部分メッシュと、稜線の部分メッシュは別々に作る（稜線は、線を描画する時まで作らない）
+// ・頂点配列は、VertexLayoutの並び（インターリーブした配列、または座標値だけの配列）
+// ・番号配列の番号は、この部分メッシュの頂点配列の先頭からの番号
+// ・要素（三角形または稜線）は、モデル全体の要素の番号の連続した範囲を受け持つ
+public class SubMesh
+{
+    // メンバー変数
+    private final Buffer       m_bufVertex;    // 頂点配列（インターリーブした配列はByteBuffer、座標値だけの配列はFloatBufferまたはShortBuffer）
+    private final VertexLayout m_layout;    // 頂点配列の並び
+    private final Buffer m_bufIndex;    // 要素の頂点の番号の配列（ShortBufferまたはIntBuffer）
+    private final int    m_iIndexType;    // 番号配列の型（GL_UNSIGNED_SHORTまたはGL_UNSIGNED_INT）
+    private final int    m_iFirstElement;    // モデル全体での、先頭の要素の番号
+    private final int    m_iCountElement;    // 要素の数（読み込み中のモデルでは、容量分の数）
+    private volatile ClusterTree m_clustertree;    // 要素のまとまりの階層（必要になった時に作成する）
+    private volatile boolean m_bClusterTreeBuilt;    // 階層を作成しようとしたかどうか（要素が少なければ、階層はnullのまま）
+
+    // コンストラクタ（座標値だけの、詰め物なしの頂点配列の場合）
+    public SubMesh( Buffer bufVertex, int iVertexType, Buffer bufIndex, int iIndexType, int iFirstElement, int iCountElement )
+    {
+        this( bufVertex, VertexLayout.packed( iVertexType ), bufIndex, iIndexType, iFirstElement, iCountElement );
+    }
+
+    public SubMesh( Buffer bufVertex, VertexLayout layout, Buffer bufIndex, int iIndexType, int iFirstElement, int iCountElement )
+    {
+        m_bufVertex = bufVertex;
+        m_layout = layout;
+        m_bufIndex = bufIndex;
+        m_iIndexType = iIndexType;
+        m_iFirstElement = iFirstElement;
+        m_iCountElement = iCountElement;
+    }
+
+    // アクセサ
+    public Buffer getVertexBuffer()
+    {
+        return m_bufVertex;
+    }
+
+    public VertexLayout getVertexLayout()
+    {
+        return m_layout;
+    }
+
+    // 頂点の座標値の型（GL_FLOATまたはGL_SHORT）
+    public int getVertexType()
+    {
+        return m_layout.getPositionType();
+    }
+
+    public Buffer getIndexBuffer()
+    {
+        return m_bufIndex;
+    }
+
+    public int getIndexType()
+    {
+        return m_iIndexType;
+    }
+
+    public int getFirstElement()
+    {
+        return m_iFirstElement;
+    }
+
+    public int getElementCount()
+    {
+        return m_iCountElement;
+    }
+
+    // 要素のまとまりの階層（iVertexPerは要素の頂点数。作成していなければ、作成する。要素が少ない部分メッシュはnull）
+    // 内容が増えていく、読み込み中のモデルの部分メッシュには使わない
+    public ClusterTree getClusterTree( int iVertexPer )
+    {
+        if( m_bClusterTreeBuilt )
+        {
+            return m_clustertree;
+        }
+        return buildClusterTree( iVertexPer );
+    }
+
+    // 作成済みの階層（作成していなければnull）
+    public ClusterTree peekClusterTree()
+    {
+        return m_clustertree;
+    }
+
+    private synchronized ClusterTree buildClusterTree( int iVertexPer )
+    {
+        if( m_bClusterTreeBuilt )
+        {
+            return m_clustertree;
+        }
+        long        lNanosStart = System.nanoTime();
+        ClusterTree clustertree = ClusterTree.build( this, iVertexPer );
+        if( null != clustertree )
+        {
+            DerivedBufferStats.recordBuild( DerivedBufferStats.EBufferType.BT_CLUSTER_TREE, lNanosStart, clustertree.getBytes() );
+        }
+        m_clustertree = clustertree;
+        m_bClusterTreeBuilt = true;
+        return clustertree;
+    }
+}
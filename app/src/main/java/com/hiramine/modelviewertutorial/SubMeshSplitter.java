@@ -0,0 +1,214 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.microedition.khronos.opengles.GL10;
+
+// 部分メッシュへの分割（32ビットの番号配列を描画できない環境向け）
+// ・要素（三角形または稜線）を順に見ていき、頂点の数が上限を超える手前で、新しい部分メッシュにする
+// ・部分メッシュの境界をまたぐ頂点は、それぞれの部分メッシュに複製する
+// ・三角形と稜線は別々に分割する（稜線は、線を描画する時まで作らないため）
+// ・部分メッシュの頂点配列は、元の頂点配列と同じ並び（インターリーブした配列は、１頂点分のバイト列ごとに複製する）
+public class SubMeshSplitter
+{
+    // 定数
+    public static final int MAX_VERTEX_COUNT = 65535;    // 部分メッシュの頂点の数の上限（unsigned shortで表せる数）
+
+    // 三角形の分割（描画に使う、インターリーブした頂点配列を分割する）
+    public static SubMesh[] splitTriangles( Model model )
+    {
+        return split( model, false, MAX_VERTEX_COUNT, model.getInterleavedVertexBuffer(), model.getVertexLayout() );
+    }
+
+    // 稜線の分割
+    public static SubMesh[] splitEdges( Model model )
+    {
+        return split( model, true, MAX_VERTEX_COUNT, model.getInterleavedVertexBuffer(), model.getVertexLayout() );
+    }
+
+    // 頂点の座標値の配列の分割
+    static SubMesh[] split( Model model, boolean bEdge, int iMaxVertexCount )
+    {
+        return split( model, bEdge, iMaxVertexCount, model.getVertexBuffer(), VertexLayout.packed( model.getVertexType() ) );
+    }
+
+    // bufVertex（layoutの並びの、モデルの頂点配列）の分割
+    static SubMesh[] split( Model model, boolean bEdge, int iMaxVertexCount, Buffer bufVertex, VertexLayout layout )
+    {
+        Buffer bufElementVertexIndex = bEdge ? model.getEdgeVertexIndexBuffer() : model.getTriangleVertexIndexBuffer();
+        return split( bufElementVertexIndex, bEdge ? 2 : 3, model.getVertexCount(), iMaxVertexCount, bufVertex, layout );
+    }
+
+    // 要素の頂点の番号の配列（iVertexPer個の番号で１要素）と、iCountVertex個の頂点の、頂点配列bufVertex（layoutの並び）の分割
+    static SubMesh[] split( Buffer bufElementVertexIndex, int iVertexPer, int iCountVertex, int iMaxVertexCount, Buffer bufVertex, VertexLayout layout )
+    {
+        int iCountElement = bufElementVertexIndex.capacity() / iVertexPer;
+
+        int[]       aiLocalIndex        = new int[iCountVertex];    // 頂点ごとの、現在の部分メッシュでの番号（未登録は-1）
+        int[]       aiGlobalIndex       = new int[iMaxVertexCount];    // 現在の部分メッシュの頂点ごとの、モデル全体での番号
+        int         iCountLocal         = 0;
+        ShortBuffer sbVertexIndexAll    = IndexBufferBuilder.allocateShort( iCountElement * iVertexPer );    // 部分メッシュでの番号（直接ダイレクトバッファに詰める）
+        int[]       aiSubMeshVertex     = new int[iCountVertex + ( iCountVertex >> 4 )];    // 部分メッシュの頂点の、モデル全体での番号（複製される頂点の分、少し多めに確保）
+        int         iCountSubMeshVertex = 0;
+        Arrays.fill( aiLocalIndex, -1 );
+
+        // 部分メッシュごとの、先頭の要素、頂点
+        List<int[]> listRange     = new ArrayList<>();
+        int         iFirstElement = 0;
+        int         iFirstVertex  = 0;
+        for( int iIndexElement = 0; iIndexElement < iCountElement; iIndexElement++ )
+        {
+            // この要素で増える頂点の数
+            int iCountNew = 0;
+            for( int i = 0; i < iVertexPer; i++ )
+            {
+                int iIndexVertex = Model.getIndex( bufElementVertexIndex, iIndexElement * iVertexPer + i );
+                if( -1 == aiLocalIndex[iIndexVertex] )
+                {
+                    iCountNew++;
+                    aiLocalIndex[iIndexVertex] = -2;    // 同じ要素で重複して数えないよう、仮登録
+                }
+            }
+            for( int i = 0; i < iVertexPer; i++ )
+            {
+                int iIndexVertex = Model.getIndex( bufElementVertexIndex, iIndexElement * iVertexPer + i );
+                if( -2 == aiLocalIndex[iIndexVertex] )
+                {
+                    aiLocalIndex[iIndexVertex] = -1;
+                }
+            }
+
+            if( iCountLocal + iCountNew > iMaxVertexCount )
+            { // 上限を超えるので、ここまでを一つの部分メッシュにする
+                listRange.add( new int[]{ iFirstElement, iIndexElement, iFirstVertex, iFirstVertex + iCountLocal } );
+                for( int i = 0; i < iCountLocal; i++ )
+                {
+                    aiLocalIndex[aiGlobalIndex[i]] = -1;
+                }
+                iFirstElement = iIndexElement;
+                iFirstVertex += iCountLocal;
+                iCountLocal = 0;
+            }
+
+            // 頂点の登録
+            for( int i = 0; i < iVertexPer; i++ )
+            {
+                int iIndexVertex = Model.getIndex( bufElementVertexIndex, iIndexElement * iVertexPer + i );
+                if( -1 == aiLocalIndex[iIndexVertex] )
+                {
+                    aiLocalIndex[iIndexVertex] = iCountLocal;
+                    aiGlobalIndex[iCountLocal] = iIndexVertex;
+                    iCountLocal++;
+                    if( aiSubMeshVertex.length == iCountSubMeshVertex )
+                    {
+                        aiSubMeshVertex = Arrays.copyOf( aiSubMeshVertex, aiSubMeshVertex.length + ( aiSubMeshVertex.length >> 1 ) + 1 );
+                    }
+                    aiSubMeshVertex[iCountSubMeshVertex++] = iIndexVertex;
+                }
+                sbVertexIndexAll.put( iIndexElement * iVertexPer + i, (short)aiLocalIndex[iIndexVertex] );
+            }
+        }
+        listRange.add( new int[]{ iFirstElement, iCountElement, iFirstVertex, iFirstVertex + iCountLocal } );
+
+        // 部分メッシュの作成（各配列は、一つのバッファを部分メッシュごとに切り出して使う）
+        Buffer    bufVertexAll = makeVertexBuffer( bufVertex, layout, aiSubMeshVertex, iCountSubMeshVertex );
+        SubMesh[] aSubMesh     = new SubMesh[listRange.size()];
+        for( int i = 0; i < aSubMesh.length; i++ )
+        {
+            int[] aiRange = listRange.get( i );
+            aSubMesh[i] = new SubMesh( sliceVertex( bufVertexAll, layout, aiRange[2], aiRange[3] ), layout,
+                                       slice( sbVertexIndexAll, aiRange[0] * iVertexPer, aiRange[1] * iVertexPer ),
+                                       GL10.GL_UNSIGNED_SHORT,
+                                       aiRange[0], aiRange[1] - aiRange[0] );
+        }
+        return aSubMesh;
+    }
+
+    // 部分メッシュの頂点配列（元の頂点配列と同じ並びで、頂点を並べ替えて複製する）
+    private static Buffer makeVertexBuffer( Buffer bufVertex, VertexLayout layout, int[] aiSubMeshVertex, int iCountSubMeshVertex )
+    {
+        if( layout.isInterleaved() )
+        {
+            ByteBuffer btbVertex    = (ByteBuffer)bufVertex;
+            int        iStride      = layout.getStride();
+            ByteBuffer btbVertexAll = ByteBuffer.allocateDirect( iCountSubMeshVertex * iStride ).order( ByteOrder.nativeOrder() );
+            for( int i = 0; i < iCountSubMeshVertex; i++ )
+            {
+                for( int iByte = 0; iByte < iStride; iByte += 4 )    // １頂点のバイト数は４の倍数
+                {
+                    btbVertexAll.putInt( i * iStride + iByte, btbVertex.getInt( aiSubMeshVertex[i] * iStride + iByte ) );
+                }
+            }
+            return btbVertexAll;
+        }
+        if( bufVertex instanceof ShortBuffer )
+        {
+            ShortBuffer sbVertex    = (ShortBuffer)bufVertex;
+            ShortBuffer sbVertexAll = ByteBuffer.allocateDirect( iCountSubMeshVertex * 3 * 2 ).order( ByteOrder.nativeOrder() ).asShortBuffer();
+            for( int i = 0; i < iCountSubMeshVertex; i++ )
+            {
+                for( int i3 = 0; i3 < 3; i3++ )
+                {
+                    sbVertexAll.put( i * 3 + i3, sbVertex.get( aiSubMeshVertex[i] * 3 + i3 ) );
+                }
+            }
+            return sbVertexAll;
+        }
+        FloatBuffer fbVertex    = (FloatBuffer)bufVertex;
+        FloatBuffer fbVertexAll = ByteBuffer.allocateDirect( iCountSubMeshVertex * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+        for( int i = 0; i < iCountSubMeshVertex; i++ )
+        {
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                fbVertexAll.put( i * 3 + i3, fbVertex.get( aiSubMeshVertex[i] * 3 + i3 ) );
+            }
+        }
+        return fbVertexAll;
+    }
+
+    // 頂点配列の、iFirstVertex番目からiEndVertex番目の手前までの頂点の切り出し
+    static Buffer sliceVertex( Buffer bufVertex, VertexLayout layout, int iFirstVertex, int iEndVertex )
+    {
+        if( layout.isInterleaved() )
+        {
+            ByteBuffer btbDuplicate = ( (ByteBuffer)bufVertex ).duplicate();
+            btbDuplicate.limit( iEndVertex * layout.getStride() );
+            btbDuplicate.position( iFirstVertex * layout.getStride() );
+            return btbDuplicate.slice().order( ByteOrder.nativeOrder() );
+        }
+        return slice( bufVertex, iFirstVertex * 3, iEndVertex * 3 );
+    }
+
+    // 頂点の座標値の配列の切り出し
+    static Buffer slice( Buffer bufVertex, int iStart, int iEnd )
+    {
+        if( bufVertex instanceof ShortBuffer )
+        {
+            return slice( (ShortBuffer)bufVertex, iStart, iEnd );
+        }
+        return slice( (FloatBuffer)bufVertex, iStart, iEnd );
+    }
+
+    static FloatBuffer slice( FloatBuffer fb, int iStart, int iEnd )
+    {
+        FloatBuffer fbDuplicate = fb.duplicate();
+        fbDuplicate.limit( iEnd );
+        fbDuplicate.position( iStart );
+        return fbDuplicate.slice();
+    }
+
+    static ShortBuffer slice( ShortBuffer sb, int iStart, int iEnd )
+    {
+        ShortBuffer sbDuplicate = sb.duplicate();
+        sbDuplicate.limit( iEnd );
+        sbDuplicate.position( iStart );
+        return sbDuplicate.slice();
+    }
+}
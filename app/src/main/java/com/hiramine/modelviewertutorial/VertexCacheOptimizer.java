@@ -0,0 +1,276 @@
+package com.hiramine.modelviewertutorial;
+
+import java.util.Arrays;
+
+// 頂点キャッシュの効率のための、三角形と頂点の並べ替え
+// ・三角形は、Forsythの方法（Linear-Speed Vertex Cache Optimisation）で並べ替える
+//   頂点ごとに、LRUキャッシュ上の位置と、未出力の隣接三角形の数から点数を付け、キャッシュ上の頂点に隣接する三角形のうち、
+//   頂点の点数の和が最も大きい三角形を次に出力する（キャッシュ上に候補が無ければ、元の順で未出力の三角形から始める）
+// ・頂点は、並べ替えた三角形で最初に使われる順に並べ替える（頂点配列の読み出しも、前から順になる）
+// ・効率は、FIFOキャッシュを模した、三角形あたりの頂点の変換回数（ACMR : average cache miss ratio）で測る（1.0未満が下限の目安、三角形ごとに３頂点なら3.0）
+public class VertexCacheOptimizer
+{
+    // 定数
+    public static final int    CACHE_SIZE          = 32;    // 点数付けに使うLRUキャッシュの大きさ
+    public static final int    MEASURE_CACHE_SIZE  = 16;    // ACMRを測るFIFOキャッシュの大きさ（GPUの頂点キャッシュの大きさの目安）
+    public static final int    MAX_TRIANGLE_COUNT  = 2000000;    // 並べ替える三角形の数の上限（作業配列は、三角形あたり35バイトほどをヒープに確保する）
+    private static final float CACHE_DECAY_POWER   = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;    // 直前の三角形の頂点の点数（同じ頂点を続けて使いすぎないよう、少し下げる）
+    private static final float VALENCE_BOOST_SCALE = 2.0f;    // 残りの隣接三角形が少ない頂点ほど、先に使い切るよう点数を上げる
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    private static final int   MAX_VALENCE_SCORE   = 32;    // 隣接三角形の数の点数の表の大きさ（これ以上は、表を使わずに計算する）
+
+    private static final float[] s_afCacheScore   = new float[CACHE_SIZE];    // キャッシュ上の位置ごとの点数
+    private static final float[] s_afValenceScore = new float[MAX_VALENCE_SCORE];    // 未出力の隣接三角形の数ごとの点数
+
+    static
+    {
+        for( int iPosition = 0; iPosition < CACHE_SIZE; iPosition++ )
+        {
+            if( 3 > iPosition )
+            {
+                s_afCacheScore[iPosition] = LAST_TRIANGLE_SCORE;
+            }
+            else
+            {
+                float fScaler = 1.0f / ( CACHE_SIZE - 3 );
+                s_afCacheScore[iPosition] = (float)Math.pow( 1.0f - ( iPosition - 3 ) * fScaler, CACHE_DECAY_POWER );
+            }
+        }
+        for( int iValence = 0; iValence < MAX_VALENCE_SCORE; iValence++ )
+        {
+            s_afValenceScore[iValence] = valenceScore( iValence );
+        }
+    }
+
+    // 三角形の並べ替え（aiTriangleVertexIndexを、並べ替えた順に書き換える。戻り値は、並べ替えた後の三角形ごとの、元の三角形の番号）
+    public static int[] reorderTriangles( int[] aiTriangleVertexIndex, int iCountTriangle, int iCountVertex )
+    {
+        // 頂点ごとの隣接三角形（CSR形式）（未出力の三角形を、頂点ごとの範囲の先頭に詰めておく）
+        int[] aiVertexTriangleStart = new int[iCountVertex + 1];
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            aiVertexTriangleStart[aiTriangleVertexIndex[i] + 1]++;
+        }
+        for( int iIndexVertex = 0; iIndexVertex < iCountVertex; iIndexVertex++ )
+        {
+            aiVertexTriangleStart[iIndexVertex + 1] += aiVertexTriangleStart[iIndexVertex];
+        }
+        int[] aiVertexTriangle  = new int[iCountTriangle * 3];
+        int[] aiVertexRemaining = new int[iCountVertex];    // 頂点ごとの、未出力の隣接三角形の数
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            int iIndexVertex = aiTriangleVertexIndex[i];
+            aiVertexTriangle[aiVertexTriangleStart[iIndexVertex] + aiVertexRemaining[iIndexVertex]++] = i / 3;
+        }
+
+        // 頂点の点数（はじめは、どの頂点もキャッシュに無い）
+        float[] afVertexScore = new float[iCountVertex];
+        for( int iIndexVertex = 0; iIndexVertex < iCountVertex; iIndexVertex++ )
+        {
+            afVertexScore[iIndexVertex] = vertexScore( -1, aiVertexRemaining[iIndexVertex] );
+        }
+        boolean[] abEmitted = new boolean[iCountTriangle];
+
+        // 三角形の出力（キャッシュは、出力した三角形の３頂点を先頭に入れ、押し出された頂点は外す）
+        int[] aiTriangleOrder = new int[iCountTriangle];
+        int[] aiCache         = new int[CACHE_SIZE + 3];
+        int[] aiCacheNew      = new int[CACHE_SIZE + 3];
+        int   iCountCache     = 0;
+        int   iIndexBest      = -1;
+        int   iCursor         = 0;    // キャッシュ上に候補が無い時に、元の順で探す位置
+        for( int iCountEmitted = 0; iCountEmitted < iCountTriangle; iCountEmitted++ )
+        {
+            if( 0 > iIndexBest )
+            {
+                while( abEmitted[iCursor] )
+                {
+                    iCursor++;
+                }
+                iIndexBest = iCursor;
+            }
+            aiTriangleOrder[iCountEmitted] = iIndexBest;
+            abEmitted[iIndexBest] = true;
+
+            // 頂点の、未出力の隣接三角形からの除去
+            int iCountCacheNew = 0;
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                int iIndexVertex = aiTriangleVertexIndex[iIndexBest * 3 + i3];
+                int iStart       = aiVertexTriangleStart[iIndexVertex];
+                int iEnd         = iStart + aiVertexRemaining[iIndexVertex];
+                for( int i = iStart; i < iEnd; i++ )
+                {
+                    if( iIndexBest == aiVertexTriangle[i] )
+                    {
+                        aiVertexTriangle[i] = aiVertexTriangle[iEnd - 1];
+                        aiVertexTriangle[iEnd - 1] = iIndexBest;
+                        aiVertexRemaining[iIndexVertex]--;
+                        break;
+                    }
+                }
+                if( !contains( aiCacheNew, iCountCacheNew, iIndexVertex ) )
+                { // 潰れた三角形では、同じ頂点が重なる
+                    aiCacheNew[iCountCacheNew++] = iIndexVertex;
+                }
+            }
+
+            // キャッシュの更新
+            int iCountFront = iCountCacheNew;
+            for( int i = 0; i < iCountCache; i++ )
+            {
+                int iIndexVertex = aiCache[i];
+                if( !contains( aiCacheNew, iCountFront, iIndexVertex ) )
+                {
+                    aiCacheNew[iCountCacheNew++] = iIndexVertex;
+                }
+            }
+            for( int i = CACHE_SIZE; i < iCountCacheNew; i++ )
+            { // 押し出された頂点
+                int iIndexVertex = aiCacheNew[i];
+                afVertexScore[iIndexVertex] = vertexScore( -1, aiVertexRemaining[iIndexVertex] );
+            }
+            iCountCache = Math.min( iCountCacheNew, CACHE_SIZE );
+            int[] aiSwap = aiCache;
+            aiCache = aiCacheNew;
+            aiCacheNew = aiSwap;
+
+            // キャッシュ上の頂点の点数を更新し、その隣接三角形の中から、次の三角形を選ぶ
+            for( int i = 0; i < iCountCache; i++ )
+            {
+                int iIndexVertex = aiCache[i];
+                afVertexScore[iIndexVertex] = vertexScore( i, aiVertexRemaining[iIndexVertex] );
+            }
+            iIndexBest = -1;
+            float fScoreBest = -1.0f;
+            for( int i = 0; i < iCountCache; i++ )
+            {
+                int iIndexVertex = aiCache[i];
+                int iStart       = aiVertexTriangleStart[iIndexVertex];
+                int iEnd         = iStart + aiVertexRemaining[iIndexVertex];
+                for( int j = iStart; j < iEnd; j++ )
+                {
+                    int   iIndexTriangle = aiVertexTriangle[j];
+                    float fScore         = afVertexScore[aiTriangleVertexIndex[iIndexTriangle * 3]]
+                                           + afVertexScore[aiTriangleVertexIndex[iIndexTriangle * 3 + 1]]
+                                           + afVertexScore[aiTriangleVertexIndex[iIndexTriangle * 3 + 2]];
+                    if( fScoreBest < fScore )
+                    {
+                        fScoreBest = fScore;
+                        iIndexBest = iIndexTriangle;
+                    }
+                }
+            }
+        }
+
+        // 三角形の頂点の番号の配列を、並べ替えた順に、その場で書き換える（置換の巡回ごとに辿るので、写しを作らない）
+        // 出力済みの印（この時点で全てtrue）を、書き換え済みの印（false）に使い回す
+        int[] ai3 = new int[3];
+        for( int iIndexStart = 0; iIndexStart < iCountTriangle; iIndexStart++ )
+        {
+            if( !abEmitted[iIndexStart] )
+            {
+                continue;
+            }
+            System.arraycopy( aiTriangleVertexIndex, iIndexStart * 3, ai3, 0, 3 );
+            int iIndexTriangle = iIndexStart;
+            while( true )
+            {
+                abEmitted[iIndexTriangle] = false;
+                int iIndexSource = aiTriangleOrder[iIndexTriangle];
+                if( iIndexStart == iIndexSource )
+                {
+                    System.arraycopy( ai3, 0, aiTriangleVertexIndex, iIndexTriangle * 3, 3 );
+                    break;
+                }
+                System.arraycopy( aiTriangleVertexIndex, iIndexSource * 3, aiTriangleVertexIndex, iIndexTriangle * 3, 3 );
+                iIndexTriangle = iIndexSource;
+            }
+        }
+        return aiTriangleOrder;
+    }
+
+    // 頂点の並べ替え（三角形で最初に使われる順に番号を振り直し、aiTriangleVertexIndexを書き換える。使われない頂点は、元の順で後ろに置く）
+    // 戻り値は、並べ替えた後の頂点ごとの、元の頂点の番号
+    public static int[] reorderVertices( int[] aiTriangleVertexIndex, int iCountTriangle, int iCountVertex )
+    {
+        int[] aiNewIndex = new int[iCountVertex];    // 元の頂点ごとの、新しい番号（まだ振っていなければ-1）
+        int[] aiVertexOrder = new int[iCountVertex];
+        int   iCountNew     = 0;
+        Arrays.fill( aiNewIndex, -1 );
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            int iIndexVertex = aiTriangleVertexIndex[i];
+            if( 0 > aiNewIndex[iIndexVertex] )
+            {
+                aiNewIndex[iIndexVertex] = iCountNew;
+                aiVertexOrder[iCountNew++] = iIndexVertex;
+            }
+            aiTriangleVertexIndex[i] = aiNewIndex[iIndexVertex];
+        }
+        for( int iIndexVertex = 0; iIndexVertex < iCountVertex; iIndexVertex++ )
+        {
+            if( 0 > aiNewIndex[iIndexVertex] )
+            {
+                aiVertexOrder[iCountNew++] = iIndexVertex;
+            }
+        }
+        return aiVertexOrder;
+    }
+
+    // ACMR（大きさiCacheSizeのFIFOキャッシュで、三角形あたりに変換する頂点の数）
+    public static float measureAcmr( int[] aiTriangleVertexIndex, int iCountTriangle, int iCacheSize )
+    {
+        if( 0 == iCountTriangle )
+        {
+            return 0.0f;
+        }
+        // 頂点ごとに、キャッシュに入った時のミスの通し番号を持ち、その後iCacheSize回のミスで押し出されたとみなす
+        int iCountVertex = 0;
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            iCountVertex = Math.max( iCountVertex, aiTriangleVertexIndex[i] + 1 );
+        }
+        int[] aiVertexStamp = new int[iCountVertex];
+        Arrays.fill( aiVertexStamp, -iCacheSize - 1 );
+        int iCountMiss = 0;
+        for( int i = 0; i < iCountTriangle * 3; i++ )
+        {
+            int iIndexVertex = aiTriangleVertexIndex[i];
+            if( iCountMiss - aiVertexStamp[iIndexVertex] > iCacheSize )
+            {
+                aiVertexStamp[iIndexVertex] = iCountMiss;
+                iCountMiss++;
+            }
+        }
+        return (float)iCountMiss / iCountTriangle;
+    }
+
+    private static boolean contains( int[] ai, int iCount, int iValue )
+    {
+        for( int i = 0; i < iCount; i++ )
+        {
+            if( iValue == ai[i] )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 頂点の点数（iCachePositionは、キャッシュ上の位置（キャッシュに無ければ-1）、iRemainingは、未出力の隣接三角形の数）
+    private static float vertexScore( int iCachePosition, int iRemaining )
+    {
+        if( 0 == iRemaining )
+        { // 使い切った頂点は、三角形の選択に影響させない
+            return -1.0f;
+        }
+        float fScore = ( 0 > iCachePosition ) ? 0.0f : s_afCacheScore[iCachePosition];
+        return fScore + ( ( MAX_VALENCE_SCORE > iRemaining ) ? s_afValenceScore[iRemaining] : valenceScore( iRemaining ) );
+    }
+
+    private static float valenceScore( int iRemaining )
+    {
+        return ( 0 == iRemaining ) ? 0.0f : VALENCE_BOOST_SCALE * (float)Math.pow( iRemaining, -VALENCE_BOOST_POWER );
+    }
+}
@@ -0,0 +1,114 @@
+package com.hiramine.modelviewertutorial;
+
+import javax.microedition.khronos.opengles.GL10;
+
+// 頂点配列の並び（１頂点分のバイト列の中の、属性ごとの位置）
+// ・インターリーブした配列は、座標値、法線、色の順に並べ、各属性の先頭と１頂点のバイト数を４バイト境界に揃える
+// 　座標値 : GL_FLOATは12バイト、GL_SHORTは６バイト＋詰め物２バイト
+// 　法線 : GL_BYTEの３つ（-127～127に正規化）＋詰め物１バイト
+// 　色 : GL_UNSIGNED_BYTEのRGBA（ピック用の要素番号の色）
+// ・座標値だけの並びは、モデルの頂点の座標値の配列そのもの（詰め物なし）を表す
+public class VertexLayout
+{
+    // 定数
+    public static final int ALIGNMENT = 4;    // 属性の先頭と、１頂点のバイト数の境界
+    public static final int NORMAL_SCALE = 127;    // 法線の成分を、GL_BYTEにする時の倍率
+
+    // 座標値がfloatで、詰め物なしの配列（ピック要素の描画用の配列など）
+    public static final VertexLayout PACKED_FLOAT = new VertexLayout( GL10.GL_FLOAT, false, false );
+
+    // メンバー変数
+    private final int     m_iPositionType;    // 座標値の型（GL_FLOATまたはGL_SHORT）
+    private final boolean m_bNormal;
+    private final boolean m_bColor;
+    private final int     m_iOffsetNormal;    // 法線の先頭のバイト位置（法線がない場合は-1）
+    private final int     m_iOffsetColor;    // 色の先頭のバイト位置（色がない場合は-1）
+    private final int     m_iStride;    // １頂点のバイト数
+
+    // コンストラクタ
+    public VertexLayout( int iPositionType, boolean bNormal, boolean bColor )
+    {
+        m_iPositionType = iPositionType;
+        m_bNormal = bNormal;
+        m_bColor = bColor;
+
+        int iOffset = 3 * getTypeSize( iPositionType );
+        if( !bNormal && !bColor )
+        { // 座標値だけの場合は、詰め物なし
+            m_iOffsetNormal = -1;
+            m_iOffsetColor = -1;
+            m_iStride = iOffset;
+            return;
+        }
+        iOffset = align( iOffset );
+        m_iOffsetNormal = bNormal ? iOffset : -1;
+        if( bNormal )
+        {
+            iOffset += ALIGNMENT;
+        }
+        m_iOffsetColor = bColor ? iOffset : -1;
+        if( bColor )
+        {
+            iOffset += ALIGNMENT;
+        }
+        m_iStride = iOffset;
+    }
+
+    // 座標値だけの、詰め物なしの並び
+    public static VertexLayout packed( int iPositionType )
+    {
+        return ( GL10.GL_FLOAT == iPositionType ) ? PACKED_FLOAT : new VertexLayout( iPositionType, false, false );
+    }
+
+    private static int align( int iBytes )
+    {
+        return ( iBytes + ALIGNMENT - 1 ) & ~( ALIGNMENT - 1 );
+    }
+
+    private static int getTypeSize( int iType )
+    {
+        return ( GL10.GL_SHORT == iType ) ? 2 : 4;
+    }
+
+    // アクセサ
+    public int getPositionType()
+    {
+        return m_iPositionType;
+    }
+
+    public int getPositionOffset()
+    {
+        return 0;
+    }
+
+    public boolean hasNormal()
+    {
+        return m_bNormal;
+    }
+
+    public int getNormalOffset()
+    {
+        return m_iOffsetNormal;
+    }
+
+    public boolean hasColor()
+    {
+        return m_bColor;
+    }
+
+    public int getColorOffset()
+    {
+        return m_iOffsetColor;
+    }
+
+    public int getStride()
+    {
+        return m_iStride;
+    }
+
+    // インターリーブした並びかどうか（座標値以外の属性を持つ）
+    public boolean isInterleaved()
+    {
+        return m_bNormal || m_bColor;
+    }
+}
@@ -0,0 +1,70 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+// 頂点の座標値の量子化（32ビットのfloatから、16ビットのshortへ）
+// ・バウンディングボックスの中心を原点とし、軸ごとに、バウンディングボックスが-32767～32767に収まるよう縮尺する
+// ・元の座標値は、量子化した値×縮尺＋中心（描画時は、モデルビュー行列で戻す）
+// ・誤差は、軸ごとに縮尺の1/2以下（実際の最大誤差は、量子化した時に測る）
+public class VertexQuantizer
+{
+    // 定数
+    public static final int QUANTIZE_MAX = 32767;    // 量子化した値の絶対値の最大
+
+    // メンバー変数
+    private final float[] m_af3Scale  = new float[3];    // 軸ごとの縮尺
+    private final float[] m_af3Offset = new float[3];    // 軸ごとの中心
+    private float m_fMaxError;    // 量子化した頂点の、元の座標値との最大誤差
+
+    // コンストラクタ（バウンディングボックス（最小のxyz、最大のxyz）から、縮尺と中心を決める）
+    public VertexQuantizer( float[] af6Bounds )
+    {
+        for( int i3 = 0; i3 < 3; i3++ )
+        {
+            float fHalfExtent = ( af6Bounds[3 + i3] - af6Bounds[i3] ) * 0.5f;
+            m_af3Offset[i3] = af6Bounds[i3] + fHalfExtent;
+            m_af3Scale[i3] = ( 0.0f < fHalfExtent ) ? fHalfExtent / QUANTIZE_MAX : 1.0f;
+        }
+    }
+
+    // アクセサ
+    public float[] getScale()
+    {
+        return m_af3Scale;
+    }
+
+    public float[] getOffset()
+    {
+        return m_af3Offset;
+    }
+
+    public float getMaxError()
+    {
+        return m_fMaxError;
+    }
+
+    // 量子化（先頭からiCountVertex個の頂点を量子化したバッファを返す）
+    public ShortBuffer quantize( FloatBuffer fbVertex, int iCountVertex )
+    {
+        ShortBuffer sbVertex  = DirectBufferArena.getShared().acquireShorts( iCountVertex * 3 );
+        float       fMaxError = 0.0f;
+        for( int i = 0; i < iCountVertex * 3; i++ )
+        {
+            int   i3     = i % 3;
+            float fValue = fbVertex.get( i );
+            int   iValue = Math.round( ( fValue - m_af3Offset[i3] ) / m_af3Scale[i3] );
+            iValue = Math.max( -QUANTIZE_MAX, Math.min( QUANTIZE_MAX, iValue ) );
+            sbVertex.put( i, (short)iValue );
+            fMaxError = Math.max( fMaxError, Math.abs( dequantize( iValue, i3 ) - fValue ) );
+        }
+        m_fMaxError = fMaxError;
+        return sbVertex;
+    }
+
+    // 量子化した値から、元の座標値へ
+    public float dequantize( int iValue, int i3 )
+    {
+        return iValue * m_af3Scale[i3] + m_af3Offset[i3];
+    }
+}
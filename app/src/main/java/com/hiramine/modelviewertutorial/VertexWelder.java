@@ -0,0 +1,235 @@
+package com.hiramine.modelviewertutorial;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+// 頂点の共有化（同じ座標の頂点を一つにまとめる）
+// ・三角形ごとに３頂点を持つ頂点配列から、共有された頂点配列と、各頂点の共有後の番号の配列を作成する
+// ・共有された頂点配列と番号の配列は、ヒープの配列を経由せずに、直接ダイレクトバッファに作成する
+// ・座標値のキーは、int値３つとして、オープンアドレス法（線形探索）のハッシュ表で引く（Float、Integerのボクシングなし）
+// ・許容誤差が0の場合は、座標値のビット列が同じ頂点を共有する（-0.0と0.0は同じとみなす）
+// ・許容誤差が0より大きい場合は、既にある頂点のうち、距離が許容誤差以内で最も近い頂点を共有する（共有後の座標は、最初に現れた頂点の座標）
+//   キーは、許容誤差の大きさの格子の番号。許容誤差以内の頂点は、同じ格子か隣の格子にあるので、周りの27個の格子の頂点を、実際の距離で比べる
+//   共有後の頂点どうしの距離は許容誤差より大きいが、まとめる相手は現れた順で決まる（距離が許容誤差以内の連鎖は、一つにはならない）
+public class VertexWelder
+{
+    // 定数
+    private static final int EMPTY            = -1;
+    private static final int MINIMUM_CAPACITY = 16;
+
+    // メンバー変数
+    private final float        m_fEpsilon;    // 許容誤差
+    private FloatBufferBuilder m_fa3Vertex;    // 共有後の頂点の座標値の配列
+    private int[]              m_ai3Key;    // 共有後の頂点のキーの配列（３つのint値で１頂点）
+    private int[]              m_aiSlot;    // ハッシュ表（共有後の頂点の番号、空きはEMPTY）（大きさは２のべき乗）
+    private IndexBufferBuilder m_aiVertexIndex;    // 元の頂点ごとの、共有後の頂点の番号
+    private int                m_iCountVertex;    // 共有後の頂点の数
+
+    // コンストラクタ
+    public VertexWelder( float fEpsilon )
+    {
+        m_fEpsilon = fEpsilon;
+    }
+
+    // アクセサ
+    public int getVertexCount()
+    {
+        return m_iCountVertex;
+    }
+
+    // 共有後の頂点の座標値
+    public float getVertex( int iIndexVertex, int i3 )
+    {
+        return m_fa3Vertex.get( iIndexVertex * 3 + i3 );
+    }
+
+    // 元の頂点の、共有後の頂点の番号
+    public int getVertexIndex( int iIndexVertexSource )
+    {
+        return m_aiVertexIndex.get( iIndexVertexSource );
+    }
+
+    // 番号の配列の型（共有後の頂点の数が65535以下ならGL_UNSIGNED_SHORT、それ以外はGL_UNSIGNED_INT）
+    public int getIndexType()
+    {
+        return m_aiVertexIndex.getIndexType();
+    }
+
+    // 共有後の頂点の座標値の配列の取り出し（取り出した後は、getVertex()は使えない）
+    public FloatBuffer buildVertexBuffer()
+    {
+        return m_fa3Vertex.build();
+    }
+
+    // 元の頂点ごとの、共有後の頂点の番号の配列の取り出し（三角形ごとに３頂点の場合は、そのまま三角形の頂点の番号の配列になる）
+    // ShortBufferまたはIntBuffer。取り出した後は、getVertexIndex()は使えない
+    public Buffer buildVertexIndexBuffer()
+    {
+        return m_aiVertexIndex.build();
+    }
+
+    // 共有化（戻り値は、共有後の頂点の数）
+    public int weld( FloatBuffer fbVertex, int iCountVertexSource )
+    {
+        // 閉じた三角形メッシュでは、頂点の数は元の1/6程度になるので、その程度の容量から始めて、足りなければ伸ばす
+        int iCapacity = Math.max( iCountVertexSource / 4, MINIMUM_CAPACITY );
+        m_fa3Vertex = new FloatBufferBuilder( iCapacity * 3 );
+        m_ai3Key = new int[iCapacity * 3];
+        m_aiSlot = new int[tableSize( iCapacity )];
+        Arrays.fill( m_aiSlot, EMPTY );
+        m_aiVertexIndex = new IndexBufferBuilder( iCountVertexSource );
+        m_iCountVertex = 0;
+
+        for( int iIndexVertex = 0; iIndexVertex < iCountVertexSource; iIndexVertex++ )
+        {
+            float fX = fbVertex.get( iIndexVertex * 3 + 0 );
+            float fY = fbVertex.get( iIndexVertex * 3 + 1 );
+            float fZ = fbVertex.get( iIndexVertex * 3 + 2 );
+            m_aiVertexIndex.set( iIndexVertex, findOrAdd( fX, fY, fZ ) );
+        }
+
+        // 作業用の配列は解放する
+        m_ai3Key = null;
+        m_aiSlot = null;
+        return m_iCountVertex;
+    }
+
+    // 座標値に対応する共有後の頂点の番号の取得（無ければ追加する）
+    private int findOrAdd( float fX, float fY, float fZ )
+    {
+        int iKeyX = key( fX );
+        int iKeyY = key( fY );
+        int iKeyZ = key( fZ );
+        int iIndexFound = ( 0.0f < m_fEpsilon ) ? findNear( fX, fY, fZ, iKeyX, iKeyY, iKeyZ ) : find( iKeyX, iKeyY, iKeyZ );
+        if( EMPTY != iIndexFound )
+        {
+            return iIndexFound;
+        }
+
+        // 追加（同じキーの頂点があっても、その先の空きに入れる。キーの探索は、空きに当たるまで続ける）
+        int iIndexVertex = m_iCountVertex++;
+        if( m_ai3Key.length < m_iCountVertex * 3 )
+        {
+            m_ai3Key = Arrays.copyOf( m_ai3Key, Math.max( m_ai3Key.length + ( m_ai3Key.length >> 1 ), m_iCountVertex * 3 ) );
+        }
+        m_ai3Key[iIndexVertex * 3 + 0] = iKeyX;
+        m_ai3Key[iIndexVertex * 3 + 1] = iKeyY;
+        m_ai3Key[iIndexVertex * 3 + 2] = iKeyZ;
+        m_fa3Vertex.add( fX, fY, fZ );
+        int iMask = m_aiSlot.length - 1;
+        int iSlot = hash( iKeyX, iKeyY, iKeyZ ) & iMask;
+        while( EMPTY != m_aiSlot[iSlot] )
+        {
+            iSlot = ( iSlot + 1 ) & iMask;
+        }
+        m_aiSlot[iSlot] = iIndexVertex;
+
+        // 使用率が1/2を超えたら、ハッシュ表を大きくする
+        if( m_iCountVertex * 2 > m_aiSlot.length )
+        {
+            rehash( m_aiSlot.length * 2 );
+        }
+        return iIndexVertex;
+    }
+
+    // キーが一致する頂点の番号（無ければEMPTY）
+    private int find( int iKeyX, int iKeyY, int iKeyZ )
+    {
+        int iMask = m_aiSlot.length - 1;
+        for( int iSlot = hash( iKeyX, iKeyY, iKeyZ ) & iMask; EMPTY != m_aiSlot[iSlot]; iSlot = ( iSlot + 1 ) & iMask )
+        {
+            int iIndexVertex = m_aiSlot[iSlot];
+            if( iKeyX == m_ai3Key[iIndexVertex * 3 + 0]
+                && iKeyY == m_ai3Key[iIndexVertex * 3 + 1]
+                && iKeyZ == m_ai3Key[iIndexVertex * 3 + 2] )
+            {
+                return iIndexVertex;
+            }
+        }
+        return EMPTY;
+    }
+
+    // 距離が許容誤差以内で最も近い頂点の番号（無ければEMPTY。同じ距離なら、先に現れた頂点）
+    private int findNear( float fX, float fY, float fZ, int iKeyX, int iKeyY, int iKeyZ )
+    {
+        double dDistanceBest = (double)m_fEpsilon * m_fEpsilon;    // 距離の２乗
+        int    iIndexBest    = EMPTY;
+        int    iMask         = m_aiSlot.length - 1;
+        for( int iCell = 0; iCell < 27; iCell++ )
+        {
+            int iCellX = iKeyX + iCell % 3 - 1;
+            int iCellY = iKeyY + ( iCell / 3 ) % 3 - 1;
+            int iCellZ = iKeyZ + iCell / 9 - 1;
+            for( int iSlot = hash( iCellX, iCellY, iCellZ ) & iMask; EMPTY != m_aiSlot[iSlot]; iSlot = ( iSlot + 1 ) & iMask )
+            {
+                int iIndexVertex = m_aiSlot[iSlot];
+                if( iCellX != m_ai3Key[iIndexVertex * 3 + 0]
+                    || iCellY != m_ai3Key[iIndexVertex * 3 + 1]
+                    || iCellZ != m_ai3Key[iIndexVertex * 3 + 2] )
+                {
+                    continue;
+                }
+                double dX        = (double)m_fa3Vertex.get( iIndexVertex * 3 + 0 ) - fX;
+                double dY        = (double)m_fa3Vertex.get( iIndexVertex * 3 + 1 ) - fY;
+                double dZ        = (double)m_fa3Vertex.get( iIndexVertex * 3 + 2 ) - fZ;
+                double dDistance = dX * dX + dY * dY + dZ * dZ;
+                if( dDistanceBest > dDistance
+                    || ( dDistanceBest == dDistance && ( EMPTY == iIndexBest || iIndexBest > iIndexVertex ) ) )
+                {
+                    dDistanceBest = dDistance;
+                    iIndexBest = iIndexVertex;
+                }
+            }
+        }
+        return iIndexBest;
+    }
+
+    private void rehash( int iTableSize )
+    {
+        int[] aiSlot = new int[iTableSize];
+        Arrays.fill( aiSlot, EMPTY );
+        int iMask = iTableSize - 1;
+        for( int iIndexVertex = 0; iIndexVertex < m_iCountVertex; iIndexVertex++ )
+        {
+            int iSlot = hash( m_ai3Key[iIndexVertex * 3 + 0], m_ai3Key[iIndexVertex * 3 + 1], m_ai3Key[iIndexVertex * 3 + 2] ) & iMask;
+            while( EMPTY != aiSlot[iSlot] )
+            {
+                iSlot = ( iSlot + 1 ) & iMask;
+            }
+            aiSlot[iSlot] = iIndexVertex;
+        }
+        m_aiSlot = aiSlot;
+    }
+
+    // 座標値のキー（許容誤差が0より大きい場合は、許容誤差の大きさの格子の番号）
+    private int key( float fValue )
+    {
+        if( 0.0f < m_fEpsilon )
+        {
+            return (int)Math.floor( (double)fValue / m_fEpsilon );
+        }
+        return bitKey( fValue );
+    }
+
+    // 許容誤差が0の場合の、座標値のキー（座標値のビット列）（PointSetBuilderも、同じキーで同じ座標の点を引く）
+    static int bitKey( float fValue )
+    {
+        return Float.floatToIntBits( fValue + 0.0f );    // -0.0に0.0を足すと0.0になる
+    }
+
+    // ３つのキーのハッシュ値（PointSetBuilderも使う）
+    static int hash( int iKeyX, int iKeyY, int iKeyZ )
+    {
+        int iHash = iKeyX * 0x9E3779B1;
+        iHash = ( iHash ^ iKeyY ) * 0x85EBCA77;
+        iHash = ( iHash ^ iKeyZ ) * 0xC2B2AE3D;
+        return iHash ^ ( iHash >>> 16 );
+    }
+
+    // 要素数の２倍以上の、２のべき乗
+    private static int tableSize( int iCapacity )
+    {
+        return Integer.highestOneBit( Math.max( iCapacity, MINIMUM_CAPACITY ) * 2 - 1 ) << 1;
+    }
+}
@@ -0,0 +1,72 @@
+package com.hiramine.modelviewertutorial;
+
+import android.opengl.GLSurfaceView;
+
+// モデルビューアーのレンダラーの共通の操作
+// ・固定機能パイプライン（OpenGL ES 1）のModelViewerRendererと、プログラマブルパイプライン（OpenGL ES 3）のGLES3ModelViewerRendererが実装する
+// ・ビュー、読み込みサービス、アクティビティは、どちらのレンダラーかによらず、この型で扱う
+public interface ViewerRenderer extends GLSurfaceView.Renderer
+{
+    // シェーディング
+    enum EShading
+    {
+        SH_UNLIT,    // 単色
+        SH_FACETED,    // 面ごとの陰影
+        SH_NORMAL,    // 法線の向きを色にする
+        SH_SMOOTH,    // 頂点法線による陰影（折れ角より大きく折れた稜線では、法線を分ける）
+    }
+
+    // トラッキング（UIスレッドから呼ぶ）
+    OpenGLTrackRenderer.ETrackingMode getTrackingMode();
+
+    void beginTracking( float fX, float fY, OpenGLTrackRenderer.ETrackingMode eTrackingMode );
+
+    void endTracking();
+
+    void doTracking( float fX, float fY );
+
+    // モデルのセット（GLスレッドから呼ぶ。新しいモデルの参照を追加し、差し替えたモデルの参照を解除する）
+    Model getModel();
+
+    void setModel( Model model );
+
+    // 描画に使う派生バッファの事前作成（読み込みスレッドから呼ぶ）
+    void prepareModel( Model model );
+
+    // メモリーが足りない時の、派生バッファの破棄（GLスレッドから呼ぶ）
+    void trimMemory();
+
+    // ピック（GLスレッドから呼ぶ。何かをピックしたらtrue）
+    boolean doPicking( float fX, float fY );
+
+    // 描画する要素と、ピックする要素
+    void setRenderElement( OpenGLPickRenderer.ERenderElementType eElementType, boolean bRender );
+
+    void setPickElement( OpenGLPickRenderer.ERenderElementType eElementType, boolean bPick );
+
+    // 面のシェーディング（対応していないシェーディングは、単色で描画する）
+    void setShading( EShading eShading );
+
+    // 頂点法線による陰影の、法線を分ける折れ角[deg]
+    void setCreaseAngle( float fCreaseAngle );
+
+    // トラッキング中の描画の三角形の数の上限（これを超えるモデルは、トラッキング中は粗い段階で描き、線と点を描かない）
+    // 上限以下の段階は、詳細度の段階を作成する時に作るので、変更は次に読み込むモデルから効く
+    int getInteractiveTriangleBudget();
+
+    void setInteractiveTriangleBudget( int iTriangleBudget );
+
+    // 直前のフレームの描画呼び出しの数
+    int getDrawCallCount();
+
+    // 直前のフレームの、描画したクラスターの数と、視野の外や画面上で小さすぎて間引いたクラスターの数
+    int getDrawnClusterCount();
+
+    int getCulledClusterCount();
+
+    // 直前のフレームで描画した詳細度の段階（0は元のモデル。段階を持つモデルを描画していなければ-1）
+    int getLodLevel();
+
+    // サーフェースが破棄されようとする時（GLスレッドから呼ぶ）
+    void preSurfaceDestroy();
+}
@@ -0,0 +1,122 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.microedition.khronos.opengles.GL11;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BufferObjectCache のローカルユニットテスト（GLは、呼び出しを記録するだけの代用品）
+ */
+public class BufferObjectCacheTest
+{
+    private GL11         m_gl11;
+    private List<String> m_listCall;
+    private int          m_iNameNext;
+
+    @Before
+    public void setUp()
+    {
+        m_listCall = new ArrayList<>();
+        m_iNameNext = 1;
+        m_gl11 = (GL11)Proxy.newProxyInstance( GL11.class.getClassLoader(), new Class<?>[]{ GL11.class }, new InvocationHandler()
+        {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] aArg )
+            {
+                if( "glGenBuffers".equals( method.getName() ) )
+                {
+                    ( (int[])aArg[1] )[(Integer)aArg[2]] = m_iNameNext++;
+                    m_listCall.add( "gen" );
+                }
+                else if( "glBufferData".equals( method.getName() ) )
+                {
+                    m_listCall.add( "data " + aArg[1] );
+                }
+                else if( "glDeleteBuffers".equals( method.getName() ) )
+                {
+                    m_listCall.add( "delete " + aArg[0] );
+                }
+                return null;
+            }
+        } );
+    }
+
+    // 同じバッファは一度だけ転送し、同じ名前を返す
+    @Test
+    public void get_uploadsOncePerBuffer()
+    {
+        BufferObjectCache cache = new BufferObjectCache();
+        FloatBuffer       fb    = FloatBuffer.allocate( 30 );
+        ShortBuffer       sb    = ShortBuffer.allocate( 12 );
+
+        int iName = cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, fb );
+        assertEquals( iName, cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, fb ) );
+        assertTrue( iName != cache.get( m_gl11, GL11.GL_ELEMENT_ARRAY_BUFFER, sb ) );
+
+        assertEquals( 2, cache.getCount() );
+        assertEquals( 30 * 4 + 12 * 2, cache.getBytes() );
+        assertEquals( 2, m_listCall.indexOf( "data 24" ) - m_listCall.indexOf( "data 120" ) );
+    }
+
+    // 内容が同じでも、別のバッファは別のバッファオブジェクト
+    @Test
+    public void get_distinguishesBuffersByIdentity()
+    {
+        BufferObjectCache cache = new BufferObjectCache();
+        ByteBuffer        btb1  = ByteBuffer.allocate( 16 );
+        ByteBuffer        btb2  = ByteBuffer.allocate( 16 );
+        assertTrue( cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, btb1 ) != cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, btb2 ) );
+        assertEquals( 2, cache.getCount() );
+    }
+
+    // 削除すると、次に使う時に転送し直す。知らないバッファやnullは無視する
+    @Test
+    public void remove_deletesAndReuploads()
+    {
+        BufferObjectCache cache = new BufferObjectCache();
+        FloatBuffer       fb    = FloatBuffer.allocate( 9 );
+        int               iName = cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, fb );
+
+        cache.remove( m_gl11, FloatBuffer.allocate( 9 ) );
+        cache.remove( m_gl11, null );
+        assertEquals( 1, cache.getCount() );
+
+        cache.remove( m_gl11, fb );
+        assertEquals( 0, cache.getCount() );
+        assertEquals( 0, cache.getBytes() );
+        assertEquals( "delete 1", m_listCall.get( m_listCall.size() - 1 ) );
+        assertTrue( iName != cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, fb ) );
+    }
+
+    // 全削除は一度の呼び出しで削除し、コンテキストの作り直しでは削除せずに忘れる
+    @Test
+    public void clearAndInvalidate()
+    {
+        BufferObjectCache cache = new BufferObjectCache();
+        cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, FloatBuffer.allocate( 3 ) );
+        cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, FloatBuffer.allocate( 3 ) );
+        cache.clear( m_gl11 );
+        assertEquals( "delete 2", m_listCall.get( m_listCall.size() - 1 ) );
+        assertEquals( 0, cache.getCount() );
+
+        cache.get( m_gl11, GL11.GL_ARRAY_BUFFER, FloatBuffer.allocate( 3 ) );
+        int iCountCall = m_listCall.size();
+        cache.invalidate();
+        assertEquals( iCountCall, m_listCall.size() );
+        assertEquals( 0, cache.getCount() );
+        assertEquals( 0, cache.getBytes() );
+    }
+}
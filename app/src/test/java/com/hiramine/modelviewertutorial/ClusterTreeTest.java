@@ -0,0 +1,186 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ClusterTree、ClusterCuller のローカルユニットテスト
+ */
+public class ClusterTreeTest
+{
+    private static final int GRID = 100;    // 格子の一辺の数（20000三角形）
+
+    // 並べ替えた番号配列は、元の三角形を漏れなく一度ずつ持ち、葉の境界ボックスは、葉の三角形の頂点を含む
+    @Test
+    public void build_grid_coversAllTrianglesOnce()
+    {
+        Model       model       = new Model( TestMeshes.makeGridSoup( GRID ) );
+        SubMesh     submesh     = model.getTriangleSubMeshes( true )[0];
+        ClusterTree clustertree = ClusterTree.build( submesh, 3 );
+        assertNotNull( clustertree );
+        assertTrue( 2 * model.getTriangleCount() / ClusterTree.CLUSTER_ELEMENT >= clustertree.getClusterCount() );
+
+        // 元の三角形の、３頂点の番号の組の数
+        Map<String, Integer> mapTriangle = new HashMap<>();
+        for( int i = 0; i < model.getTriangleCount(); ++i )
+        {
+            String strKey = key( submesh, i );
+            mapTriangle.put( strKey, ( mapTriangle.containsKey( strKey ) ? mapTriangle.get( strKey ) : 0 ) + 1 );
+        }
+        SubMesh submeshOrdered = clustertree.getSubMesh();
+        assertEquals( submesh.getVertexBuffer(), submeshOrdered.getVertexBuffer() );
+        assertEquals( model.getTriangleCount(), submeshOrdered.getElementCount() );
+        for( int i = 0; i < model.getTriangleCount(); ++i )
+        {
+            String strKey = key( submeshOrdered, i );
+            assertTrue( mapTriangle.containsKey( strKey ) );
+            mapTriangle.put( strKey, mapTriangle.get( strKey ) - 1 );
+        }
+        for( int iCount : mapTriangle.values() )
+        {
+            assertEquals( 0, iCount );
+        }
+
+        // 節点の範囲と境界ボックス
+        ByteBuffer   btbVertex = (ByteBuffer)submesh.getVertexBuffer();
+        VertexLayout layout    = submesh.getVertexLayout();
+        int          iLeaf     = 0;
+        for( int iNode = 0; iNode < clustertree.getNodeCount(); ++iNode )
+        {
+            if( !clustertree.isLeaf( iNode ) )
+            {
+                int iLeft  = clustertree.getLeft( iNode );
+                int iRight = clustertree.getRight( iNode );
+                assertEquals( clustertree.getFirstElement( iNode ), clustertree.getFirstElement( iLeft ) );
+                assertEquals( clustertree.getFirstElement( iLeft ) + clustertree.getElementCount( iLeft ), clustertree.getFirstElement( iRight ) );
+                assertEquals( clustertree.getElementCount( iNode ), clustertree.getElementCount( iLeft ) + clustertree.getElementCount( iRight ) );
+                continue;
+            }
+            iLeaf++;
+            assertTrue( ClusterTree.CLUSTER_ELEMENT >= clustertree.getElementCount( iNode ) );
+            for( int i = 0; i < clustertree.getElementCount( iNode ) * 3; ++i )
+            {
+                int iIndexVertex = Model.getIndex( submeshOrdered.getIndexBuffer(), clustertree.getFirstElement( iNode ) * 3 + i );
+                for( int i3 = 0; i3 < 3; ++i3 )
+                {
+                    float fValue = InterleavedVertexBuilder.getPosition( btbVertex, layout, iIndexVertex, i3 );
+                    assertTrue( clustertree.getBound( iNode, i3 ) <= fValue );
+                    assertTrue( clustertree.getBound( iNode, 3 + i3 ) >= fValue );
+                }
+            }
+        }
+        assertEquals( clustertree.getClusterCount(), iLeaf );
+    }
+
+    // 要素が少ない部分メッシュには、階層を作らない
+    @Test
+    public void build_smallMesh_returnsNull()
+    {
+        Model model = new Model( TestMeshes.makeGridSoup( 8 ) );
+        assertNull( ClusterTree.build( model.getTriangleSubMeshes( true )[0], 3 ) );
+        assertNull( model.getTriangleSubMeshes( true )[0].getClusterTree( 3 ) );
+    }
+
+    // 視野の中にある三角形は、全て描画する範囲に入り、視野の外のクラスターは間引かれる
+    @Test
+    public void cull_quarterView_keepsVisibleTriangles()
+    {
+        Model       model       = new Model( TestMeshes.makeGridSoup( GRID ) );
+        SubMesh     submesh     = model.getTriangleSubMeshes( true )[0];
+        ClusterTree clustertree = submesh.getClusterTree( 3 );
+
+        // 頂点配列に格納されている座標値（量子化したモデルは、量子化した値）で、左下の４分の１を見る
+        float fMidX = ( clustertree.getBound( 0, 0 ) + clustertree.getBound( 0, 3 ) ) * 0.5f;
+        float fMidY = ( clustertree.getBound( 0, 1 ) + clustertree.getBound( 0, 4 ) ) * 0.5f;
+
+        ClusterCuller clusterculler = new ClusterCuller();
+        clusterculler.setMatrix( makeOrtho( clustertree.getBound( 0, 0 ), fMidX, clustertree.getBound( 0, 1 ), fMidY ), 500, 500 );
+        int iCountRange = clusterculler.cull( clustertree );
+        assertTrue( 0 < iCountRange );
+        assertEquals( clustertree.getClusterCount(), clusterculler.getDrawnCount() + clusterculler.getCulledCount() );
+        assertTrue( clustertree.getClusterCount() / 2 < clusterculler.getCulledCount() );
+
+        boolean[] abDrawn = new boolean[model.getTriangleCount()];
+        int       iEnd    = -1;
+        for( int i = 0; i < iCountRange; ++i )
+        {
+            assertTrue( iEnd < clusterculler.getRangeFirst( i ) );    // 範囲は順に並び、つながる範囲はまとめられている
+            iEnd = clusterculler.getRangeFirst( i ) + clusterculler.getRangeElementCount( i );
+            for( int j = clusterculler.getRangeFirst( i ); j < iEnd; ++j )
+            {
+                abDrawn[j] = true;
+            }
+        }
+        SubMesh      submeshOrdered = clustertree.getSubMesh();
+        ByteBuffer   btbVertex      = (ByteBuffer)submesh.getVertexBuffer();
+        VertexLayout layout         = submesh.getVertexLayout();
+        int          iCountVisible  = 0;
+        for( int i = 0; i < model.getTriangleCount(); ++i )
+        {
+            boolean bInside = true;
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                int iIndexVertex = Model.getIndex( submeshOrdered.getIndexBuffer(), i * 3 + i3 );
+                bInside &= fMidX > InterleavedVertexBuilder.getPosition( btbVertex, layout, iIndexVertex, 0 );
+                bInside &= fMidY > InterleavedVertexBuilder.getPosition( btbVertex, layout, iIndexVertex, 1 );
+            }
+            if( bInside )
+            {
+                assertTrue( abDrawn[i] );
+                iCountVisible++;
+            }
+        }
+        assertTrue( model.getTriangleCount() / 5 < iCountVisible );
+    }
+
+    // 画面上で１ピクセルより小さいモデルは、先頭のクラスターだけを描画する
+    @Test
+    public void cull_subPixelModel_drawsOneCluster()
+    {
+        Model       model       = new Model( TestMeshes.makeGridSoup( GRID ) );
+        ClusterTree clustertree = model.getTriangleSubMeshes( true )[0].getClusterTree( 3 );
+
+        ClusterCuller clusterculler = new ClusterCuller();
+        float fSize = Math.max( clustertree.getBound( 0, 3 ) - clustertree.getBound( 0, 0 ), clustertree.getBound( 0, 4 ) - clustertree.getBound( 0, 1 ) );
+        clusterculler.setMatrix( makeOrtho( -fSize * 1000.0f, fSize * 1000.0f, -fSize * 1000.0f, fSize * 1000.0f ), 500, 500 );
+        assertEquals( 1, clusterculler.cull( clustertree ) );
+        assertEquals( 1, clusterculler.getDrawnCount() );
+        assertEquals( clustertree.getClusterCount() - 1, clusterculler.getCulledCount() );
+
+        // 全体が見えていれば、一度の範囲で全てを描画する
+        clusterculler.setMatrix( makeOrtho( clustertree.getBound( 0, 0 ) - 1.0f, clustertree.getBound( 0, 3 ) + 1.0f, clustertree.getBound( 0, 1 ) - 1.0f, clustertree.getBound( 0, 4 ) + 1.0f ), 500, 500 );
+        assertEquals( 1, clusterculler.cull( clustertree ) );
+        assertEquals( model.getTriangleCount(), clusterculler.getRangeElementCount( 0 ) );
+        assertEquals( 0, clusterculler.getCulledCount() );
+        assertFalse( 0 == clusterculler.getDrawnCount() );
+    }
+
+    private static String key( SubMesh submesh, int iIndexTriangle )
+    {
+        return Model.getIndex( submesh.getIndexBuffer(), iIndexTriangle * 3 ) + ","
+                + Model.getIndex( submesh.getIndexBuffer(), iIndexTriangle * 3 + 1 ) + ","
+                + Model.getIndex( submesh.getIndexBuffer(), iIndexTriangle * 3 + 2 );
+    }
+
+    // z = -1～1の平行投影の行列（列優先）
+    private static float[] makeOrtho( float fLeft, float fRight, float fBottom, float fTop )
+    {
+        float[] f16 = new float[16];
+        f16[0] = 2.0f / ( fRight - fLeft );
+        f16[5] = 2.0f / ( fTop - fBottom );
+        f16[10] = -1.0f;
+        f16[12] = -( fRight + fLeft ) / ( fRight - fLeft );
+        f16[13] = -( fTop + fBottom ) / ( fTop - fBottom );
+        f16[15] = 1.0f;
+        return f16;
+    }
+}
@@ -0,0 +1,88 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 稜線の遅延作成と、DerivedBufferStats のローカルユニットテスト
+ */
+public class DerivedBufferStatsTest
+{
+    // 四角形を２つの三角形に分けた頂点配列
+    private static final float[] QUAD_SOUP = {
+            0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 0.0f,
+            0.0f, 0.0f, 0.0f, 1.0f, 1.0f, 0.0f, 0.0f, 1.0f, 0.0f };
+
+    @Before
+    public void setUp()
+    {
+        DerivedBufferStats.reset();
+    }
+
+    // 稜線は、必要になるまで作らず、一度だけ作る
+    @Test
+    public void model_edges_builtOnFirstUse()
+    {
+        Model model = new Model( QUAD_SOUP );
+        assertFalse( model.hasEdges() );
+        assertNull( model.getBuiltEdgeVertexIndexBuffer() );
+        assertEquals( 0, DerivedBufferStats.getBuildCount( DerivedBufferStats.EBufferType.BT_EDGE ) );
+
+        assertEquals( 5, model.getEdgeCount() );
+        assertTrue( model.hasEdges() );
+        assertEquals( 1, DerivedBufferStats.getBuildCount( DerivedBufferStats.EBufferType.BT_EDGE ) );
+        assertTrue( 0 < DerivedBufferStats.getLastBytes( DerivedBufferStats.EBufferType.BT_EDGE ) );
+
+        model.getEdgeSubMeshes( true );
+        model.getEdgeTriangleCount( 0 );
+        assertEquals( 1, DerivedBufferStats.getBuildCount( DerivedBufferStats.EBufferType.BT_EDGE ) );
+    }
+
+    // 破棄した稜線は、次に必要になった時に同じ内容で作り直す
+    @Test
+    public void model_discardEdges_rebuildsSameEdges()
+    {
+        Model model  = new Model( QUAD_SOUP );
+        int[] aiEdge = new int[model.getEdgeCount() * 2];
+        for( int i = 0; i < aiEdge.length; ++i )
+        {
+            aiEdge[i] = model.getEdgeVertexIndex( i / 2, i % 2 );
+        }
+
+        model.discardEdges();
+        assertFalse( model.hasEdges() );
+        assertEquals( 1, DerivedBufferStats.getDiscardCount( DerivedBufferStats.EBufferType.BT_EDGE ) );
+
+        assertEquals( aiEdge.length / 2, model.getEdgeCount() );
+        for( int i = 0; i < aiEdge.length; ++i )
+        {
+            assertEquals( aiEdge[i], model.getEdgeVertexIndex( i / 2, i % 2 ) );
+        }
+        assertEquals( 2, DerivedBufferStats.getBuildCount( DerivedBufferStats.EBufferType.BT_EDGE ) );
+    }
+
+    // 隣接三角形だけが無い稜線（キャッシュから読み込んだモデル）は、稜線の番号配列をそのまま使う
+    @Test
+    public void model_cachedEdges_rebuildOnlyAdjacency()
+    {
+        Model modelSource = new Model( QUAD_SOUP );
+        Model model       = new Model( (FloatBuffer)modelSource.getVertexBuffer(), modelSource.getTriangleVertexIndexBuffer(),
+                                       modelSource.getEdgeVertexIndexBuffer(), modelSource.getBounds() );
+        assertTrue( model.hasEdges() );
+
+        int iCountEdgeTriangle = 0;
+        for( int i = 0; i < model.getEdgeCount(); ++i )
+        {
+            iCountEdgeTriangle += model.getEdgeTriangleCount( i );
+        }
+        assertEquals( 2 * 3, iCountEdgeTriangle );
+        assertTrue( modelSource.getEdgeVertexIndexBuffer() == model.getEdgeVertexIndexBuffer() );
+    }
+}
@@ -0,0 +1,99 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DirectBufferArena のローカルユニットテスト
+ */
+public class DirectBufferArenaTest
+{
+    // サイズクラスは、２のべき乗の区間を４等分した大きさに切り上げる
+    @Test
+    public void sizeClass_roundsUpToQuarterSteps()
+    {
+        assertEquals( 4096, DirectBufferArena.sizeClass( 1 ) );
+        assertEquals( 4096, DirectBufferArena.sizeClass( 4096 ) );
+        assertEquals( 5120, DirectBufferArena.sizeClass( 4097 ) );
+        assertEquals( 8192, DirectBufferArena.sizeClass( 8192 ) );
+        assertEquals( 10240, DirectBufferArena.sizeClass( 8193 ) );
+        assertEquals( 1 << 30, DirectBufferArena.sizeClass( ( 1 << 30 ) - 1 ) );
+        assertTrue( 0 < DirectBufferArena.sizeClass( Integer.MAX_VALUE ) );
+    }
+
+    // 貸し出すバッファは、要求された大きさちょうどで、ネイティブのバイトオーダー
+    @Test
+    public void acquire_returnsExactCapacity()
+    {
+        DirectBufferArena arena = new DirectBufferArena( 1 << 20 );
+        FloatBuffer       fb    = arena.acquireFloats( 3000 );
+        assertEquals( 3000, fb.capacity() );
+        assertTrue( fb.isDirect() );
+        assertEquals( ByteOrder.nativeOrder(), fb.order() );
+
+        ShortBuffer sb = arena.acquireShorts( 10 );    // 小さなバッファは、そのまま確保する
+        assertEquals( 10, sb.capacity() );
+        assertEquals( 0, arena.getMissCount() + arena.getHitCount() - 1 );
+    }
+
+    // 返したブロックは、同じサイズクラスの確保で再利用する
+    @Test
+    public void release_thenAcquire_hits()
+    {
+        DirectBufferArena arena = new DirectBufferArena( 1 << 20 );
+        ByteBuffer        bb    = arena.acquireBytes( 5000 );
+        assertEquals( 1, arena.getMissCount() );
+        assertEquals( 5120, arena.getLeasedBytes() );
+
+        arena.release( bb );
+        assertEquals( 0, arena.getLeasedBytes() );
+        assertEquals( 5120, arena.getResidentBytes() );
+
+        FloatBuffer fb = arena.acquireFloats( 1250 );    // 5000バイト
+        assertEquals( 1, arena.getHitCount() );
+        assertEquals( 1, arena.getMissCount() );
+        assertEquals( 0, arena.getResidentBytes() );
+        assertEquals( 1250, fb.capacity() );
+    }
+
+    // 上限を超える場合は、返されたブロックを保持しない
+    @Test
+    public void release_overBudget_drops()
+    {
+        DirectBufferArena arena = new DirectBufferArena( 8192 );
+        ByteBuffer        bb1   = arena.acquireBytes( 8192 );
+        ByteBuffer        bb2   = arena.acquireBytes( 4096 );
+        arena.release( bb1 );
+        arena.release( bb2 );
+        assertEquals( 8192, arena.getResidentBytes() );
+        assertEquals( 1, arena.getDropCount() );
+
+        arena.setBudget( 4096 );
+        assertEquals( 0, arena.getResidentBytes() );
+    }
+
+    // 貸し出していないバッファ、二重に返したバッファは無視する
+    @Test
+    public void release_unknownBuffer_ignored()
+    {
+        DirectBufferArena arena = new DirectBufferArena( 1 << 20 );
+        arena.release( null );
+        arena.release( ByteBuffer.allocateDirect( 8192 ) );
+        assertEquals( 0, arena.getResidentBytes() );
+
+        ByteBuffer bb = arena.acquireBytes( 8192 );
+        arena.release( bb );
+        arena.release( bb );
+        assertEquals( 8192, arena.getResidentBytes() );
+
+        arena.trim();
+        assertEquals( 0, arena.getResidentBytes() );
+    }
+}
@@ -0,0 +1,85 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * EdgeBuilder のローカルユニットテスト
+ */
+public class EdgeBuilderTest
+{
+    // 立方体の１２三角形の頂点番号
+    private static final int[] CUBE_TRIANGLE = {
+            0, 2, 1, 0, 3, 2, 4, 5, 6, 4, 6, 7,
+            0, 1, 5, 0, 5, 4, 2, 3, 7, 2, 7, 6,
+            1, 2, 6, 1, 6, 5, 0, 4, 7, 0, 7, 3 };
+
+    // 閉じた立方体の稜線は１８本で、どの稜線も２つの三角形に隣接する
+    @Test
+    public void build_closedCube_sharesEveryEdge()
+    {
+        EdgeBuilder builder = new EdgeBuilder();
+        assertEquals( 18, builder.build( CUBE_TRIANGLE, 12 ) );
+
+        int[] aiEdgeTriangleStart = builder.getEdgeTriangleStartArray();
+        int[] aiEdgeTriangle      = builder.getEdgeTriangleArray();
+        int[] aiTriangleEdgeIndex = builder.getTriangleEdgeIndexArray();
+        for( int iIndexEdge = 0; iIndexEdge < 18; ++iIndexEdge )
+        {
+            assertEquals( 2, aiEdgeTriangleStart[iIndexEdge + 1] - aiEdgeTriangleStart[iIndexEdge] );
+            // 隣接三角形は、その稜線を持つ
+            for( int i = aiEdgeTriangleStart[iIndexEdge]; i < aiEdgeTriangleStart[iIndexEdge + 1]; ++i )
+            {
+                int iIndexTriangle = aiEdgeTriangle[i];
+                assertTrue( iIndexEdge == aiTriangleEdgeIndex[iIndexTriangle * 3 + 0]
+                            || iIndexEdge == aiTriangleEdgeIndex[iIndexTriangle * 3 + 1]
+                            || iIndexEdge == aiTriangleEdgeIndex[iIndexTriangle * 3 + 2] );
+            }
+        }
+    }
+
+    // 向きが逆の稜線も同じ稜線とみなし、境界の稜線は１つの三角形にだけ隣接する
+    @Test
+    public void build_openStrip_hasBoundaryEdges()
+    {
+        EdgeBuilder builder = new EdgeBuilder();
+        assertEquals( 5, builder.build( new int[]{ 0, 1, 2, 2, 1, 3 }, 2 ) );
+
+        int[] aiEdgeTriangleStart = builder.getEdgeTriangleStartArray();
+        int   iCountShared        = 0;
+        for( int iIndexEdge = 0; iIndexEdge < 5; ++iIndexEdge )
+        {
+            int iCountTriangle = aiEdgeTriangleStart[iIndexEdge + 1] - aiEdgeTriangleStart[iIndexEdge];
+            assertTrue( 1 == iCountTriangle || 2 == iCountTriangle );
+            iCountShared += ( 2 == iCountTriangle ) ? 1 : 0;
+        }
+        assertEquals( 1, iCountShared );
+    }
+
+    // 多数の三角形でも、ハッシュ表を伸ばしながら正しく数える（格子の稜線の数と一致する）
+    @Test
+    public void build_grid_countsUniqueEdges()
+    {
+        int   iGrid                 = 100;
+        int[] aiTriangleVertexIndex = new int[iGrid * iGrid * 6];
+        int   iIndex                = 0;
+        for( int y = 0; y < iGrid; ++y )
+        {
+            for( int x = 0; x < iGrid; ++x )
+            {
+                int i00 = y * ( iGrid + 1 ) + x;
+                int i10 = i00 + 1;
+                int i01 = i00 + iGrid + 1;
+                int i11 = i01 + 1;
+                int[] aiQuad = { i00, i10, i11, i00, i11, i01 };
+                System.arraycopy( aiQuad, 0, aiTriangleVertexIndex, iIndex, 6 );
+                iIndex += 6;
+            }
+        }
+        // 横線、縦線、対角線
+        int iExpected = iGrid * ( iGrid + 1 ) * 2 + iGrid * iGrid;
+        assertEquals( iExpected, new EdgeBuilder().build( aiTriangleVertexIndex, iGrid * iGrid * 2 ) );
+    }
+}
@@ -0,0 +1,104 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FloatBufferBuilder のローカルユニットテスト
+ */
+public class FloatBufferBuilderTest
+{
+    private static final long ALLOCATION_PER_GROWTH = 1024;    // 伸長１回あたりの、ヒープの確保の上限（バッファのオブジェクトだけで、値の配列は確保しない）
+
+    // 伸長しても値は失われず、取り出したバッファは値の数ちょうどの、ネイティブのバイトオーダーのダイレクトバッファ
+    @Test
+    public void add_beyondCapacity_keepsValues()
+    {
+        FloatBufferBuilder builder = new FloatBufferBuilder( 4 );
+        for( int i = 0; i < 1000; ++i )
+        {
+            builder.add( i * 0.5f );
+        }
+        builder.add( new float[]{ -1.0f, -2.0f, -3.0f }, 1, 2 );
+        assertEquals( 1002, builder.size() );
+
+        FloatBuffer fb = builder.build();
+        assertTrue( fb.isDirect() );
+        assertEquals( ByteOrder.nativeOrder(), fb.order() );
+        assertEquals( 1002, fb.capacity() );
+        assertEquals( 0, fb.position() );
+        for( int i = 0; i < 1000; ++i )
+        {
+            assertEquals( i * 0.5f, fb.get( i ), 0.0f );
+        }
+        assertEquals( -2.0f, fb.get( 1000 ), 0.0f );
+        assertEquals( -3.0f, fb.get( 1001 ), 0.0f );
+    }
+
+    // 見積もった容量ちょうどの場合は、コピーせずにそのまま渡す
+    @Test
+    public void build_exactCapacity_returnsSameBuffer()
+    {
+        FloatBufferBuilder builder = new FloatBufferBuilder( 30 );
+        FloatBuffer        fb      = builder.getBuffer();
+        for( int i = 0; i < 10; ++i )
+        {
+            builder.add( i, i + 1, i + 2 );
+        }
+        assertSame( fb, builder.build() );
+    }
+
+    // 値の追加では、ヒープに値の配列を確保しない（伸長時のバッファのオブジェクト分だけ）
+    @Test
+    public void add_million_keepsHeapFlat()
+    {
+        ThreadMXBean threadmxbean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( threadmxbean instanceof com.sun.management.ThreadMXBean );
+        com.sun.management.ThreadMXBean sunthreadmxbean = (com.sun.management.ThreadMXBean)threadmxbean;
+        Assume.assumeTrue( sunthreadmxbean.isThreadAllocatedMemorySupported() );
+        sunthreadmxbean.setThreadAllocatedMemoryEnabled( true );
+
+        // ウォームアップ
+        for( int i = 0; i < 3; ++i )
+        {
+            fill( new FloatBufferBuilder( 16 ), 100000 ).build();
+        }
+
+        // 伸長の回数を数えながら追加する（容量16から1.5倍ずつなので、30回ほど）
+        long               lThreadId        = Thread.currentThread().getId();
+        long               lAllocatedBefore = sunthreadmxbean.getThreadAllocatedBytes( lThreadId );
+        FloatBufferBuilder builder          = new FloatBufferBuilder( 16 );
+        int                iCountGrowth     = 0;
+        for( int i = 0; i < 1000000; ++i )
+        {
+            int iCapacity = builder.capacity();
+            builder.add( i );
+            if( iCapacity != builder.capacity() )
+            {
+                ++iCountGrowth;
+            }
+        }
+        long lAllocatedAfter = sunthreadmxbean.getThreadAllocatedBytes( lThreadId );
+        assertEquals( 1000000, builder.size() );
+        assertTrue( 0 < iCountGrowth );
+        assertTrue( iCountGrowth * ALLOCATION_PER_GROWTH > lAllocatedAfter - lAllocatedBefore );
+    }
+
+    private static FloatBufferBuilder fill( FloatBufferBuilder builder, int iCount )
+    {
+        for( int i = 0; i < iCount; ++i )
+        {
+            builder.add( i );
+        }
+        return builder;
+    }
+}
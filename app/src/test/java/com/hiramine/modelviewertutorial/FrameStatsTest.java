@@ -0,0 +1,96 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FrameStats のローカルユニットテスト
+ */
+public class FrameStatsTest
+{
+    private static final long MILLIS = 1000L * 1000;
+
+    // 描画呼び出しの数は、フレームごとに数え直し、終了時に直前のフレームの値になる
+    @Test
+    public void drawCalls_countedPerFrame()
+    {
+        FrameStats framestats = new FrameStats( "test" );
+        framestats.beginFrame( 0 );
+        framestats.addDrawCall();
+        framestats.addDrawCalls( 4 );
+        assertEquals( 5, framestats.getDrawCallCountCurrent() );
+        assertEquals( 0, framestats.getDrawCallCount() );
+        framestats.endFrame( 3 * MILLIS );
+        assertEquals( 5, framestats.getDrawCallCount() );
+        assertEquals( 3 * MILLIS, framestats.getFrameNanos() );
+
+        framestats.beginFrame( 10 * MILLIS );
+        assertEquals( 0, framestats.getDrawCallCountCurrent() );
+        framestats.addDrawCall();
+        framestats.endFrame( 11 * MILLIS );
+        assertEquals( 1, framestats.getDrawCallCount() );
+    }
+
+    // クラスターの数は、フレームごとに数え直し、数えたフレームがあれば集計にも出す
+    @Test
+    public void clusters_countedPerFrame()
+    {
+        FrameStats framestats = new FrameStats( "test" );
+        framestats.beginFrame( 0 );
+        framestats.addClusters( 3, 5 );
+        framestats.addClusters( 1, 1 );
+        assertEquals( 4, framestats.getClusterDrawnCountCurrent() );
+        framestats.endFrame( 2 * MILLIS );
+        assertEquals( 4, framestats.getClusterDrawnCount() );
+        assertEquals( 6, framestats.getClusterCulledCount() );
+        assertEquals( "test : 1 frames, 0.0 draw calls/frame, 2.00 ms/frame, 4.0/6.0 clusters drawn/culled per frame", framestats.getSummary() );
+
+        framestats.beginFrame( 10 * MILLIS );
+        assertEquals( 0, framestats.getClusterDrawnCountCurrent() );
+        assertEquals( 0, framestats.getClusterCulledCountCurrent() );
+    }
+
+    // 詳細度の段階は、直前のフレームで選んだものを記録し、選ばないフレームでは-1に戻す
+    @Test
+    public void lodLevel_recordedPerFrame()
+    {
+        FrameStats framestats = new FrameStats( "test" );
+        framestats.beginFrame( 0 );
+        framestats.setLodLevel( 2 );
+        assertEquals( 2, framestats.getLodLevelCurrent() );
+        assertEquals( -1, framestats.getLodLevel() );
+        framestats.endFrame( 2 * MILLIS );
+        assertEquals( 2, framestats.getLodLevel() );
+        assertEquals( "test : 1 frames, 0.0 draw calls/frame, 2.00 ms/frame, LOD level 2", framestats.getSummary() );
+
+        framestats.beginFrame( 10 * MILLIS );
+        assertEquals( -1, framestats.getLodLevelCurrent() );
+        framestats.endFrame( 12 * MILLIS );
+        assertEquals( -1, framestats.getLodLevel() );
+    }
+
+    // ログは一定間隔ごとに出し、出したら集計をやり直す
+    @Test
+    public void endFrame_reportsOncePerInterval()
+    {
+        FrameStats framestats = new FrameStats( "test" );
+        for( int i = 0; i < 10; i++ )
+        {
+            framestats.beginFrame( i * 100 * MILLIS );
+            framestats.addDrawCalls( 2 );
+            assertFalse( framestats.endFrame( i * 100 * MILLIS + 4 * MILLIS ) );
+        }
+        assertEquals( "test : 10 frames, 2.0 draw calls/frame, 4.00 ms/frame", framestats.getSummary() );
+
+        framestats.beginFrame( 1000 * MILLIS );
+        framestats.addDrawCalls( 13 );
+        assertTrue( framestats.endFrame( 1004 * MILLIS ) );
+        assertEquals( "test : 0 frames, 0.0 draw calls/frame, 0.00 ms/frame", framestats.getSummary() );
+
+        framestats.beginFrame( 1500 * MILLIS );
+        assertFalse( framestats.endFrame( 1501 * MILLIS ) );
+    }
+}
@@ -0,0 +1,57 @@
+package com.hiramine.modelviewertutorial;
+
+import android.opengl.GLES30;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * GLES3ModelRenderer のローカルユニットテスト（GLの呼び出しは、android.jarの既定値で何もしない）
+ */
+public class GLES3ModelRendererTest
+{
+    // 共有化したモデルは、点の番号配列を持たないので、頂点を先頭から全て一度の呼び出しで描く
+    @Test
+    public void drawPoints_weldedModel_drawsAllVertices()
+    {
+        Model             model    = new Model( TestMeshes.makeGridSoup( 4 ) );
+        RecordingRenderer renderer = new RecordingRenderer();
+        renderer.getFrameStats().beginFrame( 0 );
+        renderer.drawPoints( model, model.getVertexCount(), model.getPointCount() );
+        assertEquals( 1, renderer.m_listDrawArrays.size() );
+        assertArrayEquals( new int[]{ GLES30.GL_POINTS, 0, 25 }, renderer.m_listDrawArrays.get( 0 ) );
+        assertEquals( 1, renderer.getFrameStats().getDrawCallCountCurrent() );
+    }
+
+    // 読み込み中のモデルは、点の番号配列で描き、頂点を先頭から描かない
+    @Test
+    public void drawPoints_appendableModel_drawsPointElements()
+    {
+        float[]           af3Vertex = TestMeshes.makeGridSoup( 4 );
+        AppendableModel   model     = new AppendableModel( 32 );
+        model.append( af3Vertex, 0, new float[af3Vertex.length / 3], 32 );
+        RecordingRenderer renderer  = new RecordingRenderer();
+        renderer.getFrameStats().beginFrame( 0 );
+        renderer.drawPoints( model, model.getVertexCount(), model.getPointCount() );
+        assertEquals( 0, renderer.m_listDrawArrays.size() );
+        assertEquals( 1, renderer.getFrameStats().getDrawCallCountCurrent() );
+    }
+
+    // 頂点の配列の描画を記録するレンダラー
+    private static class RecordingRenderer extends GLES3ModelRenderer
+    {
+        final List<int[]> m_listDrawArrays = new ArrayList<>();
+
+        @Override
+        protected void drawArrays( int iMode, int iFirst, int iCount )
+        {
+            m_listDrawArrays.add( new int[]{ iMode, iFirst, iCount } );
+            countDrawCall();
+        }
+    }
+}
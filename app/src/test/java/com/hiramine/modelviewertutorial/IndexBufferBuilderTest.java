@@ -0,0 +1,60 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * IndexBufferBuilder のローカルユニットテスト
+ */
+public class IndexBufferBuilderTest
+{
+    // 16ビットで表せる番号だけなら、16ビットの番号配列（65535以上の番号も、符号なしで読み戻せる）
+    @Test
+    public void add_smallIndices_staysShort()
+    {
+        IndexBufferBuilder builder = new IndexBufferBuilder( 4 );
+        for( int i = 0; i < 100; ++i )
+        {
+            builder.add( i * 600 );
+        }
+        builder.add( SubMeshSplitter.MAX_VERTEX_COUNT - 1 );
+        assertEquals( GL10.GL_UNSIGNED_SHORT, builder.getIndexType() );
+        assertEquals( SubMeshSplitter.MAX_VERTEX_COUNT - 1, builder.get( 100 ) );
+
+        Buffer buf = builder.build();
+        assertTrue( buf instanceof ShortBuffer );
+        assertTrue( buf.isDirect() );
+        assertEquals( 101, buf.capacity() );
+        assertEquals( 59400, ( (ShortBuffer)buf ).get( 99 ) & 0xFFFF );
+    }
+
+    // 16ビットで表せない番号が追加されたら、それまでの番号を保ったまま32ビットに広げる
+    @Test
+    public void set_largeIndex_widensToInt()
+    {
+        IndexBufferBuilder builder = new IndexBufferBuilder( 10 );
+        for( int i = 0; i < 9; ++i )
+        {
+            builder.set( i, 60000 + i );
+        }
+        builder.set( 9, 70000 );
+        assertEquals( OpenGLBaseRenderer.GL_UNSIGNED_INT, builder.getIndexType() );
+
+        Buffer buf = builder.build();
+        assertTrue( buf instanceof IntBuffer );
+        assertEquals( 10, buf.capacity() );
+        for( int i = 0; i < 9; ++i )
+        {
+            assertEquals( 60000 + i, ( (IntBuffer)buf ).get( i ) );
+        }
+        assertEquals( 70000, ( (IntBuffer)buf ).get( 9 ) );
+    }
+}
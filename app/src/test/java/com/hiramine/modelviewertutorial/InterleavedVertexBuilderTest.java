@@ -0,0 +1,115 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * VertexLayout、InterleavedVertexBuilder のローカルユニットテスト
+ */
+public class InterleavedVertexBuilderTest
+{
+    // 並びの１頂点のバイト数と、属性の位置は４バイト境界に揃う（座標値だけの並びは詰め物なし）
+    @Test
+    public void layout_strideAndOffsets()
+    {
+        VertexLayout layoutFloat = new VertexLayout( GL10.GL_FLOAT, false, true );
+        assertEquals( 16, layoutFloat.getStride() );
+        assertEquals( 12, layoutFloat.getColorOffset() );
+        assertEquals( -1, layoutFloat.getNormalOffset() );
+
+        VertexLayout layoutShort = new VertexLayout( GL10.GL_SHORT, false, true );
+        assertEquals( 12, layoutShort.getStride() );
+        assertEquals( 8, layoutShort.getColorOffset() );
+
+        VertexLayout layoutNormal = new VertexLayout( GL10.GL_FLOAT, true, true );
+        assertEquals( 20, layoutNormal.getStride() );
+        assertEquals( 12, layoutNormal.getNormalOffset() );
+        assertEquals( 16, layoutNormal.getColorOffset() );
+
+        assertEquals( 12, VertexLayout.PACKED_FLOAT.getStride() );
+        assertEquals( 6, VertexLayout.packed( GL10.GL_SHORT ).getStride() );
+        assertFalse( VertexLayout.PACKED_FLOAT.isInterleaved() );
+    }
+
+    // インターリーブした配列の座標値と色は、元の座標値と頂点の番号に戻る
+    @Test
+    public void build_roundTripsPositionAndId()
+    {
+        Model        model  = new Model( TestMeshes.makeGridSoup( 8 ) );
+        VertexLayout layout = model.getVertexLayout();
+        ByteBuffer   btb    = (ByteBuffer)model.getInterleavedVertexBuffer();
+        assertEquals( model.getVertexCount() * layout.getStride(), btb.capacity() );
+        for( int i = 0; i < model.getVertexCount(); ++i )
+        {
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                assertEquals( model.getVertexValue( i, i3 ), InterleavedVertexBuilder.getPosition( btb, layout, i, i3 ), 0.0f );
+            }
+            assertEquals( i, InterleavedVertexBuilder.getId( btb, layout, i ) );
+        }
+    }
+
+    // 量子化したモデルは、shortの座標値の１頂点12バイトの並びになる
+    @Test
+    public void build_quantized_usesShortLayout()
+    {
+        Model model = new Model( TestMeshes.makeGridSoup( 8 ) );
+        model.quantize();
+        VertexLayout layout = model.getVertexLayout();
+        assertEquals( GL10.GL_SHORT, layout.getPositionType() );
+        assertEquals( 12, layout.getStride() );
+
+        ByteBuffer  btb      = (ByteBuffer)model.getInterleavedVertexBuffer();
+        ShortBuffer sbVertex = (ShortBuffer)model.getVertexBuffer();
+        for( int i = 0; i < model.getVertexCount() * 3; ++i )
+        {
+            assertEquals( sbVertex.get( i ), InterleavedVertexBuilder.getPosition( btb, layout, i / 3, i % 3 ), 0.0f );
+        }
+    }
+
+    // 分割しないモデルの部分メッシュは、インターリーブした配列をそのまま共有する
+    @Test
+    public void subMesh_whole_sharesInterleavedBuffer()
+    {
+        Model   model   = new Model( TestMeshes.makeGridSoup( 8 ) );
+        SubMesh subMesh = model.getTriangleSubMeshes( false )[0];
+        assertSame( model.getInterleavedVertexBuffer(), subMesh.getVertexBuffer() );
+        assertEquals( model.getVertexLayout().getStride(), subMesh.getVertexLayout().getStride() );
+    }
+
+    // 分割した部分メッシュのインターリーブした配列も、元の座標値と頂点の番号を指す
+    @Test
+    public void subMesh_split_keepsLayout()
+    {
+        Model        model  = new Model( TestMeshes.makeGridSoup( 20 ) );
+        VertexLayout layout = model.getVertexLayout();
+
+        SubMesh[] aSubMesh = SubMeshSplitter.split( model, false, 64, model.getInterleavedVertexBuffer(), layout );
+        assertTrue( 1 < aSubMesh.length );
+        for( SubMesh subMesh : aSubMesh )
+        {
+            ByteBuffer  btbLocal = (ByteBuffer)subMesh.getVertexBuffer();
+            ShortBuffer sbTri    = (ShortBuffer)subMesh.getIndexBuffer();
+            assertTrue( 64 * layout.getStride() >= btbLocal.capacity() );
+            for( int i = 0; i < subMesh.getElementCount() * 3; ++i )
+            {
+                int iGlobal = model.getTriangleVertexIndex( subMesh.getFirstElement() + i / 3, i % 3 );
+                int iLocal  = sbTri.get( i ) & 0xFFFF;
+                for( int i3 = 0; i3 < 3; ++i3 )
+                {
+                    assertEquals( model.getVertexValue( iGlobal, i3 ), InterleavedVertexBuilder.getPosition( btbLocal, layout, iLocal, i3 ), 0.0f );
+                }
+                assertEquals( iGlobal, InterleavedVertexBuilder.getId( btbLocal, layout, iLocal ) );
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MeshSimplifier、LodChain のローカルユニットテスト
+ */
+public class MeshSimplifierTest
+{
+    // 平面は、誤差なく簡略化でき、境界の平面で輪郭も保たれる
+    @Test
+    public void simplify_plane_keepsOutlineWithoutError()
+    {
+        Model          model      = new Model( TestMeshes.makeGridSoup( 40 ) );
+        MeshSimplifier simplifier = new MeshSimplifier( model );
+        assertTrue( simplifier.simplify( model.getTriangleCount() / 10, null ) );
+        assertTrue( model.getTriangleCount() / 10 >= simplifier.getTriangleCount() );
+        assertEquals( 0.0f, simplifier.getError(), 1e-3f );
+
+        Model modelSimple = simplifier.buildModel();
+        assertEquals( simplifier.getTriangleCount(), modelSimple.getTriangleCount() );
+        assertTrue( model.getVertexCount() > modelSimple.getVertexCount() );
+        assertArrayEquals( model.getBounds(), modelSimple.getBounds(), 1e-3f );
+        for( int i = 0; i < modelSimple.getTriangleCount() * 3; i++ )
+        {
+            assertTrue( modelSimple.getVertexCount() > modelSimple.getTriangleVertexIndex( i / 3, i % 3 ) );
+        }
+    }
+
+    // 球の簡略化の誤差の目安は、頂点の球面からのずれ以上で、三角形の向きは反転しない
+    @Test
+    public void simplify_sphere_errorBoundsDeviation()
+    {
+        Model          model      = new Model( makeSphereSoup( 64, 32 ) );
+        MeshSimplifier simplifier = new MeshSimplifier( model );
+        assertTrue( simplifier.simplify( model.getTriangleCount() / 4, null ) );
+        float fError = simplifier.getError();
+        assertTrue( 0.0f < fError );
+        assertTrue( 0.1f > fError );
+
+        Model modelSimple = simplifier.buildModel();
+        for( int iIndexVertex = 0; iIndexVertex < modelSimple.getVertexCount(); iIndexVertex++ )
+        {
+            float fX = modelSimple.getVertex( iIndexVertex, 0 );
+            float fY = modelSimple.getVertex( iIndexVertex, 1 );
+            float fZ = modelSimple.getVertex( iIndexVertex, 2 );
+            assertEquals( 1.0f, (float)Math.sqrt( fX * fX + fY * fY + fZ * fZ ), fError + 1e-3f );
+        }
+        for( int iIndexTriangle = 0; iIndexTriangle < modelSimple.getTriangleCount(); iIndexTriangle++ )
+        { // 外向きの三角形のまま
+            float[] af9 = new float[9];
+            for( int i = 0; i < 9; i++ )
+            {
+                af9[i] = modelSimple.getVertex( modelSimple.getTriangleVertexIndex( iIndexTriangle, i / 3 ), i % 3 );
+            }
+            float fNX = ( af9[4] - af9[1] ) * ( af9[8] - af9[2] ) - ( af9[5] - af9[2] ) * ( af9[7] - af9[1] );
+            float fNY = ( af9[5] - af9[2] ) * ( af9[6] - af9[0] ) - ( af9[3] - af9[0] ) * ( af9[8] - af9[2] );
+            float fNZ = ( af9[3] - af9[0] ) * ( af9[7] - af9[1] ) - ( af9[4] - af9[1] ) * ( af9[6] - af9[0] );
+            assertTrue( 0.0f < fNX * ( af9[0] + af9[3] + af9[6] ) + fNY * ( af9[1] + af9[4] + af9[7] ) + fNZ * ( af9[2] + af9[5] + af9[8] ) );
+        }
+    }
+
+    // 量子化したモデルからは、同じ縮尺と中心で量子化したモデルを作る
+    @Test
+    public void buildModel_quantized_sharesScaleAndOffset()
+    {
+        Model model = new Model( makeSphereSoup( 32, 16 ) );
+        model.quantize();
+        MeshSimplifier simplifier = new MeshSimplifier( model );
+        simplifier.simplify( model.getTriangleCount() / 2, null );
+        Model modelSimple = simplifier.buildModel();
+        assertTrue( modelSimple.isQuantized() );
+        assertSame( model.getVertexScale(), modelSimple.getVertexScale() );
+        assertSame( model.getVertexOffset(), modelSimple.getVertexOffset() );
+        assertArrayEquals( model.getBounds(), modelSimple.getBounds(), 0.05f );
+    }
+
+    // 段階は、三角形が減るほど誤差が大きく、画面上の誤差が１ピクセル未満の最も粗い段階を選ぶ
+    @Test
+    public void lodChain_selectsCoarsestLevelUnderOnePixel()
+    {
+        Model    model    = new Model( makeSphereSoup( 160, 80 ) );
+        LodChain lodchain = LodChain.build( model, LodChain.DEFAULT_INTERACTIVE_TRIANGLE_BUDGET, null );
+        assertNotNull( lodchain );
+        assertEquals( LodChain.LEVEL_RATIOS.length + 1, lodchain.getLevelCount() );
+        assertSame( model, lodchain.getModel( 0 ) );
+        assertEquals( 0.0f, lodchain.getError( 0 ), 0.0f );
+        for( int iLevel = 1; iLevel < lodchain.getLevelCount(); iLevel++ )
+        {
+            assertTrue( (int)( model.getTriangleCount() * LodChain.LEVEL_RATIOS[iLevel - 1] ) >= lodchain.getModel( iLevel ).getTriangleCount() );
+            assertTrue( lodchain.getError( iLevel - 1 ) <= lodchain.getError( iLevel ) );
+        }
+
+        int iLevelLast = lodchain.getLevelCount() - 1;
+        assertEquals( iLevelLast, lodchain.selectLevel( 0.5f / lodchain.getError( iLevelLast ) ) );
+        assertEquals( 1, lodchain.selectLevel( 0.99f / lodchain.getError( 1 ) ) );
+        assertEquals( 0, lodchain.selectLevel( 1.01f / lodchain.getError( 1 ) ) );
+    }
+
+    // 最も粗い段階がトラッキング中の描画の上限を超える場合は、上限まで簡略化した段階を加え、上限以下の最も細かい段階を選ぶ
+    @Test
+    public void lodChain_addsLevelWithinTriangleBudget()
+    {
+        Model    model    = new Model( makeSphereSoup( 160, 80 ) );
+        int      iBudget  = 1000;
+        LodChain lodchain = LodChain.build( model, iBudget, null );
+        assertNotNull( lodchain );
+        assertEquals( LodChain.LEVEL_RATIOS.length + 2, lodchain.getLevelCount() );
+        int iLevelLast = lodchain.getLevelCount() - 1;
+        assertTrue( iBudget >= lodchain.getModel( iLevelLast ).getTriangleCount() );
+        assertEquals( iLevelLast, lodchain.selectLevelWithin( iBudget ) );
+        assertEquals( 1, lodchain.selectLevelWithin( lodchain.getModel( 1 ).getTriangleCount() ) );
+        assertEquals( 0, lodchain.selectLevelWithin( model.getTriangleCount() ) );
+        assertEquals( iLevelLast, lodchain.selectLevelWithin( 1 ) );
+    }
+
+    // 三角形が少ないモデルや、中止された場合は、段階を作らない
+    @Test
+    public void lodChain_smallOrCancelled_returnsNull()
+    {
+        assertNull( LodChain.build( new Model( TestMeshes.makeGridSoup( 10 ) ), LodChain.DEFAULT_INTERACTIVE_TRIANGLE_BUDGET, null ) );
+        MeshSimplifier.CancelSignal signal = new MeshSimplifier.CancelSignal()
+        {
+            @Override
+            public boolean isCancelled()
+            {
+                return true;
+            }
+        };
+        assertNull( LodChain.build( new Model( makeSphereSoup( 160, 80 ) ), LodChain.DEFAULT_INTERACTIVE_TRIANGLE_BUDGET, signal ) );
+    }
+
+    // 簡略化の作業配列が空きヒープの上限を超えるモデルは、段階を作らない
+    @Test
+    public void lodChain_heapTooSmall_returnsNull()
+    {
+        Model model      = new Model( makeSphereSoup( 160, 80 ) );
+        long  lHeapBytes = MeshSimplifier.estimateHeapBytes( model.getVertexCount(), model.getTriangleCount() );
+        assertNull( LodChain.build( model, LodChain.DEFAULT_INTERACTIVE_TRIANGLE_BUDGET, null, lHeapBytes ) );
+        assertNotNull( LodChain.build( model, LodChain.DEFAULT_INTERACTIVE_TRIANGLE_BUDGET, null, (long)( lHeapBytes / LodChain.MAX_HEAP_RATIO ) ) );
+    }
+
+    // 半径１の球（経度iSlice分割、緯度iStack分割）を、外向きの三角形ごとに３頂点を持つ頂点配列にする（極では、潰れた三角形を除く）
+    private static float[] makeSphereSoup( int iSlice, int iStack )
+    {
+        float[] af3Vertex = new float[iSlice * iStack * 2 * 9];
+        int     i         = 0;
+        for( int iLat = 0; iLat < iStack; ++iLat )
+        {
+            for( int iLon = 0; iLon < iSlice; ++iLon )
+            {
+                float[] af3A = spherePoint( iLon, iLat, iSlice, iStack );
+                float[] af3B = spherePoint( iLon + 1, iLat, iSlice, iStack );
+                float[] af3C = spherePoint( iLon + 1, iLat + 1, iSlice, iStack );
+                float[] af3D = spherePoint( iLon, iLat + 1, iSlice, iStack );
+                if( 0 != iLat )
+                {
+                    i = put( af3Vertex, i, af3A, af3C, af3B );
+                }
+                if( iStack - 1 != iLat )
+                {
+                    i = put( af3Vertex, i, af3A, af3D, af3C );
+                }
+            }
+        }
+        float[] af3Result = new float[i];
+        System.arraycopy( af3Vertex, 0, af3Result, 0, i );
+        return af3Result;
+    }
+
+    private static float[] spherePoint( int iLon, int iLat, int iSlice, int iStack )
+    {
+        if( 0 == iLat || iStack == iLat )
+        { // 極は、経度によらず同じ座標値にする
+            return new float[]{ 0.0f, 0.0f, ( 0 == iLat ) ? 1.0f : -1.0f };
+        }
+        double dTheta = Math.PI * iLat / iStack;
+        double dPhi   = 2.0 * Math.PI * ( iLon % iSlice ) / iSlice;
+        return new float[]{ (float)( Math.sin( dTheta ) * Math.cos( dPhi ) ), (float)( Math.sin( dTheta ) * Math.sin( dPhi ) ), (float)Math.cos( dTheta ) };
+    }
+
+    private static int put( float[] af3Vertex, int i, float[] af3A, float[] af3B, float[] af3C )
+    {
+        for( float[] af3 : new float[][]{ af3A, af3B, af3C } )
+        {
+            af3Vertex[i++] = af3[0];
+            af3Vertex[i++] = af3[1];
+            af3Vertex[i++] = af3[2];
+        }
+        return i;
+    }
+}
@@ -0,0 +1,214 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ModelCache のローカルユニットテスト
+ */
+public class ModelCacheTest
+{
+    private static final int COUNT_TRIANGLE = 1000;
+
+    private File m_dirCache;
+    private File m_fileSource;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        m_dirCache = File.createTempFile( "cache", "" );
+        m_dirCache.delete();
+        m_fileSource = File.createTempFile( "source", ".stl" );
+        writeSource( m_fileSource, 1 );
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] afile = m_dirCache.listFiles();
+        if( null != afile )
+        {
+            for( File file : afile )
+            {
+                file.delete();
+            }
+        }
+        m_dirCache.delete();
+        m_fileSource.delete();
+    }
+
+    // 保存したモデルは、同じ内容で取得できる
+    @Test
+    public void putAndGet_roundTrip()
+    {
+        ModelCache modelcache = new ModelCache( m_dirCache, 1L << 30 );
+        Model      model      = makeModel( COUNT_TRIANGLE, 7 );
+        assertNull( modelcache.get( m_fileSource ) );
+        assertTrue( modelcache.put( m_fileSource, model ) );
+
+        Model modelCached = modelcache.get( m_fileSource );
+        assertNotNull( modelCached );
+        assertEquals( model.getVertexCount(), modelCached.getVertexCount() );
+        assertEquals( model.getTriangleCount(), modelCached.getTriangleCount() );
+        assertEquals( model.getEdgeCount(), modelCached.getEdgeCount() );
+        assertArrayEquals( model.getBounds(), modelCached.getBounds(), 0.0f );
+        for( int i = 0; i < model.getVertexCount() * 3; ++i )
+        {
+            assertEquals( model.getVertexValue( i / 3, i % 3 ), modelCached.getVertexValue( i / 3, i % 3 ), 0.0f );
+        }
+        assertEquals( model.getIndexType(), modelCached.getIndexType() );
+        for( int i = 0; i < model.getTriangleCount() * 3; ++i )
+        {
+            assertEquals( model.getTriangleVertexIndex( i / 3, i % 3 ), modelCached.getTriangleVertexIndex( i / 3, i % 3 ) );
+        }
+        for( int i = 0; i < model.getEdgeCount() * 2; ++i )
+        {
+            assertEquals( model.getEdgeVertexIndex( i / 2, i % 2 ), modelCached.getEdgeVertexIndex( i / 2, i % 2 ) );
+        }
+    }
+
+    // 量子化したモデルは、量子化したまま保存し、同じ縮尺と中心で取得できる
+    @Test
+    public void putAndGet_quantized_roundTrip()
+    {
+        ModelCache modelcache = new ModelCache( m_dirCache, 1L << 30 );
+        Model      model      = makeModel( COUNT_TRIANGLE, 7 );
+        model.quantize();
+        assertTrue( modelcache.put( m_fileSource, model ) );
+
+        Model modelCached = modelcache.get( m_fileSource );
+        assertNotNull( modelCached );
+        assertTrue( modelCached.isQuantized() );
+        assertArrayEquals( model.getVertexScale(), modelCached.getVertexScale(), 0.0f );
+        assertArrayEquals( model.getVertexOffset(), modelCached.getVertexOffset(), 0.0f );
+        assertEquals( model.getQuantizeError(), modelCached.getQuantizeError(), 0.0f );
+        for( int i = 0; i < model.getVertexCount() * 3; ++i )
+        {
+            assertEquals( model.getVertex( i / 3, i % 3 ), modelCached.getVertex( i / 3, i % 3 ), 0.0f );
+        }
+    }
+
+    // 稜線を作成していないモデルは稜線を保存せず、読み込んだ後で作成する
+    @Test
+    public void putAndGet_withoutEdges_buildsEdgesLater()
+    {
+        ModelCache modelcache = new ModelCache( m_dirCache, 1L << 30 );
+        Model      model      = makeModel( COUNT_TRIANGLE, 7 );
+        model.discardEdges();
+        assertTrue( modelcache.put( m_fileSource, model ) );
+        assertFalse( model.hasEdges() );
+
+        Model modelCached = modelcache.get( m_fileSource );
+        assertNotNull( modelCached );
+        assertFalse( modelCached.hasEdges() );
+        assertEquals( model.getEdgeCount(), modelCached.getEdgeCount() );
+        assertTrue( modelCached.hasEdges() );
+    }
+
+    // 元ファイルが更新されたら、キャッシュは使わない
+    @Test
+    public void get_sourceModified_returnsNull() throws Exception
+    {
+        ModelCache modelcache = new ModelCache( m_dirCache, 1L << 30 );
+        assertTrue( modelcache.put( m_fileSource, makeModel( COUNT_TRIANGLE, 7 ) ) );
+        writeSource( m_fileSource, 2 );
+        assertNull( modelcache.get( m_fileSource ) );
+    }
+
+    // 上限を超えたら、最も長く使われていないキャッシュから削除する
+    @Test
+    public void put_overLimit_evictsLeastRecentlyUsed() throws Exception
+    {
+        Model  model       = makeModel( COUNT_TRIANGLE, 7 );
+        File[] afileSource = new File[3];
+        for( int i = 0; i < afileSource.length; ++i )
+        {
+            afileSource[i] = File.createTempFile( "source" + i, ".stl" );
+            writeSource( afileSource[i], i );
+        }
+        try
+        {
+            ModelCache modelcache = new ModelCache( m_dirCache, Long.MAX_VALUE );
+            modelcache.put( afileSource[0], model );
+            long lSizeEntry = modelcache.getTotalBytes();
+
+            // ２つ分の上限で、３つ保存する（1番目を保存した後で、0番目を使う）
+            // 使った順番は索引ファイルに記録するので、キャッシュファイルの更新時刻や、別のインスタンスには左右されない
+            modelcache = new ModelCache( m_dirCache, lSizeEntry * 2 );
+            modelcache.put( afileSource[1], model );
+            Model modelCached = modelcache.get( afileSource[0] );
+            assertNotNull( modelCached );
+            modelCached.release();
+            modelcache.getCacheFile( afileSource[0] ).setLastModified( 1000L );
+            modelcache.getCacheFile( afileSource[1] ).setLastModified( 2000L );
+            modelcache = new ModelCache( m_dirCache, lSizeEntry * 2 );
+            modelcache.put( afileSource[2], model );
+
+            assertTrue( modelcache.getTotalBytes() <= lSizeEntry * 2 );
+            assertTrue( modelcache.getCacheFile( afileSource[0] ).exists() );
+            assertFalse( modelcache.getCacheFile( afileSource[1] ).exists() );
+            assertTrue( modelcache.getCacheFile( afileSource[2] ).exists() );
+        }
+        finally
+        {
+            for( File file : afileSource )
+            {
+                file.delete();
+            }
+        }
+    }
+
+    // ヘッダーの確認を通っても中身が壊れているファイルは、削除してnullを返し、保存し直せる
+    @Test
+    public void get_corruptIndices_deletesEntry() throws Exception
+    {
+        ModelCache modelcache = new ModelCache( m_dirCache, 1L << 30 );
+        Model      model      = makeModel( COUNT_TRIANGLE, 7 );
+        model.discardEdges();
+        assertTrue( modelcache.put( m_fileSource, model ) );
+
+        // 最後の三角形の頂点番号を、範囲外にする
+        File             fileCache = modelcache.getCacheFile( m_fileSource );
+        RandomAccessFile raf       = new RandomAccessFile( fileCache, "rw" );
+        raf.seek( raf.length() - 2 );
+        raf.write( new byte[]{ (byte)0xFF, (byte)0xFF } );
+        raf.close();
+
+        assertNull( modelcache.get( m_fileSource ) );
+        assertFalse( fileCache.exists() );
+        assertTrue( modelcache.put( m_fileSource, model ) );
+        assertNotNull( modelcache.get( m_fileSource ) );
+    }
+
+    private static Model makeModel( int iCountTriangle, long lSeed )
+    {
+        Random  random    = new Random( lSeed );
+        float[] af3Vertex = new float[iCountTriangle * 9];
+        for( int i = 0; i < af3Vertex.length; ++i )
+        {
+            af3Vertex[i] = random.nextFloat() * 200.0f - 100.0f;
+        }
+        return new Model( af3Vertex );
+    }
+
+    // キーの一部となるサイズが変わるように、内容を書き換える
+    private static void writeSource( File file, int iSize ) throws Exception
+    {
+        FileOutputStream fos = new FileOutputStream( file );
+        fos.write( new byte[iSize] );
+        fos.close();
+    }
+}
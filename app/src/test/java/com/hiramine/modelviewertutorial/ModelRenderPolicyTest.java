@@ -0,0 +1,152 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ModelRenderPolicy のローカルユニットテスト
+ */
+public class ModelRenderPolicyTest
+{
+    // モデルをセットすると、前のモデルの転送した配列を削除してから、新しいモデルの配列を転送し、差し替えたモデルの参照を解除する
+    @Test
+    public void setModel_uploadsNewAndReleasesOld()
+    {
+        RecordingUploader uploader = new RecordingUploader();
+        ModelRenderPolicy policy   = new ModelRenderPolicy( uploader, true );
+        CountingModel     model    = new CountingModel();
+
+        policy.setModel( model );
+        assertSame( model, policy.getModel() );
+        assertEquals( 1, uploader.m_iCountDeleteAll );
+        assertEquals( 1, uploader.m_iCountUploadVertices );
+        assertEquals( 1, uploader.m_listUploaded.size() );
+        model.release();    // 作成した側の参照を解除しても、差し替えるまではバッファを返さない
+        assertEquals( 0, model.m_iCountReleaseBuffers );
+
+        policy.setModel( model );    // 同じモデルは、転送し直さない
+        assertEquals( 1, uploader.m_iCountDeleteAll );
+
+        policy.setModel( null );
+        assertNull( policy.getModel() );
+        assertEquals( 2, uploader.m_iCountDeleteAll );
+        assertEquals( 1, model.m_iCountReleaseBuffers );
+    }
+
+    // 転送できない場合（GLの準備ができていない場合）や、読み込み中のモデルは、転送しない
+    @Test
+    public void setModel_uploadDisabledOrAppendable_doesNotUpload()
+    {
+        RecordingUploader uploader = new RecordingUploader();
+        ModelRenderPolicy policy   = new ModelRenderPolicy( uploader, true );
+        uploader.m_bUploadEnabled = false;
+        policy.setModel( new Model( TestMeshes.makeGridSoup( 4 ) ) );
+        assertEquals( 0, uploader.m_iCountUploadVertices );
+
+        uploader.m_bUploadEnabled = true;
+        float[]         af3Vertex = TestMeshes.makeGridSoup( 4 );
+        AppendableModel model     = new AppendableModel( 32 );
+        model.append( af3Vertex, 0, new float[af3Vertex.length / 3], 32 );
+        policy.setModel( model );
+        assertFalse( policy.isUploadedModel() );
+        assertEquals( 0, uploader.m_iCountUploadVertices );
+    }
+
+    // 陰影付きの部分メッシュが作り直されると、前の部分メッシュの転送した配列を削除する
+    @Test
+    public void getLitTriangleSubMeshes_rebuilt_deletesPrevious()
+    {
+        RecordingUploader uploader = new RecordingUploader();
+        ModelRenderPolicy policy   = new ModelRenderPolicy( uploader, true );
+        Model             model    = new Model( TestMeshes.makeGridSoup( 4 ) );
+        policy.setModel( model );
+
+        SubMesh[] aSubMeshFirst = policy.getLitTriangleSubMeshes( model, 30.0f );
+        assertSame( aSubMeshFirst, policy.getLitTriangleSubMeshes( model, 30.0f ) );
+        assertEquals( 0, uploader.m_listDeleted.size() );
+
+        policy.getLitTriangleSubMeshes( model, 60.0f );
+        assertEquals( aSubMeshFirst.length, uploader.m_listDeleted.size() );
+        assertSame( aSubMeshFirst[0], uploader.m_listDeleted.get( 0 ) );
+    }
+
+    // トラッキング中で、三角形の数が上限を超える場合だけ、トラッキング中の描画にする
+    @Test
+    public void isInteractiveRendering_onlyTrackingOverBudget()
+    {
+        ModelRenderPolicy policy = new ModelRenderPolicy( new RecordingUploader(), true );
+        Model             model  = new Model( TestMeshes.makeGridSoup( 4 ) );
+        policy.setInteractiveTriangleBudget( model.getTriangleCount() - 1 );
+        assertTrue( policy.isInteractiveRendering( model, OpenGLTrackRenderer.ETrackingMode.TM_ROTATE ) );
+        assertFalse( policy.isInteractiveRendering( model, OpenGLTrackRenderer.ETrackingMode.TM_NONE ) );
+        policy.setInteractiveTriangleBudget( model.getTriangleCount() );
+        assertFalse( policy.isInteractiveRendering( model, OpenGLTrackRenderer.ETrackingMode.TM_ROTATE ) );
+    }
+
+    // 転送と削除を記録する転送先
+    private static class RecordingUploader implements ModelRenderPolicy.Uploader
+    {
+        boolean             m_bUploadEnabled = true;
+        int                 m_iCountUploadVertices;
+        int                 m_iCountDeleteAll;
+        final List<SubMesh> m_listUploaded   = new ArrayList<>();
+        final List<SubMesh> m_listDeleted    = new ArrayList<>();
+
+        @Override
+        public boolean isUploadEnabled()
+        {
+            return m_bUploadEnabled;
+        }
+
+        @Override
+        public void uploadVertices( Buffer bufVertex, VertexLayout layout )
+        {
+            m_iCountUploadVertices++;
+        }
+
+        @Override
+        public void uploadSubMesh( SubMesh submesh )
+        {
+            m_listUploaded.add( submesh );
+        }
+
+        @Override
+        public void deleteSubMesh( SubMesh submesh )
+        {
+            m_listDeleted.add( submesh );
+        }
+
+        @Override
+        public void deleteAll()
+        {
+            m_iCountDeleteAll++;
+        }
+    }
+
+    // バッファをアリーナに返した回数を数えるモデル
+    private static class CountingModel extends Model
+    {
+        int m_iCountReleaseBuffers;
+
+        CountingModel()
+        {
+            super( TestMeshes.makeGridSoup( 4 ) );
+        }
+
+        @Override
+        protected void releaseBuffers()
+        {
+            m_iCountReleaseBuffers++;
+            super.releaseBuffers();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * NormalGenerator のローカルユニットテスト
+ */
+public class NormalGeneratorTest
+{
+    // 面法線は、三角形の向きの単位ベクトル（立方体の各面の外向き）
+    @Test
+    public void makeFacetNormals_cube_pointsOutward()
+    {
+        Model           model     = new Model( makeCubeSoup() );
+        NormalGenerator generator = new NormalGenerator();
+        FloatBuffer     fbNormal  = generator.makeFacetNormals( model, null );
+        assertEquals( 0, generator.getReusedCount() );
+        for( int i = 0; i < model.getTriangleCount(); ++i )
+        {
+            float fDot = 0.0f;
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                float fCenter = ( model.getVertex( model.getTriangleVertexIndex( i, 0 ), i3 )
+                        + model.getVertex( model.getTriangleVertexIndex( i, 1 ), i3 )
+                        + model.getVertex( model.getTriangleVertexIndex( i, 2 ), i3 ) ) / 3.0f;
+                fDot += fCenter * fbNormal.get( i * 3 + i3 );
+            }
+            assertEquals( 1.0f, length( fbNormal, i ), 1.0e-6f );
+            assertTrue( 0.0f < fDot );
+        }
+    }
+
+    // ファイルの面法線は、単位ベクトルなら使い、０ベクトルなら座標値から計算する
+    @Test
+    public void makeFacetNormals_reusesValidFileNormals()
+    {
+        Model       model        = new Model( makeCubeSoup() );
+        FloatBuffer fbFileNormal = ByteBuffer.allocateDirect( model.getTriangleCount() * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+        for( int i = 0; i < model.getTriangleCount(); i += 2 )
+        { // 偶数番目の三角形だけ、わざと違う向きの面法線を入れる
+            fbFileNormal.put( i * 3 + 1, -1.0f );
+        }
+
+        NormalGenerator generator = new NormalGenerator();
+        FloatBuffer     fbNormal  = generator.makeFacetNormals( model, fbFileNormal );
+        FloatBuffer     fbCompute = new NormalGenerator().makeFacetNormals( model, null );
+        assertEquals( model.getTriangleCount() / 2, generator.getReusedCount() );
+        for( int i = 0; i < model.getTriangleCount(); ++i )
+        {
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                float fExpected = ( 0 == i % 2 ) ? fbFileNormal.get( i * 3 + i3 ) : fbCompute.get( i * 3 + i3 );
+                assertEquals( fExpected, fbNormal.get( i * 3 + i3 ), 1.0e-6f );
+            }
+        }
+    }
+
+    // 立方体の稜線は90度なので、折れ角が30度なら面ごとに頂点が分かれ、180度なら分かれない
+    @Test
+    public void smooth_cube_splitsAtCreases()
+    {
+        Model       model         = new Model( makeCubeSoup() );
+        FloatBuffer fbFacetNormal = new NormalGenerator().makeFacetNormals( model, null );
+        assertEquals( 8, model.getVertexCount() );
+
+        NormalGenerator generatorSharp = new NormalGenerator();
+        assertEquals( 24, generatorSharp.smooth( model, fbFacetNormal, 30.0f ) );
+        for( int i = 0; i < 24; ++i )
+        { // 面の向きの法線（どれか一つの軸の成分だけを持つ）
+            int iNormal = generatorSharp.getVertexNormalArray()[i];
+            int iAxis   = 0;
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                iAxis += ( VertexLayout.NORMAL_SCALE == Math.abs( NormalGenerator.unpackNormal( iNormal, i3 ) ) ) ? 1 : 0;
+            }
+            assertEquals( 1, iAxis );
+        }
+
+        NormalGenerator generatorSmooth = new NormalGenerator();
+        assertEquals( 8, generatorSmooth.smooth( model, fbFacetNormal, 180.0f ) );
+        for( int i = 0; i < model.getTriangleCount() * 3; ++i )
+        { // 三角形の角は、元の頂点と同じ頂点を指す
+            int iVertex = generatorSmooth.getCornerVertexArray()[i];
+            assertEquals( model.getTriangleVertexIndex( i / 3, i % 3 ), generatorSmooth.getSourceVertexArray()[iVertex] );
+        }
+    }
+
+    // 並列処理の範囲に分けても、法線と頂点の分かれ方は変わらない（平面の格子は、どの折れ角でも頂点が分かれない）
+    @Test
+    public void smooth_largeGrid_keepsWeldedVertices()
+    {
+        int         iCount        = 200;    // 80000三角形（並列処理の範囲に分かれる）
+        Model       model         = new Model( TestMeshes.makeGridSoup( iCount ) );
+        FloatBuffer fbFacetNormal = new NormalGenerator().makeFacetNormals( model, null );
+        assertTrue( NormalGenerator.PARALLEL_RANGE_TRIANGLE < model.getTriangleCount() );
+
+        NormalGenerator generator = new NormalGenerator();
+        assertEquals( model.getVertexCount(), generator.smooth( model, fbFacetNormal, 0.0f ) );
+        for( int i = 0; i < model.getVertexCount(); ++i )
+        {
+            assertEquals( NormalGenerator.packNormal( 0.0f, 0.0f, 1.0f ), generator.getVertexNormalArray()[i] );
+        }
+    }
+
+    // 量子化したモデルの頂点法線は、量子化した座標値の空間の向き（モデル行列の縮尺で、元の向きに戻る）
+    @Test
+    public void smooth_quantized_scalesNormals()
+    {
+        Model model = new Model( makeCubeSoup() );
+        model.quantize();
+        FloatBuffer     fbFacetNormal = new NormalGenerator().makeFacetNormals( model, null );
+        NormalGenerator generator     = new NormalGenerator();
+        assertEquals( 24, generator.smooth( model, fbFacetNormal, 30.0f ) );
+
+        float[] af3Scale = model.getVertexScale();
+        for( int i = 0; i < 24; ++i )
+        {
+            int     iNormal = generator.getVertexNormalArray()[i];
+            float[] af3     = new float[3];
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                af3[i3] = NormalGenerator.unpackNormal( iNormal, i3 ) * af3Scale[i3];
+            }
+            float fLength = (float)Math.sqrt( af3[0] * af3[0] + af3[1] * af3[1] + af3[2] * af3[2] );
+            float fMax    = Math.max( Math.abs( af3[0] ), Math.max( Math.abs( af3[1] ), Math.abs( af3[2] ) ) );
+            assertEquals( 1.0f, fMax / fLength, 1.0e-3f );
+        }
+    }
+
+    private static float length( FloatBuffer fb, int iIndexTriangle )
+    {
+        float fX = fb.get( iIndexTriangle * 3 );
+        float fY = fb.get( iIndexTriangle * 3 + 1 );
+        float fZ = fb.get( iIndexTriangle * 3 + 2 );
+        return (float)Math.sqrt( fX * fX + fY * fY + fZ * fZ );
+    }
+
+    // 中心が原点で、一辺が２の立方体を、外向きの三角形ごとに３頂点を持つ頂点配列にする
+    private static float[] makeCubeSoup()
+    {
+        float[] af3Vertex = new float[12 * 9];
+        float[] af2Corner = { -1, -1, 1, -1, 1, 1, -1, -1, 1, 1, -1, 1 };
+        int     i         = 0;
+        for( int iAxis = 0; iAxis < 3; ++iAxis )
+        {
+            for( int iSign = -1; iSign <= 1; iSign += 2 )
+            {
+                // 面内の２軸（u×vが外向きになる順）
+                int iU = ( 0 < iSign ) ? ( iAxis + 1 ) % 3 : ( iAxis + 2 ) % 3;
+                int iV = ( 0 < iSign ) ? ( iAxis + 2 ) % 3 : ( iAxis + 1 ) % 3;
+                for( int k = 0; k < 6; ++k )
+                {
+                    float[] af3 = new float[3];
+                    af3[iAxis] = iSign;
+                    af3[iU] = af2Corner[k * 2];
+                    af3[iV] = af2Corner[k * 2 + 1];
+                    af3Vertex[i++] = af3[0];
+                    af3Vertex[i++] = af3[1];
+                    af3Vertex[i++] = af3[2];
+                }
+            }
+        }
+        return af3Vertex;
+    }
+}
@@ -0,0 +1,34 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PickBufferBuilder のローカルユニットテスト
+ */
+public class PickBufferBuilderTest
+{
+    // 要素番号の色は、24ビットの番号まで元の番号に戻る（16ビットを超える番号も、下位16ビットに丸まらない）
+    @Test
+    public void index2rgb_roundTrips24BitIndices()
+    {
+        byte[] abtRGB = new byte[3];
+        for( int iIndex : new int[]{ 0, 1, 255, 256, 65535, 65536, 65537, 1234567, PickBufferBuilder.MAX_ELEMENT_COUNT - 1 } )
+        {
+            PickBufferBuilder.index2rgb( iIndex, abtRGB );
+            assertEquals( iIndex, PickBufferBuilder.rgb2index( abtRGB[0], abtRGB[1], abtRGB[2] ) );
+        }
+    }
+
+    // 16ビットを超える数の要素を持つモデルも、要素番号でピックできる
+    @Test
+    public void isElementIdPickable_beyondShortRange()
+    {
+        Model model = new Model( TestMeshes.makeGridSoup( 200 ) );
+        assertTrue( 65535 < model.getTriangleCount() );
+        assertTrue( 65535 < model.getEdgeCount() );
+        assertTrue( PickBufferBuilder.isElementIdPickable( model ) );
+    }
+}
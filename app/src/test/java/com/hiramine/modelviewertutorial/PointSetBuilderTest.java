@@ -0,0 +1,108 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PointSetBuilder のローカルユニットテスト
+ */
+public class PointSetBuilderTest
+{
+    // 三角形ごとに３頂点を持つ格子の頂点は、格子点の数の点になり、点ごとの番号は、その座標で最初に現れた頂点の番号
+    @Test
+    public void add_gridSoup_keepsFirstVertexOfEachPoint()
+    {
+        int             iCount    = 20;
+        float[]         af3Vertex = TestMeshes.makeGridSoup( iCount );
+        PointSetBuilder pointset  = new PointSetBuilder();
+        for( int iIndexVertex = 0; iIndexVertex < af3Vertex.length / 3; iIndexVertex++ )
+        {
+            pointset.add( af3Vertex[iIndexVertex * 3], af3Vertex[iIndexVertex * 3 + 1], af3Vertex[iIndexVertex * 3 + 2], iIndexVertex );
+        }
+        pointset.finish();
+        assertEquals( ( iCount + 1 ) * ( iCount + 1 ), pointset.getPointCount() );
+        assertTrue( pointset.getPointVertexIndexBuffer() instanceof ShortBuffer );
+
+        boolean[] abSeen = new boolean[( iCount + 1 ) * ( iCount + 1 )];
+        int       iPrev  = -1;
+        for( int iIndexPoint = 0; iIndexPoint < pointset.getPointCount(); iIndexPoint++ )
+        {
+            int iIndexVertex = Model.getIndex( pointset.getPointVertexIndexBuffer(), iIndexPoint );
+            assertTrue( iPrev < iIndexVertex );    // 最初に現れた順
+            iPrev = iIndexVertex;
+            int iGrid = (int)af3Vertex[iIndexVertex * 3 + 1] * ( iCount + 1 ) + (int)af3Vertex[iIndexVertex * 3];
+            assertFalse( abSeen[iGrid] );
+            abSeen[iGrid] = true;
+            for( int i = 0; i < iIndexVertex; i++ )
+            { // それより前の頂点に、同じ座標はない
+                assertFalse( af3Vertex[i * 3] == af3Vertex[iIndexVertex * 3] && af3Vertex[i * 3 + 1] == af3Vertex[iIndexVertex * 3 + 1] );
+            }
+        }
+    }
+
+    // -0.0と0.0は同じ点
+    @Test
+    public void add_negativeZero_isSamePoint()
+    {
+        PointSetBuilder pointset = new PointSetBuilder();
+        assertTrue( pointset.add( 0.0f, 1.0f, 0.0f, 0 ) );
+        assertFalse( pointset.add( -0.0f, 1.0f, -0.0f, 1 ) );
+        assertTrue( pointset.add( 0.0f, -1.0f, 0.0f, 2 ) );
+        assertEquals( 2, pointset.getPointCount() );
+        assertEquals( 2, Model.getIndex( pointset.getPointVertexIndexBuffer(), 1 ) );
+    }
+
+    // 16ビットで表せない頂点の番号が来たら、書き込み済みの番号を保ったまま、IntBufferに広げる
+    @Test
+    public void add_largeVertexIndex_widensToInt()
+    {
+        PointSetBuilder pointset = new PointSetBuilder();
+        int             iCount   = 70000;
+        for( int iIndexVertex = 0; iIndexVertex < iCount; iIndexVertex++ )
+        {
+            pointset.add( iIndexVertex, 0.0f, 0.0f, iIndexVertex );
+            pointset.add( iIndexVertex, 0.0f, 0.0f, iIndexVertex + 1 );    // 重なる頂点は加えない
+        }
+        assertEquals( iCount, pointset.getPointCount() );
+        assertTrue( pointset.getPointVertexIndexBuffer() instanceof IntBuffer );
+        for( int iIndexPoint = 0; iIndexPoint < iCount; iIndexPoint++ )
+        {
+            assertEquals( iIndexPoint, Model.getIndex( pointset.getPointVertexIndexBuffer(), iIndexPoint ) );
+        }
+    }
+
+    // 読み込み中のモデルは、追加のたびに点の集合を公開し、共有化したモデルは、番号配列を持たずに頂点をそのまま点とする
+    @Test
+    public void appendableModel_publishesPointSet()
+    {
+        int             iCount    = 10;
+        float[]         af3Vertex = TestMeshes.makeGridSoup( iCount );
+        float[]         af3Normal = new float[af3Vertex.length / 3];
+        int             iHalf     = iCount * iCount;
+        AppendableModel model     = new AppendableModel( iCount * iCount * 2 );
+        model.append( af3Vertex, 0, af3Normal, iHalf );
+        int iCountPointHalf = model.getPointCount();
+        assertTrue( iCountPointHalf < iHalf * 3 );
+        model.append( af3Vertex, iHalf * 9, af3Normal, iHalf );
+        model.complete();
+        assertTrue( iCountPointHalf < model.getPointCount() );
+        assertEquals( ( iCount + 1 ) * ( iCount + 1 ), model.getPointCount() );
+        assertEquals( iCount * iCount * 2 * 3, model.getVertexCount() );
+        for( int iIndexPoint = 0; iIndexPoint < model.getPointCount(); iIndexPoint++ )
+        {
+            assertTrue( model.getVertexCount() > Model.getIndex( model.getPointVertexIndexBuffer(), iIndexPoint ) );
+        }
+
+        Model modelWelded = new Model( af3Vertex );
+        assertNull( modelWelded.getPointVertexIndexBuffer() );
+        assertEquals( modelWelded.getVertexCount(), modelWelded.getPointCount() );
+        assertEquals( model.getPointCount(), modelWelded.getPointCount() );
+    }
+}
@@ -0,0 +1,190 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * StlAsciiTokenizer のローカルユニットテスト
+ */
+public class StlAsciiTokenizerTest
+{
+    private static final int COUNT_TRIANGLE = 20000;
+
+    @Test
+    public void keyword_isCaseInsensitive() throws Exception
+    {
+        String strText = "solid name\n"
+                + "  FACET normal 0 0 1\r\n"
+                + "\n"
+                + "\tVerTex 1,2,3\n"
+                + "endfacets\n"
+                + "  EndFacet\n"
+                + "endsolid name";
+        StlAsciiTokenizer tokenizer = new StlAsciiTokenizer( new ByteArrayInputStream( strText.getBytes( StandardCharsets.US_ASCII ) ) );
+        assertEquals( StlAsciiTokenizer.KEYWORD_SOLID, tokenizer.nextKeyword() );
+        assertEquals( StlAsciiTokenizer.KEYWORD_FACET, tokenizer.nextKeyword() );
+        assertEquals( StlAsciiTokenizer.KEYWORD_VERTEX, tokenizer.nextKeyword() );
+        assertEquals( 1.0f, tokenizer.nextFloat(), 0.0f );
+        assertEquals( 2.0f, tokenizer.nextFloat(), 0.0f );
+        assertEquals( 3.0f, tokenizer.nextFloat(), 0.0f );
+        assertEquals( StlAsciiTokenizer.KEYWORD_OTHER, tokenizer.nextKeyword() );
+        assertEquals( StlAsciiTokenizer.KEYWORD_ENDFACET, tokenizer.nextKeyword() );
+        assertEquals( StlAsciiTokenizer.KEYWORD_OTHER, tokenizer.nextKeyword() );
+        assertEquals( StlAsciiTokenizer.KEYWORD_EOF, tokenizer.nextKeyword() );
+    }
+
+    @Test
+    public void parseFloat_matchesFloatParseFloat()
+    {
+        Random   random    = new Random( 1 );
+        String[] astrFixed = { "0", "-0.0", "1", "+1.5", ".5", "5.", "1e10", "1E-10", "-1.234567e+01",
+                "3.4028235e38", "1.17549435E-38", "1.4e-45", "123456789012345678901234567890",
+                "0.000000000000000000000000000001", "NaN", "-Infinity", "1.5f", "0x1.8p1" };
+        for( String str : astrFixed )
+        {
+            assertParse( str );
+        }
+        for( int i = 0; i < 100000; ++i )
+        {
+            float fValue = Float.intBitsToFloat( random.nextInt() );
+            if( Float.isNaN( fValue ) )
+            {
+                continue;
+            }
+            assertParse( Float.toString( fValue ) );
+            assertParse( String.format( Locale.US, "%e", fValue ) );
+            assertParse( String.format( Locale.US, "%.9e", fValue ) );
+            assertParse( String.format( Locale.US, "%.6f", random.nextFloat() * 2000.0f - 1000.0f ) );
+            assertParse( Double.toString( random.nextDouble() * 1000.0 ) );
+        }
+    }
+
+    // StlFileLoaderで読み込んだモデルの座標値は、ファイルの文字列をFloat.parseFloatで読んだ値に一致する
+    @Test
+    public void loadAscii_matchesWrittenVertices() throws Exception
+    {
+        float[] af3Vertex = new float[COUNT_TRIANGLE * 9];
+        File    file      = File.createTempFile( "tokenizer", ".stl" );
+        try
+        {
+            FileOutputStream fos = new FileOutputStream( file );
+            fos.write( makeAsciiStl( COUNT_TRIANGLE, af3Vertex ) );
+            fos.close();
+            Model model = StlFileLoader.load_ascii( file );
+            assertNotNull( model );
+            assertEquals( COUNT_TRIANGLE, model.getTriangleCount() );
+            for( int i = 0; i < COUNT_TRIANGLE * 9; ++i )
+            {
+                int iIndexVertex = model.getTriangleVertexIndex( i / 9, ( i / 3 ) % 3 );
+                assertEquals( Float.floatToIntBits( af3Vertex[i] ), Float.floatToIntBits( model.getVertex( iIndexVertex, i % 3 ) ) );
+            }
+            model.release();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    // 定常状態でアロケーションが発生しないことの確認（スループットは、StlFileLoaderBenchmarkで計測する）
+    @Test
+    public void tokenize_doesNotAllocateInSteadyState() throws Exception
+    {
+        ThreadMXBean threadmxbean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( threadmxbean instanceof com.sun.management.ThreadMXBean );
+        com.sun.management.ThreadMXBean sunthreadmxbean = (com.sun.management.ThreadMXBean)threadmxbean;
+        Assume.assumeTrue( sunthreadmxbean.isThreadAllocatedMemorySupported() );
+        sunthreadmxbean.setThreadAllocatedMemoryEnabled( true );
+
+        ByteArrayInputStream bais      = new ByteArrayInputStream( makeAsciiStl( COUNT_TRIANGLE, new float[COUNT_TRIANGLE * 9] ) );
+        StlAsciiTokenizer    tokenizer = new StlAsciiTokenizer( bais );
+
+        // ウォームアップ
+        for( int i = 0; i < 20; ++i )
+        {
+            bais.reset();
+            tokenizer.reset( bais );
+            assertEquals( COUNT_TRIANGLE * 3, countVertex( tokenizer ) );
+        }
+
+        // 計測
+        long lThreadId        = Thread.currentThread().getId();
+        long lAllocatedBefore = sunthreadmxbean.getThreadAllocatedBytes( lThreadId );
+        for( int i = 0; i < 20; ++i )
+        {
+            bais.reset();
+            tokenizer.reset( bais );
+            countVertex( tokenizer );
+        }
+        long lAllocatedAfter = sunthreadmxbean.getThreadAllocatedBytes( lThreadId );
+        assertEquals( 0, lAllocatedAfter - lAllocatedBefore );
+    }
+
+    private static void assertParse( String str )
+    {
+        byte[] abt = str.getBytes( StandardCharsets.US_ASCII );
+        assertEquals( str, Float.floatToIntBits( Float.parseFloat( str ) ), Float.floatToIntBits( StlAsciiTokenizer.parseFloat( abt, 0, abt.length ) ) );
+    }
+
+    // キーワードを読み進め、「vertex」の後の３つの数値を読んで、頂点の数を返す
+    private static int countVertex( StlAsciiTokenizer tokenizer ) throws Exception
+    {
+        int iCountVertex = 0;
+        while( true )
+        {
+            int iKeyword = tokenizer.nextKeyword();
+            if( StlAsciiTokenizer.KEYWORD_EOF == iKeyword )
+            {
+                break;
+            }
+            if( StlAsciiTokenizer.KEYWORD_VERTEX == iKeyword )
+            {
+                tokenizer.nextFloat();
+                tokenizer.nextFloat();
+                tokenizer.nextFloat();
+                ++iCountVertex;
+            }
+        }
+        return iCountVertex;
+    }
+
+    // af3Vertexには、書き込んだ文字列をFloat.parseFloatで読んだ座標値を詰める
+    private static byte[] makeAsciiStl( int iCountTriangle, float[] af3Vertex )
+    {
+        Random        random = new Random( 2 );
+        StringBuilder sb     = new StringBuilder();
+        sb.append( "solid test\n" );
+        for( int i = 0; i < iCountTriangle; ++i )
+        {
+            sb.append( "  facet normal 0.000000e+00 0.000000e+00 1.000000e+00\n" );
+            sb.append( "    outer loop\n" );
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                sb.append( "      vertex" );
+                for( int iAxis = 0; iAxis < 3; ++iAxis )
+                {
+                    String strValue = String.format( Locale.US, "%e", random.nextFloat() * 200.0f - 100.0f );
+                    af3Vertex[i * 9 + i3 * 3 + iAxis] = Float.parseFloat( strValue );
+                    sb.append( ' ' ).append( strValue );
+                }
+                sb.append( '\n' );
+            }
+            sb.append( "    endloop\n" );
+            sb.append( "  endfacet\n" );
+        }
+        sb.append( "endsolid test\n" );
+        return sb.toString().getBytes( StandardCharsets.US_ASCII );
+    }
+}
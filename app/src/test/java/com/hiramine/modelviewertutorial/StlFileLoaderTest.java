@@ -0,0 +1,213 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * StlFileLoader のローカルユニットテスト
+ */
+public class StlFileLoaderTest
+{
+    private static final int COUNT_TRIANGLE = 5000;
+
+    private File m_fileAscii;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        m_fileAscii = File.createTempFile( "ascii", ".stl" );
+        Random      random = new Random( 3 );
+        PrintWriter pw     = new PrintWriter( new OutputStreamWriter( new FileOutputStream( m_fileAscii ), StandardCharsets.US_ASCII ) );
+        pw.print( "solid test\n" );
+        for( int i = 0; i < COUNT_TRIANGLE; ++i )
+        {
+            // 書式や改行コードを混在させる
+            pw.print( ( 0 == i % 3 ) ? "facet normal 0 0 1\r\n" : "  FACET NORMAL 0.0e+00 0.0e+00 1.0e+00\n" );
+            pw.print( "    outer loop\n" );
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                pw.print( String.format( Locale.US, ( 0 == i % 2 ) ? "      vertex %e %e %e\n" : "\tvertex %.9f,%.3f,%f\n",
+                        random.nextFloat() * 200.0f - 100.0f,
+                        random.nextFloat() * 200.0f - 100.0f,
+                        random.nextFloat() * 200.0f - 100.0f ) );
+            }
+            pw.print( "    endloop\n" );
+            pw.print( "  endfacet\n" );
+        }
+        pw.print( "endsolid test\n" );
+        pw.close();
+    }
+
+    @After
+    public void tearDown()
+    {
+        m_fileAscii.delete();
+    }
+
+    // 並列パースは、チャンク数によらず逐次パースと同じ結果になる
+    @Test
+    public void loadAsciiParallel_matchesSequential()
+    {
+        Model modelSequential = StlFileLoader.load_ascii( m_fileAscii );
+        assertNotNull( modelSequential );
+        assertEquals( COUNT_TRIANGLE, modelSequential.getTriangleCount() );
+
+        for( int iCountChunk : new int[]{ 1, 2, 7, 64 } )
+        {
+            Model modelParallel = StlFileLoader.load_ascii_parallel( m_fileAscii, iCountChunk );
+            assertNotNull( modelParallel );
+            assertVertexEquals( (FloatBuffer)modelSequential.getVertexBuffer(), (FloatBuffer)modelParallel.getVertexBuffer() );
+        }
+    }
+
+    // 並列パースは、リスナーに最後にファイル全体の進捗を通知し、中止されていれば途中で止まる
+    @Test
+    public void loadAsciiParallel_reportsProgressAndCancels()
+    {
+        RecordingListener listener = new RecordingListener();
+        Model             model    = StlFileLoader.load_ascii_parallel( m_fileAscii, 7, listener );
+        assertNotNull( model );
+        assertEquals( COUNT_TRIANGLE, model.getTriangleCount() );
+        assertEquals( m_fileAscii.length(), listener.m_lBytesRead );
+        assertEquals( m_fileAscii.length(), listener.m_lBytesTotal );
+
+        listener = new RecordingListener();
+        listener.m_bCancelled = true;
+        assertNull( StlFileLoader.load_ascii_parallel( m_fileAscii, 7, listener ) );
+        assertEquals( 0, listener.m_lBytesRead );
+    }
+
+    // 逐次パースでパースした頂点配列は、共有化した後にアリーナに返る（モデルを解放した後に残るのは、ファイルの面法線の分だけ）
+    @Test
+    public void loadAscii_releasesParsedVertexBuffer()
+    {
+        DirectBufferArena arena       = DirectBufferArena.getShared();
+        long              lLeasedFrom = arena.getLeasedBytes();
+        Model             model       = StlFileLoader.load_ascii( m_fileAscii );
+        assertNotNull( model );
+        model.release();
+        assertTrue( COUNT_TRIANGLE * 3 * 3 * 4 > arena.getLeasedBytes() - lLeasedFrom );
+    }
+
+    // ファイルの面法線は、逐次パースでも並列パースでも、三角形ごとにそのまま使われる（座標値から計算し直さない）
+    @Test
+    public void loadAscii_reusesFileFacetNormals()
+    {
+        Model[] aModel = { StlFileLoader.load_ascii( m_fileAscii ), StlFileLoader.load_ascii_parallel( m_fileAscii, 7 ) };
+        for( Model model : aModel )
+        {
+            FloatBuffer fbFacetNormal = model.getFacetNormalBuffer();
+            for( int i = 0; i < COUNT_TRIANGLE; ++i )
+            {
+                assertEquals( 0.0f, fbFacetNormal.get( i * 3 ), 0.0f );
+                assertEquals( 0.0f, fbFacetNormal.get( i * 3 + 1 ), 0.0f );
+                assertEquals( 1.0f, fbFacetNormal.get( i * 3 + 2 ), 0.0f );
+            }
+        }
+    }
+
+    // 生成した球は、バイナリ形式でもアスキー形式でも、頂点を共有化すると閉じたメッシュになる
+    @Test
+    public void load_generatedSphere_weldsToClosedMesh() throws Exception
+    {
+        SphereMesh sphere = new SphereMesh( 20000, 25.0f );
+        File       file   = File.createTempFile( "sphere", ".stl" );
+        try
+        {
+            for( boolean bBinary : new boolean[]{ true, false } )
+            {
+                StlWriter.write( file, sphere, bBinary );
+                Model model = StlFileLoader.load( file.getPath() );
+                assertNotNull( model );
+                assertEquals( sphere.getTriangleCount(), model.getTriangleCount() );
+                assertEquals( sphere.getVertexCount(), model.getVertexCount() );
+                assertEquals( sphere.getTriangleCount() * 3 / 2, model.getEdgeCount() );
+                for( int i = 0; i < model.getEdgeCount(); ++i )
+                {
+                    assertEquals( 2, model.getEdgeTriangleCount( i ) );
+                }
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    // 並列にパースするのは、大きなアスキー形式のファイルだけ（バイナリ形式と小さなファイルは、段階的に読み込む）
+    @Test
+    public void isParallelParsed_onlyLargeAscii() throws Exception
+    {
+        assertFalse( StlFileLoader.isParallelParsed( m_fileAscii.getPath() ) );
+        SphereMesh sphere = new SphereMesh( 60000, 25.0f );
+        File       file   = File.createTempFile( "sphere", ".stl" );
+        try
+        {
+            StlWriter.write( file, sphere, false );
+            assertTrue( 8L * 1024 * 1024 <= file.length() );
+            assertEquals( 1 < Runtime.getRuntime().availableProcessors(), StlFileLoader.isParallelParsed( file.getPath() ) );
+            StlWriter.write( file, sphere, true );
+            assertFalse( StlFileLoader.isParallelParsed( file.getPath() ) );
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    // 最後に通知された進捗を記録するリスナー
+    private static class RecordingListener implements StlFileLoader.StreamingListener
+    {
+        long    m_lBytesRead;
+        long    m_lBytesTotal;
+        boolean m_bCancelled;
+
+        @Override
+        public void onModelCreated( AppendableModel model )
+        {
+        }
+
+        @Override
+        public void onTrianglesAppended( AppendableModel model )
+        {
+        }
+
+        @Override
+        public void onProgress( long lBytesRead, long lBytesTotal )
+        {
+            m_lBytesRead = lBytesRead;
+            m_lBytesTotal = lBytesTotal;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return m_bCancelled;
+        }
+    }
+
+    private static void assertVertexEquals( FloatBuffer fbExpected, FloatBuffer fbActual )
+    {
+        assertEquals( fbExpected.capacity(), fbActual.capacity() );
+        for( int i = 0; i < fbExpected.capacity(); ++i )
+        {
+            assertEquals( Float.floatToIntBits( fbExpected.get( i ) ), Float.floatToIntBits( fbActual.get( i ) ) );
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SubMeshSplitter のローカルユニットテスト
+ */
+public class SubMeshSplitterTest
+{
+    // 分割した部分メッシュは、頂点の数が上限以下で、三角形を漏れなく連続して受け持ち、元の座標を指す
+    @Test
+    public void split_grid_coversAllTrianglesWithinLimit()
+    {
+        Model model = new Model( TestMeshes.makeGridSoup( 20 ) );
+        int   iMax  = 64;
+
+        SubMesh[] aSubMesh = SubMeshSplitter.split( model, false, iMax );
+        assertTrue( 1 < aSubMesh.length );
+
+        int iNextTriangle = 0;
+        for( SubMesh subMesh : aSubMesh )
+        {
+            assertEquals( GL10.GL_UNSIGNED_SHORT, subMesh.getIndexType() );
+            assertTrue( iMax * 3 >= subMesh.getVertexBuffer().capacity() );
+            assertEquals( iNextTriangle, subMesh.getFirstElement() );
+
+            FloatBuffer fbLocal = (FloatBuffer)subMesh.getVertexBuffer();
+            ShortBuffer sbTri   = (ShortBuffer)subMesh.getIndexBuffer();
+            for( int i = 0; i < subMesh.getElementCount() * 3; ++i )
+            {
+                int iGlobal = model.getTriangleVertexIndex( subMesh.getFirstElement() + i / 3, i % 3 );
+                assertSamePosition( model, iGlobal, fbLocal, sbTri.get( i ) & 0xFFFF );
+            }
+            iNextTriangle += subMesh.getElementCount();
+        }
+        assertEquals( model.getTriangleCount(), iNextTriangle );
+    }
+
+    // 稜線の部分メッシュも同様に、稜線を漏れなく連続して受け持ち、元の座標を指す
+    @Test
+    public void split_grid_coversAllEdgesWithinLimit()
+    {
+        Model model = new Model( TestMeshes.makeGridSoup( 20 ) );
+        int   iMax  = 64;
+
+        SubMesh[] aSubMesh = SubMeshSplitter.split( model, true, iMax );
+        assertTrue( 1 < aSubMesh.length );
+
+        int iNextEdge = 0;
+        for( SubMesh subMesh : aSubMesh )
+        {
+            assertTrue( iMax * 3 >= subMesh.getVertexBuffer().capacity() );
+            assertEquals( iNextEdge, subMesh.getFirstElement() );
+
+            FloatBuffer fbLocal = (FloatBuffer)subMesh.getVertexBuffer();
+            ShortBuffer sbEdge  = (ShortBuffer)subMesh.getIndexBuffer();
+            for( int i = 0; i < subMesh.getElementCount() * 2; ++i )
+            {
+                int iGlobal = model.getEdgeVertexIndex( subMesh.getFirstElement() + i / 2, i % 2 );
+                assertSamePosition( model, iGlobal, fbLocal, sbEdge.get( i ) & 0xFFFF );
+            }
+            iNextEdge += subMesh.getElementCount();
+        }
+        assertEquals( model.getEdgeCount(), iNextEdge );
+    }
+
+    // 65535頂点を超えるモデルは32ビットの番号配列を使い、拡張機能がなければ分割される
+    @Test
+    public void model_beyondShortRange_usesIntIndices()
+    {
+        Model model = new Model( TestMeshes.makeGridSoup( 260 ) );
+        assertTrue( 65535 < model.getVertexCount() );
+        assertEquals( OpenGLBaseRenderer.GL_UNSIGNED_INT, model.getIndexType() );
+        assertEquals( 1, model.getTriangleSubMeshes( true ).length );
+        assertTrue( 1 < model.getTriangleSubMeshes( false ).length );
+    }
+
+    private static void assertSamePosition( Model model, int iGlobal, FloatBuffer fbLocal, int iLocal )
+    {
+        for( int i3 = 0; i3 < 3; ++i3 )
+        {
+            assertEquals( model.getVertexValue( iGlobal, i3 ), fbLocal.get( iLocal * 3 + i3 ), 0.0f );
+        }
+    }
+}
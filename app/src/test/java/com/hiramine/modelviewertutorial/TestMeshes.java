@@ -0,0 +1,28 @@
+package com.hiramine.modelviewertutorial;
+
+/**
+ * ローカルユニットテストで共有するメッシュ
+ */
+class TestMeshes
+{
+    // iCount×iCountの平らな格子（z = 0）を、三角形ごとに３頂点を持つ頂点配列にする（頂点は溶接される）
+    static float[] makeGridSoup( int iCount )
+    {
+        float[] af3Vertex = new float[iCount * iCount * 2 * 9];
+        int     i         = 0;
+        for( int y = 0; y < iCount; ++y )
+        {
+            for( int x = 0; x < iCount; ++x )
+            {
+                float[] af2Corner = { x, y, x + 1, y, x + 1, y + 1, x, y, x + 1, y + 1, x, y + 1 };
+                for( int k = 0; k < 6; ++k )
+                {
+                    af3Vertex[i++] = af2Corner[k * 2];
+                    af3Vertex[i++] = af2Corner[k * 2 + 1];
+                    af3Vertex[i++] = 0.0f;
+                }
+            }
+        }
+        return af3Vertex;
+    }
+}
@@ -0,0 +1,167 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * VertexCacheOptimizer のローカルユニットテスト
+ */
+public class VertexCacheOptimizerTest
+{
+    private static final int GRID = 60;    // 格子の一辺の数（7200三角形）
+
+    // ACMRは、頂点を共有しない三角形では3.0、同じ三角形の繰り返しでは、最初の３頂点だけ
+    @Test
+    public void measureAcmr_soupAndRepeated()
+    {
+        int[] aiSoup = new int[30];
+        for( int i = 0; i < aiSoup.length; i++ )
+        {
+            aiSoup[i] = i;
+        }
+        assertEquals( 3.0f, VertexCacheOptimizer.measureAcmr( aiSoup, 10, 16 ), 0.0f );
+
+        int[] aiRepeated = new int[30];
+        for( int i = 0; i < aiRepeated.length; i++ )
+        {
+            aiRepeated[i] = i % 3;
+        }
+        assertEquals( 0.3f, VertexCacheOptimizer.measureAcmr( aiRepeated, 10, 16 ), 1e-6f );
+    }
+
+    // 三角形の並べ替えは、元の三角形を漏れなく一度ずつ、頂点の順番を変えずに持ち、ばらばらの順よりACMRが小さい
+    @Test
+    public void reorderTriangles_shuffledGrid_keepsTrianglesAndLowersAcmr()
+    {
+        int   iCountTriangle        = GRID * GRID * 2;
+        int[] aiTriangleVertexIndex = makeShuffledGrid( GRID );
+        int[] aiSource              = aiTriangleVertexIndex.clone();
+        float fAcmrBefore           = VertexCacheOptimizer.measureAcmr( aiTriangleVertexIndex, iCountTriangle, VertexCacheOptimizer.MEASURE_CACHE_SIZE );
+
+        int[] aiTriangleOrder = VertexCacheOptimizer.reorderTriangles( aiTriangleVertexIndex, iCountTriangle, ( GRID + 1 ) * ( GRID + 1 ) );
+        boolean[] abUsed = new boolean[iCountTriangle];
+        for( int iIndexTriangle = 0; iIndexTriangle < iCountTriangle; iIndexTriangle++ )
+        {
+            int iIndexSource = aiTriangleOrder[iIndexTriangle];
+            assertTrue( !abUsed[iIndexSource] );
+            abUsed[iIndexSource] = true;
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                assertEquals( aiSource[iIndexSource * 3 + i3], aiTriangleVertexIndex[iIndexTriangle * 3 + i3] );
+            }
+        }
+
+        float fAcmrAfter = VertexCacheOptimizer.measureAcmr( aiTriangleVertexIndex, iCountTriangle, VertexCacheOptimizer.MEASURE_CACHE_SIZE );
+        assertTrue( 2.0f < fAcmrBefore );
+        assertTrue( 0.8f > fAcmrAfter );
+    }
+
+    // 頂点は、三角形で最初に使われる順に番号を振り直し、使われない頂点は後ろに置く
+    @Test
+    public void reorderVertices_firstUseOrder()
+    {
+        int[] aiTriangleVertexIndex = { 4, 2, 0, 2, 4, 5 };
+        int[] aiVertexOrder         = VertexCacheOptimizer.reorderVertices( aiTriangleVertexIndex, 2, 6 );
+        assertArrayEquals( new int[]{ 0, 1, 2, 1, 0, 3 }, aiTriangleVertexIndex );
+        assertArrayEquals( new int[]{ 4, 2, 0, 5, 1, 3 }, aiVertexOrder );
+    }
+
+    // モデルの並べ替えは、三角形の座標値と面法線を変えずに、ACMRを下げる
+    @Test
+    public void optimizeVertexCache_model_keepsGeometry()
+    {
+        for( boolean bQuantize : new boolean[]{ false, true } )
+        {
+            Model model = new Model( makeShuffledGridSoup( GRID ) );
+            if( bQuantize )
+            {
+                model.quantize();
+            }
+            FloatBuffer          fbFacetNormal = model.getFacetNormalBuffer();
+            Map<String, Integer> mapBefore     = triangles( model, fbFacetNormal );
+
+            float[] af2Acmr = model.optimizeVertexCache();
+            assertTrue( af2Acmr[0] > af2Acmr[1] );
+            assertTrue( 0.8f > af2Acmr[1] );
+            assertEquals( mapBefore, triangles( model, model.getFacetNormalBuffer() ) );
+            assertEquals( GRID * 2 * GRID, model.getTriangleCount() );
+            assertEquals( ( GRID + 1 ) * ( GRID + 1 ), model.getVertexCount() );
+        }
+    }
+
+    // 三角形ごとの、３頂点の座標値と面法線の文字列の数
+    private static Map<String, Integer> triangles( Model model, FloatBuffer fbFacetNormal )
+    {
+        Map<String, Integer> mapTriangle = new HashMap<>();
+        for( int iIndexTriangle = 0; iIndexTriangle < model.getTriangleCount(); iIndexTriangle++ )
+        {
+            StringBuilder sb = new StringBuilder();
+            for( int i = 0; i < 9; i++ )
+            {
+                sb.append( model.getVertex( model.getTriangleVertexIndex( iIndexTriangle, i / 3 ), i % 3 ) ).append( ',' );
+            }
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                sb.append( fbFacetNormal.get( iIndexTriangle * 3 + i3 ) ).append( ',' );
+            }
+            String strKey = sb.toString();
+            mapTriangle.put( strKey, ( mapTriangle.containsKey( strKey ) ? mapTriangle.get( strKey ) : 0 ) + 1 );
+        }
+        return mapTriangle;
+    }
+
+    // iCount×iCountの格子の三角形の頂点の番号の配列（三角形を、決まった乱数で並べ替えておく）
+    private static int[] makeShuffledGrid( int iCount )
+    {
+        int[] aiTriangleVertexIndex = new int[iCount * iCount * 2 * 3];
+        int   i                     = 0;
+        for( int y = 0; y < iCount; ++y )
+        {
+            for( int x = 0; x < iCount; ++x )
+            {
+                int iIndex = y * ( iCount + 1 ) + x;
+                int[] ai6 = { iIndex, iIndex + 1, iIndex + iCount + 2, iIndex, iIndex + iCount + 2, iIndex + iCount + 1 };
+                for( int k = 0; k < 6; ++k )
+                {
+                    aiTriangleVertexIndex[i++] = ai6[k];
+                }
+            }
+        }
+        Random random = new Random( 1 );
+        for( int iIndexTriangle = iCount * iCount * 2 - 1; 0 < iIndexTriangle; iIndexTriangle-- )
+        {
+            int iIndexSwap = random.nextInt( iIndexTriangle + 1 );
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                int iTemp = aiTriangleVertexIndex[iIndexTriangle * 3 + i3];
+                aiTriangleVertexIndex[iIndexTriangle * 3 + i3] = aiTriangleVertexIndex[iIndexSwap * 3 + i3];
+                aiTriangleVertexIndex[iIndexSwap * 3 + i3] = iTemp;
+            }
+        }
+        return aiTriangleVertexIndex;
+    }
+
+    // 並べ替えた格子を、三角形ごとに３頂点を持つ頂点配列にする（高さを付けて、面法線が三角形ごとに異なるようにする）
+    private static float[] makeShuffledGridSoup( int iCount )
+    {
+        int[]   aiTriangleVertexIndex = makeShuffledGrid( iCount );
+        float[] af3Vertex             = new float[aiTriangleVertexIndex.length * 3];
+        for( int i = 0; i < aiTriangleVertexIndex.length; i++ )
+        {
+            int x = aiTriangleVertexIndex[i] % ( iCount + 1 );
+            int y = aiTriangleVertexIndex[i] / ( iCount + 1 );
+            af3Vertex[i * 3] = x;
+            af3Vertex[i * 3 + 1] = y;
+            af3Vertex[i * 3 + 2] = (float)Math.sin( x * 0.7 ) * (float)Math.cos( y * 0.3 );
+        }
+        return af3Vertex;
+    }
+}
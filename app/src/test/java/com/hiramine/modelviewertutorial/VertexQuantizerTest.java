@@ -0,0 +1,85 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * VertexQuantizer のローカルユニットテスト
+ */
+public class VertexQuantizerTest
+{
+    // 量子化した値を戻した座標値の誤差は、軸ごとに縮尺の1/2以下で、測った最大誤差以下
+    @Test
+    public void quantize_randomPositions_withinErrorBound()
+    {
+        float[]     af6Bounds = { -100.0f, 0.0f, 5.0f, 300.0f, 1.0f, 5.0f };
+        FloatBuffer fbVertex  = makeRandomVertex( 1000, af6Bounds, 3 );
+
+        VertexQuantizer quantizer = new VertexQuantizer( af6Bounds );
+        ShortBuffer     sbVertex  = quantizer.quantize( fbVertex, 1000 );
+        assertEquals( 1000 * 3, sbVertex.capacity() );
+        float fMaxError = 0.0f;
+        for( int i = 0; i < 1000 * 3; ++i )
+        {
+            float fError = Math.abs( quantizer.dequantize( sbVertex.get( i ), i % 3 ) - fbVertex.get( i ) );
+            assertTrue( fError <= quantizer.getScale()[i % 3] * 0.5f + Math.ulp( 300.0f ) );
+            fMaxError = Math.max( fMaxError, fError );
+        }
+        assertEquals( fMaxError, quantizer.getMaxError(), 0.0f );
+    }
+
+    // バウンディングボックスの端は、-32767と32767になる（厚みの無い軸は0になる）
+    @Test
+    public void quantize_bounds_mapsToFullRange()
+    {
+        float[]         af6Bounds = { -1.0f, 2.0f, 5.0f, 3.0f, 4.0f, 5.0f };
+        VertexQuantizer quantizer = new VertexQuantizer( af6Bounds );
+        ShortBuffer sbVertex = quantizer.quantize( OpenGLBaseRenderer.makeFloatBuffer( af6Bounds ), 2 );
+        assertEquals( -32767, sbVertex.get( 0 ) );
+        assertEquals( -32767, sbVertex.get( 1 ) );
+        assertEquals( 0, sbVertex.get( 2 ) );
+        assertEquals( 32767, sbVertex.get( 3 ) );
+        assertEquals( 32767, sbVertex.get( 4 ) );
+        assertEquals( 0, sbVertex.get( 5 ) );
+    }
+
+    // 量子化したモデルは、頂点の座標値の配列が半分になり、バウンディングボックスは変わらない
+    @Test
+    public void model_quantize_halvesVertexBuffer()
+    {
+        float[] af6Bounds = { -10.0f, -10.0f, -10.0f, 10.0f, 10.0f, 10.0f };
+        Model   model     = new Model( makeRandomVertex( 300, af6Bounds, 5 ) );
+        float[] af6Before = model.getBounds().clone();
+        int     iBytes    = model.getVertexBuffer().capacity() * 4;
+
+        float fError = model.quantize();
+        assertTrue( model.isQuantized() );
+        assertEquals( GL10.GL_SHORT, model.getVertexType() );
+        assertEquals( iBytes / 2, model.getVertexBuffer().capacity() * 2 );
+        assertArrayEquals( af6Before, model.getBounds(), 0.0f );
+        assertTrue( fError <= 10.0f / VertexQuantizer.QUANTIZE_MAX );
+        assertEquals( 1, model.getTriangleSubMeshes( false ).length );
+        assertEquals( GL10.GL_SHORT, model.getTriangleSubMeshes( false )[0].getVertexType() );
+    }
+
+    private static FloatBuffer makeRandomVertex( int iCountVertex, float[] af6Bounds, long lSeed )
+    {
+        Random  random    = new Random( lSeed );
+        float[] af3Vertex = new float[iCountVertex * 3];
+        for( int i = 0; i < af3Vertex.length; ++i )
+        {
+            int i3 = i % 3;
+            af3Vertex[i] = af6Bounds[i3] + random.nextFloat() * ( af6Bounds[3 + i3] - af6Bounds[i3] );
+        }
+        return OpenGLBaseRenderer.makeFloatBuffer( af3Vertex );
+    }
+}
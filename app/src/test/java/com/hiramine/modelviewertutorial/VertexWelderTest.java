@@ -0,0 +1,100 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * VertexWelder のローカルユニットテスト
+ */
+public class VertexWelderTest
+{
+    // 立方体の８頂点と、１２三角形の頂点番号
+    private static final float[] CUBE_VERTEX   = {
+            0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0,
+            0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1, 1 };
+    private static final int[]   CUBE_TRIANGLE = {
+            0, 2, 1, 0, 3, 2, 4, 5, 6, 4, 6, 7,
+            0, 1, 5, 0, 5, 4, 2, 3, 7, 2, 7, 6,
+            1, 2, 6, 1, 6, 5, 0, 4, 7, 0, 7, 3 };
+
+    // 三角形ごとに３頂点を持つ立方体は、８頂点に共有化され、元の座標を指す
+    @Test
+    public void weld_cube_sharesCorners()
+    {
+        FloatBuffer fbVertex = makeTriangleSoup( 0.0f );
+
+        VertexWelder welder = new VertexWelder( 0.0f );
+        assertEquals( 8, welder.weld( fbVertex, CUBE_TRIANGLE.length ) );
+        assertWeldedPositionsMatch( welder, fbVertex );
+    }
+
+    // 許容誤差より小さいずれは共有し、-0.0と0.0も同じとみなす
+    @Test
+    public void weld_withEpsilon_sharesNearlyEqualPositions()
+    {
+        FloatBuffer fbVertex = makeTriangleSoup( 1.0e-6f );
+        fbVertex.put( 0, -0.0f );
+
+        assertEquals( 8, new VertexWelder( 1.0e-4f ).weld( fbVertex, CUBE_TRIANGLE.length ) );
+        assertTrue( 8 < new VertexWelder( 0.0f ).weld( fbVertex, CUBE_TRIANGLE.length ) );
+    }
+
+    // 許容誤差による共有は、実際の距離で決まり、格子の境界をまたぐかどうかによらない
+    @Test
+    public void weld_withEpsilon_comparesDistanceAcrossCells()
+    {
+        // 格子の境界をまたぐ、許容誤差より近い２点は共有する
+        FloatBuffer fbNear = OpenGLBaseRenderer.makeFloatBuffer( new float[]{ 0.0999f, 0.0f, 0.0f, 0.1001f, 0.0f, 0.0f } );
+        assertEquals( 1, new VertexWelder( 0.1f ).weld( fbNear, 2 ) );
+
+        // 同じ格子の中でも、許容誤差より遠い２点は共有しない
+        FloatBuffer fbFar = OpenGLBaseRenderer.makeFloatBuffer( new float[]{ 0.001f, 0.001f, 0.001f, 0.099f, 0.099f, 0.099f } );
+        assertEquals( 2, new VertexWelder( 0.1f ).weld( fbFar, 2 ) );
+
+        // 許容誤差以内の頂点が複数あれば、最も近い頂点を共有する
+        FloatBuffer  fbNearest = OpenGLBaseRenderer.makeFloatBuffer( new float[]{ 0.0f, 0.0f, 0.0f, 0.15f, 0.0f, 0.0f, 0.09f, 0.0f, 0.0f } );
+        VertexWelder welder    = new VertexWelder( 0.1f );
+        assertEquals( 2, welder.weld( fbNearest, 3 ) );
+        assertEquals( 1, welder.getVertexIndex( 2 ) );
+    }
+
+    // 共有化したモデルは、頂点の数が減り、三角形の数は変わらない
+    @Test
+    public void model_fromTriangleSoup_isWelded()
+    {
+        Model model = new Model( makeTriangleSoup( 0.0f ) );
+        assertEquals( 8, model.getVertexCount() );
+        assertEquals( 12, model.getTriangleCount() );
+        assertEquals( 18, model.getEdgeCount() );
+        assertEquals( 2, model.getEdgeTriangleCount( 0 ) );
+    }
+
+    // 三角形ごとに３頂点を持つ立方体の頂点配列（fJitter分ずつ、三角形ごとに座標をずらす）
+    private static FloatBuffer makeTriangleSoup( float fJitter )
+    {
+        float[] af3Vertex = new float[CUBE_TRIANGLE.length * 3];
+        for( int i = 0; i < CUBE_TRIANGLE.length; ++i )
+        {
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                af3Vertex[i * 3 + i3] = CUBE_VERTEX[CUBE_TRIANGLE[i] * 3 + i3] + fJitter * ( i / 3 );
+            }
+        }
+        return OpenGLBaseRenderer.makeFloatBuffer( af3Vertex );
+    }
+
+    private static void assertWeldedPositionsMatch( VertexWelder welder, FloatBuffer fbVertex )
+    {
+        for( int i = 0; i < fbVertex.capacity() / 3; ++i )
+        {
+            for( int i3 = 0; i3 < 3; ++i3 )
+            {
+                assertEquals( fbVertex.get( i * 3 + i3 ), welder.getVertex( welder.getVertexIndex( i ), i3 ), 0.0f );
+            }
+        }
+    }
+}
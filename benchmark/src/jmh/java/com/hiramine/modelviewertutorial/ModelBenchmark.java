@@ -0,0 +1,72 @@
+package com.hiramine.modelviewertutorial;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+// モデルの作成（読み込んだ三角形ごとの頂点配列からの、頂点の共有化と、稜線の作成と、頂点キャッシュの効率のための並べ替え）
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class ModelBenchmark
+{
+    @Param( { "1000", "10000", "100000", "1000000", "5000000" } )
+    public int countTriangle;
+
+    @Param( { "terrain" } )
+    public String shape;    // sphere, torus, terrain, soup（MeshGenerator.EShape）
+
+    private FloatBuffer m_fbTriangleSoup;
+    private int         m_iCountVertex;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        AppLog.setSink( AppLog.SINK_NONE );
+        TriangleSource source = MeshGenerator.create( MeshGenerator.EShape.fromName( shape ), countTriangle, 1 );
+        m_fbTriangleSoup = MeshGenerator.makeTriangleSoup( source );
+        m_iCountVertex = source.getTriangleCount() * 3;
+    }
+
+    // 頂点の共有化
+    @Benchmark
+    public int weld( TriangleCounter counter )
+    {
+        Model model  = new Model( m_fbTriangleSoup, m_iCountVertex );
+        int   iCount = model.getVertexCount();
+        model.release();
+        counter.triangles += m_iCountVertex / 3;
+        return iCount;
+    }
+
+    // 頂点の共有化と、稜線の作成
+    @Benchmark
+    public int weldAndBuildEdges( TriangleCounter counter )
+    {
+        Model model  = new Model( m_fbTriangleSoup, m_iCountVertex );
+        int   iCount = model.getEdgeCount();
+        model.release();
+        counter.triangles += m_iCountVertex / 3;
+        return iCount;
+    }
+
+    // 頂点の共有化と、頂点キャッシュの効率のための並べ替え（VertexCacheOptimizer.MAX_TRIANGLE_COUNTを超えると、共有化だけになる）
+    @Benchmark
+    public float weldAndOptimizeVertexCache( TriangleCounter counter )
+    {
+        Model   model   = new Model( m_fbTriangleSoup, m_iCountVertex );
+        float[] af2Acmr = model.optimizeVertexCache();
+        model.release();
+        counter.triangles += m_iCountVertex / 3;
+        return ( null != af2Acmr ) ? af2Acmr[1] : 0.0f;    // 上限を超える三角形の数では、並べ替えない
+    }
+}
@@ -0,0 +1,69 @@
+package com.hiramine.modelviewertutorial;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+// 面法線と頂点法線の作成（陰影付きの描画を選んだ時に、Modelが作成するもの）
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class NormalBenchmark
+{
+    @Param( { "10000", "100000", "1000000", "5000000" } )
+    public int countTriangle;
+
+    @Param( { "sphere" } )
+    public String shape;    // sphere, torus, terrain, soup（MeshGenerator.EShape）
+
+    @Param( { "40" } )
+    public float creaseAngle;
+
+    private Model       m_model;
+    private FloatBuffer m_fbFacetNormal;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        AppLog.setSink( AppLog.SINK_NONE );
+        TriangleSource source = MeshGenerator.create( MeshGenerator.EShape.fromName( shape ), countTriangle, 1 );
+        m_model = new Model( MeshGenerator.makeTriangleSoup( source ), source.getTriangleCount() * 3 );
+        m_fbFacetNormal = new NormalGenerator().makeFacetNormals( m_model, null );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        DirectBufferArena.getShared().release( m_fbFacetNormal );
+    }
+
+    // 面法線（座標値から計算する。三角形の範囲ごとに並列）
+    @Benchmark
+    public float facetNormals( TriangleCounter counter )
+    {
+        FloatBuffer fb = new NormalGenerator().makeFacetNormals( m_model, null );
+        float       f  = fb.get( fb.capacity() - 1 );
+        DirectBufferArena.getShared().release( fb );
+        counter.triangles += m_model.getTriangleCount();
+        return f;
+    }
+
+    // 頂点法線（折れ角で頂点を分ける）
+    @Benchmark
+    public int smoothNormals( TriangleCounter counter )
+    {
+        int iCountVertex = new NormalGenerator().smooth( m_model, m_fbFacetNormal, creaseAngle );
+        counter.triangles += m_model.getTriangleCount();
+        return iCountVertex;
+    }
+}
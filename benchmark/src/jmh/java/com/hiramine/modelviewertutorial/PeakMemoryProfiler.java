@@ -0,0 +1,118 @@
+package com.hiramine.modelviewertutorial;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+// 反復ごとの、ヒープとダイレクトバッファの最大使用量の計測（JMHのプロファイラ）
+// ・ヒープは、各メモリープールの最大使用量の合計（プールごとに最大になる時刻は異なるので、上限の見積もり）
+// ・ダイレクトバッファは、最大使用量を取れないので、別スレッドで一定間隔ごとに使用量を見て、最大を取る
+public class PeakMemoryProfiler implements InternalProfiler
+{
+    // 定数
+    private static final long SAMPLE_INTERVAL_MILLIS = 5;    // ダイレクトバッファの使用量を見る間隔
+
+    // メンバー変数
+    private Thread           m_threadSampler;
+    private volatile boolean m_bSampling;
+    private volatile long    m_lPeakDirect;
+
+    @Override
+    public String getDescription()
+    {
+        return "Peak heap and direct buffer usage per iteration";
+    }
+
+    @Override
+    public void beforeIteration( BenchmarkParams benchmarkParams, IterationParams iterationParams )
+    {
+        for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            pool.resetPeakUsage();
+        }
+
+        final BufferPoolMXBean poolDirect = getDirectBufferPool();
+        m_lPeakDirect = ( null != poolDirect ) ? poolDirect.getMemoryUsed() : 0;
+        if( null == poolDirect )
+        {
+            return;
+        }
+        m_bSampling = true;
+        m_threadSampler = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while( m_bSampling )
+                {
+                    m_lPeakDirect = Math.max( m_lPeakDirect, poolDirect.getMemoryUsed() );
+                    try
+                    {
+                        Thread.sleep( SAMPLE_INTERVAL_MILLIS );
+                    }
+                    catch( InterruptedException e )
+                    {
+                        return;
+                    }
+                }
+            }
+        }, "PeakMemoryProfiler" );
+        m_threadSampler.setDaemon( true );
+        m_threadSampler.start();
+    }
+
+    @Override
+    public List<Result> afterIteration( BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result )
+    {
+        if( null != m_threadSampler )
+        {
+            m_bSampling = false;
+            try
+            {
+                m_threadSampler.join();
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            m_threadSampler = null;
+        }
+
+        long lPeakHeap = 0;
+        for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if( MemoryType.HEAP == pool.getType() )
+            {
+                lPeakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        List<Result> listResult = new ArrayList<>();
+        listResult.add( new ScalarResult( "peak.heap", lPeakHeap / ( 1024.0 * 1024.0 ), "MB", AggregationPolicy.MAX ) );
+        listResult.add( new ScalarResult( "peak.direct", m_lPeakDirect / ( 1024.0 * 1024.0 ), "MB", AggregationPolicy.MAX ) );
+        return listResult;
+    }
+
+    private static BufferPoolMXBean getDirectBufferPool()
+    {
+        for( BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans( BufferPoolMXBean.class ) )
+        {
+            if( "direct".equals( pool.getName() ) )
+            {
+                return pool;
+            }
+        }
+        return null;
+    }
+}
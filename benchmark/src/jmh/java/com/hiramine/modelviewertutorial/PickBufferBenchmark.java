@@ -0,0 +1,70 @@
+package com.hiramine.modelviewertutorial;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// ピック用の配列の作成（OpenGLPickRendererが、モデルをセットした後の最初のピックで作成するもの）
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class PickBufferBenchmark
+{
+    @Param( { "1000", "10000", "100000", "1000000", "5000000" } )
+    public int countTriangle;
+
+    @Param( { "terrain" } )
+    public String shape;    // sphere, torus, terrain, soup（MeshGenerator.EShape）
+
+    private Model m_model;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        AppLog.setSink( AppLog.SINK_NONE );
+        TriangleSource source = MeshGenerator.create( MeshGenerator.EShape.fromName( shape ), countTriangle, 1 );
+        m_model = new Model( MeshGenerator.makeTriangleSoup( source ), source.getTriangleCount() * 3 );
+    }
+
+    // 点のピック用の色配列
+    @Benchmark
+    public int vertexIdColor( TriangleCounter counter )
+    {
+        ByteBuffer btb = PickBufferBuilder.makeVertexIdColorBuffer( m_model );
+        int        i   = btb.get( btb.capacity() - 1 );
+        DirectBufferArena.getShared().release( btb );
+        counter.triangles += m_model.getTriangleCount();
+        return i;
+    }
+
+    // 面のピック用の、座標値と三角形の番号の色をインターリーブした配列
+    @Benchmark
+    public int trianglePickBuffers( TriangleCounter counter )
+    {
+        ByteBuffer btb = PickBufferBuilder.makeTrianglePickBuffer( m_model, PickBufferBuilder.getElementPickLayout( m_model ) );
+        int        i   = btb.get( btb.capacity() - 1 );
+        DirectBufferArena.getShared().release( btb );
+        counter.triangles += m_model.getTriangleCount();
+        return i;
+    }
+
+    // 描画用の、座標値と頂点の番号の色をインターリーブした配列
+    @Benchmark
+    public int interleavedVertex( TriangleCounter counter )
+    {
+        ByteBuffer btb = InterleavedVertexBuilder.build( m_model, m_model.getVertexLayout() );
+        int        i   = btb.get( btb.capacity() - 1 );
+        DirectBufferArena.getShared().release( btb );
+        counter.triangles += m_model.getTriangleCount();
+        return i;
+    }
+}
@@ -0,0 +1,57 @@
+package com.hiramine.modelviewertutorial;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+// 詳細度の段階の作成（読み込みの後に、読み込みスレッドで作成するもの）
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class SimplifyBenchmark
+{
+    @Param( { "100000", "1000000" } )
+    public int countTriangle;
+
+    @Param( { "sphere" } )
+    public String shape;    // sphere, torus, terrain, soup（MeshGenerator.EShape）
+
+    private Model m_model;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        AppLog.setSink( AppLog.SINK_NONE );
+        TriangleSource source = MeshGenerator.create( MeshGenerator.EShape.fromName( shape ), countTriangle, 1 );
+        m_model = new Model( MeshGenerator.makeTriangleSoup( source ), source.getTriangleCount() * 3 );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        m_model.release();
+    }
+
+    // 50%、25%、10%の段階（前の段階から、続けて簡略化する）
+    @Benchmark
+    public int lodChain( TriangleCounter counter )
+    {
+        LodChain lodchain = LodChain.build( m_model, LodChain.DEFAULT_INTERACTIVE_TRIANGLE_BUDGET, null );
+        int      iCount   = ( null == lodchain ) ? 0 : lodchain.getLevelCount();
+        if( null != lodchain )
+        {
+            lodchain.release();
+        }
+        counter.triangles += m_model.getTriangleCount();
+        return iCount;
+    }
+}
@@ -0,0 +1,59 @@
+package com.hiramine.modelviewertutorial;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// STLファイルの読み込み（パースと頂点の共有化）
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class StlFileLoaderBenchmark
+{
+    @Param( { "1000", "10000", "100000", "1000000", "5000000" } )
+    public int countTriangle;
+
+    @Param( { "binary", "ascii" } )
+    public String format;
+
+    @Param( { "terrain" } )
+    public String shape;    // sphere, torus, terrain, soup（MeshGenerator.EShape）
+
+    private File m_file;
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException
+    {
+        AppLog.setSink( AppLog.SINK_NONE );
+        m_file = File.createTempFile( "benchmark", ".stl" );
+        StlWriter.write( m_file, MeshGenerator.create( MeshGenerator.EShape.fromName( shape ), countTriangle, 1 ), "binary".equals( format ) );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        m_file.delete();
+    }
+
+    // 読み込んだモデルは、アプリでモデルを差し替えた時と同じく解放する（バッファはアリーナに返る）
+    @Benchmark
+    public int load( TriangleCounter counter )
+    {
+        Model model          = StlFileLoader.load( m_file.getPath() );
+        int   iCountTriangle = model.getTriangleCount();
+        model.release();
+        counter.triangles += iCountTriangle;
+        return iCountTriangle;
+    }
+}
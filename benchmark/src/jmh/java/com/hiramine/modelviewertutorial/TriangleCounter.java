@@ -0,0 +1,21 @@
+package com.hiramine.modelviewertutorial;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// 処理した三角形の数（JMHが、三角形/秒として集計して出力する）
+@State( Scope.Thread )
+@AuxCounters( AuxCounters.Type.OPERATIONS )
+public class TriangleCounter
+{
+    public long triangles;    // JMHの出力の名前になるので、メンバー変数の接頭辞を付けない
+
+    @Setup( Level.Iteration )
+    public void reset()
+    {
+        triangles = 0;
+    }
+}
@@ -0,0 +1,113 @@
+package com.hiramine.modelviewertutorial;
+
+// 不具合を含む三角形の集まり（読み込みや頂点の共有化、稜線の作成の、異常系の確認用）
+// ・地形の格子の三角形を元に、一部の三角形を次のいずれかに置き換える（どれに置き換えるかは、番号と種から決まる）
+//   ・面積0の三角形（２頂点が同じ点、または３頂点が一直線上）
+//   ・格子の直前の三角形と同じ三角形（そのまま、または裏返し）
+//   ・格子の直前の三角形の辺に、別の頂点を付けた三角形（３つ以上の三角形が共有する、非多様体の稜線になる）
+// ・置き換えた元の三角形の所は、穴になる
+// ・三角形の数は、指定した数ちょうど
+public class DefectSoupMesh implements TriangleSource
+{
+    // 不具合の種類
+    public enum EDefect
+    {
+        DT_NONE,    // 不具合なし
+        DT_DEGENERATE_POINT,    // ２頂点が同じ点
+        DT_DEGENERATE_LINE,    // ３頂点が一直線上
+        DT_DUPLICATE,    // 格子の直前の三角形と同じ
+        DT_DUPLICATE_FLIPPED,    // 格子の直前の三角形を裏返したもの
+        DT_NON_MANIFOLD,    // 格子の直前の三角形の辺を共有する、３つ目の三角形
+    }
+
+    // 定数
+    private static final int DEFECT_RATE = 8;    // およそ何個に１個を、不具合のある三角形にするか
+
+    // メンバー変数
+    private final TerrainMesh m_terrain;    // 元の三角形
+    private final long        m_lSeed;    // 種
+    private final float[]     m_af9Previous = new float[9];    // 格子の直前の三角形の計算用
+
+    public DefectSoupMesh( int iCountTriangle, long lSeed )
+    {
+        m_terrain = new TerrainMesh( iCountTriangle );
+        m_lSeed = lSeed;
+    }
+
+    @Override
+    public int getTriangleCount()
+    {
+        return m_terrain.getTriangleCount();
+    }
+
+    // i番目の三角形の不具合の種類（先頭の三角形は、格子の直前の三角形が無いので、不具合なし）
+    public EDefect getDefect( int iIndexTriangle )
+    {
+        if( 0 == iIndexTriangle )
+        {
+            return EDefect.DT_NONE;
+        }
+        int iHash = hash( iIndexTriangle );
+        if( 0 != ( iHash >>> 8 ) % DEFECT_RATE )
+        {
+            return EDefect.DT_NONE;
+        }
+        EDefect[] aDefect = EDefect.values();
+        return aDefect[1 + ( iHash & 0xFF ) % ( aDefect.length - 1 )];
+    }
+
+    // 同じインスタンスを、複数のスレッドから同時に使ってはいけない（格子の直前の三角形の計算用の配列を使い回す）
+    @Override
+    public void getTriangle( int iIndexTriangle, float[] af9Triangle )
+    {
+        EDefect eDefect = getDefect( iIndexTriangle );
+        if( EDefect.DT_NONE == eDefect
+                || EDefect.DT_DEGENERATE_POINT == eDefect
+                || EDefect.DT_DEGENERATE_LINE == eDefect )
+        {
+            m_terrain.getTriangle( iIndexTriangle, af9Triangle );
+        }
+        else
+        {
+            m_terrain.getTriangle( iIndexTriangle - 1, m_af9Previous );
+        }
+
+        switch( eDefect )
+        {
+            case DT_DEGENERATE_POINT:
+                System.arraycopy( af9Triangle, 3, af9Triangle, 6, 3 );
+                break;
+            case DT_DEGENERATE_LINE:
+                // 頂点1の高さを頂点0に揃え、頂点2を辺の中点にする（格子のxyは整数なので、中点もちょうど一直線上になる）
+                af9Triangle[5] = af9Triangle[2];
+                af9Triangle[6] = ( af9Triangle[0] + af9Triangle[3] ) * 0.5f;
+                af9Triangle[7] = ( af9Triangle[1] + af9Triangle[4] ) * 0.5f;
+                af9Triangle[8] = af9Triangle[2];
+                break;
+            case DT_DUPLICATE:
+                System.arraycopy( m_af9Previous, 0, af9Triangle, 0, 9 );
+                break;
+            case DT_DUPLICATE_FLIPPED:
+                System.arraycopy( m_af9Previous, 0, af9Triangle, 0, 3 );
+                System.arraycopy( m_af9Previous, 6, af9Triangle, 3, 3 );
+                System.arraycopy( m_af9Previous, 3, af9Triangle, 6, 3 );
+                break;
+            case DT_NON_MANIFOLD:
+                System.arraycopy( m_af9Previous, 0, af9Triangle, 0, 6 );
+                af9Triangle[6] = ( m_af9Previous[0] + m_af9Previous[3] ) * 0.5f;    // 辺の中点の真上
+                af9Triangle[7] = ( m_af9Previous[1] + m_af9Previous[4] ) * 0.5f;
+                af9Triangle[8] = ( m_af9Previous[2] + m_af9Previous[5] ) * 0.5f + 1.0f;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int hash( int iIndexTriangle )
+    {
+        long lHash = ( iIndexTriangle + m_lSeed * 0x9E3779B97F4A7C15L ) * 0xBF58476D1CE4E5B9L;
+        lHash ^= lHash >>> 31;
+        lHash *= 0x94D049BB133111EBL;
+        return (int)( lHash ^ ( lHash >>> 29 ) );
+    }
+}
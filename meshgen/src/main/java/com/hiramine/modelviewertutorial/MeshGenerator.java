@@ -0,0 +1,155 @@
+package com.hiramine.modelviewertutorial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Locale;
+
+// 合成メッシュのSTLファイルを生成するコマンド
+// 使い方 : MeshGenerator <shape> <triangles> <output.stl> [--ascii] [--seed n]
+// ・shape : sphere, torus, terrain, soup
+// ・triangles : 三角形の数（sphere、torusは、これを超えない範囲で最も近い数になる）
+public class MeshGenerator
+{
+    // 形の種類
+    public enum EShape
+    {
+        S_SPHERE( "sphere" ),
+        S_TORUS( "torus" ),
+        S_TERRAIN( "terrain" ),
+        S_SOUP( "soup" );
+
+        private final String m_strName;
+
+        EShape( String strName )
+        {
+            m_strName = strName;
+        }
+
+        public String getName()
+        {
+            return m_strName;
+        }
+
+        public static EShape fromName( String strName )
+        {
+            for( EShape eShape : values() )
+            {
+                if( eShape.m_strName.equalsIgnoreCase( strName ) )
+                {
+                    return eShape;
+                }
+            }
+            return null;
+        }
+    }
+
+    // 形と三角形の数からの、三角形の並びの作成（大きさは、どの形もおよそ100の範囲に収まる）
+    public static TriangleSource create( EShape eShape, int iCountTriangle, long lSeed )
+    {
+        switch( eShape )
+        {
+            case S_SPHERE:
+                return new SphereMesh( iCountTriangle, 50.0f );
+            case S_TORUS:
+                return new TorusMesh( iCountTriangle, 35.0f, 15.0f );
+            case S_TERRAIN:
+                return new TerrainMesh( iCountTriangle );
+            case S_SOUP:
+                return new DefectSoupMesh( iCountTriangle, lSeed );
+            default:
+                throw new IllegalArgumentException( "unknown shape : " + eShape );
+        }
+    }
+
+    // 三角形ごとに３頂点を持つ頂点配列（STLファイルを読み込んだ直後と同じ形）（全体をメモリーに持つので、ベンチマークやテストの入力用）
+    public static FloatBuffer makeTriangleSoup( TriangleSource source )
+    {
+        FloatBuffer fb          = ByteBuffer.allocateDirect( source.getTriangleCount() * 3 * 3 * 4 ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
+        float[]     af9Triangle = new float[9];
+        for( int i = 0; i < source.getTriangleCount(); i++ )
+        {
+            source.getTriangle( i, af9Triangle );
+            fb.put( af9Triangle );
+        }
+        fb.position( 0 );
+        return fb;
+    }
+
+    public static void main( String[] astrArg )
+    {
+        String  strShape  = null;
+        String  strCount  = null;
+        String  strOutput = null;
+        boolean bBinary   = true;
+        long    lSeed     = 1;
+        try
+        {
+            for( int i = 0; i < astrArg.length; i++ )
+            {
+                if( "--ascii".equals( astrArg[i] ) )
+                {
+                    bBinary = false;
+                }
+                else if( "--seed".equals( astrArg[i] ) && i + 1 < astrArg.length )
+                {
+                    lSeed = Long.parseLong( astrArg[++i] );
+                }
+                else if( null == strShape )
+                {
+                    strShape = astrArg[i];
+                }
+                else if( null == strCount )
+                {
+                    strCount = astrArg[i];
+                }
+                else if( null == strOutput )
+                {
+                    strOutput = astrArg[i];
+                }
+                else
+                {
+                    usage();
+                    return;
+                }
+            }
+            EShape eShape = ( null != strShape ) ? EShape.fromName( strShape ) : null;
+            if( null == eShape || null == strCount || null == strOutput )
+            {
+                usage();
+                return;
+            }
+            int iCountTriangle = Integer.parseInt( strCount );
+            if( 0 >= iCountTriangle )
+            {
+                usage();
+                return;
+            }
+
+            TriangleSource source = create( eShape, iCountTriangle, lSeed );
+            File           file   = new File( strOutput );
+            long           lStart = System.nanoTime();
+            StlWriter.write( file, source, bBinary );
+            System.out.println( String.format( Locale.US, "%s : %s, %d triangles, %s, %d bytes, %.1f s",
+                                               file.getPath(), eShape.getName(), source.getTriangleCount(),
+                                               bBinary ? "binary" : "ascii", file.length(), ( System.nanoTime() - lStart ) / 1.0e9 ) );
+        }
+        catch( NumberFormatException e )
+        {
+            usage();
+        }
+        catch( IOException e )
+        {
+            System.err.println( "write error : " + e );
+            System.exit( 1 );
+        }
+    }
+
+    private static void usage()
+    {
+        System.err.println( "usage : MeshGenerator <sphere|torus|terrain|soup> <triangles> <output.stl> [--ascii] [--seed n]" );
+        System.exit( 2 );
+    }
+}
@@ -0,0 +1,92 @@
+package com.hiramine.modelviewertutorial;
+
+// 球（緯度方向にiCountStack、経度方向に２×iCountStackに分割する）
+// ・極の周りは三角形１つ、それ以外は四角形を２つの三角形に分割する。三角形の数は 4×iCountStack×(iCountStack-1)
+// ・指定した三角形の数を超えない範囲で、最も細かい分割にする（最小は、iCountStackが2の8三角形）
+// ・同じ格子点は、どの三角形からも同じ座標値になるので、頂点を共有化すると閉じた多様体になる。三角形は外から見て反時計回り
+public class SphereMesh implements TriangleSource
+{
+    // メンバー変数
+    private final float m_fRadius;    // 半径
+    private final int   m_iCountStack;    // 緯度方向の分割数
+    private final int   m_iCountSlice;    // 経度方向の分割数
+
+    public SphereMesh( int iCountTriangle, float fRadius )
+    {
+        m_fRadius = fRadius;
+        int iCountStack = Math.max( 2, (int)( ( 1.0 + Math.sqrt( 1.0 + iCountTriangle ) ) / 2.0 ) );
+        while( 2 < iCountStack && 4L * iCountStack * ( iCountStack - 1 ) > iCountTriangle )
+        {
+            iCountStack--;
+        }
+        m_iCountStack = iCountStack;
+        m_iCountSlice = iCountStack * 2;
+    }
+
+    @Override
+    public int getTriangleCount()
+    {
+        return 2 * m_iCountSlice * ( m_iCountStack - 1 );
+    }
+
+    // 頂点を共有化した時の頂点の数
+    public int getVertexCount()
+    {
+        return 2 + m_iCountSlice * ( m_iCountStack - 1 );
+    }
+
+    @Override
+    public void getTriangle( int iIndexTriangle, float[] af9Triangle )
+    {
+        int iCountMiddle = 2 * m_iCountSlice * ( m_iCountStack - 2 );
+        if( m_iCountSlice > iIndexTriangle )
+        { // 北極の周り
+            int iSlice = iIndexTriangle;
+            putVertex( af9Triangle, 0, 0, 0 );
+            putVertex( af9Triangle, 1, 1, iSlice );
+            putVertex( af9Triangle, 2, 1, iSlice + 1 );
+            return;
+        }
+        iIndexTriangle -= m_iCountSlice;
+        if( iCountMiddle > iIndexTriangle )
+        {
+            int iStack = 1 + iIndexTriangle / ( 2 * m_iCountSlice );
+            int iSlice = ( iIndexTriangle / 2 ) % m_iCountSlice;
+            if( 0 == iIndexTriangle % 2 )
+            {
+                putVertex( af9Triangle, 0, iStack, iSlice );
+                putVertex( af9Triangle, 1, iStack + 1, iSlice );
+                putVertex( af9Triangle, 2, iStack + 1, iSlice + 1 );
+            }
+            else
+            {
+                putVertex( af9Triangle, 0, iStack, iSlice );
+                putVertex( af9Triangle, 1, iStack + 1, iSlice + 1 );
+                putVertex( af9Triangle, 2, iStack, iSlice + 1 );
+            }
+            return;
+        }
+        // 南極の周り
+        int iSlice = iIndexTriangle - iCountMiddle;
+        putVertex( af9Triangle, 0, m_iCountStack - 1, iSlice );
+        putVertex( af9Triangle, 1, m_iCountStack, 0 );
+        putVertex( af9Triangle, 2, m_iCountStack - 1, iSlice + 1 );
+    }
+
+    // 格子点の座標値（経度方向は一周したら先頭に戻す。極は経度によらず同じ点）
+    private void putVertex( float[] af9Triangle, int i3, int iStack, int iSlice )
+    {
+        if( 0 == iStack || m_iCountStack == iStack )
+        {
+            af9Triangle[i3 * 3 + 0] = 0.0f;
+            af9Triangle[i3 * 3 + 1] = 0.0f;
+            af9Triangle[i3 * 3 + 2] = ( 0 == iStack ) ? m_fRadius : -m_fRadius;
+            return;
+        }
+        double dTheta = Math.PI * iStack / m_iCountStack;
+        double dPhi   = 2.0 * Math.PI * ( iSlice % m_iCountSlice ) / m_iCountSlice;
+        af9Triangle[i3 * 3 + 0] = (float)( m_fRadius * Math.sin( dTheta ) * Math.cos( dPhi ) );
+        af9Triangle[i3 * 3 + 1] = (float)( m_fRadius * Math.sin( dTheta ) * Math.sin( dPhi ) );
+        af9Triangle[i3 * 3 + 2] = (float)( m_fRadius * Math.cos( dTheta ) );
+    }
+}
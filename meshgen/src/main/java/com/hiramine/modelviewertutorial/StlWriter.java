@@ -0,0 +1,124 @@
+package com.hiramine.modelviewertutorial;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+// STLファイルの書き出し（バイナリ形式、アスキー形式）
+// ・三角形を１つずつ計算しながら書き出すので、ファイルの大きさによらず、使うメモリーは一定
+// ・法線は、頂点の並びから計算する（面積0の三角形は0ベクトル）
+public class StlWriter
+{
+    // 定数
+    private static final int    BINARY_HEADER_SIZE = 80;
+    private static final int    BINARY_FACET_SIZE  = 50;    // 法線、３頂点、属性
+    private static final int    STREAM_BUFFER_SIZE = 1 << 16;
+    private static final String HEADER_TEXT        = "binary STL written by MeshGenerator";    // 「solid」で始めない（アスキー形式と見分けるため）
+
+    public static void write( File file, TriangleSource source, boolean bBinary ) throws IOException
+    {
+        OutputStream os = new BufferedOutputStream( new FileOutputStream( file ), STREAM_BUFFER_SIZE );
+        try
+        {
+            if( bBinary )
+            {
+                writeBinary( os, source );
+            }
+            else
+            {
+                writeAscii( os, source, file.getName() );
+            }
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    public static void writeBinary( OutputStream os, TriangleSource source ) throws IOException
+    {
+        ByteBuffer bb = ByteBuffer.allocate( Math.max( BINARY_HEADER_SIZE + 4, BINARY_FACET_SIZE ) ).order( ByteOrder.LITTLE_ENDIAN );
+        byte[] abtHeader = HEADER_TEXT.getBytes( StandardCharsets.US_ASCII );
+        bb.put( abtHeader, 0, Math.min( abtHeader.length, BINARY_HEADER_SIZE ) );
+        bb.putInt( BINARY_HEADER_SIZE, source.getTriangleCount() );
+        os.write( bb.array(), 0, BINARY_HEADER_SIZE + 4 );
+
+        float[] af9Triangle = new float[9];
+        float[] af3Normal   = new float[3];
+        for( int i = 0; i < source.getTriangleCount(); i++ )
+        {
+            source.getTriangle( i, af9Triangle );
+            calcNormal( af9Triangle, af3Normal );
+            bb.clear();
+            bb.putFloat( af3Normal[0] ).putFloat( af3Normal[1] ).putFloat( af3Normal[2] );
+            for( float f : af9Triangle )
+            {
+                bb.putFloat( f );
+            }
+            bb.putShort( (short)0 );
+            os.write( bb.array(), 0, BINARY_FACET_SIZE );
+        }
+    }
+
+    // 座標値は、Float.toString()で書く（読み込むと、元のfloat値にちょうど戻る）
+    public static void writeAscii( OutputStream os, TriangleSource source, String strName ) throws IOException
+    {
+        StringBuilder sb          = new StringBuilder( 512 );
+        byte[]        abtFacet    = new byte[512];
+        float[]       af9Triangle = new float[9];
+        float[]       af3Normal   = new float[3];
+        os.write( ( "solid " + strName + "\n" ).getBytes( StandardCharsets.US_ASCII ) );
+        for( int i = 0; i < source.getTriangleCount(); i++ )
+        {
+            source.getTriangle( i, af9Triangle );
+            calcNormal( af9Triangle, af3Normal );
+            sb.setLength( 0 );
+            sb.append( "  facet normal " ).append( af3Normal[0] ).append( ' ' ).append( af3Normal[1] ).append( ' ' ).append( af3Normal[2] ).append( '\n' );
+            sb.append( "    outer loop\n" );
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                sb.append( "      vertex " ).append( af9Triangle[i3 * 3 + 0] ).append( ' ' ).append( af9Triangle[i3 * 3 + 1] ).append( ' ' ).append( af9Triangle[i3 * 3 + 2] ).append( '\n' );
+            }
+            sb.append( "    endloop\n" );
+            sb.append( "  endfacet\n" );
+            if( abtFacet.length < sb.length() )
+            {
+                abtFacet = new byte[sb.length()];
+            }
+            for( int iChar = 0; iChar < sb.length(); iChar++ )
+            {
+                abtFacet[iChar] = (byte)sb.charAt( iChar );    // ASCIIだけなので、１文字１バイト
+            }
+            os.write( abtFacet, 0, sb.length() );
+        }
+        os.write( ( "endsolid " + strName + "\n" ).getBytes( StandardCharsets.US_ASCII ) );
+    }
+
+    // 三角形の法線（頂点が反時計回りに見える側。面積0の三角形は0ベクトル）
+    static void calcNormal( float[] af9Triangle, float[] af3Normal )
+    {
+        float fAX = af9Triangle[3] - af9Triangle[0];
+        float fAY = af9Triangle[4] - af9Triangle[1];
+        float fAZ = af9Triangle[5] - af9Triangle[2];
+        float fBX = af9Triangle[6] - af9Triangle[0];
+        float fBY = af9Triangle[7] - af9Triangle[1];
+        float fBZ = af9Triangle[8] - af9Triangle[2];
+        float fNX = fAY * fBZ - fAZ * fBY;
+        float fNY = fAZ * fBX - fAX * fBZ;
+        float fNZ = fAX * fBY - fAY * fBX;
+        float fLength = (float)Math.sqrt( fNX * fNX + fNY * fNY + fNZ * fNZ );
+        if( 0.0f == fLength )
+        {
+            af3Normal[0] = af3Normal[1] = af3Normal[2] = 0.0f;
+            return;
+        }
+        af3Normal[0] = fNX / fLength;
+        af3Normal[1] = fNY / fLength;
+        af3Normal[2] = fNZ / fLength;
+    }
+}
@@ -0,0 +1,58 @@
+package com.hiramine.modelviewertutorial;
+
+// 起伏のある地形の格子（格子の１マスを２つの三角形に分割する）
+// ・三角形の数は、指定した数ちょうど（最後の行は途中まで。奇数の場合は、最後のマスは三角形１つ）
+// ・マスの大きさは1。高さは、周期の異なる正弦波の和
+public class TerrainMesh implements TriangleSource
+{
+    // メンバー変数
+    private final int m_iCountTriangle;    // 三角形の数
+    private final int m_iCountX;    // x方向のマスの数
+
+    public TerrainMesh( int iCountTriangle )
+    {
+        m_iCountTriangle = iCountTriangle;
+        m_iCountX = Math.max( 1, (int)Math.round( Math.sqrt( iCountTriangle / 2.0 ) ) );
+    }
+
+    @Override
+    public int getTriangleCount()
+    {
+        return m_iCountTriangle;
+    }
+
+    // x方向のマスの数
+    public int getCellCountX()
+    {
+        return m_iCountX;
+    }
+
+    @Override
+    public void getTriangle( int iIndexTriangle, float[] af9Triangle )
+    {
+        int iCell = iIndexTriangle / 2;
+        int iX    = iCell % m_iCountX;
+        int iY    = iCell / m_iCountX;
+        if( 0 == iIndexTriangle % 2 )
+        {
+            putVertex( af9Triangle, 0, iX, iY );
+            putVertex( af9Triangle, 1, iX + 1, iY );
+            putVertex( af9Triangle, 2, iX + 1, iY + 1 );
+        }
+        else
+        {
+            putVertex( af9Triangle, 0, iX, iY );
+            putVertex( af9Triangle, 1, iX + 1, iY + 1 );
+            putVertex( af9Triangle, 2, iX, iY + 1 );
+        }
+    }
+
+    // 格子点の座標値（同じ格子点は、どの三角形からも同じ値になる）
+    static void putVertex( float[] af9Triangle, int i3, int iX, int iY )
+    {
+        af9Triangle[i3 * 3 + 0] = iX;
+        af9Triangle[i3 * 3 + 1] = iY;
+        af9Triangle[i3 * 3 + 2] = (float)( Math.sin( iX * 0.1 ) * Math.cos( iY * 0.1 ) * 4.0
+                                           + Math.sin( iX * 0.37 + iY * 0.23 ) * 0.5 );
+    }
+}
@@ -0,0 +1,65 @@
+package com.hiramine.modelviewertutorial;
+
+// トーラス（z軸周りの大円方向にiCountMajor、管の断面の小円方向にiCountMinor = iCountMajor/2で分割する）
+// ・四角形を２つの三角形に分割する。三角形の数は 2×iCountMajor×iCountMinor
+// ・指定した三角形の数を超えない範囲で、最も細かい分割にする（最小は、iCountMinorが3の36三角形）
+// ・同じ格子点は、どの三角形からも同じ座標値になるので、頂点を共有化すると閉じた多様体（種数1）になる。三角形は外から見て反時計回り
+public class TorusMesh implements TriangleSource
+{
+    // メンバー変数
+    private final float m_fRadiusMajor;    // 大円の半径（管の中心までの距離）
+    private final float m_fRadiusMinor;    // 管の半径
+    private final int   m_iCountMajor;    // 大円方向の分割数
+    private final int   m_iCountMinor;    // 小円方向の分割数
+
+    public TorusMesh( int iCountTriangle, float fRadiusMajor, float fRadiusMinor )
+    {
+        m_fRadiusMajor = fRadiusMajor;
+        m_fRadiusMinor = fRadiusMinor;
+        m_iCountMinor = Math.max( 3, (int)Math.sqrt( iCountTriangle / 4.0 ) );
+        m_iCountMajor = m_iCountMinor * 2;
+    }
+
+    @Override
+    public int getTriangleCount()
+    {
+        return 2 * m_iCountMajor * m_iCountMinor;
+    }
+
+    // 頂点を共有化した時の頂点の数
+    public int getVertexCount()
+    {
+        return m_iCountMajor * m_iCountMinor;
+    }
+
+    @Override
+    public void getTriangle( int iIndexTriangle, float[] af9Triangle )
+    {
+        int iCell  = iIndexTriangle / 2;
+        int iMajor = iCell / m_iCountMinor;
+        int iMinor = iCell % m_iCountMinor;
+        if( 0 == iIndexTriangle % 2 )
+        {
+            putVertex( af9Triangle, 0, iMajor, iMinor );
+            putVertex( af9Triangle, 1, iMajor + 1, iMinor );
+            putVertex( af9Triangle, 2, iMajor + 1, iMinor + 1 );
+        }
+        else
+        {
+            putVertex( af9Triangle, 0, iMajor, iMinor );
+            putVertex( af9Triangle, 1, iMajor + 1, iMinor + 1 );
+            putVertex( af9Triangle, 2, iMajor, iMinor + 1 );
+        }
+    }
+
+    // 格子点の座標値（どちらの方向も、一周したら先頭に戻す）
+    private void putVertex( float[] af9Triangle, int i3, int iMajor, int iMinor )
+    {
+        double dU      = 2.0 * Math.PI * ( iMajor % m_iCountMajor ) / m_iCountMajor;
+        double dV      = 2.0 * Math.PI * ( iMinor % m_iCountMinor ) / m_iCountMinor;
+        double dRadius = m_fRadiusMajor + m_fRadiusMinor * Math.cos( dV );
+        af9Triangle[i3 * 3 + 0] = (float)( dRadius * Math.cos( dU ) );
+        af9Triangle[i3 * 3 + 1] = (float)( dRadius * Math.sin( dU ) );
+        af9Triangle[i3 * 3 + 2] = (float)( m_fRadiusMinor * Math.sin( dV ) );
+    }
+}
@@ -0,0 +1,13 @@
+package com.hiramine.modelviewertutorial;
+
+// 三角形の並び（i番目の三角形を、任意の順に計算して取り出せる）
+// ・全体をメモリーに持たずに、書き出しながら作れるようにする
+// ・同じ引数で作ったものからは、常に同じ三角形を取り出せる
+public interface TriangleSource
+{
+    // 三角形の数
+    int getTriangleCount();
+
+    // i番目の三角形の３頂点の座標値（x0, y0, z0, x1, ... z2）
+    void getTriangle( int iIndexTriangle, float[] af9Triangle );
+}
@@ -0,0 +1,214 @@
+package com.hiramine.modelviewertutorial;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 合成メッシュの生成のローカルユニットテスト
+ */
+public class MeshGeneratorTest
+{
+    private File m_file;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        m_file = File.createTempFile( "meshgen", ".stl" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        m_file.delete();
+    }
+
+    // 地形と不具合のある三角形の集まりは、指定した数ちょうど。球とトーラスは、指定した数を超えない
+    @Test
+    public void create_triangleCount()
+    {
+        for( int iCount : new int[]{ 1, 7, 1000, 12345 } )
+        {
+            assertEquals( iCount, new TerrainMesh( iCount ).getTriangleCount() );
+            assertEquals( iCount, new DefectSoupMesh( iCount, 1 ).getTriangleCount() );
+        }
+        for( int iCount : new int[]{ 100, 1000, 12345, 1000000 } )
+        {
+            int iCountSphere = new SphereMesh( iCount, 1.0f ).getTriangleCount();
+            int iCountTorus  = new TorusMesh( iCount, 2.0f, 1.0f ).getTriangleCount();
+            assertTrue( iCountSphere <= iCount && iCountSphere >= iCount * 0.75 );
+            assertTrue( iCountTorus <= iCount && iCountTorus >= iCount * 0.75 );
+        }
+    }
+
+    // 球とトーラスは、閉じた多様体で、外から見て反時計回り
+    @Test
+    public void sphereAndTorus_areClosedAndOutward()
+    {
+        SphereMesh sphere = new SphereMesh( 5000, 10.0f );
+        assertClosedManifold( sphere, sphere.getVertexCount(), 2 );
+        assertEquals( 4.0 / 3.0 * Math.PI * 1000.0, signedVolume( sphere ), 4.0 / 3.0 * Math.PI * 1000.0 * 0.02 );
+
+        TorusMesh torus = new TorusMesh( 5000, 3.0f, 1.0f );
+        assertClosedManifold( torus, torus.getVertexCount(), 0 );
+        assertEquals( 2.0 * Math.PI * Math.PI * 3.0, signedVolume( torus ), 2.0 * Math.PI * Math.PI * 3.0 * 0.02 );
+    }
+
+    // 不具合のある三角形の集まりは、全種類の不具合を含み、同じ種からは同じ三角形になる
+    @Test
+    public void defectSoup_containsAllDefects_andIsReproducible()
+    {
+        DefectSoupMesh soup1 = new DefectSoupMesh( 2000, 5 );
+        DefectSoupMesh soup2 = new DefectSoupMesh( 2000, 5 );
+        DefectSoupMesh soup3 = new DefectSoupMesh( 2000, 6 );
+
+        EnumSet<DefectSoupMesh.EDefect> setDefect = EnumSet.noneOf( DefectSoupMesh.EDefect.class );
+        float[] af9Triangle1 = new float[9];
+        float[] af9Triangle2 = new float[9];
+        float[] af3Normal    = new float[3];
+        boolean bDifferent   = false;
+        for( int i = 0; i < soup1.getTriangleCount(); i++ )
+        {
+            DefectSoupMesh.EDefect eDefect = soup1.getDefect( i );
+            setDefect.add( eDefect );
+            soup1.getTriangle( i, af9Triangle1 );
+            soup2.getTriangle( i, af9Triangle2 );
+            assertTrue( Arrays.equals( af9Triangle1, af9Triangle2 ) );
+            bDifferent |= ( eDefect != soup3.getDefect( i ) );
+
+            StlWriter.calcNormal( af9Triangle1, af3Normal );
+            boolean bDegenerate = ( 0.0f == af3Normal[0] && 0.0f == af3Normal[1] && 0.0f == af3Normal[2] );
+            assertEquals( DefectSoupMesh.EDefect.DT_DEGENERATE_POINT == eDefect || DefectSoupMesh.EDefect.DT_DEGENERATE_LINE == eDefect, bDegenerate );
+        }
+        assertEquals( EnumSet.allOf( DefectSoupMesh.EDefect.class ), setDefect );
+        assertTrue( bDifferent );
+    }
+
+    // バイナリ形式は、ヘッダーの三角形の数とファイルサイズが合い、座標値がそのまま書かれる
+    @Test
+    public void writeBinary_matchesSource() throws Exception
+    {
+        TriangleSource source = MeshGenerator.create( MeshGenerator.EShape.S_TORUS, 3000, 1 );
+        StlWriter.write( m_file, source, true );
+        assertEquals( 84 + 50L * source.getTriangleCount(), m_file.length() );
+
+        RandomAccessFile raf = new RandomAccessFile( m_file, "r" );
+        byte[]           abt = new byte[(int)m_file.length()];
+        raf.readFully( abt );
+        raf.close();
+        ByteBuffer bb = ByteBuffer.wrap( abt ).order( ByteOrder.LITTLE_ENDIAN );
+        assertFalse( new String( abt, 0, 5, StandardCharsets.US_ASCII ).equalsIgnoreCase( "solid" ) );
+        assertEquals( source.getTriangleCount(), bb.getInt( 80 ) );
+
+        float[] af9Triangle = new float[9];
+        for( int i = 0; i < source.getTriangleCount(); i++ )
+        {
+            source.getTriangle( i, af9Triangle );
+            for( int i9 = 0; i9 < 9; i9++ )
+            {
+                assertEquals( af9Triangle[i9], bb.getFloat( 84 + i * 50 + 12 + i9 * 4 ), 0.0f );
+            }
+        }
+    }
+
+    // アスキー形式は、読み戻すと元のfloat値にちょうど戻る
+    @Test
+    public void writeAscii_roundTripsExactly() throws Exception
+    {
+        TriangleSource source = MeshGenerator.create( MeshGenerator.EShape.S_SOUP, 500, 3 );
+        StlWriter.write( m_file, source, false );
+
+        BufferedReader reader      = new BufferedReader( new InputStreamReader( new FileInputStream( m_file ), StandardCharsets.US_ASCII ) );
+        float[]        af9Triangle = new float[9];
+        int            iVertex     = 0;
+        String         strLine;
+        while( null != ( strLine = reader.readLine() ) )
+        {
+            strLine = strLine.trim();
+            if( !strLine.startsWith( "vertex " ) )
+            {
+                continue;
+            }
+            if( 0 == iVertex % 3 )
+            {
+                source.getTriangle( iVertex / 3, af9Triangle );
+            }
+            String[] astrValue = strLine.split( " " );
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                assertEquals( af9Triangle[( iVertex % 3 ) * 3 + i3], Float.parseFloat( astrValue[1 + i3] ), 0.0f );
+            }
+            iVertex++;
+        }
+        reader.close();
+        assertEquals( source.getTriangleCount() * 3, iVertex );
+    }
+
+    // 座標値のビット列が同じ頂点を同じ点として、全ての稜線がちょうど２つの三角形で、逆向きに共有され、オイラー標数が合う
+    private static void assertClosedManifold( TriangleSource source, int iCountVertexExpected, int iEulerCharacteristic )
+    {
+        Map<String, Integer> mapVertex   = new HashMap<>();
+        Map<Long, Integer>   mapEdge     = new HashMap<>();
+        float[]              af9Triangle = new float[9];
+        int[]                ai3Vertex   = new int[3];
+        for( int i = 0; i < source.getTriangleCount(); i++ )
+        {
+            source.getTriangle( i, af9Triangle );
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                String  strKey  = Float.floatToIntBits( af9Triangle[i3 * 3] + 0.0f ) + "," + Float.floatToIntBits( af9Triangle[i3 * 3 + 1] + 0.0f ) + "," + Float.floatToIntBits( af9Triangle[i3 * 3 + 2] + 0.0f );
+                Integer iVertex = mapVertex.get( strKey );
+                if( null == iVertex )
+                {
+                    iVertex = mapVertex.size();
+                    mapVertex.put( strKey, iVertex );
+                }
+                ai3Vertex[i3] = iVertex;
+            }
+            for( int i3 = 0; i3 < 3; i3++ )
+            {
+                long lEdge = ( (long)ai3Vertex[i3] << 32 ) | ai3Vertex[( i3 + 1 ) % 3];
+                assertEquals( null, mapEdge.put( lEdge, i ) );    // 同じ向きの稜線は１つだけ
+            }
+        }
+        for( Long lEdge : mapEdge.keySet() )
+        {
+            long lReverse = ( lEdge << 32 ) | ( lEdge >>> 32 );
+            assertTrue( mapEdge.containsKey( lReverse ) );    // 逆向きの稜線がある
+        }
+        assertEquals( iCountVertexExpected, mapVertex.size() );
+        assertEquals( iEulerCharacteristic, mapVertex.size() - mapEdge.size() / 2 + source.getTriangleCount() );
+    }
+
+    // 符号付き体積（外から見て反時計回りなら正）
+    private static double signedVolume( TriangleSource source )
+    {
+        double  dVolume     = 0.0;
+        float[] af9Triangle = new float[9];
+        for( int i = 0; i < source.getTriangleCount(); i++ )
+        {
+            source.getTriangle( i, af9Triangle );
+            dVolume += ( af9Triangle[0] * ( (double)af9Triangle[4] * af9Triangle[8] - (double)af9Triangle[5] * af9Triangle[7] )
+                         - af9Triangle[1] * ( (double)af9Triangle[3] * af9Triangle[8] - (double)af9Triangle[5] * af9Triangle[6] )
+                         + af9Triangle[2] * ( (double)af9Triangle[3] * af9Triangle[7] - (double)af9Triangle[4] * af9Triangle[6] ) ) / 6.0;
+        }
+        return dVolume;
+    }
+}